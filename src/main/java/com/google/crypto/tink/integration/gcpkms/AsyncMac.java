@@ -0,0 +1,36 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link com.google.crypto.tink.Mac} for keys in <a
+ * href="https://cloud.google.com/kms/">Google Cloud KMS</a>.
+ *
+ * <p>The returned futures complete on a gRPC thread. They fail with a {@link
+ * java.security.GeneralSecurityException} in the same cases in which the synchronous {@code Mac}
+ * throws one.
+ */
+public interface AsyncMac {
+
+  /** Computes the MAC of {@code data}. */
+  CompletableFuture<byte[]> computeMacAsync(byte[] data);
+
+  /** Verifies that {@code mac} is a correct MAC of {@code data}. */
+  CompletableFuture<Void> verifyMacAsync(byte[] mac, byte[] data);
+}
@@ -0,0 +1,140 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.crypto.tink.PublicKeyVerify;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A {@link PublicKeyVerify} that can also verify many signatures at once, in parallel on an {@link
+ * Executor}.
+ *
+ * <p>Verifying post-quantum signatures (ML-DSA and SLH-DSA) is CPU-bound, so verifying a large
+ * batch on one thread leaves the other cores idle. {@link #verifyAll} splits a batch into chunks of
+ * consecutive items, a few per thread of the executor, and returns which items are valid rather
+ * than failing on the first invalid one. By default, the common {@link ForkJoinPool} is used; any
+ * executor can be set instead, e.g. a dedicated {@link ForkJoinPool} or, on Java 21, an executor
+ * that starts a virtual thread per task.
+ *
+ * <p>Each message is passed to the underlying verifier once, without being copied, and is hashed
+ * there. Messages cannot be hashed ahead of time, since the hash of pure ML-DSA and SLH-DSA
+ * signatures depends on the public key.
+ *
+ * <p>Instances are created with {@link GcpKmsPublicKeyVerify.Builder#buildBatchVerify}, or with
+ * {@link #create} for any other verifier.
+ */
+public final class BatchPublicKeyVerify implements PublicKeyVerify {
+
+  /** The number of chunks per thread, so that threads that finish early can take another chunk. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final PublicKeyVerify verifier;
+  private final Executor executor;
+  private final int parallelism;
+
+  BatchPublicKeyVerify(PublicKeyVerify verifier, Executor executor) {
+    this.verifier = verifier;
+    this.executor = executor;
+    this.parallelism =
+        (executor instanceof ForkJoinPool)
+            ? ((ForkJoinPool) executor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+  }
+
+  /** Returns a batch verifier for {@code verifier} that uses the common {@link ForkJoinPool}. */
+  public static BatchPublicKeyVerify create(PublicKeyVerify verifier) {
+    return new BatchPublicKeyVerify(verifier, ForkJoinPool.commonPool());
+  }
+
+  /** Returns a batch verifier for {@code verifier} that runs the batches on {@code executor}. */
+  public static BatchPublicKeyVerify create(PublicKeyVerify verifier, Executor executor) {
+    return new BatchPublicKeyVerify(verifier, executor);
+  }
+
+  @Override
+  public void verify(final byte[] signature, final byte[] data) throws GeneralSecurityException {
+    verifier.verify(signature, data);
+  }
+
+  /**
+   * Verifies {@code signatures.get(i)} over {@code data.get(i)} for all {@code i}, in parallel, and
+   * returns the set of indices of the valid signatures. A signature is valid if the underlying
+   * verifier accepts it without throwing an exception.
+   *
+   * @throws IllegalArgumentException if the lists have different sizes
+   */
+  public BitSet verifyAll(List<byte[]> signatures, List<byte[]> data) {
+    try {
+      return verifyAllAsync(signatures, data).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /** Like {@link #verifyAll}, but returns a future instead of waiting for the result. */
+  public CompletableFuture<BitSet> verifyAllAsync(List<byte[]> signatures, List<byte[]> data) {
+    if (signatures.size() != data.size()) {
+      throw new IllegalArgumentException(
+          "signatures and data must have the same size: "
+              + signatures.size()
+              + " != "
+              + data.size());
+    }
+    // Copied into arrays, so that lists without random access are not read concurrently.
+    byte[][] signatureArray = signatures.toArray(new byte[0][]);
+    byte[][] dataArray = data.toArray(new byte[0][]);
+    int size = signatureArray.length;
+    // Every chunk writes whole words of the result, so the chunks do not need to synchronize.
+    long[] words = new long[(size + 63) / 64];
+    int chunkWords = Math.max(1, divideRoundingUp(words.length, parallelism * CHUNKS_PER_THREAD));
+    List<CompletableFuture<Void>> chunks = new ArrayList<>();
+    for (int firstWord = 0; firstWord < words.length; firstWord += chunkWords) {
+      int start = firstWord * 64;
+      int end = (int) Math.min(size, (long) (firstWord + chunkWords) * 64);
+      chunks.add(
+          CompletableFuture.runAsync(
+              () -> verifyChunk(signatureArray, dataArray, start, end, words), executor));
+    }
+    return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+        .thenApply(unused -> BitSet.valueOf(words));
+  }
+
+  private void verifyChunk(byte[][] signatures, byte[][] data, int start, int end, long[] words) {
+    for (int i = start; i < end; i++) {
+      try {
+        verifier.verify(signatures[i], data[i]);
+      } catch (GeneralSecurityException | RuntimeException e) {
+        continue;
+      }
+      words[i >>> 6] |= 1L << i;
+    }
+  }
+
+  private static int divideRoundingUp(int dividend, int divisor) {
+    return (dividend + divisor - 1) / divisor;
+  }
+}
@@ -0,0 +1,254 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.IntegrityFailure;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Phase;
+import com.google.crypto.tink.integration.gcpkms.internal.KmsCallEvent;
+import com.google.crypto.tink.integration.gcpkms.internal.KmsEvents;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CancellationException;
+import javax.annotation.Nullable;
+
+/**
+ * Measures the phases of one operation and reports them to a {@link KmsMetricsListener}, and to JDK
+ * Flight Recorder as a {@link KmsCallEvent} while a recording enables it.
+ *
+ * <p>Each phase lasts from the end of the previous one until it is marked. An operation may move on
+ * to another thread between phases, but never runs two of them at once.
+ */
+final class CallTimer {
+
+  /** A timer that measures nothing, used if no listener is set and no event is recorded. */
+  private static final CallTimer DISABLED = new CallTimer(null, null, "", Operation.ENCRYPT);
+
+  @Nullable private final KmsMetricsListener listener;
+  @Nullable private final KmsCallEvent event;
+  private final String keyName;
+  private final Operation operation;
+
+  private long lastMarkNanos;
+  private long checksumNanos = 0;
+  private long serializationNanos = 0;
+
+  private CallTimer(
+      @Nullable KmsMetricsListener listener,
+      @Nullable KmsCallEvent event,
+      String keyName,
+      Operation operation) {
+    this.listener = listener;
+    this.event = event;
+    this.keyName = keyName;
+    this.operation = operation;
+    this.lastMarkNanos = (listener == null && event == null) ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Starts timing an operation that sends {@code payloadSize} bytes of data. Returns a timer that
+   * does nothing if {@code listener} is null and no recording enables {@link KmsCallEvent}.
+   */
+  static CallTimer start(
+      @Nullable KmsMetricsListener listener, String keyName, Operation operation, int payloadSize) {
+    KmsCallEvent event =
+        KmsEvents.isKmsCallEnabled()
+            ? new KmsCallEvent(keyName, operation.name(), payloadSize)
+            : null;
+    if (listener == null && event == null) {
+      return DISABLED;
+    }
+    return new CallTimer(listener, event, keyName, operation);
+  }
+
+  /**
+   * Ends a period of {@link Phase#CHECKSUM} or {@link Phase#SERIALIZATION}. These may alternate
+   * while the request is built; their totals are reported by {@link #startRpc}.
+   */
+  void mark(Phase phase) {
+    if (this == DISABLED) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (phase == Phase.CHECKSUM) {
+      checksumNanos += now - lastMarkNanos;
+    } else if (phase == Phase.SERIALIZATION) {
+      serializationNanos += now - lastMarkNanos;
+    } else {
+      throw new IllegalArgumentException("Only the phases before the RPC can be marked: " + phase);
+    }
+    lastMarkNanos = now;
+  }
+
+  /**
+   * Reports the phases that build the request and starts timing the RPC. Time since the last mark,
+   * such as waiting for a free in-flight slot, is not counted.
+   */
+  void startRpc() {
+    if (this == DISABLED) {
+      return;
+    }
+    if (listener != null) {
+      listener.recordLatency(keyName, operation, Phase.CHECKSUM, checksumNanos);
+      listener.recordLatency(keyName, operation, Phase.SERIALIZATION, serializationNanos);
+    }
+    if (event != null) {
+      event.beginRequest(checksumNanos, serializationNanos);
+    }
+    lastMarkNanos = System.nanoTime();
+  }
+
+  /** Reports the duration and status of the RPC, which failed with {@code failure} unless null. */
+  void endRpc(@Nullable Throwable failure) {
+    if (this == DISABLED) {
+      return;
+    }
+    long now = System.nanoTime();
+    StatusCode.Code status = statusOf(failure);
+    if (listener != null) {
+      listener.recordLatency(keyName, operation, Phase.RPC, now - lastMarkNanos);
+      listener.recordStatus(keyName, operation, status);
+    }
+    if (event != null) {
+      event.commit(status.name());
+    }
+    lastMarkNanos = now;
+  }
+
+  /** Like {@link #endRpc}, once {@code future} completes. Returns {@code future}. */
+  <T> ApiFuture<T> endRpcWhenDone(ApiFuture<T> future) {
+    if (this == DISABLED) {
+      return future;
+    }
+    ApiFutures.addCallback(
+        future,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onSuccess(T value) {
+            endRpc(null);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            endRpc(t);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return future;
+  }
+
+  /**
+   * Reports the duration of {@link Phase#VALIDATION}, which ends with the computation of {@code
+   * result}, and returns it.
+   */
+  <T> T validated(T result) {
+    endValidation();
+    return result;
+  }
+
+  /** Reports the duration of {@link Phase#VALIDATION}, which ends now. */
+  void endValidation() {
+    if (listener == null) {
+      return;
+    }
+    listener.recordLatency(keyName, operation, Phase.VALIDATION, System.nanoTime() - lastMarkNanos);
+  }
+
+  /**
+   * Reports an integrity failure, also to JDK Flight Recorder, and returns an exception to throw
+   * for it.
+   */
+  static GeneralSecurityException integrityFailure(
+      @Nullable KmsMetricsListener listener,
+      String keyName,
+      Operation operation,
+      IntegrityFailure failure,
+      String message) {
+    if (listener != null) {
+      listener.recordIntegrityFailure(keyName, operation, failure);
+    }
+    KmsEvents.integrityFailure(keyName, operation.name(), failure.name());
+    return new GeneralSecurityException(message);
+  }
+
+  /**
+   * Returns the status code that a call with the given failure, or null on success, completed with.
+   */
+  static StatusCode.Code statusOf(@Nullable Throwable failure) {
+    if (failure == null) {
+      return StatusCode.Code.OK;
+    }
+    for (Throwable t = failure; t != null; t = t.getCause()) {
+      if (t instanceof ApiException) {
+        return ((ApiException) t).getStatusCode().getCode();
+      }
+      if (t instanceof HttpResponseException) {
+        return fromHttpStatusCode(((HttpResponseException) t).getStatusCode());
+      }
+      if (t instanceof KmsRateLimiter.RateLimitExceededException) {
+        return StatusCode.Code.RESOURCE_EXHAUSTED;
+      }
+      if (t instanceof KmsCircuitBreaker.CircuitOpenException || t instanceof IOException) {
+        return StatusCode.Code.UNAVAILABLE;
+      }
+      if (t instanceof CancellationException) {
+        return StatusCode.Code.CANCELLED;
+      }
+    }
+    return StatusCode.Code.UNKNOWN;
+  }
+
+  /** Maps an HTTP status code to a gRPC status code, as in google.rpc.Code. */
+  private static StatusCode.Code fromHttpStatusCode(int httpStatusCode) {
+    switch (httpStatusCode) {
+      case 400:
+        return StatusCode.Code.INVALID_ARGUMENT;
+      case 401:
+        return StatusCode.Code.UNAUTHENTICATED;
+      case 403:
+        return StatusCode.Code.PERMISSION_DENIED;
+      case 404:
+        return StatusCode.Code.NOT_FOUND;
+      case 409:
+        return StatusCode.Code.ABORTED;
+      case 412:
+        return StatusCode.Code.FAILED_PRECONDITION;
+      case 429:
+        return StatusCode.Code.RESOURCE_EXHAUSTED;
+      case 499:
+        return StatusCode.Code.CANCELLED;
+      case 500:
+        return StatusCode.Code.INTERNAL;
+      case 501:
+        return StatusCode.Code.UNIMPLEMENTED;
+      case 502:
+      case 503:
+        return StatusCode.Code.UNAVAILABLE;
+      case 504:
+        return StatusCode.Code.DEADLINE_EXCEEDED;
+      default:
+        return StatusCode.Code.UNKNOWN;
+    }
+  }
+}
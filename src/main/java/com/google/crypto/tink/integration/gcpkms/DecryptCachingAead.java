@@ -0,0 +1,163 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.integration.gcpkms.internal.KmsEvents;
+import com.google.crypto.tink.util.Bytes;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link Aead} that caches the results of {@code decrypt} of another {@link Aead}.
+ *
+ * <p>This is meant for a {@link GcpKmsAead} that wraps data encryption keys, so that repeatedly
+ * decrypting the same wrapped key does not call Cloud KMS every time. Entries are keyed on a
+ * SHA-256 hash of the ciphertext and the associated data. The cache holds at most a given number of
+ * entries, each for at most a given time. The cached plaintexts are overwritten with zeros when
+ * they are removed from the cache. Expired entries are removed during later cache accesses.
+ *
+ * <p>Note that a cached plaintext is returned even if the key in Cloud KMS has been disabled or
+ * destroyed in the meantime, until the entry expires.
+ *
+ * <p>{@code encrypt} is not cached and forwarded as is.
+ *
+ * <p>Instances are created with {@link GcpKmsAead.Builder#buildWithDecryptionCache}.
+ */
+public final class DecryptCachingAead implements Aead {
+
+  private final Aead aead;
+  private final Cache<Bytes, CachedPlaintext> cache;
+
+  DecryptCachingAead(Aead aead, long maxEntries, Duration maxAge, Ticker ticker) {
+    this.aead = aead;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(maxAge)
+            .ticker(ticker)
+            .recordStats()
+            .removalListener(
+                (RemovalNotification<Bytes, CachedPlaintext> notification) ->
+                    notification.getValue().destroy())
+            .build();
+  }
+
+  @Override
+  public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    return aead.encrypt(plaintext, associatedData);
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    Bytes cacheKey = cacheKey(ciphertext, associatedData);
+    CachedPlaintext cached = cache.getIfPresent(cacheKey);
+    if (cached != null) {
+      byte[] plaintext = cached.copy();
+      if (plaintext != null) {
+        KmsEvents.decryptCacheLookup(/* hit= */ true, ciphertext.length);
+        return plaintext;
+      }
+    }
+    KmsEvents.decryptCacheLookup(/* hit= */ false, ciphertext.length);
+    byte[] plaintext = aead.decrypt(ciphertext, associatedData);
+    cache.put(cacheKey, new CachedPlaintext(plaintext.clone()));
+    return plaintext;
+  }
+
+  /** Returns the number of {@code decrypt} calls that were answered from the cache. */
+  public long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /** Returns the number of {@code decrypt} calls that were not answered from the cache. */
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  /** Returns the number of entries removed because the cache was full or they expired. */
+  public long evictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  /** Returns the approximate number of entries in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Removes and zeroizes all entries. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+    cache.cleanUp();
+  }
+
+  /**
+   * Returns SHA-256(len(ciphertext) || ciphertext || associatedData), with the length as 8 bytes in
+   * big-endian order, so that different splits of the same bytes do not collide.
+   */
+  private static Bytes cacheKey(byte[] ciphertext, @Nullable byte[] associatedData)
+      throws GeneralSecurityException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new GeneralSecurityException(e);
+    }
+    digest.update(ByteBuffer.allocate(8).putLong(ciphertext.length).array());
+    digest.update(ciphertext);
+    if (associatedData != null) {
+      digest.update(associatedData);
+    }
+    return Bytes.copyFrom(digest.digest());
+  }
+
+  /** A cached plaintext, which is zeroized once it is removed from the cache. */
+  private static final class CachedPlaintext {
+    @GuardedBy("this")
+    @Nullable
+    private byte[] plaintext;
+
+    CachedPlaintext(byte[] plaintext) {
+      this.plaintext = plaintext;
+    }
+
+    /** Returns a copy of the plaintext, or null if it has already been zeroized. */
+    @Nullable
+    synchronized byte[] copy() {
+      return (plaintext == null) ? null : plaintext.clone();
+    }
+
+    synchronized void destroy() {
+      if (plaintext != null) {
+        Arrays.fill(plaintext, (byte) 0);
+        plaintext = null;
+      }
+    }
+  }
+}
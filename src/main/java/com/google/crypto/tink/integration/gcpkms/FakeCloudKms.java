@@ -16,6 +16,8 @@
 package com.google.crypto.tink.integration.gcpkms;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.LowLevelHttpRequest;
 import com.google.api.client.json.gson.GsonFactory;
@@ -31,18 +33,41 @@ import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.RegistryConfiguration;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A partial, fake implementation of {@link com.google.api.services.cloudkms.v1.CloudKMS}.
  *
  * <p>It creates a new AEAD for every valid key ID. CryptoKeys use them to encrypt and decrypt.
+ *
+ * <p>To test the behavior under load, the fake can delay its responses and fail a fraction of the
+ * calls with an HTTP error, such as 429 or 503, and it counts the calls per operation. It is
+ * thread-safe.
  */
 final class FakeCloudKms extends CloudKMS {
-  private final Map<String, Aead> aeads = new HashMap<>();
+
+  /** The operations implemented by the fake. */
+  enum Operation {
+    ENCRYPT,
+    DECRYPT,
+  }
+
+  private final Map<String, Aead> aeads = new ConcurrentHashMap<>();
+  private final Map<Operation, LongAdder> callCounts = new EnumMap<>(Operation.class);
+  private final LongAdder injectedErrors = new LongAdder();
+  private final Map<Integer, Double> errorRates = new ConcurrentHashMap<>();
+  private volatile long latencyNanos = 0;
+  private volatile long jitterNanos = 0;
+  private volatile HttpHeaders lastRequestHeaders = new HttpHeaders();
 
   public FakeCloudKms(List<String> validKeyIds)
       throws GeneralSecurityException {
@@ -61,6 +86,96 @@ final class FakeCloudKms extends CloudKMS {
               .getPrimitive(RegistryConfiguration.get(), Aead.class);
       aeads.put(keyId, aead);
     }
+    for (Operation operation : Operation.values()) {
+      callCounts.put(operation, new LongAdder());
+    }
+  }
+
+  /**
+   * Delays every response by {@code latency} plus a uniformly distributed random duration of less
+   * than {@code jitter}.
+   */
+  @CanIgnoreReturnValue
+  public FakeCloudKms setLatency(Duration latency, Duration jitter) {
+    if (latency.isNegative() || jitter.isNegative()) {
+      throw new IllegalArgumentException("latency and jitter must not be negative");
+    }
+    this.latencyNanos = latency.toNanos();
+    this.jitterNanos = jitter.toNanos();
+    return this;
+  }
+
+  /**
+   * Makes a fraction {@code rate} of all calls fail with an HTTP error response with {@code
+   * statusCode}, such as 429 (Too Many Requests) or 503 (Service Unavailable). The rates of all
+   * status codes must add up to at most 1.
+   */
+  @CanIgnoreReturnValue
+  public synchronized FakeCloudKms setErrorRate(int statusCode, double rate) {
+    if (statusCode < 400 || statusCode > 599) {
+      throw new IllegalArgumentException("statusCode must be an HTTP error: " + statusCode);
+    }
+    if (!(rate >= 0 && rate <= 1)) {
+      throw new IllegalArgumentException("rate must be between 0 and 1: " + rate);
+    }
+    double totalRate = rate;
+    for (Map.Entry<Integer, Double> entry : errorRates.entrySet()) {
+      if (entry.getKey() != statusCode) {
+        totalRate += entry.getValue();
+      }
+    }
+    if (totalRate > 1) {
+      throw new IllegalArgumentException("The error rates must add up to at most 1: " + totalRate);
+    }
+    errorRates.put(statusCode, rate);
+    return this;
+  }
+
+  /** Returns the number of calls to {@code operation}, including failed calls. */
+  public long callCount(Operation operation) {
+    return callCounts.get(operation).sum();
+  }
+
+  /** Returns the number of calls that failed with an injected HTTP error. */
+  public long injectedErrorCount() {
+    return injectedErrors.sum();
+  }
+
+  /** Returns the headers of the last request, or empty headers if there was none. */
+  public HttpHeaders lastRequestHeaders() {
+    return lastRequestHeaders;
+  }
+
+  /** Counts the call, waits for the simulated latency and throws the injected errors. */
+  private void simulateCall(Operation operation, HttpHeaders headers) throws IOException {
+    callCounts.get(operation).increment();
+    lastRequestHeaders = headers;
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long delayNanos = latencyNanos;
+    long maxJitterNanos = jitterNanos;
+    if (maxJitterNanos > 0) {
+      delayNanos += random.nextLong(maxJitterNanos);
+    }
+    if (delayNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(delayNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while simulating latency");
+      }
+    }
+    if (errorRates.isEmpty()) {
+      return;
+    }
+    double sample = random.nextDouble();
+    for (Map.Entry<Integer, Double> entry : errorRates.entrySet()) {
+      sample -= entry.getValue();
+      if (sample < 0) {
+        injectedErrors.increment();
+        throw new HttpResponseException.Builder(entry.getKey(), "Injected error", new HttpHeaders())
+            .build();
+      }
+    }
   }
 
   private final Projects projects = new Projects();
@@ -120,6 +235,7 @@ final class FakeCloudKms extends CloudKMS {
 
             @Override
             public EncryptResponse execute() throws IOException {
+              simulateCall(Operation.ENCRYPT, getRequestHeaders());
               if (!aeads.containsKey(name)) {
                 throw new IOException(
                     "Unknown key ID : " + name + " is not in " + aeads.keySet());
@@ -171,6 +287,7 @@ final class FakeCloudKms extends CloudKMS {
 
             @Override
             public DecryptResponse execute() throws IOException {
+              simulateCall(Operation.DECRYPT, getRequestHeaders());
               if (!aeads.containsKey(name)) {
                 throw new IOException("Unknown key ID : " + name + " is not in " + aeads.keySet());
               }
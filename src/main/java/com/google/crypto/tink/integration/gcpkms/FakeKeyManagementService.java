@@ -0,0 +1,930 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.cloud.kms.v1.AsymmetricSignRequest;
+import com.google.cloud.kms.v1.AsymmetricSignResponse;
+import com.google.cloud.kms.v1.ChecksummedData;
+import com.google.cloud.kms.v1.CryptoKeyVersion;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.DecryptRequest;
+import com.google.cloud.kms.v1.DecryptResponse;
+import com.google.cloud.kms.v1.Digest;
+import com.google.cloud.kms.v1.EncryptRequest;
+import com.google.cloud.kms.v1.EncryptResponse;
+import com.google.cloud.kms.v1.GetPublicKeyRequest;
+import com.google.cloud.kms.v1.KeyManagementServiceGrpc.KeyManagementServiceImplBase;
+import com.google.cloud.kms.v1.ListCryptoKeyVersionsRequest;
+import com.google.cloud.kms.v1.ListCryptoKeyVersionsResponse;
+import com.google.cloud.kms.v1.MacSignRequest;
+import com.google.cloud.kms.v1.MacSignResponse;
+import com.google.cloud.kms.v1.MacVerifyRequest;
+import com.google.cloud.kms.v1.MacVerifyResponse;
+import com.google.cloud.kms.v1.ProtectionLevel;
+import com.google.cloud.kms.v1.PublicKey;
+import com.google.common.base.Ticker;
+import com.google.common.hash.Hashing;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.aead.AesGcmKey;
+import com.google.crypto.tink.aead.AesGcmParameters;
+import com.google.crypto.tink.mac.HmacKey;
+import com.google.crypto.tink.mac.HmacParameters;
+import com.google.crypto.tink.subtle.AesGcmJce;
+import com.google.crypto.tink.subtle.PrfMac;
+import com.google.crypto.tink.util.SecretBytes;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Int64Value;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.stub.StreamObserver;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * A fake, in-memory implementation of the Cloud KMS {@code KeyManagementService} gRPC service, for
+ * tests and benchmarks.
+ *
+ * <p>It implements Encrypt, Decrypt, MacSign, MacVerify, AsymmetricSign, GetPublicKey and
+ * ListCryptoKeyVersions with keys that are generated locally, and fills in the CRC32C integrity
+ * fields the way Cloud KMS does. Signing keys can be disabled and enabled again, to test key
+ * rotation. Serve it with {@code io.grpc.inprocess.InProcessServerBuilder} and connect a {@code
+ * KeyManagementServiceClient} to it.
+ *
+ * <p>To test caching, retries and hedging, the fake can delay its responses by a {@link
+ * LatencyDistribution}, fail a fraction of the calls with a given status code (for example {@code
+ * UNAVAILABLE}, {@code RESOURCE_EXHAUSTED} or {@code DEADLINE_EXCEEDED}), and limit the number of
+ * calls per key in a time window. It counts the calls per method and per key.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class FakeKeyManagementService extends KeyManagementServiceImplBase {
+
+  /** The RPC methods implemented by the fake. */
+  public enum Method {
+    ENCRYPT,
+    DECRYPT,
+    MAC_SIGN,
+    MAC_VERIFY,
+    ASYMMETRIC_SIGN,
+    GET_PUBLIC_KEY,
+    LIST_CRYPTO_KEY_VERSIONS,
+  }
+
+  /** The latency the fake adds to each call. */
+  public interface LatencyDistribution {
+    /** Returns the latency of one call. */
+    Duration sample(Random random);
+
+    /** Returns a distribution that adds no latency. */
+    static LatencyDistribution none() {
+      return random -> Duration.ZERO;
+    }
+
+    /** Returns a distribution that always adds {@code latency}. */
+    static LatencyDistribution fixed(Duration latency) {
+      checkNotNegative(latency);
+      return random -> latency;
+    }
+
+    /** Returns a distribution that is uniform between {@code min} and {@code max}. */
+    static LatencyDistribution uniform(Duration min, Duration max) {
+      checkNotNegative(min);
+      if (max.compareTo(min) < 0) {
+        throw new IllegalArgumentException("max must not be smaller than min");
+      }
+      long minNanos = min.toNanos();
+      long rangeNanos = max.toNanos() - minNanos;
+      return random -> Duration.ofNanos(minNanos + (long) (random.nextDouble() * rangeNanos));
+    }
+
+    /**
+     * Returns a log-normal distribution with the given median, whose logarithm has standard
+     * deviation {@code sigma}. This has a long tail, like the latency of real RPCs.
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+      checkNotNegative(median);
+      if (!(sigma >= 0)) {
+        throw new IllegalArgumentException("sigma must not be negative: " + sigma);
+      }
+      long medianNanos = median.toNanos();
+      return random ->
+          Duration.ofNanos((long) (medianNanos * Math.exp(sigma * random.nextGaussian())));
+    }
+  }
+
+  private static void checkNotNegative(Duration duration) {
+    if (duration.isNegative()) {
+      throw new IllegalArgumentException("duration must not be negative: " + duration);
+    }
+  }
+
+  /** A locally generated signing key and its public key as returned by GetPublicKey. */
+  private static final class SigningKey {
+    final CryptoKeyVersionAlgorithm algorithm;
+    final PrivateKey privateKey;
+    final String jcaAlgorithm;
+    final byte[] digestInfoPrefix;
+    final ByteString publicKeyPem;
+    volatile boolean enabled = true;
+
+    SigningKey(CryptoKeyVersionAlgorithm algorithm) throws GeneralSecurityException {
+      this.algorithm = algorithm;
+      KeyPair keyPair;
+      switch (algorithm) {
+        case EC_SIGN_P256_SHA256:
+          keyPair = ecKeyPair("secp256r1");
+          jcaAlgorithm = "NONEwithECDSA";
+          digestInfoPrefix = new byte[0];
+          break;
+        case EC_SIGN_P384_SHA384:
+          keyPair = ecKeyPair("secp384r1");
+          jcaAlgorithm = "NONEwithECDSA";
+          digestInfoPrefix = new byte[0];
+          break;
+        case RSA_SIGN_PKCS1_2048_SHA256:
+          keyPair = rsaKeyPair(2048);
+          jcaAlgorithm = "NONEwithRSA";
+          digestInfoPrefix = SHA256_DIGEST_INFO_PREFIX;
+          break;
+        case RSA_SIGN_PKCS1_3072_SHA256:
+          keyPair = rsaKeyPair(3072);
+          jcaAlgorithm = "NONEwithRSA";
+          digestInfoPrefix = SHA256_DIGEST_INFO_PREFIX;
+          break;
+        case RSA_SIGN_PKCS1_4096_SHA256:
+          keyPair = rsaKeyPair(4096);
+          jcaAlgorithm = "NONEwithRSA";
+          digestInfoPrefix = SHA256_DIGEST_INFO_PREFIX;
+          break;
+        case RSA_SIGN_PKCS1_4096_SHA512:
+          keyPair = rsaKeyPair(4096);
+          jcaAlgorithm = "NONEwithRSA";
+          digestInfoPrefix = SHA512_DIGEST_INFO_PREFIX;
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+      }
+      privateKey = keyPair.getPrivate();
+      publicKeyPem =
+          ByteString.copyFromUtf8(
+              "-----BEGIN PUBLIC KEY-----\n"
+                  + Base64.getMimeEncoder(64, new byte[] {'\n'})
+                      .encodeToString(keyPair.getPublic().getEncoded())
+                  + "\n-----END PUBLIC KEY-----\n");
+    }
+
+    /** Returns the digest this key signs, or an empty string if {@code digest} has another type. */
+    ByteString digest(Digest digest) {
+      switch (algorithm) {
+        case EC_SIGN_P384_SHA384:
+          return digest.getSha384();
+        case RSA_SIGN_PKCS1_4096_SHA512:
+          return digest.getSha512();
+        default:
+          return digest.getSha256();
+      }
+    }
+
+    byte[] sign(ByteString digest) throws GeneralSecurityException {
+      Signature signer = Signature.getInstance(jcaAlgorithm);
+      signer.initSign(privateKey);
+      signer.update(digestInfoPrefix);
+      signer.update(digest.toByteArray());
+      return signer.sign();
+    }
+
+    private static KeyPair ecKeyPair(String curve) throws GeneralSecurityException {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+      generator.initialize(new ECGenParameterSpec(curve));
+      return generator.generateKeyPair();
+    }
+
+    private static KeyPair rsaKeyPair(int modulusBits) throws GeneralSecurityException {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+      generator.initialize(modulusBits);
+      return generator.generateKeyPair();
+    }
+  }
+
+  // DER encoding of the DigestInfo preceding the digest in a PKCS #1 v1.5 signature (RFC 8017).
+  private static final byte[] SHA256_DIGEST_INFO_PREFIX = {
+    0x30,
+    0x31,
+    0x30,
+    0x0d,
+    0x06,
+    0x09,
+    0x60,
+    (byte) 0x86,
+    0x48,
+    0x01,
+    0x65,
+    0x03,
+    0x04,
+    0x02,
+    0x01,
+    0x05,
+    0x00,
+    0x04,
+    0x20
+  };
+  private static final byte[] SHA512_DIGEST_INFO_PREFIX = {
+    0x30,
+    0x51,
+    0x30,
+    0x0d,
+    0x06,
+    0x09,
+    0x60,
+    (byte) 0x86,
+    0x48,
+    0x01,
+    0x65,
+    0x03,
+    0x04,
+    0x02,
+    0x03,
+    0x05,
+    0x00,
+    0x04,
+    0x40
+  };
+
+  /** A fixed window in which at most {@code maxCalls} calls to a key are allowed. */
+  private static final class Quota {
+    final long maxCalls;
+    final long windowNanos;
+
+    @GuardedBy("this")
+    long windowStartNanos;
+
+    @GuardedBy("this")
+    long callsInWindow = 0;
+
+    Quota(long maxCalls, Duration window, long nowNanos) {
+      this.maxCalls = maxCalls;
+      this.windowNanos = window.toNanos();
+      this.windowStartNanos = nowNanos;
+    }
+
+    synchronized boolean tryAcquire(long nowNanos) {
+      if (nowNanos - windowStartNanos >= windowNanos) {
+        windowStartNanos = nowNanos;
+        callsInWindow = 0;
+      }
+      if (callsInWindow >= maxCalls) {
+        return false;
+      }
+      callsInWindow++;
+      return true;
+    }
+  }
+
+  /** Computes the response of a call, or throws the status the call fails with. */
+  private interface Handler<T> {
+    T handle() throws StatusException, GeneralSecurityException;
+  }
+
+  private static final class SchedulerHolder {
+    static final ScheduledExecutorService SCHEDULER =
+        Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "FakeKeyManagementService");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  private final Map<String, Aead> aeads;
+  private final Map<String, Mac> macs;
+  private final Map<String, SigningKey> signingKeys;
+  private final LatencyDistribution latency;
+  private final Map<Status.Code, Double> errorRates;
+  private final Map<String, Quota> quotas;
+  private final Ticker ticker;
+  private final Random random;
+
+  private final Map<Method, LongAdder> callsPerMethod = new EnumMap<>(Method.class);
+  private final ConcurrentHashMap<String, LongAdder> callsPerKey = new ConcurrentHashMap<>();
+  private final LongAdder injectedErrors = new LongAdder();
+  private final LongAdder quotaExceeded = new LongAdder();
+
+  private FakeKeyManagementService(Builder builder) throws GeneralSecurityException {
+    aeads = new HashMap<>();
+    for (String keyName : builder.aeadKeyNames) {
+      aeads.put(keyName, newAead());
+    }
+    macs = new HashMap<>();
+    for (String keyName : builder.macKeyNames) {
+      macs.put(keyName, newMac());
+    }
+    signingKeys = new LinkedHashMap<>();
+    for (Map.Entry<String, CryptoKeyVersionAlgorithm> entry : builder.signingKeys.entrySet()) {
+      signingKeys.put(entry.getKey(), new SigningKey(entry.getValue()));
+    }
+    latency = builder.latency;
+    errorRates = new LinkedHashMap<>(builder.errorRates);
+    ticker = builder.ticker;
+    random = builder.random;
+    quotas = new HashMap<>();
+    long now = ticker.read();
+    for (Map.Entry<String, Builder.QuotaSpec> entry : builder.quotas.entrySet()) {
+      quotas.put(
+          entry.getKey(), new Quota(entry.getValue().maxCalls, entry.getValue().window, now));
+    }
+    for (Method method : Method.values()) {
+      callsPerMethod.put(method, new LongAdder());
+    }
+  }
+
+  // The keys are created directly rather than through a KeysetHandle, so that the fake works
+  // without registering any key managers.
+  private static Aead newAead() throws GeneralSecurityException {
+    AesGcmParameters parameters =
+        AesGcmParameters.builder()
+            .setKeySizeBytes(32)
+            .setIvSizeBytes(12)
+            .setTagSizeBytes(16)
+            .setVariant(AesGcmParameters.Variant.NO_PREFIX)
+            .build();
+    return AesGcmJce.create(
+        AesGcmKey.builder()
+            .setParameters(parameters)
+            .setKeyBytes(SecretBytes.randomBytes(32))
+            .build());
+  }
+
+  private static Mac newMac() throws GeneralSecurityException {
+    HmacParameters parameters =
+        HmacParameters.builder()
+            .setKeySizeBytes(32)
+            .setTagSizeBytes(32)
+            .setHashType(HmacParameters.HashType.SHA256)
+            .setVariant(HmacParameters.Variant.NO_PREFIX)
+            .build();
+    return PrfMac.create(
+        HmacKey.builder()
+            .setParameters(parameters)
+            .setKeyBytes(SecretBytes.randomBytes(32))
+            .build());
+  }
+
+  private static Int64Value crc32c(ByteString data) {
+    return Int64Value.of(Hashing.crc32c().hashBytes(data.asReadOnlyByteBuffer()).padToLong());
+  }
+
+  /**
+   * Returns whether the checksum of {@code data} is present and correct, like the {@code
+   * verified_*_crc32c} fields of Cloud KMS. Fails the call if a checksum is present but wrong.
+   */
+  private static boolean verifyChecksum(ByteString data, boolean hasChecksum, Int64Value checksum)
+      throws StatusException {
+    if (!hasChecksum) {
+      return false;
+    }
+    if (!checksum.equals(crc32c(data))) {
+      throw Status.INVALID_ARGUMENT.withDescription("Checksum mismatch.").asException();
+    }
+    return true;
+  }
+
+  private static <T> T getKey(Map<String, T> keys, String keyName) throws StatusException {
+    T key = keys.get(keyName);
+    if (key == null) {
+      throw Status.NOT_FOUND.withDescription("Unknown key: " + keyName).asException();
+    }
+    return key;
+  }
+
+  /** Like {@link #getKey}, but fails with FAILED_PRECONDITION if the key is disabled. */
+  private SigningKey getEnabledSigningKey(String keyName) throws StatusException {
+    SigningKey key = getKey(signingKeys, keyName);
+    if (!key.enabled) {
+      throw Status.FAILED_PRECONDITION.withDescription("Key is disabled: " + keyName).asException();
+    }
+    return key;
+  }
+
+  /**
+   * Counts the call, applies the quota and the injected errors, computes the response and delivers
+   * it to {@code responseObserver} after the sampled latency.
+   */
+  private <T> void call(
+      Method method, String keyName, StreamObserver<T> responseObserver, Handler<T> handler) {
+    callsPerMethod.get(method).increment();
+    callsPerKey.computeIfAbsent(keyName, k -> new LongAdder()).increment();
+
+    T response = null;
+    Status error = null;
+    Quota quota = quotas.get(keyName);
+    if (quota != null && !quota.tryAcquire(ticker.read())) {
+      quotaExceeded.increment();
+      error = Status.RESOURCE_EXHAUSTED.withDescription("Quota exceeded for key: " + keyName);
+    }
+    if (error == null) {
+      error = sampleInjectedError();
+    }
+    if (error == null) {
+      try {
+        response = handler.handle();
+      } catch (StatusException e) {
+        error = e.getStatus();
+      } catch (GeneralSecurityException e) {
+        error = Status.INVALID_ARGUMENT.withDescription(e.getMessage());
+      }
+    }
+
+    T finalResponse = response;
+    Status finalError = error;
+    Runnable respond =
+        () -> {
+          if (finalError != null) {
+            responseObserver.onError(finalError.asException());
+          } else {
+            responseObserver.onNext(finalResponse);
+            responseObserver.onCompleted();
+          }
+        };
+    long delayNanos = latency.sample(random).toNanos();
+    if (delayNanos <= 0) {
+      respond.run();
+    } else {
+      SchedulerHolder.SCHEDULER.schedule(respond, delayNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private Status sampleInjectedError() {
+    if (errorRates.isEmpty()) {
+      return null;
+    }
+    double sample = random.nextDouble();
+    for (Map.Entry<Status.Code, Double> entry : errorRates.entrySet()) {
+      sample -= entry.getValue();
+      if (sample < 0) {
+        injectedErrors.increment();
+        return entry.getKey().toStatus().withDescription("Injected error.");
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void encrypt(EncryptRequest request, StreamObserver<EncryptResponse> responseObserver) {
+    call(
+        Method.ENCRYPT,
+        request.getName(),
+        responseObserver,
+        () -> {
+          Aead aead = getKey(aeads, request.getName());
+          boolean verifiedPlaintext =
+              verifyChecksum(
+                  request.getPlaintext(),
+                  request.hasPlaintextCrc32C(),
+                  request.getPlaintextCrc32C());
+          boolean verifiedAssociatedData =
+              verifyChecksum(
+                  request.getAdditionalAuthenticatedData(),
+                  request.hasAdditionalAuthenticatedDataCrc32C(),
+                  request.getAdditionalAuthenticatedDataCrc32C());
+          ByteString ciphertext =
+              ByteString.copyFrom(
+                  aead.encrypt(
+                      request.getPlaintext().toByteArray(),
+                      request.getAdditionalAuthenticatedData().toByteArray()));
+          return EncryptResponse.newBuilder()
+              .setName(request.getName() + "/cryptoKeyVersions/1")
+              .setCiphertext(ciphertext)
+              .setCiphertextCrc32C(crc32c(ciphertext))
+              .setVerifiedPlaintextCrc32C(verifiedPlaintext)
+              .setVerifiedAdditionalAuthenticatedDataCrc32C(verifiedAssociatedData)
+              .setProtectionLevel(ProtectionLevel.SOFTWARE)
+              .build();
+        });
+  }
+
+  @Override
+  public void decrypt(DecryptRequest request, StreamObserver<DecryptResponse> responseObserver) {
+    call(
+        Method.DECRYPT,
+        request.getName(),
+        responseObserver,
+        () -> {
+          Aead aead = getKey(aeads, request.getName());
+          verifyChecksum(
+              request.getCiphertext(),
+              request.hasCiphertextCrc32C(),
+              request.getCiphertextCrc32C());
+          verifyChecksum(
+              request.getAdditionalAuthenticatedData(),
+              request.hasAdditionalAuthenticatedDataCrc32C(),
+              request.getAdditionalAuthenticatedDataCrc32C());
+          ByteString plaintext =
+              ByteString.copyFrom(
+                  aead.decrypt(
+                      request.getCiphertext().toByteArray(),
+                      request.getAdditionalAuthenticatedData().toByteArray()));
+          return DecryptResponse.newBuilder()
+              .setPlaintext(plaintext)
+              .setPlaintextCrc32C(crc32c(plaintext))
+              .setUsedPrimary(true)
+              .setProtectionLevel(ProtectionLevel.SOFTWARE)
+              .build();
+        });
+  }
+
+  @Override
+  public void macSign(MacSignRequest request, StreamObserver<MacSignResponse> responseObserver) {
+    call(
+        Method.MAC_SIGN,
+        request.getName(),
+        responseObserver,
+        () -> {
+          Mac mac = getKey(macs, request.getName());
+          boolean verifiedData =
+              verifyChecksum(request.getData(), request.hasDataCrc32C(), request.getDataCrc32C());
+          ByteString tag = ByteString.copyFrom(mac.computeMac(request.getData().toByteArray()));
+          return MacSignResponse.newBuilder()
+              .setName(request.getName())
+              .setMac(tag)
+              .setMacCrc32C(crc32c(tag))
+              .setVerifiedDataCrc32C(verifiedData)
+              .setProtectionLevel(ProtectionLevel.SOFTWARE)
+              .build();
+        });
+  }
+
+  @Override
+  public void macVerify(
+      MacVerifyRequest request, StreamObserver<MacVerifyResponse> responseObserver) {
+    call(
+        Method.MAC_VERIFY,
+        request.getName(),
+        responseObserver,
+        () -> {
+          Mac mac = getKey(macs, request.getName());
+          boolean verifiedData =
+              verifyChecksum(request.getData(), request.hasDataCrc32C(), request.getDataCrc32C());
+          boolean verifiedMac =
+              verifyChecksum(request.getMac(), request.hasMacCrc32C(), request.getMacCrc32C());
+          boolean success;
+          try {
+            mac.verifyMac(request.getMac().toByteArray(), request.getData().toByteArray());
+            success = true;
+          } catch (GeneralSecurityException e) {
+            success = false;
+          }
+          return MacVerifyResponse.newBuilder()
+              .setName(request.getName())
+              .setSuccess(success)
+              .setVerifiedDataCrc32C(verifiedData)
+              .setVerifiedMacCrc32C(verifiedMac)
+              .setVerifiedSuccessIntegrity(success)
+              .setProtectionLevel(ProtectionLevel.SOFTWARE)
+              .build();
+        });
+  }
+
+  @Override
+  public void asymmetricSign(
+      AsymmetricSignRequest request, StreamObserver<AsymmetricSignResponse> responseObserver) {
+    call(
+        Method.ASYMMETRIC_SIGN,
+        request.getName(),
+        responseObserver,
+        () -> {
+          SigningKey key = getEnabledSigningKey(request.getName());
+          ByteString digest = key.digest(request.getDigest());
+          if (digest.isEmpty()) {
+            throw Status.INVALID_ARGUMENT
+                .withDescription("The digest does not match the algorithm " + key.algorithm)
+                .asException();
+          }
+          boolean verifiedDigest =
+              verifyChecksum(digest, request.hasDigestCrc32C(), request.getDigestCrc32C());
+          ByteString signature = ByteString.copyFrom(key.sign(digest));
+          return AsymmetricSignResponse.newBuilder()
+              .setName(request.getName())
+              .setSignature(signature)
+              .setSignatureCrc32C(crc32c(signature))
+              .setVerifiedDigestCrc32C(verifiedDigest)
+              .setProtectionLevel(ProtectionLevel.SOFTWARE)
+              .build();
+        });
+  }
+
+  @Override
+  public void getPublicKey(
+      GetPublicKeyRequest request, StreamObserver<PublicKey> responseObserver) {
+    call(
+        Method.GET_PUBLIC_KEY,
+        request.getName(),
+        responseObserver,
+        () -> {
+          SigningKey key = getEnabledSigningKey(request.getName());
+          return PublicKey.newBuilder()
+              .setName(request.getName())
+              .setAlgorithm(key.algorithm)
+              .setProtectionLevel(ProtectionLevel.SOFTWARE)
+              .setPublicKeyFormat(PublicKey.PublicKeyFormat.PEM)
+              .setPem(key.publicKeyPem.toStringUtf8())
+              .setPemCrc32C(crc32c(key.publicKeyPem))
+              .setPublicKey(
+                  ChecksummedData.newBuilder()
+                      .setData(key.publicKeyPem)
+                      .setCrc32CChecksum(crc32c(key.publicKeyPem)))
+              .build();
+        });
+  }
+
+  /**
+   * Lists the signing keys that are versions of the CryptoKey {@code parent}, in the order they
+   * were added. The only supported filters are {@code state=ENABLED} and {@code state=DISABLED}.
+   * The page token is the index of the first version of the page.
+   */
+  @Override
+  public void listCryptoKeyVersions(
+      ListCryptoKeyVersionsRequest request,
+      StreamObserver<ListCryptoKeyVersionsResponse> responseObserver) {
+    call(
+        Method.LIST_CRYPTO_KEY_VERSIONS,
+        request.getParent(),
+        responseObserver,
+        () -> {
+          Boolean enabled = parseStateFilter(request.getFilter());
+          List<CryptoKeyVersion> versions = new ArrayList<>();
+          String prefix = request.getParent() + "/cryptoKeyVersions/";
+          for (Map.Entry<String, SigningKey> entry : signingKeys.entrySet()) {
+            SigningKey key = entry.getValue();
+            if (!entry.getKey().startsWith(prefix) || (enabled != null && key.enabled != enabled)) {
+              continue;
+            }
+            versions.add(
+                CryptoKeyVersion.newBuilder()
+                    .setName(entry.getKey())
+                    .setState(
+                        key.enabled
+                            ? CryptoKeyVersion.CryptoKeyVersionState.ENABLED
+                            : CryptoKeyVersion.CryptoKeyVersionState.DISABLED)
+                    .setAlgorithm(key.algorithm)
+                    .setProtectionLevel(ProtectionLevel.SOFTWARE)
+                    .build());
+          }
+          int start;
+          try {
+            start = request.getPageToken().isEmpty() ? 0 : Integer.parseInt(request.getPageToken());
+          } catch (NumberFormatException e) {
+            throw Status.INVALID_ARGUMENT.withDescription("Invalid page token.").asException();
+          }
+          if (start < 0 || start > versions.size()) {
+            throw Status.INVALID_ARGUMENT.withDescription("Invalid page token.").asException();
+          }
+          int end =
+              request.getPageSize() <= 0
+                  ? versions.size()
+                  : Math.min(versions.size(), start + request.getPageSize());
+          ListCryptoKeyVersionsResponse.Builder response =
+              ListCryptoKeyVersionsResponse.newBuilder()
+                  .addAllCryptoKeyVersions(versions.subList(start, end))
+                  .setTotalSize(versions.size());
+          if (end < versions.size()) {
+            response.setNextPageToken(Integer.toString(end));
+          }
+          return response.build();
+        });
+  }
+
+  /** Returns the state a filter selects, or null if it selects all states. */
+  @Nullable
+  private static Boolean parseStateFilter(String filter) throws StatusException {
+    String normalized = filter.replace(" ", "");
+    if (normalized.isEmpty()) {
+      return null;
+    }
+    if (normalized.equals("state=ENABLED")) {
+      return true;
+    }
+    if (normalized.equals("state=DISABLED")) {
+      return false;
+    }
+    throw Status.INVALID_ARGUMENT.withDescription("Unsupported filter: " + filter).asException();
+  }
+
+  /**
+   * Enables or disables the signing key {@code keyName}. AsymmetricSign and GetPublicKey fail with
+   * FAILED_PRECONDITION for a disabled key, like Cloud KMS. Keys are enabled when they are added.
+   */
+  public void setSigningKeyEnabled(String keyName, boolean enabled) {
+    SigningKey key = signingKeys.get(keyName);
+    if (key == null) {
+      throw new IllegalArgumentException("Unknown signing key: " + keyName);
+    }
+    key.enabled = enabled;
+  }
+
+  /** Returns the number of calls to {@code method}, including failed calls. */
+  public long callCount(Method method) {
+    return callsPerMethod.get(method).sum();
+  }
+
+  /** Returns the number of calls to any method with {@code keyName}, including failed calls. */
+  public long callCount(String keyName) {
+    LongAdder count = callsPerKey.get(keyName);
+    return count == null ? 0 : count.sum();
+  }
+
+  /** Returns the number of calls that failed with an injected error. */
+  public long injectedErrorCount() {
+    return injectedErrors.sum();
+  }
+
+  /** Returns the number of calls that failed with RESOURCE_EXHAUSTED because of a quota. */
+  public long quotaExceededCount() {
+    return quotaExceeded.sum();
+  }
+
+  /** Resets all call counters to zero. */
+  public void resetCounters() {
+    for (LongAdder count : callsPerMethod.values()) {
+      count.reset();
+    }
+    callsPerKey.clear();
+    injectedErrors.reset();
+    quotaExceeded.reset();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** A Builder for {@link FakeKeyManagementService}. */
+  public static final class Builder {
+    private static final class QuotaSpec {
+      final long maxCalls;
+      final Duration window;
+
+      QuotaSpec(long maxCalls, Duration window) {
+        this.maxCalls = maxCalls;
+        this.window = window;
+      }
+    }
+
+    private final Set<String> aeadKeyNames = new LinkedHashSet<>();
+    private final Set<String> macKeyNames = new LinkedHashSet<>();
+    private final Map<String, CryptoKeyVersionAlgorithm> signingKeys = new LinkedHashMap<>();
+    private LatencyDistribution latency = LatencyDistribution.none();
+    private final Map<Status.Code, Double> errorRates = new LinkedHashMap<>();
+    private final Map<String, QuotaSpec> quotas = new HashMap<>();
+    private Ticker ticker = Ticker.systemTicker();
+    private Random random = new Random();
+
+    private Builder() {}
+
+    /**
+     * Adds a symmetric encryption key. {@code keyName} is the name of the CryptoKey, of the form
+     * {@code projects/*}{@code /locations/*}{@code /keyRings/*}{@code /cryptoKeys/*}.
+     */
+    @CanIgnoreReturnValue
+    public Builder addAeadKey(String keyName) {
+      aeadKeyNames.add(keyName);
+      return this;
+    }
+
+    /**
+     * Adds an HMAC-SHA256 key. {@code keyName} is the name of the CryptoKeyVersion, of the form
+     * {@code projects/*}{@code /locations/*}{@code /keyRings/*}{@code /cryptoKeys/*}{@code
+     * /cryptoKeyVersions/*}.
+     */
+    @CanIgnoreReturnValue
+    public Builder addMacKey(String keyName) {
+      macKeyNames.add(keyName);
+      return this;
+    }
+
+    /**
+     * Adds an asymmetric signing key. {@code keyName} is the name of the CryptoKeyVersion.
+     *
+     * <p>Supported algorithms are EC_SIGN_P256_SHA256, EC_SIGN_P384_SHA384 and the
+     * RSA_SIGN_PKCS1_*_SHA* algorithms.
+     */
+    @CanIgnoreReturnValue
+    public Builder addSigningKey(String keyName, CryptoKeyVersionAlgorithm algorithm) {
+      switch (algorithm) {
+        case EC_SIGN_P256_SHA256:
+        case EC_SIGN_P384_SHA384:
+        case RSA_SIGN_PKCS1_2048_SHA256:
+        case RSA_SIGN_PKCS1_3072_SHA256:
+        case RSA_SIGN_PKCS1_4096_SHA256:
+        case RSA_SIGN_PKCS1_4096_SHA512:
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+      }
+      signingKeys.put(keyName, algorithm);
+      return this;
+    }
+
+    /** Sets the latency added to every call. By default, no latency is added. */
+    @CanIgnoreReturnValue
+    public Builder setLatency(LatencyDistribution latency) {
+      this.latency = latency;
+      return this;
+    }
+
+    /**
+     * Makes a fraction {@code rate} of all calls fail with {@code code}, before they reach the key.
+     * The rates of all codes must add up to at most 1.
+     */
+    @CanIgnoreReturnValue
+    public Builder setErrorRate(Status.Code code, double rate) {
+      if (code == Status.Code.OK) {
+        throw new IllegalArgumentException("code must not be OK");
+      }
+      if (!(rate >= 0 && rate <= 1)) {
+        throw new IllegalArgumentException("rate must be between 0 and 1: " + rate);
+      }
+      errorRates.put(code, rate);
+      return this;
+    }
+
+    /**
+     * Allows at most {@code maxCalls} calls with {@code keyName} in each (fixed) {@code window}.
+     * Calls beyond that fail with RESOURCE_EXHAUSTED.
+     */
+    @CanIgnoreReturnValue
+    public Builder setQuota(String keyName, long maxCalls, Duration window) {
+      if (maxCalls < 0) {
+        throw new IllegalArgumentException("maxCalls must not be negative: " + maxCalls);
+      }
+      if (window.isNegative() || window.isZero()) {
+        throw new IllegalArgumentException("window must be positive: " + window);
+      }
+      quotas.put(keyName, new QuotaSpec(maxCalls, window));
+      return this;
+    }
+
+    /** Sets the ticker used for the quota windows. Defaults to {@link Ticker#systemTicker}. */
+    @CanIgnoreReturnValue
+    public Builder setTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    /** Sets the source of randomness for latencies and injected errors, for reproducibility. */
+    @CanIgnoreReturnValue
+    public Builder setRandom(Random random) {
+      this.random = random;
+      return this;
+    }
+
+    public FakeKeyManagementService build() throws GeneralSecurityException {
+      double totalErrorRate = 0;
+      for (double rate : errorRates.values()) {
+        totalErrorRate += rate;
+      }
+      if (totalErrorRate > 1) {
+        throw new IllegalArgumentException(
+            "The error rates must add up to at most 1: " + totalErrorRate);
+      }
+      return new FakeKeyManagementService(this);
+    }
+  }
+}
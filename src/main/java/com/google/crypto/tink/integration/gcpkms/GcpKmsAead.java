@@ -16,20 +16,35 @@
 
 package com.google.crypto.tink.integration.gcpkms;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.ApiCallContext;
 import com.google.api.services.cloudkms.v1.CloudKMS;
+import com.google.api.services.cloudkms.v1.CloudKMSRequest;
 import com.google.api.services.cloudkms.v1.model.DecryptRequest;
 import com.google.api.services.cloudkms.v1.model.DecryptResponse;
 import com.google.api.services.cloudkms.v1.model.EncryptRequest;
 import com.google.api.services.cloudkms.v1.model.EncryptResponse;
 import com.google.cloud.kms.v1.KeyManagementServiceClient;
-import com.google.common.hash.Hashing;
+import com.google.common.base.Ticker;
 import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.IntegrityFailure;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Phase;
+import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import com.google.crypto.tink.integration.gcpkms.internal.Hedger;
+import com.google.crypto.tink.integration.gcpkms.internal.InFlightLimiter;
+import com.google.crypto.tink.integration.gcpkms.internal.SingleFlight;
+import com.google.crypto.tink.util.Bytes;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Int64Value;
+import com.google.protobuf.UnsafeByteOperations;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
@@ -50,53 +65,95 @@ public final class GcpKmsAead implements Aead {
   // See https://cloud.google.com/kms/docs/object-hierarchy.
   private final String keyName;
 
+  /** Limits the rate of requests, or null if they are not limited. */
+  @Nullable private final KmsRateLimiter rateLimiter;
+
+  /** Fails requests fast while Cloud KMS is unhealthy, or null if disabled. */
+  @Nullable private final KmsCircuitBreaker circuitBreaker;
+
+  /** Receives metrics about the requests, or null if they are not recorded. */
+  @Nullable private final KmsMetricsListener metricsListener;
+
+  /** Opens a span for each request, or null if they are not traced. */
+  @Nullable private final KmsTracer tracer;
+
   public GcpKmsAead(CloudKMS kmsClient, String keyName) {
+    this(kmsClient, keyName, null, null, null, null);
+  }
+
+  GcpKmsAead(
+      CloudKMS kmsClient,
+      String keyName,
+      @Nullable KmsRateLimiter rateLimiter,
+      @Nullable KmsCircuitBreaker circuitBreaker,
+      @Nullable KmsMetricsListener metricsListener,
+      @Nullable KmsTracer tracer) {
     this.kmsClient = kmsClient;
     this.keyName = keyName;
+    this.rateLimiter = rateLimiter;
+    this.circuitBreaker = circuitBreaker;
+    this.metricsListener = metricsListener;
+    this.tracer = tracer;
   }
 
   @Override
   public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
       throws GeneralSecurityException {
+    int payloadSize = toNonNullableByteArray(plaintext).length;
+    CallTimer timer = CallTimer.start(metricsListener, keyName, Operation.ENCRYPT, payloadSize);
+    RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.ENCRYPT, payloadSize);
     try {
+      long plaintextCrc32c = GcpKmsUtil.crc32c(toNonNullableByteArray(plaintext));
+      long associatedDataCrc32c = GcpKmsUtil.crc32c(toNonNullableByteArray(associatedData));
+      timer.mark(Phase.CHECKSUM);
       EncryptRequest request =
           new EncryptRequest()
               .encodePlaintext(plaintext)
-              .setPlaintextCrc32c(
-                  Hashing.crc32c().hashBytes(toNonNullableByteArray(plaintext)).padToLong())
+              .setPlaintextCrc32c(plaintextCrc32c)
               .encodeAdditionalAuthenticatedData(associatedData)
-              .setAdditionalAuthenticatedDataCrc32c(
-                  Hashing.crc32c().hashBytes(toNonNullableByteArray(associatedData)).padToLong());
+              .setAdditionalAuthenticatedDataCrc32c(associatedDataCrc32c);
+      timer.mark(Phase.SERIALIZATION);
       EncryptResponse response =
-          this.kmsClient
-              .projects()
-              .locations()
-              .keyRings()
-              .cryptoKeys()
-              .encrypt(this.keyName, request)
-              .execute();
-
-      if (!keyVersionToKeyName(response.getName()).equals(this.keyName)) {
-        throw new GeneralSecurityException(
+          execute(
+              timer,
+              trace,
+              this.kmsClient
+                  .projects()
+                  .locations()
+                  .keyRings()
+                  .cryptoKeys()
+                  .encrypt(this.keyName, request),
+              "encryption failed");
+
+      if (!GcpKmsUtil.isKeyVersionOf(response.getName(), this.keyName)) {
+        throw integrityFailure(
+            Operation.ENCRYPT,
+            IntegrityFailure.KEY_NAME_MISMATCH,
             "The key name in the response does not match the requested key name.");
       }
       if (response.getVerifiedPlaintextCrc32c() == null || !response.getVerifiedPlaintextCrc32c()) {
-        throw new GeneralSecurityException("Verifying the provided plaintext checksum failed.");
+        throw integrityFailure(
+            Operation.ENCRYPT,
+            IntegrityFailure.CRC32C_MISMATCH,
+            "Verifying the provided plaintext checksum failed.");
       }
 
       if (response.getVerifiedAdditionalAuthenticatedDataCrc32c() == null
           || !response.getVerifiedAdditionalAuthenticatedDataCrc32c()) {
-        throw new GeneralSecurityException(
+        throw integrityFailure(
+            Operation.ENCRYPT,
+            IntegrityFailure.CRC32C_MISMATCH,
             "Verifying the provided associated data checksum failed.");
       }
 
       byte[] ciphertext = toNonNullableByteArray(response.decodeCiphertext());
-      long ciphertextCrc32c = Hashing.crc32c().hashBytes(ciphertext).padToLong();
+      long ciphertextCrc32c = GcpKmsUtil.crc32c(ciphertext);
       if (response.getCiphertextCrc32c() != ciphertextCrc32c) {
-        throw new GeneralSecurityException("Ciphertext checksum mismatch.");
+        throw integrityFailure(
+            Operation.ENCRYPT, IntegrityFailure.CRC32C_MISMATCH, "Ciphertext checksum mismatch.");
       }
 
-      return ciphertext;
+      return timer.validated(ciphertext);
     } catch (IOException e) {
       throw new GeneralSecurityException("encryption failed", e);
     }
@@ -105,35 +162,89 @@ public final class GcpKmsAead implements Aead {
   @Override
   public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
       throws GeneralSecurityException {
+    int payloadSize = toNonNullableByteArray(ciphertext).length;
+    CallTimer timer = CallTimer.start(metricsListener, keyName, Operation.DECRYPT, payloadSize);
+    RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.DECRYPT, payloadSize);
     try {
+      long ciphertextCrc32c = GcpKmsUtil.crc32c(toNonNullableByteArray(ciphertext));
+      long associatedDataCrc32c = GcpKmsUtil.crc32c(toNonNullableByteArray(associatedData));
+      timer.mark(Phase.CHECKSUM);
       DecryptRequest request =
           new DecryptRequest()
               .encodeCiphertext(ciphertext)
-              .setCiphertextCrc32c(
-                  Hashing.crc32c().hashBytes(toNonNullableByteArray(ciphertext)).padToLong())
+              .setCiphertextCrc32c(ciphertextCrc32c)
               .encodeAdditionalAuthenticatedData(associatedData)
-              .setAdditionalAuthenticatedDataCrc32c(
-                  Hashing.crc32c().hashBytes(toNonNullableByteArray(associatedData)).padToLong());
+              .setAdditionalAuthenticatedDataCrc32c(associatedDataCrc32c);
+      timer.mark(Phase.SERIALIZATION);
       DecryptResponse response =
-          this.kmsClient
-              .projects()
-              .locations()
-              .keyRings()
-              .cryptoKeys()
-              .decrypt(this.keyName, request)
-              .execute();
+          execute(
+              timer,
+              trace,
+              this.kmsClient
+                  .projects()
+                  .locations()
+                  .keyRings()
+                  .cryptoKeys()
+                  .decrypt(this.keyName, request),
+              "decryption failed");
 
       byte[] plaintext = toNonNullableByteArray(response.decodePlaintext());
-      long plaintextCrc32c = Hashing.crc32c().hashBytes(plaintext).padToLong();
+      long plaintextCrc32c = GcpKmsUtil.crc32c(plaintext);
       if (response.getPlaintextCrc32c() != plaintextCrc32c) {
-        throw new GeneralSecurityException("Plaintext checksum mismatch.");
+        throw integrityFailure(
+            Operation.DECRYPT, IntegrityFailure.CRC32C_MISMATCH, "Plaintext checksum mismatch.");
       }
-      return plaintext;
+      return timer.validated(plaintext);
     } catch (IOException e) {
       throw new GeneralSecurityException("decryption failed", e);
     }
   }
 
+  /**
+   * Sends a request through the rate limiter and then the circuit breaker, if any, and reports the
+   * RPC to {@code timer}.
+   */
+  private <T> T execute(
+      CallTimer timer,
+      @Nullable RequestTrace trace,
+      CloudKMSRequest<T> request,
+      String failureMessage)
+      throws GeneralSecurityException {
+    timer.startRpc();
+    T response;
+    try {
+      response =
+          (rateLimiter == null)
+              ? executeWithCircuitBreaker(trace, request, failureMessage)
+              : rateLimiter.call(
+                  KmsRateLimiter.Quota.CRYPTO,
+                  () -> executeWithCircuitBreaker(trace, request, failureMessage));
+    } catch (GeneralSecurityException | RuntimeException e) {
+      timer.endRpc(e);
+      throw e;
+    }
+    timer.endRpc(null);
+    return response;
+  }
+
+  private <T> T executeWithCircuitBreaker(
+      @Nullable RequestTrace trace, CloudKMSRequest<T> request, String failureMessage)
+      throws GeneralSecurityException {
+    try {
+      return (circuitBreaker == null)
+          ? RequestTrace.execute(request, trace)
+          : circuitBreaker.call(() -> RequestTrace.execute(request, trace));
+    } catch (IOException e) {
+      // The rate limiter looks at the cause to tell whether the quota is exhausted.
+      throw new GeneralSecurityException(failureMessage, e);
+    }
+  }
+
+  private GeneralSecurityException integrityFailure(
+      Operation operation, IntegrityFailure failure, String message) {
+    return CallTimer.integrityFailure(metricsListener, keyName, operation, failure, message);
+  }
+
   private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
 
   private static byte[] toNonNullableByteArray(byte[] data) {
@@ -144,36 +255,11 @@ public final class GcpKmsAead implements Aead {
     }
   }
 
-  private static final String KEY_NAME_DELIMITER = "/";
-
-  /**
-   * Converts a resource ID that specifies a key version into a key name. This is done by removing
-   * the last two elements which specify the key version.
-   *
-   * <p>If the resource ID does not match the format of a key version, the input is returned
-   * unmodified.
-   *
-   * <p>For reference, see
-   * https://cloud.google.com/kms/docs/resource-hierarchy#retrieve_resource_id.
-   */
-  private static String keyVersionToKeyName(String keyVersion) {
-    String[] parts = keyVersion.split(KEY_NAME_DELIMITER);
-    if (parts.length != 10
-        || !parts[0].equals("projects")
-        || !parts[2].equals("locations")
-        || !parts[4].equals("keyRings")
-        || !parts[6].equals("cryptoKeys")
-        || !parts[8].equals("cryptoKeyVersions")) {
-      return keyVersion;
-    }
-    return String.join(KEY_NAME_DELIMITER, Arrays.asList(parts).subList(0, 8));
-  }
-
   /**
    * An {@link Aead} that forwards encryption/decryption requests to a key in <a
    * href="https://cloud.google.com/kms/">Google Cloud KMS</a> using GRPC.
    */
-  private static final class GcpKmsAeadGrpc implements Aead {
+  private static final class GcpKmsAeadGrpc implements Aead, AsyncAead {
 
     /** A GRPC-based client to communicate with Google Cloud KMS. */
     private final KeyManagementServiceClient kmsClient;
@@ -183,49 +269,69 @@ public final class GcpKmsAead implements Aead {
     // See https://cloud.google.com/kms/docs/object-hierarchy.
     private final String keyName;
 
-    private GcpKmsAeadGrpc(KeyManagementServiceClient kmsClient, String keyName) {
+    /** Bounds the number of asynchronous requests that are in flight at the same time. */
+    private final InFlightLimiter inFlightLimiter;
+
+    /** Hedges decrypt requests, or null if hedging is disabled. */
+    @Nullable private final Hedger hedger;
+
+    /** Limits the rate of requests, or null if they are not limited. */
+    @Nullable private final KmsRateLimiter rateLimiter;
+
+    /** Fails requests fast while Cloud KMS is unhealthy, or null if disabled. */
+    @Nullable private final KmsCircuitBreaker circuitBreaker;
+
+    /** Applies the retry policy to requests, or null to use the settings of the client. */
+    @Nullable private final ApiCallContext callContext;
+
+    /** Receives metrics about the requests, or null if they are not recorded. */
+    @Nullable private final KmsMetricsListener metricsListener;
+
+    /** Opens a span for each request, or null if they are not traced. */
+    @Nullable private final KmsTracer tracer;
+
+    private GcpKmsAeadGrpc(
+        KeyManagementServiceClient kmsClient,
+        String keyName,
+        InFlightLimiter inFlightLimiter,
+        @Nullable Hedger hedger,
+        @Nullable KmsRateLimiter rateLimiter,
+        @Nullable KmsCircuitBreaker circuitBreaker,
+        @Nullable ApiCallContext callContext,
+        @Nullable KmsMetricsListener metricsListener,
+        @Nullable KmsTracer tracer) {
       this.kmsClient = kmsClient;
       this.keyName = keyName;
+      this.inFlightLimiter = inFlightLimiter;
+      this.hedger = hedger;
+      this.rateLimiter = rateLimiter;
+      this.circuitBreaker = circuitBreaker;
+      this.callContext = callContext;
+      this.metricsListener = metricsListener;
+      this.tracer = tracer;
     }
 
     @Override
     public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
         throws GeneralSecurityException {
       try {
-        com.google.cloud.kms.v1.EncryptRequest encryptRequest =
-            com.google.cloud.kms.v1.EncryptRequest.newBuilder()
-                .setName(keyName)
-                .setPlaintext(ByteString.copyFrom(plaintext))
-                .setPlaintextCrc32C(
-                    Int64Value.of(Hashing.crc32c().hashBytes(plaintext).padToLong()))
-                .setAdditionalAuthenticatedData(ByteString.copyFrom(associatedData))
-                .setAdditionalAuthenticatedDataCrc32C(
-                    Int64Value.of(Hashing.crc32c().hashBytes(associatedData).padToLong()))
-                .build();
-
-        com.google.cloud.kms.v1.EncryptResponse encResponse = kmsClient.encrypt(encryptRequest);
-
-        if (!keyVersionToKeyName(encResponse.getName()).equals(keyName)) {
-          throw new GeneralSecurityException(
-              "The key name in the response does not match the requested key name.");
-        }
-        if (!encResponse.getVerifiedPlaintextCrc32C()) {
-          throw new GeneralSecurityException("Verifying the provided plaintext checksum failed.");
-        }
-
-        if (!encResponse.getVerifiedAdditionalAuthenticatedDataCrc32C()) {
-          throw new GeneralSecurityException(
-              "Verifying the provided associated data checksum failed.");
-        }
-
-        byte[] ciphertext = encResponse.getCiphertext().toByteArray();
-
-        long ciphertextCrc = Hashing.crc32c().hashBytes(ciphertext).padToLong();
-        if (ciphertextCrc != encResponse.getCiphertextCrc32C().getValue()) {
-          throw new GeneralSecurityException("Ciphertext checksum mismatch.");
-        }
-
-        return ciphertext;
+        // The arrays are only read during the blocking call, so they need not be copied.
+        CallTimer timer =
+            CallTimer.start(metricsListener, keyName, Operation.ENCRYPT, plaintext.length);
+        RequestTrace trace =
+            RequestTrace.start(tracer, keyName, Operation.ENCRYPT, plaintext.length);
+        com.google.cloud.kms.v1.EncryptRequest request =
+            encryptRequest(
+                timer,
+                UnsafeByteOperations.unsafeWrap(plaintext),
+                UnsafeByteOperations.unsafeWrap(associatedData));
+        return timer.validated(
+            toCiphertext(
+                guarded(
+                    timer,
+                    () ->
+                        RequestTrace.call(
+                            kmsClient.encryptCallable(), request, callContext, trace))));
       } catch (RuntimeException e) {
         throw new GeneralSecurityException("encryption failed", e);
       }
@@ -235,31 +341,261 @@ public final class GcpKmsAead implements Aead {
     public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
         throws GeneralSecurityException {
       try {
-        com.google.cloud.kms.v1.DecryptRequest decryptRequest =
-            com.google.cloud.kms.v1.DecryptRequest.newBuilder()
-                .setName(keyName)
-                .setCiphertext(ByteString.copyFrom(ciphertext))
-                .setCiphertextCrc32C(
-                    Int64Value.of(Hashing.crc32c().hashBytes(ciphertext).padToLong()))
-                .setAdditionalAuthenticatedData(ByteString.copyFrom(associatedData))
-                .setAdditionalAuthenticatedDataCrc32C(
-                    Int64Value.of(Hashing.crc32c().hashBytes(associatedData).padToLong()))
-                .build();
-
-        com.google.cloud.kms.v1.DecryptResponse decResponse = kmsClient.decrypt(decryptRequest);
-
-        byte[] plaintext = decResponse.getPlaintext().toByteArray();
-
-        long plaintextCrc = Hashing.crc32c().hashBytes(plaintext).padToLong();
-        if (plaintextCrc != decResponse.getPlaintextCrc32C().getValue()) {
-          throw new GeneralSecurityException("Plaintext checksum mismatch.");
+        // The arrays are only read during the blocking call, so they need not be copied. A hedged
+        // request may still read them afterwards, but its response is then ignored.
+        CallTimer timer =
+            CallTimer.start(metricsListener, keyName, Operation.DECRYPT, ciphertext.length);
+        RequestTrace trace =
+            RequestTrace.start(tracer, keyName, Operation.DECRYPT, ciphertext.length);
+        com.google.cloud.kms.v1.DecryptRequest request =
+            decryptRequest(
+                timer,
+                UnsafeByteOperations.unsafeWrap(ciphertext),
+                UnsafeByteOperations.unsafeWrap(associatedData));
+        if (hedger == null) {
+          return timer.validated(
+              toPlaintext(
+                  guarded(
+                      timer,
+                      () ->
+                          RequestTrace.call(
+                              kmsClient.decryptCallable(), request, callContext, trace))));
         }
-
-        return plaintext;
+        return timer.validated(
+            toPlaintext(
+                guarded(
+                    timer,
+                    () ->
+                        hedger.callBlocking(
+                            () ->
+                                RequestTrace.futureCall(
+                                    kmsClient.decryptCallable(), request, callContext, trace)))));
       } catch (RuntimeException e) {
         throw new GeneralSecurityException("decryption failed", e);
       }
     }
+
+    @Override
+    public CompletableFuture<byte[]> encryptAsync(
+        final byte[] plaintext, final byte[] associatedData) {
+      if (plaintext == null) {
+        return CompletableFuture.failedFuture(
+            new GeneralSecurityException("The plaintext is null."));
+      }
+      CallTimer timer =
+          CallTimer.start(metricsListener, keyName, Operation.ENCRYPT, plaintext.length);
+      RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.ENCRYPT, plaintext.length);
+      com.google.cloud.kms.v1.EncryptRequest request;
+      try {
+        // The request is sent later, so the caller may modify the arrays in the meantime.
+        request =
+            encryptRequest(
+                timer, ByteString.copyFrom(plaintext), ByteString.copyFrom(associatedData));
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(new GeneralSecurityException("encryption failed", e));
+      }
+      return inFlightLimiter.submit(
+          () ->
+              guardedAsync(
+                  timer,
+                  () ->
+                      RequestTrace.futureCall(
+                          kmsClient.encryptCallable(), request, callContext, trace)),
+          response -> timer.validated(toCiphertext(response)),
+          "encryption failed");
+    }
+
+    @Override
+    public CompletableFuture<byte[]> decryptAsync(
+        final byte[] ciphertext, final byte[] associatedData) {
+      if (ciphertext == null) {
+        return CompletableFuture.failedFuture(
+            new GeneralSecurityException("The ciphertext is null."));
+      }
+      CallTimer timer =
+          CallTimer.start(metricsListener, keyName, Operation.DECRYPT, ciphertext.length);
+      RequestTrace trace =
+          RequestTrace.start(tracer, keyName, Operation.DECRYPT, ciphertext.length);
+      com.google.cloud.kms.v1.DecryptRequest request;
+      try {
+        // The request is sent later, so the caller may modify the arrays in the meantime.
+        request =
+            decryptRequest(
+                timer, ByteString.copyFrom(ciphertext), ByteString.copyFrom(associatedData));
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(new GeneralSecurityException("decryption failed", e));
+      }
+      return inFlightLimiter.submit(
+          () ->
+              guardedAsync(
+                  timer,
+                  () ->
+                      hedged(
+                          () ->
+                              RequestTrace.futureCall(
+                                  kmsClient.decryptCallable(), request, callContext, trace))),
+          response -> timer.validated(toPlaintext(response)),
+          "decryption failed");
+    }
+
+    private <T> ApiFuture<T> hedged(Supplier<ApiFuture<T>> call) {
+      return (hedger == null) ? call.get() : hedger.call(call);
+    }
+
+    /**
+     * Sends a request through the rate limiter and then the circuit breaker, if any, and reports
+     * the RPC to {@code timer}.
+     */
+    private <T> T guarded(CallTimer timer, Supplier<T> call) throws GeneralSecurityException {
+      timer.startRpc();
+      T response;
+      try {
+        response =
+            (rateLimiter == null)
+                ? withCircuitBreaker(call)
+                : rateLimiter.call(KmsRateLimiter.Quota.CRYPTO, () -> withCircuitBreaker(call));
+      } catch (GeneralSecurityException | RuntimeException e) {
+        timer.endRpc(e);
+        throw e;
+      }
+      timer.endRpc(null);
+      return response;
+    }
+
+    private <T> T withCircuitBreaker(Supplier<T> call) throws GeneralSecurityException {
+      return (circuitBreaker == null) ? call.get() : circuitBreaker.call(call::get);
+    }
+
+    /** Like {@link #guarded}, for asynchronous requests. */
+    private <T> ApiFuture<T> guardedAsync(CallTimer timer, Supplier<ApiFuture<T>> call) {
+      timer.startRpc();
+      return timer.endRpcWhenDone(
+          (rateLimiter == null)
+              ? withCircuitBreakerAsync(call)
+              : rateLimiter.callAsync(
+                  KmsRateLimiter.Quota.CRYPTO, () -> withCircuitBreakerAsync(call)));
+    }
+
+    private <T> ApiFuture<T> withCircuitBreakerAsync(Supplier<ApiFuture<T>> call) {
+      return (circuitBreaker == null) ? call.get() : circuitBreaker.callAsync(call);
+    }
+
+    private com.google.cloud.kms.v1.EncryptRequest encryptRequest(
+        CallTimer timer, ByteString plaintext, ByteString associatedData) {
+      long plaintextCrc32c = GcpKmsUtil.crc32c(plaintext);
+      long associatedDataCrc32c = GcpKmsUtil.crc32c(associatedData);
+      timer.mark(Phase.CHECKSUM);
+      com.google.cloud.kms.v1.EncryptRequest request =
+          com.google.cloud.kms.v1.EncryptRequest.newBuilder()
+              .setName(keyName)
+              .setPlaintext(plaintext)
+              .setPlaintextCrc32C(Int64Value.of(plaintextCrc32c))
+              .setAdditionalAuthenticatedData(associatedData)
+              .setAdditionalAuthenticatedDataCrc32C(Int64Value.of(associatedDataCrc32c))
+              .build();
+      timer.mark(Phase.SERIALIZATION);
+      return request;
+    }
+
+    private com.google.cloud.kms.v1.DecryptRequest decryptRequest(
+        CallTimer timer, ByteString ciphertext, ByteString associatedData) {
+      long ciphertextCrc32c = GcpKmsUtil.crc32c(ciphertext);
+      long associatedDataCrc32c = GcpKmsUtil.crc32c(associatedData);
+      timer.mark(Phase.CHECKSUM);
+      com.google.cloud.kms.v1.DecryptRequest request =
+          com.google.cloud.kms.v1.DecryptRequest.newBuilder()
+              .setName(keyName)
+              .setCiphertext(ciphertext)
+              .setCiphertextCrc32C(Int64Value.of(ciphertextCrc32c))
+              .setAdditionalAuthenticatedData(associatedData)
+              .setAdditionalAuthenticatedDataCrc32C(Int64Value.of(associatedDataCrc32c))
+              .build();
+      timer.mark(Phase.SERIALIZATION);
+      return request;
+    }
+
+    /** Verifies the integrity of an encrypt response and returns the ciphertext. */
+    private byte[] toCiphertext(com.google.cloud.kms.v1.EncryptResponse encResponse)
+        throws GeneralSecurityException {
+      if (!GcpKmsUtil.isKeyVersionOf(encResponse.getName(), keyName)) {
+        throw integrityFailure(
+            Operation.ENCRYPT,
+            IntegrityFailure.KEY_NAME_MISMATCH,
+            "The key name in the response does not match the requested key name.");
+      }
+      if (!encResponse.getVerifiedPlaintextCrc32C()) {
+        throw integrityFailure(
+            Operation.ENCRYPT,
+            IntegrityFailure.CRC32C_MISMATCH,
+            "Verifying the provided plaintext checksum failed.");
+      }
+
+      if (!encResponse.getVerifiedAdditionalAuthenticatedDataCrc32C()) {
+        throw integrityFailure(
+            Operation.ENCRYPT,
+            IntegrityFailure.CRC32C_MISMATCH,
+            "Verifying the provided associated data checksum failed.");
+      }
+
+      if (GcpKmsUtil.crc32c(encResponse.getCiphertext())
+          != encResponse.getCiphertextCrc32C().getValue()) {
+        throw integrityFailure(
+            Operation.ENCRYPT, IntegrityFailure.CRC32C_MISMATCH, "Ciphertext checksum mismatch.");
+      }
+
+      return encResponse.getCiphertext().toByteArray();
+    }
+
+    /** Verifies the integrity of a decrypt response and returns the plaintext. */
+    private byte[] toPlaintext(com.google.cloud.kms.v1.DecryptResponse decResponse)
+        throws GeneralSecurityException {
+      if (GcpKmsUtil.crc32c(decResponse.getPlaintext())
+          != decResponse.getPlaintextCrc32C().getValue()) {
+        throw integrityFailure(
+            Operation.DECRYPT, IntegrityFailure.CRC32C_MISMATCH, "Plaintext checksum mismatch.");
+      }
+
+      return decResponse.getPlaintext().toByteArray();
+    }
+
+    private GeneralSecurityException integrityFailure(
+        Operation operation, IntegrityFailure failure, String message) {
+      return CallTimer.integrityFailure(metricsListener, keyName, operation, failure, message);
+    }
+  }
+
+  /**
+   * An Aead that lets concurrent identical decrypt calls share a single call to the wrapped Aead.
+   */
+  private static final class DecryptCoalescingAead implements Aead {
+    private final Aead aead;
+    private final SingleFlight<Bytes, byte[]> decryptRequests = new SingleFlight<>();
+
+    DecryptCoalescingAead(Aead aead) {
+      this.aead = aead;
+    }
+
+    @Override
+    public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      return aead.encrypt(plaintext, associatedData);
+    }
+
+    @Override
+    public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
+        throws GeneralSecurityException {
+      byte[] ad = toNonNullableByteArray(associatedData);
+      // The ciphertext length is included so that different splits of the same bytes differ.
+      Bytes requestKey =
+          Bytes.copyFrom(
+              ByteBuffer.allocate(4 + ciphertext.length + ad.length)
+                  .putInt(ciphertext.length)
+                  .put(ciphertext)
+                  .put(ad)
+                  .array());
+      // The plaintext is shared by all callers, so each gets its own copy.
+      return decryptRequests.execute(requestKey, () -> aead.decrypt(ciphertext, ad)).clone();
+    }
   }
 
   /**
@@ -272,9 +608,20 @@ public final class GcpKmsAead implements Aead {
    * <p>For new users we recommend using {@link #setKeyManagementServiceClient}.
    */
   public static final class Builder {
+    /** Default for {@link #setMaxInFlightRequests}. */
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 256;
+
     @Nullable private String keyName = null;
     @Nullable private CloudKMS kmsClientHttp = null;
     @Nullable private KeyManagementServiceClient kmsClientGrpc = null;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private boolean coalesceDecryptRequests = false;
+    @Nullable private HedgingPolicy hedgingPolicy = null;
+    @Nullable private KmsRateLimiter rateLimiter = null;
+    @Nullable private KmsCircuitBreaker circuitBreaker = null;
+    @Nullable private RetryPolicy retryPolicy = null;
+    @Nullable private KmsMetricsListener metricsListener = null;
+    @Nullable private KmsTracer tracer = null;
     private static final String KEY_NAME_PATTERN =
         "projects/([^/]+)/locations/([a-zA-Z0-9_-]{1,63})/keyRings/"
             + "[a-zA-Z0-9_-]{1,63}/cryptoKeys/[a-zA-Z0-9_-]{1,63}";
@@ -303,7 +650,153 @@ public final class GcpKmsAead implements Aead {
       return this;
     }
 
+    /**
+     * Sets the maximum number of asynchronous requests of the {@link AsyncAead} returned by {@link
+     * #buildAsync} that are sent to Cloud KMS at the same time. Further requests are queued until
+     * earlier ones complete. Defaults to {@link #DEFAULT_MAX_IN_FLIGHT_REQUESTS}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxInFlightRequests(int maxInFlightRequests) {
+      this.maxInFlightRequests = maxInFlightRequests;
+      return this;
+    }
+
+    /**
+     * If set to true, concurrent {@code decrypt} calls of the Aead returned by {@link #build} with
+     * the same ciphertext and associated data share a single request to Cloud KMS. All of them get
+     * the result, or the exception, of that request. Defaults to false.
+     *
+     * <p>This avoids sending many identical requests when many threads need the same wrapped key at
+     * once, for example when a cache is empty.
+     */
+    @CanIgnoreReturnValue
+    public Builder setCoalesceDecryptRequests(boolean coalesceDecryptRequests) {
+      this.coalesceDecryptRequests = coalesceDecryptRequests;
+      return this;
+    }
+
+    /**
+     * Sets the policy for hedging {@code decrypt} requests, see {@link HedgingPolicy}. Requires
+     * {@link #setKeyManagementServiceClient}. By default, requests are not hedged.
+     */
+    @CanIgnoreReturnValue
+    public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = hedgingPolicy;
+      return this;
+    }
+
+    /**
+     * Sets a rate limiter for the requests to Cloud KMS, see {@link KmsRateLimiter}. The same
+     * limiter may be shared by several primitives. By default, requests are not limited.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRateLimiter(KmsRateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    /**
+     * Sets a circuit breaker that makes requests fail fast while Cloud KMS is unavailable or slow,
+     * see {@link KmsCircuitBreaker}. The same breaker may be shared by several primitives. By
+     * default, requests always go to Cloud KMS.
+     */
+    @CanIgnoreReturnValue
+    public Builder setCircuitBreaker(KmsCircuitBreaker circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    /**
+     * Sets the policy for retrying failed requests, see {@link RetryPolicy}. It replaces the retry
+     * settings of the {@link KeyManagementServiceClient} for the requests of this Aead. Requires
+     * {@link #setKeyManagementServiceClient}: to apply a policy to a {@link CloudKMS} object, build
+     * it with {@link RetryPolicy#newHttpRequestInitializer}. By default, the settings of the client
+     * are used.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Sets a listener that receives the latencies, status codes and integrity failures of the
+     * requests to Cloud KMS, see {@link KmsMetricsListener}. By default, no metrics are recorded.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMetricsListener(KmsMetricsListener metricsListener) {
+      this.metricsListener = metricsListener;
+      return this;
+    }
+
+    /**
+     * Sets a tracer that opens a span for each request to Cloud KMS, see {@link KmsTracer}. By
+     * default, requests are not traced.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTracer(KmsTracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
     public Aead build() throws GeneralSecurityException {
+      validate();
+      Aead aead =
+          (kmsClientHttp != null)
+              ? new GcpKmsAead(
+                  kmsClientHttp, keyName, rateLimiter, circuitBreaker, metricsListener, tracer)
+              : buildGrpc();
+      return coalesceDecryptRequests ? new DecryptCoalescingAead(aead) : aead;
+    }
+
+    /**
+     * Builds an {@link AsyncAead}, which sends its requests to Cloud KMS without blocking the
+     * calling thread. Requires {@link #setKeyManagementServiceClient}.
+     */
+    public AsyncAead buildAsync() throws GeneralSecurityException {
+      validate();
+      if (kmsClientGrpc == null) {
+        throw new GeneralSecurityException(
+            "Asynchronous operations require the KeyManagementServiceClient object.");
+      }
+      return buildGrpc();
+    }
+
+    /**
+     * Builds an Aead that caches the results of {@code decrypt}, see {@link DecryptCachingAead}.
+     *
+     * <p>This is useful when the same wrapped data encryption keys are decrypted repeatedly. At
+     * most {@code maxEntries} plaintexts are kept, each for at most {@code maxAge}.
+     */
+    public DecryptCachingAead buildWithDecryptionCache(long maxEntries, Duration maxAge)
+        throws GeneralSecurityException {
+      if (maxEntries <= 0) {
+        throw new GeneralSecurityException("The maximum number of cache entries must be positive.");
+      }
+      if (maxAge.isNegative() || maxAge.isZero()) {
+        throw new GeneralSecurityException("The maximum age of cache entries must be positive.");
+      }
+      return new DecryptCachingAead(build(), maxEntries, maxAge, Ticker.systemTicker());
+    }
+
+    private GcpKmsAeadGrpc buildGrpc() throws GeneralSecurityException {
+      if (maxInFlightRequests <= 0) {
+        throw new GeneralSecurityException(
+            "The maximum number of in-flight requests must be positive.");
+      }
+      return new GcpKmsAeadGrpc(
+          kmsClientGrpc,
+          keyName,
+          new InFlightLimiter(maxInFlightRequests),
+          (hedgingPolicy == null) ? null : hedgingPolicy.newHedger(),
+          rateLimiter,
+          circuitBreaker,
+          (retryPolicy == null) ? null : retryPolicy.newGrpcCallContext(),
+          metricsListener,
+          tracer);
+    }
+
+    private void validate() throws GeneralSecurityException {
       if (keyName == null) {
         throw new GeneralSecurityException("The keyName is null.");
       }
@@ -326,11 +819,16 @@ public final class GcpKmsAead implements Aead {
             "Either the CloudKMS or the KeyManagementServiceClient object must be provided.");
       }
 
-      if (kmsClientHttp != null) {
-        return new GcpKmsAead(kmsClientHttp, keyName);
+      if (hedgingPolicy != null && kmsClientGrpc == null) {
+        throw new GeneralSecurityException(
+            "Hedging requests requires the KeyManagementServiceClient object.");
       }
 
-      return new GcpKmsAeadGrpc(kmsClientGrpc, keyName);
+      if (retryPolicy != null && kmsClientGrpc == null) {
+        throw new GeneralSecurityException(
+            "A retry policy requires the KeyManagementServiceClient object. To use one with the"
+                + " CloudKMS object, build it with RetryPolicy.newHttpRequestInitializer.");
+      }
     }
   }
 
@@ -18,6 +18,8 @@ package com.google.crypto.tink.integration.gcpkms;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.cloudkms.v1.CloudKMS;
@@ -25,12 +27,16 @@ import com.google.api.services.cloudkms.v1.CloudKMSScopes;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auto.service.AutoService;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.KmsClient;
 import com.google.crypto.tink.KmsClients;
 import com.google.crypto.tink.Version;
 import com.google.crypto.tink.subtle.Validators;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -53,8 +59,33 @@ public final class GcpKmsClient implements KmsClient {
   private static final String APPLICATION_NAME =
       "Tink/" + Version.TINK_VERSION + " Java/" + System.getProperty("java.version");
 
+  // Transports are thread-safe and meant to be reused, so clients without their own share these:
+  // this one when loading a GoogleCredential, and sharedTrustedTransport() when loading
+  // GoogleCredentials.
+  private static final HttpTransport SHARED_NET_HTTP_TRANSPORT = new NetHttpTransport();
+
+  @GuardedBy("GcpKmsClient.class")
+  @Nullable
+  private static HttpTransport sharedTrustedTransport;
+
+  /** The maximum number of {@code Aead} objects that {@link #getAead} keeps for reuse. */
+  private static final long MAX_CACHED_AEADS = 1000;
+
   @Nullable private CloudKMS cloudKms;
+  @Nullable private KeyManagementServiceClient kmsClientGrpc;
+  @Nullable private KmsRateLimiter rateLimiter;
+  @Nullable private RetryPolicy retryPolicy;
   @Nullable private String keyUri;
+  @Nullable private HttpTransport httpTransport;
+
+  // The transport and credentials from which cloudKms was built, so that it can be rebuilt when the
+  // retry policy changes. Null if cloudKms was not built from credentials.
+  @Nullable private HttpTransport cloudKmsTransport;
+  @Nullable private HttpRequestInitializer credentialsInitializer;
+
+  // GcpKmsAead objects are thread-safe, so getAead returns the same object for the same URI.
+  private final Cache<String, Aead> aeads =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_AEADS).build();
 
   /**
    * Constructs a generic GcpKmsClient that is not bound to any specific key.
@@ -88,6 +119,45 @@ public final class GcpKmsClient implements KmsClient {
     return this.keyUri == null && uri.toLowerCase(Locale.US).startsWith(PREFIX);
   }
 
+  /**
+   * Sets the {@link HttpTransport} used to talk to Cloud KMS. Must be called before the credentials
+   * are set.
+   *
+   * <p>By default, clients that load {@code GoogleCredentials}, including from a file or the
+   * default credentials, share one transport created with {@code
+   * GoogleNetHttpTransport.newTrustedTransport()}, and clients that load a {@code
+   * GoogleCredential} share one plain {@code NetHttpTransport}. Both are based on {@code
+   * HttpURLConnection}, which keeps at most {@code http.maxConnections} idle connections per host.
+   * Under many concurrent requests, use a transport with a larger connection pool instead, for
+   * example an {@code ApacheHttpTransport} from {@code google-http-client-apache-v2}, and share it
+   * among clients.
+   */
+  @CanIgnoreReturnValue
+  public GcpKmsClient withHttpTransport(HttpTransport httpTransport) {
+    if (this.cloudKms != null) {
+      throw new IllegalStateException("withHttpTransport must be called before the credentials");
+    }
+    this.httpTransport = httpTransport;
+    return this;
+  }
+
+  /**
+   * Sets the policy for retrying failed requests to Cloud KMS, see {@link RetryPolicy}.
+   *
+   * <p>It applies to the HTTP requests of the {@code CloudKMS} object built from the credentials,
+   * and to the gRPC requests of the {@code Aead} objects returned by {@link #getAead} if {@link
+   * #withKeyManagementServiceClient} is used.
+   */
+  @CanIgnoreReturnValue
+  public GcpKmsClient withRetryPolicy(RetryPolicy retryPolicy) {
+    this.aeads.invalidateAll();
+    this.retryPolicy = retryPolicy;
+    if (credentialsInitializer != null) {
+      buildCloudKms();
+    }
+    return this;
+  }
+
   /**
    * Loads credentials from a service account JSON file {@code credentialPath}.
    *
@@ -116,10 +186,10 @@ public final class GcpKmsClient implements KmsClient {
     if (credential.createScopedRequired()) {
       credential = credential.createScoped(CloudKMSScopes.all());
     }
-    this.cloudKms =
-        new CloudKMS.Builder(new NetHttpTransport(), new GsonFactory(), credential)
-            .setApplicationName(APPLICATION_NAME)
-            .build();
+    this.aeads.invalidateAll();
+    this.cloudKmsTransport = httpTransport != null ? httpTransport : SHARED_NET_HTTP_TRANSPORT;
+    this.credentialsInitializer = credential;
+    buildCloudKms();
     return this;
   }
 
@@ -130,19 +200,44 @@ public final class GcpKmsClient implements KmsClient {
       credentials = credentials.createScoped(CloudKMSScopes.all());
     }
     try {
-      this.cloudKms =
-          new CloudKMS.Builder(
-                  GoogleNetHttpTransport.newTrustedTransport(),
-                  new GsonFactory(),
-                  new HttpCredentialsAdapter(credentials))
-              .setApplicationName(APPLICATION_NAME)
-              .build();
+      this.aeads.invalidateAll();
+      this.cloudKmsTransport = httpTransport != null ? httpTransport : sharedTrustedTransport();
+      this.credentialsInitializer = new HttpCredentialsAdapter(credentials);
+      buildCloudKms();
     } catch (IOException e) {
       throw new GeneralSecurityException("cannot build GCP KMS client", e);
     }
     return this;
   }
 
+  /** Builds the {@code CloudKMS} object from the credentials and the current retry policy. */
+  private void buildCloudKms() {
+    this.cloudKms =
+        new CloudKMS.Builder(
+                cloudKmsTransport,
+                GsonFactory.getDefaultInstance(),
+                httpRequestInitializer(credentialsInitializer))
+            .setApplicationName(APPLICATION_NAME)
+            .build();
+  }
+
+  /** Applies the retry policy, if any, to the requests that {@code initializer} initializes. */
+  private HttpRequestInitializer httpRequestInitializer(HttpRequestInitializer initializer) {
+    return (retryPolicy == null) ? initializer : retryPolicy.newHttpRequestInitializer(initializer);
+  }
+
+  /**
+   * Returns the trusted transport shared by all clients without their own transport, creating it on
+   * first use, so that the trust store is loaded only once.
+   */
+  private static synchronized HttpTransport sharedTrustedTransport()
+      throws GeneralSecurityException, IOException {
+    if (sharedTrustedTransport == null) {
+      sharedTrustedTransport = GoogleNetHttpTransport.newTrustedTransport();
+    }
+    return sharedTrustedTransport;
+  }
+
   /**
    * Loads <a href="https://developers.google.com/accounts/docs/application-default-credentials"
    * default Google Cloud credentials</a>.
@@ -164,10 +259,44 @@ public final class GcpKmsClient implements KmsClient {
    */
   @CanIgnoreReturnValue
   KmsClient withCloudKms(CloudKMS cloudKms) {
+      this.aeads.invalidateAll();
       this.cloudKms = cloudKms;
+      this.cloudKmsTransport = null;
+      this.credentialsInitializer = null;
       return this;
   }
 
+  /**
+   * Makes {@link #getAead} return {@code Aead} objects that talk to Cloud KMS over gRPC using
+   * {@code kmsClient}, instead of over HTTP.
+   *
+   * <p>The caller keeps ownership of {@code kmsClient} and must close it when it is no longer
+   * needed.
+   */
+  @CanIgnoreReturnValue
+  public GcpKmsClient withKeyManagementServiceClient(KeyManagementServiceClient kmsClient) {
+    this.aeads.invalidateAll();
+    this.kmsClientGrpc = kmsClient;
+    return this;
+  }
+
+  /**
+   * Limits the rate of the requests of the {@code Aead} objects returned by {@link #getAead}, see
+   * {@link KmsRateLimiter}. The same limiter may be shared with other clients and primitives.
+   */
+  @CanIgnoreReturnValue
+  public GcpKmsClient withRateLimiter(KmsRateLimiter rateLimiter) {
+    this.aeads.invalidateAll();
+    this.rateLimiter = rateLimiter;
+    return this;
+  }
+
+  /**
+   * Returns an {@code Aead} backed by the Cloud KMS key identified by {@code uri}.
+   *
+   * <p>The returned objects are thread-safe, and repeated calls with the same {@code uri} usually
+   * return the same object.
+   */
   @Override
   public Aead getAead(String uri) throws GeneralSecurityException {
     if (this.keyUri != null && !this.keyUri.equals(uri)) {
@@ -175,7 +304,25 @@ public final class GcpKmsClient implements KmsClient {
           String.format("this client is bound to %s, cannot load keys bound to %s",
               this.keyUri, uri));
     }
-    return new GcpKmsAead(cloudKms, Validators.validateKmsKeyUriAndRemovePrefix(PREFIX, uri));
+    Aead aead = aeads.getIfPresent(uri);
+    if (aead == null) {
+      String keyName = Validators.validateKmsKeyUriAndRemovePrefix(PREFIX, uri);
+      if (kmsClientGrpc != null) {
+        GcpKmsAead.Builder builder =
+            GcpKmsAead.builder().setKeyManagementServiceClient(kmsClientGrpc).setKeyName(keyName);
+        if (rateLimiter != null) {
+          builder.setRateLimiter(rateLimiter);
+        }
+        if (retryPolicy != null) {
+          builder.setRetryPolicy(retryPolicy);
+        }
+        aead = builder.build();
+      } else {
+        aead = new GcpKmsAead(cloudKms, keyName, rateLimiter, null, null, null);
+      }
+      aeads.put(uri, aead);
+    }
+    return aead;
   }
 
   /**
@@ -0,0 +1,495 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.cloud.kms.v1.CryptoKeyVersion;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.ListCryptoKeyVersionsRequest;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link PublicKeyVerify} that verifies signatures with any enabled version of an asymmetric
+ * signing CryptoKey in <a href="https://cloud.google.com/kms/">Google Cloud KMS</a>.
+ *
+ * <p>Unlike {@link GcpKmsPublicKeyVerify}, which is bound to a single CryptoKeyVersion, this
+ * verifier is built from a CryptoKey name, so it keeps working when the key is rotated. It lists
+ * the enabled versions of the CryptoKey, fetches their public keys in parallel and verifies
+ * signatures locally. The list of versions is refreshed in the background when a signature is
+ * verified more than {@link Builder#setRefreshInterval the refresh interval} after the last
+ * refresh: new versions are added, and versions that are no longer enabled are removed. If a
+ * refresh fails, the verifier keeps using the versions it has.
+ *
+ * <p>A signature that starts with a key hint, see {@link #withKeyHint}, is verified with the
+ * version the hint names. Other signatures are verified with each version in turn, starting with
+ * the version that most recently verified a signature, until one of them succeeds.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class GcpKmsCryptoKeyVerify implements PublicKeyVerify {
+
+  /** Default for {@link Builder#setRefreshInterval}. */
+  public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofMinutes(10);
+
+  // The key hint has the layout of a Tink output prefix: a version byte followed by the 4-byte
+  // big-endian ID of the CryptoKeyVersion.
+  private static final byte KEY_HINT_VERSION = 0x01;
+  private static final int KEY_HINT_SIZE = 5;
+
+  private static final String CRYPTO_KEY_NAME_PATTERN =
+      "projects/[^/]+/locations/[^/]+/keyRings/[^/]+/cryptoKeys/[^/]+";
+  private static final Pattern CRYPTO_KEY_NAME_MATCHER = Pattern.compile(CRYPTO_KEY_NAME_PATTERN);
+
+  private static final class ExecutorHolder {
+    static final ExecutorService EXECUTOR =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "GcpKmsCryptoKeyVerify");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** A local verifier for one CryptoKeyVersion. */
+  private static final class VersionVerifier {
+    final String keyName;
+
+    /** The numeric ID of the version, or -1 if it is not a number. */
+    final long versionId;
+
+    final PublicKeyVerify verifier;
+
+    VersionVerifier(String keyName, PublicKeyVerify verifier) {
+      this.keyName = keyName;
+      this.versionId = versionId(keyName);
+      this.verifier = verifier;
+    }
+  }
+
+  private final String cryptoKeyName;
+  private final KeyManagementServiceClient kmsClient;
+  @Nullable private final KmsTracer tracer;
+  @Nullable private final KmsPublicKeyCache publicKeyCache;
+  private final long refreshIntervalNanos;
+  private final Ticker ticker;
+  private final Executor executor;
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+  /**
+   * The versions, in the order in which they are tried. Replaced under the lock of {@code this},
+   * read without it.
+   */
+  private volatile ImmutableList<VersionVerifier> versions = ImmutableList.of();
+
+  private volatile long lastRefreshNanos;
+
+  private GcpKmsCryptoKeyVerify(Builder builder) {
+    this.cryptoKeyName = builder.cryptoKeyName;
+    this.kmsClient = builder.kmsClient;
+    this.tracer = builder.tracer;
+    this.publicKeyCache = builder.publicKeyCache;
+    this.refreshIntervalNanos = builder.refreshInterval.toNanos();
+    this.ticker = builder.ticker;
+    this.executor = builder.executor;
+  }
+
+  @Override
+  public void verify(final byte[] signature, final byte[] data) throws GeneralSecurityException {
+    maybeRefreshInBackground();
+    ImmutableList<VersionVerifier> current = versions;
+    VersionVerifier hinted = hintedVersion(current, signature);
+    if (hinted != null) {
+      try {
+        hinted.verifier.verify(
+            Arrays.copyOfRange(signature, KEY_HINT_SIZE, signature.length), data);
+        return;
+      } catch (GeneralSecurityException e) {
+        // The signature may be a raw signature that happens to start like a key hint.
+      }
+    }
+    for (int i = 0; i < current.size(); i++) {
+      VersionVerifier version = current.get(i);
+      try {
+        version.verifier.verify(signature, data);
+      } catch (GeneralSecurityException e) {
+        continue;
+      }
+      if (i > 0) {
+        moveToFront(version);
+      }
+      return;
+    }
+    throw new GeneralSecurityException(
+        "The signature is not valid for any enabled version of " + cryptoKeyName);
+  }
+
+  /**
+   * Lists the enabled versions of the CryptoKey, fetches the public keys of the new versions and
+   * removes the versions that are no longer enabled. This is done automatically in the background,
+   * but can be called after a known rotation to pick up the new version immediately.
+   *
+   * @throws GeneralSecurityException if listing the versions or fetching a public key fails, in
+   *     which case the versions are left unchanged
+   */
+  public void refresh() throws GeneralSecurityException {
+    long startNanos = ticker.read();
+    List<String> enabledNames = listEnabledVersions();
+    Map<String, VersionVerifier> known = new HashMap<>();
+    for (VersionVerifier version : versions) {
+      known.put(version.keyName, version);
+    }
+    List<String> newNames = new ArrayList<>();
+    for (String name : enabledNames) {
+      if (!known.containsKey(name)) {
+        newNames.add(name);
+      }
+    }
+    List<VersionVerifier> loaded = loadAll(newNames);
+    synchronized (this) {
+      // Concurrent verifications may have reordered the versions in the meantime, so merge into
+      // the current list rather than the one read above.
+      Set<String> enabled = new HashSet<>(enabledNames);
+      ImmutableList.Builder<VersionVerifier> merged = ImmutableList.builder();
+      Set<String> added = new HashSet<>();
+      // New versions go first: after a rotation, new signatures are made with the new version.
+      for (VersionVerifier version : loaded) {
+        if (added.add(version.keyName)) {
+          merged.add(version);
+        }
+      }
+      for (VersionVerifier version : versions) {
+        if (enabled.contains(version.keyName) && added.add(version.keyName)) {
+          merged.add(version);
+        }
+      }
+      versions = merged.build();
+      lastRefreshNanos = startNanos;
+    }
+  }
+
+  /** Returns the names of the CryptoKeyVersions that are currently used, in the order tried. */
+  public List<String> keyVersionNames() {
+    List<String> names = new ArrayList<>();
+    for (VersionVerifier version : versions) {
+      names.add(version.keyName);
+    }
+    return names;
+  }
+
+  /**
+   * Returns {@code signature} prefixed with a key hint for the CryptoKeyVersion {@code
+   * keyVersionName}, so that {@link GcpKmsCryptoKeyVerify} verifies it with that version only.
+   *
+   * <p>The hint is 5 bytes long, like the output prefix of a Tink key: the byte {@code 0x01}
+   * followed by the ID of the version as a 4-byte big-endian integer.
+   *
+   * @throws GeneralSecurityException if the ID of the version is not a number below 2^32
+   */
+  public static byte[] withKeyHint(String keyVersionName, byte[] signature)
+      throws GeneralSecurityException {
+    GcpKmsUtil.validateKeyName(keyVersionName);
+    long versionId = versionId(keyVersionName);
+    if (versionId < 0) {
+      throw new GeneralSecurityException(
+          "The version ID of " + keyVersionName + " does not fit in a key hint");
+    }
+    return ByteBuffer.allocate(KEY_HINT_SIZE + signature.length)
+        .put(KEY_HINT_VERSION)
+        .putInt((int) versionId)
+        .put(signature)
+        .array();
+  }
+
+  /** Returns the version {@code signature} hints at, or null if it has no hint or is unknown. */
+  @Nullable
+  private static VersionVerifier hintedVersion(List<VersionVerifier> versions, byte[] signature) {
+    if (signature.length <= KEY_HINT_SIZE || signature[0] != KEY_HINT_VERSION) {
+      return null;
+    }
+    long versionId = Integer.toUnsignedLong(ByteBuffer.wrap(signature, 1, 4).getInt());
+    for (VersionVerifier version : versions) {
+      if (version.versionId == versionId) {
+        return version;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the ID of the CryptoKeyVersion {@code keyName}, or -1 if it is not a number below 2^32.
+   */
+  private static long versionId(String keyName) {
+    String id = keyName.substring(keyName.lastIndexOf('/') + 1);
+    if (id.isEmpty() || id.length() > 10) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = 0; i < id.length(); i++) {
+      char c = id.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return (value > 0xffffffffL) ? -1 : value;
+  }
+
+  private synchronized void moveToFront(VersionVerifier version) {
+    ImmutableList<VersionVerifier> current = versions;
+    int index = current.indexOf(version);
+    if (index <= 0) {
+      return;
+    }
+    ImmutableList.Builder<VersionVerifier> reordered = ImmutableList.builder();
+    reordered.add(version);
+    for (int i = 0; i < current.size(); i++) {
+      if (i != index) {
+        reordered.add(current.get(i));
+      }
+    }
+    versions = reordered.build();
+  }
+
+  private void maybeRefreshInBackground() {
+    if (ticker.read() - lastRefreshNanos < refreshIntervalNanos
+        || !refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    long startNanos = ticker.read();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              refresh();
+            } catch (GeneralSecurityException | RuntimeException e) {
+              // Keep the current versions, and try again after the refresh interval rather than on
+              // the next verification, so that an outage of Cloud KMS is not made worse.
+              lastRefreshNanos = startNanos;
+            } finally {
+              refreshing.set(false);
+            }
+          });
+    } catch (RuntimeException e) {
+      refreshing.set(false);
+    }
+  }
+
+  /** Returns the names of the enabled versions of the CryptoKey, newest first. */
+  private List<String> listEnabledVersions() throws GeneralSecurityException {
+    List<CryptoKeyVersion> enabled = new ArrayList<>();
+    try {
+      for (CryptoKeyVersion version :
+          kmsClient
+              .listCryptoKeyVersions(
+                  ListCryptoKeyVersionsRequest.newBuilder()
+                      .setParent(cryptoKeyName)
+                      .setFilter("state=ENABLED")
+                      .build())
+              .iterateAll()) {
+        enabled.add(version);
+      }
+    } catch (RuntimeException e) {
+      throw new GeneralSecurityException("The KMS ListCryptoKeyVersions failed.", e);
+    }
+    List<String> names = new ArrayList<>();
+    for (CryptoKeyVersion version : enabled) {
+      // Don't trust the filter to be applied, and don't accept versions of other keys.
+      if (version.getState() != CryptoKeyVersion.CryptoKeyVersionState.ENABLED) {
+        continue;
+      }
+      if (!GcpKmsUtil.isKeyVersionOf(version.getName(), cryptoKeyName)
+          || version.getName().equals(cryptoKeyName)) {
+        throw new GeneralSecurityException(
+            "KMS returned " + version.getName() + ", which is not a version of " + cryptoKeyName);
+      }
+      names.add(version.getName());
+    }
+    names.sort((a, b) -> Long.compare(versionId(b), versionId(a)));
+    return names;
+  }
+
+  /** Fetches the public keys of {@code keyNames} in parallel and builds their verifiers. */
+  private List<VersionVerifier> loadAll(List<String> keyNames) throws GeneralSecurityException {
+    List<CompletableFuture<VersionVerifier>> futures = new ArrayList<>();
+    for (String keyName : keyNames) {
+      futures.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return load(keyName);
+                } catch (GeneralSecurityException e) {
+                  throw new CompletionException(e);
+                }
+              },
+              executor));
+    }
+    List<VersionVerifier> loaded = new ArrayList<>();
+    for (CompletableFuture<VersionVerifier> future : futures) {
+      try {
+        loaded.add(future.join());
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof GeneralSecurityException) {
+          throw (GeneralSecurityException) e.getCause();
+        }
+        throw new GeneralSecurityException("Fetching a public key failed.", e.getCause());
+      }
+    }
+    return loaded;
+  }
+
+  private VersionVerifier load(String keyName) throws GeneralSecurityException {
+    GcpKmsPublicKeyVerify.Builder builder =
+        GcpKmsPublicKeyVerify.builder()
+            .setKeyName(keyName)
+            .setKeyManagementServiceClient(kmsClient);
+    if (tracer != null) {
+      builder.setTracer(tracer);
+    }
+    if (publicKeyCache != null) {
+      builder.setPublicKeyCache(publicKeyCache);
+    }
+    return new VersionVerifier(keyName, builder.build());
+  }
+
+  /**
+   * A Builder to create a {@link GcpKmsCryptoKeyVerify}. Both a {@code KeyManagementServiceClient}
+   * and a CryptoKey name must be set.
+   */
+  public static final class Builder {
+    @Nullable private String cryptoKeyName = null;
+    @Nullable private KeyManagementServiceClient kmsClient = null;
+    @Nullable private KmsTracer tracer = null;
+    @Nullable private KmsPublicKeyCache publicKeyCache = null;
+    private Duration refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private Ticker ticker = Ticker.systemTicker();
+    private Executor executor = ExecutorHolder.EXECUTOR;
+
+    private Builder() {}
+
+    /**
+     * Set the CryptoKey name, of the form {@code projects/*}{@code /locations/*}{@code
+     * /keyRings/*}{@code /cryptoKeys/*}. Its purpose must be ASYMMETRIC_SIGN.
+     */
+    @CanIgnoreReturnValue
+    public Builder setCryptoKeyName(String cryptoKeyName) {
+      this.cryptoKeyName = cryptoKeyName;
+      return this;
+    }
+
+    /** Set the KeyManagementServiceClient object. */
+    @CanIgnoreReturnValue
+    public Builder setKeyManagementServiceClient(KeyManagementServiceClient kmsClient) {
+      this.kmsClient = kmsClient;
+      return this;
+    }
+
+    /** Sets a tracer that opens a span for each request that fetches a public key. */
+    @CanIgnoreReturnValue
+    public Builder setTracer(KmsTracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Sets a cache for the public keys fetched from Cloud KMS, see {@link KmsPublicKeyCache}. By
+     * default, the public keys are always fetched.
+     */
+    @CanIgnoreReturnValue
+    public Builder setPublicKeyCache(KmsPublicKeyCache publicKeyCache) {
+      this.publicKeyCache = publicKeyCache;
+      return this;
+    }
+
+    /**
+     * Sets how long after a refresh the versions of the CryptoKey are listed again. Defaults to
+     * {@link #DEFAULT_REFRESH_INTERVAL}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRefreshInterval(Duration refreshInterval) {
+      this.refreshInterval = refreshInterval;
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    Builder setTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    /** Sets the executor that fetches the public keys and runs the background refreshes. */
+    @CanIgnoreReturnValue
+    Builder setExecutor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Lists the enabled versions of the CryptoKey, fetches their public keys and builds the
+     * verifier.
+     *
+     * @throws GeneralSecurityException if the CryptoKey has no enabled versions, or if listing them
+     *     or fetching a public key fails
+     */
+    public GcpKmsCryptoKeyVerify build() throws GeneralSecurityException {
+      if (cryptoKeyName == null) {
+        throw new GeneralSecurityException("The cryptoKeyName is null.");
+      }
+      if (!CRYPTO_KEY_NAME_MATCHER.matcher(cryptoKeyName).matches()) {
+        throw new GeneralSecurityException(
+            "The cryptoKeyName must follow " + CRYPTO_KEY_NAME_PATTERN);
+      }
+      if (kmsClient == null) {
+        throw new GeneralSecurityException("The KeyManagementServiceClient object is null.");
+      }
+      if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+        throw new GeneralSecurityException("The refresh interval must be positive.");
+      }
+      GcpKmsCryptoKeyVerify verifier = new GcpKmsCryptoKeyVerify(this);
+      verifier.refresh();
+      if (verifier.versions.isEmpty()) {
+        throw new GeneralSecurityException(
+            "The CryptoKey " + cryptoKeyName + " has no enabled versions.");
+      }
+      return verifier;
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
@@ -0,0 +1,422 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.aead.AesGcmParameters;
+import com.google.crypto.tink.aead.KmsEnvelopeAead;
+import com.google.crypto.tink.subtle.AesGcmJce;
+import com.google.crypto.tink.subtle.Random;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import com.google.protobuf.ByteString;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * An envelope encryption {@link Aead} that keeps a pool of data encryption keys (DEKs) which were
+ * already encrypted by a remote {@link Aead}, typically a {@link GcpKmsAead}.
+ *
+ * <p>Each call to {@code encrypt} takes a DEK from the pool, uses it to encrypt exactly one
+ * plaintext with AES-GCM, and then discards it, so the remote Aead is not called on the encrypt
+ * path as long as the pool is not empty. When the number of DEKs in the pool falls below the low
+ * watermark, it is refilled in the background up to the high watermark. DEKs older than the maximum
+ * age are discarded instead of used. If the pool is empty, {@code encrypt} generates and encrypts a
+ * DEK itself.
+ *
+ * <p>Ciphertexts have the same format as the ones of {@link KmsEnvelopeAead} with the same DEK
+ * parameters, so each can decrypt the ciphertexts of the other. {@code decrypt} always calls the
+ * remote Aead.
+ *
+ * <p>{@link #close} stops refilling the pool and overwrites the pooled DEKs with zeros.
+ */
+public final class GcpKmsEnvelopeAead implements Aead, AutoCloseable {
+
+  private static final byte[] EMPTY_ASSOCIATED_DATA = new byte[0];
+  private static final int LENGTH_ENCRYPTED_DEK = 4;
+
+  private final Aead remote;
+  private final AesGcmParameters dekParameters;
+  private final Aead envelopeAead;
+  private final int lowWatermark;
+  private final int highWatermark;
+  private final int refillConcurrency;
+  private final long maxDekAgeNanos;
+  private final Executor executor;
+  @Nullable private final ExecutorService ownedExecutor;
+  private final Ticker ticker;
+
+  @GuardedBy("this")
+  private final ArrayDeque<PooledDek> pool = new ArrayDeque<>();
+
+  /** Number of DEKs that are being encrypted by the refill tasks. */
+  @GuardedBy("this")
+  private int pendingDeks = 0;
+
+  @GuardedBy("this")
+  private int runningRefills = 0;
+
+  @GuardedBy("this")
+  private long synchronousDekCount = 0;
+
+  @GuardedBy("this")
+  private long refillFailureCount = 0;
+
+  @GuardedBy("this")
+  private boolean closed = false;
+
+  /** A DEK and its encryption by the remote Aead. */
+  private static final class PooledDek {
+    private final byte[] keyBytes;
+    private final byte[] encryptedDek;
+    private final long createdNanos;
+
+    PooledDek(byte[] keyBytes, byte[] encryptedDek, long createdNanos) {
+      this.keyBytes = keyBytes;
+      this.encryptedDek = encryptedDek;
+      this.createdNanos = createdNanos;
+    }
+
+    void destroy() {
+      Arrays.fill(keyBytes, (byte) 0);
+    }
+  }
+
+  private GcpKmsEnvelopeAead(Builder builder, Aead envelopeAead) {
+    this.remote = builder.remote;
+    this.dekParameters = builder.dekParameters;
+    this.envelopeAead = envelopeAead;
+    this.lowWatermark = builder.lowWatermark;
+    this.highWatermark = builder.highWatermark;
+    this.refillConcurrency = builder.refillConcurrency;
+    this.maxDekAgeNanos = builder.maxDekAge.toNanos();
+    this.ticker = builder.ticker;
+    if (builder.executor != null) {
+      this.executor = builder.executor;
+      this.ownedExecutor = null;
+    } else {
+      this.ownedExecutor =
+          Executors.newFixedThreadPool(
+              refillConcurrency,
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("gcp-kms-dek-pool-%d")
+                  .build());
+      this.executor = ownedExecutor;
+    }
+  }
+
+  @Override
+  public byte[] encrypt(final byte[] plaintext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    PooledDek dek = takeDek();
+    startRefillsIfNeeded();
+    if (dek == null) {
+      dek = newDek();
+      synchronized (this) {
+        synchronousDekCount++;
+      }
+    }
+    byte[] payload;
+    try {
+      payload = new AesGcmJce(dek.keyBytes).encrypt(plaintext, associatedData);
+    } finally {
+      dek.destroy();
+    }
+    return ByteBuffer.allocate(LENGTH_ENCRYPTED_DEK + dek.encryptedDek.length + payload.length)
+        .putInt(dek.encryptedDek.length)
+        .put(dek.encryptedDek)
+        .put(payload)
+        .array();
+  }
+
+  @Override
+  public byte[] decrypt(final byte[] ciphertext, final byte[] associatedData)
+      throws GeneralSecurityException {
+    return envelopeAead.decrypt(ciphertext, associatedData);
+  }
+
+  /** Returns the number of DEKs in the pool. */
+  public synchronized int poolSize() {
+    return pool.size();
+  }
+
+  /** Returns the number of encryptions that found the pool empty and encrypted a DEK themselves. */
+  public synchronized long synchronousDekCount() {
+    return synchronousDekCount;
+  }
+
+  /** Returns the number of refill tasks that stopped because the remote Aead failed. */
+  public synchronized long refillFailureCount() {
+    return refillFailureCount;
+  }
+
+  /**
+   * Stops refilling the pool and overwrites the pooled DEKs with zeros. Later calls to {@code
+   * encrypt} encrypt a DEK themselves.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      for (PooledDek dek : pool) {
+        dek.destroy();
+      }
+      pool.clear();
+    }
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
+  }
+
+  /** Returns a DEK from the pool that is not too old, or null if there is none. */
+  @Nullable
+  private synchronized PooledDek takeDek() {
+    long now = ticker.read();
+    PooledDek dek;
+    while ((dek = pool.pollFirst()) != null) {
+      if (now - dek.createdNanos < maxDekAgeNanos) {
+        return dek;
+      }
+      dek.destroy();
+    }
+    return null;
+  }
+
+  /** Generates a DEK and encrypts it with the remote Aead. */
+  private PooledDek newDek() throws GeneralSecurityException {
+    byte[] keyBytes = Random.randBytes(dekParameters.getKeySizeBytes());
+    // The DEK is encrypted in its serialized form, as KmsEnvelopeAead does.
+    byte[] serializedDek =
+        com.google.crypto.tink.proto.AesGcmKey.newBuilder()
+            .setVersion(0)
+            .setKeyValue(ByteString.copyFrom(keyBytes))
+            .build()
+            .toByteArray();
+    try {
+      return new PooledDek(
+          keyBytes, remote.encrypt(serializedDek, EMPTY_ASSOCIATED_DATA), ticker.read());
+    } finally {
+      Arrays.fill(serializedDek, (byte) 0);
+    }
+  }
+
+  /** Starts refill tasks if the pool is below the low watermark. */
+  private void startRefillsIfNeeded() {
+    int refillsToStart;
+    synchronized (this) {
+      if (closed || pool.size() + pendingDeks >= lowWatermark) {
+        return;
+      }
+      refillsToStart = refillConcurrency - runningRefills;
+      runningRefills += refillsToStart;
+    }
+    for (int i = 0; i < refillsToStart; i++) {
+      try {
+        executor.execute(this::refill);
+      } catch (RejectedExecutionException e) {
+        synchronized (this) {
+          runningRefills--;
+        }
+      }
+    }
+  }
+
+  /** Adds DEKs to the pool until it reaches the high watermark. */
+  private void refill() {
+    while (true) {
+      synchronized (this) {
+        if (closed || pool.size() + pendingDeks >= highWatermark) {
+          runningRefills--;
+          return;
+        }
+        pendingDeks++;
+      }
+      PooledDek dek;
+      try {
+        dek = newDek();
+      } catch (GeneralSecurityException | RuntimeException e) {
+        synchronized (this) {
+          pendingDeks--;
+          runningRefills--;
+          refillFailureCount++;
+        }
+        return;
+      }
+      synchronized (this) {
+        pendingDeks--;
+        if (closed) {
+          dek.destroy();
+        } else {
+          pool.addLast(dek);
+        }
+      }
+    }
+  }
+
+  /** A Builder to create a {@link GcpKmsEnvelopeAead}. */
+  public static final class Builder {
+    /** Default for {@link #setLowWatermark}. */
+    public static final int DEFAULT_LOW_WATERMARK = 16;
+
+    /** Default for {@link #setHighWatermark}. */
+    public static final int DEFAULT_HIGH_WATERMARK = 64;
+
+    /** Default for {@link #setRefillConcurrency}. */
+    public static final int DEFAULT_REFILL_CONCURRENCY = 2;
+
+    /** Default for {@link #setMaxDekAge}. */
+    public static final Duration DEFAULT_MAX_DEK_AGE = Duration.ofMinutes(10);
+
+    @Nullable private Aead remote = null;
+    private AesGcmParameters dekParameters;
+    private int lowWatermark = DEFAULT_LOW_WATERMARK;
+    private int highWatermark = DEFAULT_HIGH_WATERMARK;
+    private int refillConcurrency = DEFAULT_REFILL_CONCURRENCY;
+    private Duration maxDekAge = DEFAULT_MAX_DEK_AGE;
+    @Nullable private Executor executor = null;
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder() {
+      try {
+        dekParameters =
+            AesGcmParameters.builder()
+                .setKeySizeBytes(32)
+                .setIvSizeBytes(12)
+                .setTagSizeBytes(16)
+                .setVariant(AesGcmParameters.Variant.NO_PREFIX)
+                .build();
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /** Sets the Aead used to encrypt and decrypt the DEKs, typically a {@link GcpKmsAead}. */
+    @CanIgnoreReturnValue
+    public Builder setRemoteAead(Aead remote) {
+      this.remote = remote;
+      return this;
+    }
+
+    /**
+     * Sets the parameters of the DEKs. They must have a 12 byte IV, a 16 byte tag and no prefix.
+     * Defaults to AES-256-GCM.
+     */
+    @CanIgnoreReturnValue
+    public Builder setDekParameters(AesGcmParameters dekParameters) {
+      this.dekParameters = dekParameters;
+      return this;
+    }
+
+    /**
+     * Sets the number of pooled DEKs below which the pool is refilled. Defaults to {@link
+     * #DEFAULT_LOW_WATERMARK}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setLowWatermark(int lowWatermark) {
+      this.lowWatermark = lowWatermark;
+      return this;
+    }
+
+    /**
+     * Sets the number of pooled DEKs up to which the pool is refilled. Defaults to {@link
+     * #DEFAULT_HIGH_WATERMARK}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setHighWatermark(int highWatermark) {
+      this.highWatermark = highWatermark;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of DEKs that are encrypted by the remote Aead at the same time while
+     * refilling the pool. Defaults to {@link #DEFAULT_REFILL_CONCURRENCY}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRefillConcurrency(int refillConcurrency) {
+      this.refillConcurrency = refillConcurrency;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time a DEK is kept in the pool before it is discarded. Defaults to {@link
+     * #DEFAULT_MAX_DEK_AGE}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxDekAge(Duration maxDekAge) {
+      this.maxDekAge = maxDekAge;
+      return this;
+    }
+
+    /**
+     * Sets the executor that runs the refill tasks. By default, a pool of {@code refillConcurrency}
+     * daemon threads is created, which is shut down by {@link GcpKmsEnvelopeAead#close}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setExecutor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    Builder setTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    /** Builds the Aead and starts filling the pool in the background. */
+    public GcpKmsEnvelopeAead build() throws GeneralSecurityException {
+      if (remote == null) {
+        throw new GeneralSecurityException("The remote Aead must be provided.");
+      }
+      if (dekParameters.getIvSizeBytes() != 12
+          || dekParameters.getTagSizeBytes() != 16
+          || dekParameters.getVariant() != AesGcmParameters.Variant.NO_PREFIX) {
+        throw new GeneralSecurityException(
+            "The DEK parameters must have a 12 byte IV, a 16 byte tag and no prefix.");
+      }
+      if (lowWatermark <= 0 || highWatermark < lowWatermark) {
+        throw new GeneralSecurityException(
+            "The watermarks must satisfy 0 < lowWatermark <= highWatermark.");
+      }
+      if (refillConcurrency <= 0) {
+        throw new GeneralSecurityException("The refill concurrency must be positive.");
+      }
+      if (maxDekAge.isNegative() || maxDekAge.isZero()) {
+        throw new GeneralSecurityException("The maximum DEK age must be positive.");
+      }
+      GcpKmsEnvelopeAead aead =
+          new GcpKmsEnvelopeAead(this, KmsEnvelopeAead.create(dekParameters, remote));
+      aead.startRefillsIfNeeded();
+      return aead;
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
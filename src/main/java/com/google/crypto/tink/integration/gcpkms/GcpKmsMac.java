@@ -16,18 +16,27 @@
 
 package com.google.crypto.tink.integration.gcpkms;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.ApiCallContext;
 import com.google.cloud.kms.v1.KeyManagementServiceClient;
 import com.google.cloud.kms.v1.MacSignRequest;
 import com.google.cloud.kms.v1.MacSignResponse;
 import com.google.cloud.kms.v1.MacVerifyRequest;
 import com.google.cloud.kms.v1.MacVerifyResponse;
-import com.google.common.hash.Hashing;
 import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.IntegrityFailure;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Phase;
 import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import com.google.crypto.tink.integration.gcpkms.internal.Hedger;
+import com.google.crypto.tink.integration.gcpkms.internal.InFlightLimiter;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Int64Value;
+import com.google.protobuf.UnsafeByteOperations;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 
 /**
@@ -36,7 +45,7 @@ import javax.annotation.Nullable;
  *
  * <p>Note that this MAC uses Cloud KMS as a crypto oracle for each operation.
  */
-public final class GcpKmsMac implements Mac {
+public final class GcpKmsMac implements Mac, AsyncMac {
 
   /** Maximum size of the data that can be used for MAC computation/verification. */
   static final int MAX_MAC_DATA_SIZE = 64 * 1024;
@@ -55,41 +64,74 @@ public final class GcpKmsMac implements Mac {
    */
   private final String keyName;
 
-  private GcpKmsMac(KeyManagementServiceClient kmsClient, String keyName) {
+  /** Bounds the number of asynchronous requests that are in flight at the same time. */
+  private final InFlightLimiter inFlightLimiter;
+
+  /** Hedges requests, or null if hedging is disabled. */
+  @Nullable private final Hedger hedger;
+
+  /** Limits the rate of requests, or null if they are not limited. */
+  @Nullable private final KmsRateLimiter rateLimiter;
+
+  /** Fails requests fast while Cloud KMS is unhealthy, or null if disabled. */
+  @Nullable private final KmsCircuitBreaker circuitBreaker;
+
+  /** Applies the retry policy to requests, or null to use the settings of the client. */
+  @Nullable private final ApiCallContext callContext;
+
+  /** Receives metrics about the requests, or null if they are not recorded. */
+  @Nullable private final KmsMetricsListener metricsListener;
+
+  /** Opens a span for each request, or null if they are not traced. */
+  @Nullable private final KmsTracer tracer;
+
+  private GcpKmsMac(
+      KeyManagementServiceClient kmsClient,
+      String keyName,
+      InFlightLimiter inFlightLimiter,
+      @Nullable Hedger hedger,
+      @Nullable KmsRateLimiter rateLimiter,
+      @Nullable KmsCircuitBreaker circuitBreaker,
+      @Nullable ApiCallContext callContext,
+      @Nullable KmsMetricsListener metricsListener,
+      @Nullable KmsTracer tracer) {
     this.kmsClient = kmsClient;
     this.keyName = keyName;
+    this.inFlightLimiter = inFlightLimiter;
+    this.hedger = hedger;
+    this.rateLimiter = rateLimiter;
+    this.circuitBreaker = circuitBreaker;
+    this.callContext = callContext;
+    this.metricsListener = metricsListener;
+    this.tracer = tracer;
   }
 
   @Override
   public byte[] computeMac(final byte[] data) throws GeneralSecurityException {
-    if (data.length > MAX_MAC_DATA_SIZE) {
-      throw new GeneralSecurityException(
-          "The data size is larger than the allowed size: " + MAX_MAC_DATA_SIZE);
-    }
+    // The array is only read during the blocking call, so it need not be copied. A hedged request
+    // may still read it afterwards, but its response is then ignored.
+    CallTimer timer = CallTimer.start(metricsListener, keyName, Operation.MAC_SIGN, data.length);
+    RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.MAC_SIGN, data.length);
+    MacSignRequest request = macSignRequest(timer, UnsafeByteOperations.unsafeWrap(data));
     try {
-      MacSignRequest request =
-          MacSignRequest.newBuilder()
-              .setName(keyName)
-              .setData(ByteString.copyFrom(data))
-              .setDataCrc32C(Int64Value.of(Hashing.crc32c().hashBytes(data).padToLong()))
-              .build();
-
-      MacSignResponse response = kmsClient.macSign(request);
-
-      if (!response.getName().equals(keyName)) {
-        throw new GeneralSecurityException(
-            "The key name in the response does not match the requested key name.");
-      }
-      if (!response.getVerifiedDataCrc32C()) {
-        throw new GeneralSecurityException("Checking the input checksum failed.");
+      if (hedger == null) {
+        return timer.validated(
+            toMac(
+                guarded(
+                    timer,
+                    () ->
+                        RequestTrace.call(
+                            kmsClient.macSignCallable(), request, callContext, trace))));
       }
-      long macCrc32c =
-          Hashing.crc32c().hashBytes(response.getMac().asReadOnlyByteBuffer()).padToLong();
-      if (macCrc32c != response.getMacCrc32C().getValue()) {
-        throw new GeneralSecurityException("MAC checksum mismatch.");
-      }
-
-      return response.getMac().toByteArray();
+      return timer.validated(
+          toMac(
+              guarded(
+                  timer,
+                  () ->
+                      hedger.callBlocking(
+                          () ->
+                              RequestTrace.futureCall(
+                                  kmsClient.macSignCallable(), request, callContext, trace)))));
     } catch (RuntimeException e) {
       throw new GeneralSecurityException("GCP KMS MacSign failed.", e);
     }
@@ -97,51 +139,250 @@ public final class GcpKmsMac implements Mac {
 
   @Override
   public void verifyMac(final byte[] mac, final byte[] data) throws GeneralSecurityException {
-    if (data.length > MAX_MAC_DATA_SIZE) {
+    // The arrays are only read during the blocking call, so they need not be copied. A hedged
+    // request may still read them afterwards, but its response is then ignored.
+    CallTimer timer = CallTimer.start(metricsListener, keyName, Operation.MAC_VERIFY, data.length);
+    RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.MAC_VERIFY, data.length);
+    MacVerifyRequest request =
+        macVerifyRequest(
+            timer, UnsafeByteOperations.unsafeWrap(mac), UnsafeByteOperations.unsafeWrap(data));
+    try {
+      if (hedger == null) {
+        checkMacVerifyResponse(
+            guarded(
+                timer,
+                () ->
+                    RequestTrace.call(kmsClient.macVerifyCallable(), request, callContext, trace)));
+      } else {
+        checkMacVerifyResponse(
+            guarded(
+                timer,
+                () ->
+                    hedger.callBlocking(
+                        () ->
+                            RequestTrace.futureCall(
+                                kmsClient.macVerifyCallable(), request, callContext, trace))));
+      }
+      timer.endValidation();
+    } catch (RuntimeException e) {
+      throw new GeneralSecurityException("GCP KMS MacVerify failed.", e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<byte[]> computeMacAsync(final byte[] data) {
+    if (data == null) {
+      return CompletableFuture.failedFuture(new GeneralSecurityException("The data is null."));
+    }
+    CallTimer timer = CallTimer.start(metricsListener, keyName, Operation.MAC_SIGN, data.length);
+    RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.MAC_SIGN, data.length);
+    MacSignRequest request;
+    try {
+      // The request is sent later, so the caller may modify the array in the meantime.
+      request = macSignRequest(timer, ByteString.copyFrom(data));
+    } catch (GeneralSecurityException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return inFlightLimiter.submit(
+        () ->
+            guardedAsync(
+                timer,
+                () ->
+                    hedged(
+                        () ->
+                            RequestTrace.futureCall(
+                                kmsClient.macSignCallable(), request, callContext, trace))),
+        response -> timer.validated(toMac(response)),
+        "GCP KMS MacSign failed.");
+  }
+
+  @Override
+  public CompletableFuture<Void> verifyMacAsync(final byte[] mac, final byte[] data) {
+    if (mac == null || data == null) {
+      return CompletableFuture.failedFuture(
+          new GeneralSecurityException("The MAC and the data must not be null."));
+    }
+    CallTimer timer = CallTimer.start(metricsListener, keyName, Operation.MAC_VERIFY, data.length);
+    RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.MAC_VERIFY, data.length);
+    MacVerifyRequest request;
+    try {
+      // The request is sent later, so the caller may modify the arrays in the meantime.
+      request = macVerifyRequest(timer, ByteString.copyFrom(mac), ByteString.copyFrom(data));
+    } catch (GeneralSecurityException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return inFlightLimiter.submit(
+        () ->
+            guardedAsync(
+                timer,
+                () ->
+                    hedged(
+                        () ->
+                            RequestTrace.futureCall(
+                                kmsClient.macVerifyCallable(), request, callContext, trace))),
+        response -> {
+          checkMacVerifyResponse(response);
+          timer.endValidation();
+          return null;
+        },
+        "GCP KMS MacVerify failed.");
+  }
+
+  private <T> ApiFuture<T> hedged(Supplier<ApiFuture<T>> call) {
+    return (hedger == null) ? call.get() : hedger.call(call);
+  }
+
+  /**
+   * Sends a request through the rate limiter and then the circuit breaker, if any, and reports the
+   * RPC to {@code timer}.
+   */
+  private <T> T guarded(CallTimer timer, Supplier<T> call) throws GeneralSecurityException {
+    timer.startRpc();
+    T response;
+    try {
+      response =
+          (rateLimiter == null)
+              ? withCircuitBreaker(call)
+              : rateLimiter.call(KmsRateLimiter.Quota.CRYPTO, () -> withCircuitBreaker(call));
+    } catch (GeneralSecurityException | RuntimeException e) {
+      timer.endRpc(e);
+      throw e;
+    }
+    timer.endRpc(null);
+    return response;
+  }
+
+  private <T> T withCircuitBreaker(Supplier<T> call) throws GeneralSecurityException {
+    return (circuitBreaker == null) ? call.get() : circuitBreaker.call(call::get);
+  }
+
+  /** Like {@link #guarded}, for asynchronous requests. */
+  private <T> ApiFuture<T> guardedAsync(CallTimer timer, Supplier<ApiFuture<T>> call) {
+    timer.startRpc();
+    return timer.endRpcWhenDone(
+        (rateLimiter == null)
+            ? withCircuitBreakerAsync(call)
+            : rateLimiter.callAsync(
+                KmsRateLimiter.Quota.CRYPTO, () -> withCircuitBreakerAsync(call)));
+  }
+
+  private <T> ApiFuture<T> withCircuitBreakerAsync(Supplier<ApiFuture<T>> call) {
+    return (circuitBreaker == null) ? call.get() : circuitBreaker.callAsync(call);
+  }
+
+  private MacSignRequest macSignRequest(CallTimer timer, ByteString data)
+      throws GeneralSecurityException {
+    if (data.size() > MAX_MAC_DATA_SIZE) {
       throw new GeneralSecurityException(
           "The data size is larger than the allowed size: " + MAX_MAC_DATA_SIZE);
     }
-    if (mac.length > MAX_MAC_VALUE_SIZE) {
+    long dataCrc32c = GcpKmsUtil.crc32c(data);
+    timer.mark(Phase.CHECKSUM);
+    MacSignRequest request =
+        MacSignRequest.newBuilder()
+            .setName(keyName)
+            .setData(data)
+            .setDataCrc32C(Int64Value.of(dataCrc32c))
+            .build();
+    timer.mark(Phase.SERIALIZATION);
+    return request;
+  }
+
+  private MacVerifyRequest macVerifyRequest(CallTimer timer, ByteString mac, ByteString data)
+      throws GeneralSecurityException {
+    if (data.size() > MAX_MAC_DATA_SIZE) {
+      throw new GeneralSecurityException(
+          "The data size is larger than the allowed size: " + MAX_MAC_DATA_SIZE);
+    }
+    if (mac.size() > MAX_MAC_VALUE_SIZE) {
       throw new GeneralSecurityException(
           "The MAC size is larger than the allowed size: " + MAX_MAC_VALUE_SIZE);
     }
-    try {
-      MacVerifyRequest request =
-          MacVerifyRequest.newBuilder()
-              .setName(keyName)
-              .setData(ByteString.copyFrom(data))
-              .setDataCrc32C(Int64Value.of(Hashing.crc32c().hashBytes(data).padToLong()))
-              .setMac(ByteString.copyFrom(mac))
-              .setMacCrc32C(Int64Value.of(Hashing.crc32c().hashBytes(mac).padToLong()))
-              .build();
-
-      MacVerifyResponse response = kmsClient.macVerify(request);
-
-      if (!response.getName().equals(keyName)) {
-        throw new GeneralSecurityException(
-            "The key name in the response does not match the requested key name.");
-      }
-      if (!response.getVerifiedDataCrc32C()) {
-        throw new GeneralSecurityException("Checking the input data checksum failed.");
-      }
-      if (!response.getVerifiedMacCrc32C()) {
-        throw new GeneralSecurityException("Checking the MAC checksum failed.");
-      }
-      if (!response.getSuccess()) {
-        throw new GeneralSecurityException("MAC verification failed.");
-      }
-      if (response.getVerifiedSuccessIntegrity() != response.getSuccess()) {
-        throw new GeneralSecurityException("Checking the verification result integrity failed.");
-      }
-    } catch (RuntimeException e) {
-      throw new GeneralSecurityException("GCP KMS MacVerify failed.", e);
+    long dataCrc32c = GcpKmsUtil.crc32c(data);
+    long macCrc32c = GcpKmsUtil.crc32c(mac);
+    timer.mark(Phase.CHECKSUM);
+    MacVerifyRequest request =
+        MacVerifyRequest.newBuilder()
+            .setName(keyName)
+            .setData(data)
+            .setDataCrc32C(Int64Value.of(dataCrc32c))
+            .setMac(mac)
+            .setMacCrc32C(Int64Value.of(macCrc32c))
+            .build();
+    timer.mark(Phase.SERIALIZATION);
+    return request;
+  }
+
+  /** Verifies the integrity of a MacSign response and returns the MAC. */
+  private byte[] toMac(MacSignResponse response) throws GeneralSecurityException {
+    if (!response.getName().equals(keyName)) {
+      throw integrityFailure(
+          Operation.MAC_SIGN,
+          IntegrityFailure.KEY_NAME_MISMATCH,
+          "The key name in the response does not match the requested key name.");
+    }
+    if (!response.getVerifiedDataCrc32C()) {
+      throw integrityFailure(
+          Operation.MAC_SIGN,
+          IntegrityFailure.CRC32C_MISMATCH,
+          "Checking the input checksum failed.");
+    }
+    long macCrc32c = GcpKmsUtil.crc32c(response.getMac());
+    if (macCrc32c != response.getMacCrc32C().getValue()) {
+      throw integrityFailure(
+          Operation.MAC_SIGN, IntegrityFailure.CRC32C_MISMATCH, "MAC checksum mismatch.");
+    }
+
+    return response.getMac().toByteArray();
+  }
+
+  /** Verifies the integrity of a MacVerify response and throws if the MAC is invalid. */
+  private void checkMacVerifyResponse(MacVerifyResponse response) throws GeneralSecurityException {
+    if (!response.getName().equals(keyName)) {
+      throw integrityFailure(
+          Operation.MAC_VERIFY,
+          IntegrityFailure.KEY_NAME_MISMATCH,
+          "The key name in the response does not match the requested key name.");
+    }
+    if (!response.getVerifiedDataCrc32C()) {
+      throw integrityFailure(
+          Operation.MAC_VERIFY,
+          IntegrityFailure.CRC32C_MISMATCH,
+          "Checking the input data checksum failed.");
+    }
+    if (!response.getVerifiedMacCrc32C()) {
+      throw integrityFailure(
+          Operation.MAC_VERIFY,
+          IntegrityFailure.CRC32C_MISMATCH,
+          "Checking the MAC checksum failed.");
+    }
+    if (!response.getSuccess()) {
+      throw new GeneralSecurityException("MAC verification failed.");
     }
+    if (response.getVerifiedSuccessIntegrity() != response.getSuccess()) {
+      throw new GeneralSecurityException("Checking the verification result integrity failed.");
+    }
+  }
+
+  private GeneralSecurityException integrityFailure(
+      Operation operation, IntegrityFailure failure, String message) {
+    return CallTimer.integrityFailure(metricsListener, keyName, operation, failure, message);
   }
 
   /** A Builder to create a {@link Mac} that communicates with Cloud KMS via gRPC. */
   public static final class Builder {
+    /** Default for {@link #setMaxInFlightRequests}. */
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 256;
+
     @Nullable private String keyName = null;
     @Nullable private KeyManagementServiceClient kmsClient = null;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    @Nullable private HedgingPolicy hedgingPolicy = null;
+    @Nullable private KmsRateLimiter rateLimiter = null;
+    @Nullable private KmsCircuitBreaker circuitBreaker = null;
+    @Nullable private RetryPolicy retryPolicy = null;
+    @Nullable private KmsMetricsListener metricsListener = null;
+    @Nullable private KmsTracer tracer = null;
 
     private Builder() {}
 
@@ -159,12 +400,110 @@ public final class GcpKmsMac implements Mac {
       return this;
     }
 
+    /**
+     * Sets the maximum number of asynchronous requests of the {@link AsyncMac} returned by {@link
+     * #buildAsync} that are sent to Cloud KMS at the same time. Further requests are queued until
+     * earlier ones complete. Defaults to {@link #DEFAULT_MAX_IN_FLIGHT_REQUESTS}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxInFlightRequests(int maxInFlightRequests) {
+      this.maxInFlightRequests = maxInFlightRequests;
+      return this;
+    }
+
+    /**
+     * Sets the policy for hedging requests, see {@link HedgingPolicy}. By default, requests are not
+     * hedged.
+     */
+    @CanIgnoreReturnValue
+    public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = hedgingPolicy;
+      return this;
+    }
+
+    /**
+     * Sets a rate limiter for the requests to Cloud KMS, see {@link KmsRateLimiter}. The same
+     * limiter may be shared by several primitives. By default, requests are not limited.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRateLimiter(KmsRateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    /**
+     * Sets a circuit breaker that makes requests fail fast while Cloud KMS is unavailable or slow,
+     * see {@link KmsCircuitBreaker}. The same breaker may be shared by several primitives. By
+     * default, requests always go to Cloud KMS.
+     */
+    @CanIgnoreReturnValue
+    public Builder setCircuitBreaker(KmsCircuitBreaker circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    /**
+     * Sets the policy for retrying failed requests, see {@link RetryPolicy}. It replaces the retry
+     * settings of the {@link KeyManagementServiceClient} for the requests of this Mac. By default,
+     * the settings of the client are used.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Sets a listener that receives the latencies, status codes and integrity failures of the
+     * requests to Cloud KMS, see {@link KmsMetricsListener}. By default, no metrics are recorded.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMetricsListener(KmsMetricsListener metricsListener) {
+      this.metricsListener = metricsListener;
+      return this;
+    }
+
+    /**
+     * Sets a tracer that opens a span for each request to Cloud KMS, see {@link KmsTracer}. By
+     * default, requests are not traced.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTracer(KmsTracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
     public Mac build() throws GeneralSecurityException {
+      return buildGcpKmsMac();
+    }
+
+    /**
+     * Builds an {@link AsyncMac}, which sends its requests to Cloud KMS without blocking the
+     * calling thread.
+     */
+    public AsyncMac buildAsync() throws GeneralSecurityException {
+      return buildGcpKmsMac();
+    }
+
+    private GcpKmsMac buildGcpKmsMac() throws GeneralSecurityException {
       GcpKmsUtil.validateKeyName(keyName);
       if (kmsClient == null) {
         throw new GeneralSecurityException("The KeyManagementServiceClient object is null.");
       }
-      return new GcpKmsMac(kmsClient, keyName);
+      if (maxInFlightRequests <= 0) {
+        throw new GeneralSecurityException(
+            "The maximum number of in-flight requests must be positive.");
+      }
+      return new GcpKmsMac(
+          kmsClient,
+          keyName,
+          new InFlightLimiter(maxInFlightRequests),
+          (hedgingPolicy == null) ? null : hedgingPolicy.newHedger(),
+          rateLimiter,
+          circuitBreaker,
+          (retryPolicy == null) ? null : retryPolicy.newGrpcCallContext(),
+          metricsListener,
+          tracer);
     }
   }
 
@@ -16,6 +16,8 @@
 
 package com.google.crypto.tink.integration.gcpkms;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.ApiCallContext;
 import com.google.cloud.kms.v1.AsymmetricSignRequest;
 import com.google.cloud.kms.v1.AsymmetricSignResponse;
 import com.google.cloud.kms.v1.CryptoKeyVersion;
@@ -23,37 +25,57 @@ import com.google.cloud.kms.v1.Digest;
 import com.google.cloud.kms.v1.KeyManagementServiceClient;
 import com.google.cloud.kms.v1.ProtectionLevel;
 import com.google.cloud.kms.v1.PublicKey;
-import com.google.common.hash.Hashing;
 import com.google.crypto.tink.AccessesPartialKey;
 import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.PemKeyType;
 import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.IntegrityFailure;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Phase;
 import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import com.google.crypto.tink.integration.gcpkms.internal.Hedger;
+import com.google.crypto.tink.integration.gcpkms.internal.InFlightLimiter;
+import com.google.crypto.tink.integration.gcpkms.internal.Shake256;
 import com.google.crypto.tink.signature.MlDsaPublicKey;
 import com.google.crypto.tink.signature.SignaturePemKeysetReader;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Int64Value;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
-import org.bouncycastle.crypto.digests.SHAKEDigest;
 
 /**
  * A {@link PublicKeySign} that forwards asymmetric sign requests to a key in <a
  * href="https://cloud.google.com/kms/">Google Cloud KMS</a> using GRPC.
  *
- * <p>Signing with external-mu ML-DSA keys requires the optional BouncyCastle dependency ({@code
- * org.bouncycastle:bcprov-jdk18on}) on the runtime classpath; it is used to compute the SHAKE-256
- * message representative. Other algorithms do not need it, and {@link Builder#build} fails for
- * external-mu keys when it is absent.
+ * <p>For keys that sign a digest, {@link Builder#buildStreaming} returns a signer that hashes large
+ * inputs locally, chunk by chunk, and only sends the digest to Cloud KMS.
  */
-public final class GcpKmsPublicKeySign implements PublicKeySign {
+public final class GcpKmsPublicKeySign
+    implements PublicKeySign, AsyncPublicKeySign, StreamingPublicKeySign {
 
   /** Maximum size of the data that can be signed. */
   private static final int MAX_SIGN_DATA_SIZE = 64 * 1024;
 
+  /** Size of the chunks in which {@link #sign(InputStream)} reads its input. */
+  private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
+  /** Size of the buffer through which {@link #sign(Path)} reads its file. */
+  private static final int FILE_BUFFER_SIZE = 1024 * 1024;
+
   /** Output size in bytes of the SHAKE-256 public key hash (tr in FIPS 204). */
   private static final int ML_DSA_PUBLIC_KEY_HASH_BYTES = 64;
 
@@ -74,40 +96,261 @@ public final class GcpKmsPublicKeySign implements PublicKeySign {
   /** Read from KMS, publicKey contains the public key itself and some information about the key. */
   private final PublicKey publicKey;
 
-  /** SHAKE-256 hash of an external-mu ML-DSA public key, or null for all other algorithms. */
-  @Nullable private final byte[] mlDsaPublicKeyHash;
+  /**
+   * For external-mu ML-DSA keys, the SHAKE-256 state after absorbing the prefix {@code tr || 0x00
+   * || 0x00} of the message representative, which is copied for each message. Null for all other
+   * algorithms.
+   */
+  @Nullable private final Shake256 externalMuPrefix;
+
+  /** Bounds the number of asynchronous requests that are in flight at the same time. */
+  private final InFlightLimiter inFlightLimiter;
+
+  /** Hedges sign requests, or null if hedging is disabled. */
+  @Nullable private final Hedger hedger;
+
+  /** Limits the rate of requests, or null if they are not limited. */
+  @Nullable private final KmsRateLimiter rateLimiter;
+
+  /** Fails requests fast while Cloud KMS is unhealthy, or null if disabled. */
+  @Nullable private final KmsCircuitBreaker circuitBreaker;
+
+  /** Applies the retry policy to requests, or null to use the settings of the client. */
+  @Nullable private final ApiCallContext callContext;
+
+  /** Receives metrics about the sign requests, or null if they are not recorded. */
+  @Nullable private final KmsMetricsListener metricsListener;
+
+  /** Opens a span for each sign request, or null if they are not traced. */
+  @Nullable private final KmsTracer tracer;
 
   private GcpKmsPublicKeySign(
       KeyManagementServiceClient kmsClient,
       String keyName,
       PublicKey publicKey,
-      @Nullable byte[] mlDsaPublicKeyHash) {
+      @Nullable Shake256 externalMuPrefix,
+      InFlightLimiter inFlightLimiter,
+      @Nullable Hedger hedger,
+      @Nullable KmsRateLimiter rateLimiter,
+      @Nullable KmsCircuitBreaker circuitBreaker,
+      @Nullable ApiCallContext callContext,
+      @Nullable KmsMetricsListener metricsListener,
+      @Nullable KmsTracer tracer) {
     this.keyName = keyName;
     this.kmsClient = kmsClient;
     this.publicKey = publicKey;
-    this.mlDsaPublicKeyHash = mlDsaPublicKeyHash;
+    this.externalMuPrefix = externalMuPrefix;
+    this.inFlightLimiter = inFlightLimiter;
+    this.hedger = hedger;
+    this.rateLimiter = rateLimiter;
+    this.circuitBreaker = circuitBreaker;
+    this.callContext = callContext;
+    this.metricsListener = metricsListener;
+    this.tracer = tracer;
+  }
+
+  @Override
+  public byte[] sign(final byte[] data) throws GeneralSecurityException {
+    // The array is only read during the blocking call, so it need not be copied. A hedged request
+    // may still read it afterwards, but its response is then ignored.
+    CallTimer timer =
+        CallTimer.start(metricsListener, keyName, Operation.ASYMMETRIC_SIGN, data.length);
+    RequestTrace trace =
+        RequestTrace.start(tracer, keyName, Operation.ASYMMETRIC_SIGN, data.length);
+    return send(timer, trace, asymmetricSignRequest(timer, data, /* copyData= */ false));
+  }
+
+  @Override
+  public Signer newSigner() throws GeneralSecurityException {
+    checkSignsDigest();
+    return new DigestSigner(newMessageHasher());
+  }
+
+  @Override
+  public byte[] sign(InputStream input) throws GeneralSecurityException, IOException {
+    Signer signer = newSigner();
+    byte[] chunk = new byte[STREAM_CHUNK_SIZE];
+    int length;
+    while ((length = input.read(chunk)) != -1) {
+      signer.update(chunk, 0, length);
+    }
+    return signer.sign();
+  }
+
+  @Override
+  public byte[] sign(Path path) throws GeneralSecurityException, IOException {
+    Signer signer = newSigner();
+    // The file is read through one reused buffer, so memory use does not depend on its size.
+    // Mapped regions would stay mapped until they are garbage collected.
+    ByteBuffer buffer = ByteBuffer.allocate(FILE_BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        signer.update(buffer);
+        buffer.clear();
+      }
+    }
+    return signer.sign();
+  }
+
+  /** Throws if the key signs the data itself, so that the data cannot be hashed locally. */
+  private void checkSignsDigest() throws GeneralSecurityException {
+    if (requiresDataForSign(publicKey.getAlgorithm(), publicKey.getProtectionLevel())) {
+      throw new GeneralSecurityException(
+          "Keys with algorithm "
+              + publicKey.getAlgorithm()
+              + " and protection level "
+              + publicKey.getProtectionLevel()
+              + " sign the data itself, so it cannot be streamed.");
+    }
+  }
+
+  /** Signs the data hashed by a {@link MessageHasher}, sending only the digest to Cloud KMS. */
+  private final class DigestSigner implements Signer {
+    private final MessageHasher hasher;
+    private boolean signed = false;
+
+    DigestSigner(MessageHasher hasher) {
+      this.hasher = hasher;
+    }
+
+    @Override
+    public Signer update(ByteBuffer data) {
+      checkNotSigned();
+      hasher.update(data);
+      return this;
+    }
+
+    @Override
+    public Signer update(byte[] data, int offset, int length) {
+      checkNotSigned();
+      hasher.update(data, offset, length);
+      return this;
+    }
+
+    @Override
+    public byte[] sign() throws GeneralSecurityException {
+      checkNotSigned();
+      signed = true;
+      Digest digest = hasher.digest();
+      int digestSize = getDigestBytes(digest).size();
+      CallTimer timer =
+          CallTimer.start(metricsListener, keyName, Operation.ASYMMETRIC_SIGN, digestSize);
+      RequestTrace trace =
+          RequestTrace.start(tracer, keyName, Operation.ASYMMETRIC_SIGN, digestSize);
+      return send(timer, trace, digestRequest(timer, digest));
+    }
+
+    private void checkNotSigned() {
+      if (signed) {
+        throw new IllegalStateException("The signer has already signed its data.");
+      }
+    }
+  }
+
+  /** Sends a sign request and returns the checked signature. */
+  private byte[] send(CallTimer timer, @Nullable RequestTrace trace, AsymmetricSignRequest request)
+      throws GeneralSecurityException {
+    try {
+      if (hedger == null) {
+        return timer.validated(
+            toSignature(
+                guarded(
+                    timer,
+                    () ->
+                        RequestTrace.call(
+                            kmsClient.asymmetricSignCallable(), request, callContext, trace))));
+      }
+      return timer.validated(
+          toSignature(
+              guarded(
+                  timer,
+                  () ->
+                      hedger.callBlocking(
+                          () ->
+                              RequestTrace.futureCall(
+                                  kmsClient.asymmetricSignCallable(),
+                                  request,
+                                  callContext,
+                                  trace)))));
+    } catch (RuntimeException e) {
+      throw new GeneralSecurityException("Asymmetric sign failed. ", e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<byte[]> signAsync(final byte[] data) {
+    if (data == null) {
+      return CompletableFuture.failedFuture(new GeneralSecurityException("The data is null."));
+    }
+    CallTimer timer =
+        CallTimer.start(metricsListener, keyName, Operation.ASYMMETRIC_SIGN, data.length);
+    RequestTrace trace =
+        RequestTrace.start(tracer, keyName, Operation.ASYMMETRIC_SIGN, data.length);
+    AsymmetricSignRequest request;
+    try {
+      // The request is sent later, so the caller may modify the array in the meantime.
+      request = asymmetricSignRequest(timer, data, /* copyData= */ true);
+    } catch (GeneralSecurityException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return inFlightLimiter.submit(
+        () ->
+            guardedAsync(
+                timer,
+                () ->
+                    hedged(
+                        () ->
+                            RequestTrace.futureCall(
+                                kmsClient.asymmetricSignCallable(), request, callContext, trace))),
+        response -> timer.validated(toSignature(response)),
+        "Asymmetric sign failed. ");
+  }
+
+  private <T> ApiFuture<T> hedged(Supplier<ApiFuture<T>> call) {
+    return (hedger == null) ? call.get() : hedger.call(call);
   }
 
   /**
-   * Verifies that BouncyCastle is available on the runtime classpath. It is an optional dependency
-   * required only for external-mu ML-DSA signing; see the class documentation.
-   *
-   * <p>This check must not reference the BouncyCastle types directly, so that a clear exception is
-   * thrown instead of a {@link NoClassDefFoundError} when the dependency is missing.
+   * Sends a request through the rate limiter and then the circuit breaker, if any, and reports the
+   * RPC to {@code timer}.
    */
-  private static void checkBouncyCastleAvailable() throws GeneralSecurityException {
+  private <T> T guarded(CallTimer timer, Supplier<T> call) throws GeneralSecurityException {
+    timer.startRpc();
+    T response;
     try {
-      Class<?> unused = Class.forName("org.bouncycastle.crypto.digests.SHAKEDigest");
-    } catch (ClassNotFoundException e) {
-      throw new GeneralSecurityException(
-          "External-mu ML-DSA signing requires the optional BouncyCastle dependency"
-              + " (org.bouncycastle:bcprov-jdk18on) on the runtime classpath.",
-          e);
+      response =
+          (rateLimiter == null)
+              ? withCircuitBreaker(call)
+              : rateLimiter.call(KmsRateLimiter.Quota.CRYPTO, () -> withCircuitBreaker(call));
+    } catch (GeneralSecurityException | RuntimeException e) {
+      timer.endRpc(e);
+      throw e;
     }
+    timer.endRpc(null);
+    return response;
   }
 
-  @Override
-  public byte[] sign(final byte[] data) throws GeneralSecurityException {
+  private <T> T withCircuitBreaker(Supplier<T> call) throws GeneralSecurityException {
+    return (circuitBreaker == null) ? call.get() : circuitBreaker.call(call::get);
+  }
+
+  /** Like {@link #guarded}, for asynchronous requests. */
+  private <T> ApiFuture<T> guardedAsync(CallTimer timer, Supplier<ApiFuture<T>> call) {
+    timer.startRpc();
+    return timer.endRpcWhenDone(
+        (rateLimiter == null)
+            ? withCircuitBreakerAsync(call)
+            : rateLimiter.callAsync(
+                KmsRateLimiter.Quota.CRYPTO, () -> withCircuitBreakerAsync(call)));
+  }
+
+  private <T> ApiFuture<T> withCircuitBreakerAsync(Supplier<ApiFuture<T>> call) {
+    return (circuitBreaker == null) ? call.get() : circuitBreaker.callAsync(call);
+  }
+
+  private AsymmetricSignRequest asymmetricSignRequest(
+      CallTimer timer, byte[] data, boolean copyData) throws GeneralSecurityException {
     AsymmetricSignRequest.Builder builder = AsymmetricSignRequest.newBuilder().setName(keyName);
     if (requiresDataForSign(publicKey.getAlgorithm(), publicKey.getProtectionLevel())) {
       if (data.length > MAX_SIGN_DATA_SIZE) {
@@ -118,41 +361,60 @@ public final class GcpKmsPublicKeySign implements PublicKeySign {
                 + MAX_SIGN_DATA_SIZE
                 + " bytes).");
       }
-      builder
-          .setData(ByteString.copyFrom(data))
-          .setDataCrc32C(Int64Value.of(Hashing.crc32c().hashBytes(data).padToLong()));
+      ByteString dataBytes =
+          copyData ? ByteString.copyFrom(data) : UnsafeByteOperations.unsafeWrap(data);
+      timer.mark(Phase.SERIALIZATION);
+      long dataCrc32c = GcpKmsUtil.crc32c(dataBytes);
+      timer.mark(Phase.CHECKSUM);
+      builder.setData(dataBytes).setDataCrc32C(Int64Value.of(dataCrc32c));
     } else {
-      Digest digest = computeDigest(data, publicKey.getAlgorithm());
-      builder
-          .setDigest(digest)
-          .setDigestCrc32C(
-              Int64Value.of(
-                  Hashing.crc32c()
-                      .hashBytes(getDigestBytes(digest).asReadOnlyByteBuffer())
-                      .padToLong()));
+      MessageHasher hasher = newMessageHasher();
+      hasher.update(data, 0, data.length);
+      Digest digest = hasher.digest();
+      timer.mark(Phase.SERIALIZATION);
+      return digestRequest(timer, digest);
     }
+    AsymmetricSignRequest request = builder.build();
+    timer.mark(Phase.SERIALIZATION);
+    return request;
+  }
 
-    try {
-      AsymmetricSignResponse response = kmsClient.asymmetricSign(builder.build());
-      // Perform integrity checks.
-      if (!response.getName().equals(keyName)) {
-        throw new GeneralSecurityException(
-            "The key name in the response does not match the requested key name.");
-      }
-      if (!response.getVerifiedDigestCrc32C() && !response.getVerifiedDataCrc32C()) {
-        throw new GeneralSecurityException("Checking the input checksum failed.");
-      }
+  private AsymmetricSignRequest digestRequest(CallTimer timer, Digest digest)
+      throws GeneralSecurityException {
+    long digestCrc32c = GcpKmsUtil.crc32c(getDigestBytes(digest));
+    timer.mark(Phase.CHECKSUM);
+    AsymmetricSignRequest request =
+        AsymmetricSignRequest.newBuilder()
+            .setName(keyName)
+            .setDigest(digest)
+            .setDigestCrc32C(Int64Value.of(digestCrc32c))
+            .build();
+    timer.mark(Phase.SERIALIZATION);
+    return request;
+  }
 
-      long signatureCrc32c =
-          Hashing.crc32c().hashBytes(response.getSignature().asReadOnlyByteBuffer()).padToLong();
-      if (signatureCrc32c != response.getSignatureCrc32C().getValue()) {
-        throw new GeneralSecurityException("Signature checksum mismatch.");
-      }
-      // Return the signature.
-      return response.getSignature().toByteArray();
-    } catch (RuntimeException e) {
-      throw new GeneralSecurityException("Asymmetric sign failed. ", e);
+  /** Performs the integrity checks on an AsymmetricSign response and returns the signature. */
+  private byte[] toSignature(AsymmetricSignResponse response) throws GeneralSecurityException {
+    if (!response.getName().equals(keyName)) {
+      throw integrityFailure(
+          IntegrityFailure.KEY_NAME_MISMATCH,
+          "The key name in the response does not match the requested key name.");
+    }
+    if (!response.getVerifiedDigestCrc32C() && !response.getVerifiedDataCrc32C()) {
+      throw integrityFailure(
+          IntegrityFailure.CRC32C_MISMATCH, "Checking the input checksum failed.");
+    }
+
+    long signatureCrc32c = GcpKmsUtil.crc32c(response.getSignature());
+    if (signatureCrc32c != response.getSignatureCrc32C().getValue()) {
+      throw integrityFailure(IntegrityFailure.CRC32C_MISMATCH, "Signature checksum mismatch.");
     }
+    return response.getSignature().toByteArray();
+  }
+
+  private GeneralSecurityException integrityFailure(IntegrityFailure failure, String message) {
+    return CallTimer.integrityFailure(
+        metricsListener, keyName, Operation.ASYMMETRIC_SIGN, failure, message);
   }
 
   /** Returns whether the given algorithm is supported for signing through Tink. */
@@ -279,36 +541,19 @@ public final class GcpKmsPublicKeySign implements PublicKeySign {
         .build();
   }
 
-  /** Computes {@code tr = SHAKE256(public key, 64)} for an external-mu ML-DSA key. */
-  private static byte[] computeMlDsaPublicKeyHash(PublicKey publicKey)
-      throws GeneralSecurityException {
-    byte[] publicKeyBytes = publicKey.getPublicKey().getData().toByteArray();
-    SHAKEDigest shakeDigest = new SHAKEDigest(256);
-    shakeDigest.update(publicKeyBytes, 0, publicKeyBytes.length);
-    byte[] publicKeyHash = new byte[ML_DSA_PUBLIC_KEY_HASH_BYTES];
-    shakeDigest.doFinal(publicKeyHash, 0, publicKeyHash.length);
-    return publicKeyHash;
-  }
-
   /**
-   * Computes the ML-DSA message representative mu for the empty context used by Cloud KMS.
-   *
-   * <p>Per FIPS 204, {@code mu = SHAKE256(tr || 0x00 || 0x00 || data, 64)}, where {@code tr} is the
-   * SHAKE-256 hash of the encoded public key.
+   * Absorbs the prefix {@code tr || 0x00 || 0x00} of the message representative of an external-mu
+   * ML-DSA key, where {@code tr = SHAKE256(public key, 64)} and the two zero bytes encode the empty
+   * context used by Cloud KMS.
    */
-  private byte[] computeMlDsaExternalMu(byte[] data) throws GeneralSecurityException {
-    if (mlDsaPublicKeyHash == null) {
-      throw new GeneralSecurityException("The ML-DSA public key hash is not available.");
-    }
-
-    SHAKEDigest shakeDigest = new SHAKEDigest(256);
-    shakeDigest.update(mlDsaPublicKeyHash, 0, mlDsaPublicKeyHash.length);
-    shakeDigest.update((byte) 0);
-    shakeDigest.update((byte) 0);
-    shakeDigest.update(data, 0, data.length);
-    byte[] mu = new byte[ML_DSA_EXTERNAL_MU_BYTES];
-    shakeDigest.doFinal(mu, 0, mu.length);
-    return mu;
+  private static Shake256 newExternalMuPrefix(PublicKey publicKey) {
+    Shake256 publicKeyHash = new Shake256();
+    publicKeyHash.update(publicKey.getPublicKey().getData().asReadOnlyByteBuffer());
+    Shake256 prefix = new Shake256();
+    prefix.update(publicKeyHash.digest(ML_DSA_PUBLIC_KEY_HASH_BYTES));
+    prefix.update((byte) 0);
+    prefix.update((byte) 0);
+    return prefix;
   }
 
   private static ByteString getDigestBytes(Digest digest) throws GeneralSecurityException {
@@ -327,13 +572,10 @@ public final class GcpKmsPublicKeySign implements PublicKeySign {
     return ByteString.EMPTY;
   }
 
-  /** Finds out and returns the proper DigestCase for the given algorithm. */
-  private Digest computeDigest(byte[] data, CryptoKeyVersion.CryptoKeyVersionAlgorithm algorithm)
-      throws GeneralSecurityException {
-    MessageDigest messageDigest;
-    Digest.Builder digestBuilder = Digest.newBuilder();
+  /** Returns a hasher for the digest that the algorithm of the key signs. */
+  private MessageHasher newMessageHasher() throws GeneralSecurityException {
     try {
-      switch (algorithm) {
+      switch (publicKey.getAlgorithm()) {
         case EC_SIGN_P256_SHA256:
         case EC_SIGN_SECP256K1_SHA256:
         case RSA_SIGN_PSS_2048_SHA256:
@@ -343,37 +585,110 @@ public final class GcpKmsPublicKeySign implements PublicKeySign {
         case RSA_SIGN_PKCS1_3072_SHA256:
         case RSA_SIGN_PKCS1_4096_SHA256:
         case PQ_SIGN_HASH_SLH_DSA_SHA2_128S_SHA256:
-          messageDigest = MessageDigest.getInstance("SHA-256");
-          digestBuilder.setSha256(ByteString.copyFrom(messageDigest.digest(data)));
-          break;
+          return new Sha2Hasher("SHA-256", Digest.Builder::setSha256);
         case EC_SIGN_P384_SHA384:
-          messageDigest = MessageDigest.getInstance("SHA-384");
-          digestBuilder.setSha384(ByteString.copyFrom(messageDigest.digest(data)));
-          break;
+          return new Sha2Hasher("SHA-384", Digest.Builder::setSha384);
         case RSA_SIGN_PSS_4096_SHA512:
         case RSA_SIGN_PKCS1_4096_SHA512:
-          messageDigest = MessageDigest.getInstance("SHA-512");
-          digestBuilder.setSha512(ByteString.copyFrom(messageDigest.digest(data)));
-          break;
+          return new Sha2Hasher("SHA-512", Digest.Builder::setSha512);
         case PQ_SIGN_ML_DSA_44_EXTERNAL_MU:
         case PQ_SIGN_ML_DSA_65_EXTERNAL_MU:
         case PQ_SIGN_ML_DSA_87_EXTERNAL_MU:
-          digestBuilder.setExternalMu(ByteString.copyFrom(computeMlDsaExternalMu(data)));
-          break;
+          if (externalMuPrefix == null) {
+            throw new GeneralSecurityException("The ML-DSA public key hash is not available.");
+          }
+          return new ExternalMuHasher(externalMuPrefix.copy());
         default:
           throw new GeneralSecurityException("The given algorithm does not support digests.");
       }
     } catch (NoSuchAlgorithmException e) {
       throw new GeneralSecurityException(e);
     }
+  }
 
-    return digestBuilder.build();
+  /** Incrementally hashes the data to sign into a {@link Digest}. */
+  private abstract static class MessageHasher {
+    abstract void update(byte[] data, int offset, int length);
+
+    abstract void update(ByteBuffer data);
+
+    abstract Digest digest();
+  }
+
+  /** Hashes with a SHA-2 function, whose hash is set with {@code setter}. */
+  private static final class Sha2Hasher extends MessageHasher {
+    private final MessageDigest messageDigest;
+    private final BiFunction<Digest.Builder, ByteString, Digest.Builder> setter;
+
+    Sha2Hasher(String algorithm, BiFunction<Digest.Builder, ByteString, Digest.Builder> setter)
+        throws NoSuchAlgorithmException {
+      this.messageDigest = MessageDigest.getInstance(algorithm);
+      this.setter = setter;
+    }
+
+    @Override
+    void update(byte[] data, int offset, int length) {
+      messageDigest.update(data, offset, length);
+    }
+
+    @Override
+    void update(ByteBuffer data) {
+      messageDigest.update(data);
+    }
+
+    @Override
+    Digest digest() {
+      return setter
+          .apply(Digest.newBuilder(), UnsafeByteOperations.unsafeWrap(messageDigest.digest()))
+          .build();
+    }
+  }
+
+  /**
+   * Computes the ML-DSA message representative mu for the empty context used by Cloud KMS.
+   *
+   * <p>Per FIPS 204, {@code mu = SHAKE256(tr || 0x00 || 0x00 || data, 64)}, where {@code tr} is the
+   * SHAKE-256 hash of the encoded public key. The hasher starts from a copy of the absorbed prefix.
+   */
+  private static final class ExternalMuHasher extends MessageHasher {
+    private final Shake256 shake;
+
+    ExternalMuHasher(Shake256 prefix) {
+      this.shake = prefix;
+    }
+
+    @Override
+    void update(byte[] data, int offset, int length) {
+      shake.update(data, offset, length);
+    }
+
+    @Override
+    void update(ByteBuffer data) {
+      shake.update(data);
+    }
+
+    @Override
+    Digest digest() {
+      byte[] mu = shake.digest(ML_DSA_EXTERNAL_MU_BYTES);
+      return Digest.newBuilder().setExternalMu(UnsafeByteOperations.unsafeWrap(mu)).build();
+    }
   }
 
   /** A Builder to create a {@link PublicKeySign} that communicates with Cloud KMS via gRPC. */
   public static final class Builder {
+    /** Default for {@link #setMaxInFlightRequests}. */
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 256;
+
     @Nullable private String keyName = null;
     @Nullable private KeyManagementServiceClient kmsClient = null;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    @Nullable private HedgingPolicy hedgingPolicy = null;
+    @Nullable private KmsRateLimiter rateLimiter = null;
+    @Nullable private KmsCircuitBreaker circuitBreaker = null;
+    @Nullable private RetryPolicy retryPolicy = null;
+    @Nullable private KmsMetricsListener metricsListener = null;
+    @Nullable private KmsTracer tracer = null;
+    @Nullable private KmsPublicKeyCache publicKeyCache = null;
 
     private Builder() {}
 
@@ -391,16 +706,153 @@ public final class GcpKmsPublicKeySign implements PublicKeySign {
       return this;
     }
 
+    /**
+     * Sets the maximum number of asynchronous requests of the {@link AsyncPublicKeySign} returned
+     * by {@link #buildAsync} that are sent to Cloud KMS at the same time. Further requests are
+     * queued until earlier ones complete. Defaults to {@link #DEFAULT_MAX_IN_FLIGHT_REQUESTS}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxInFlightRequests(int maxInFlightRequests) {
+      this.maxInFlightRequests = maxInFlightRequests;
+      return this;
+    }
+
+    /**
+     * Sets the policy for hedging sign requests, see {@link HedgingPolicy}. This is most useful for
+     * keys with protection level {@code EXTERNAL} or {@code EXTERNAL_VPC}, whose latency varies the
+     * most. By default, requests are not hedged.
+     */
+    @CanIgnoreReturnValue
+    public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = hedgingPolicy;
+      return this;
+    }
+
+    /**
+     * Sets a rate limiter for the requests to Cloud KMS, see {@link KmsRateLimiter}. The same
+     * limiter may be shared by several primitives. Sign requests count against the {@link
+     * KmsRateLimiter.Quota#CRYPTO} quota, and fetching the public key in {@link #build} against the
+     * {@link KmsRateLimiter.Quota#READ} quota. By default, requests are not limited.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRateLimiter(KmsRateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    /**
+     * Sets a circuit breaker that makes sign requests fail fast while Cloud KMS is unavailable or
+     * slow, see {@link KmsCircuitBreaker}. The same breaker may be shared by several primitives. By
+     * default, requests always go to Cloud KMS.
+     */
+    @CanIgnoreReturnValue
+    public Builder setCircuitBreaker(KmsCircuitBreaker circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    /**
+     * Sets the policy for retrying failed sign requests, see {@link RetryPolicy}. It replaces the
+     * retry settings of the {@link KeyManagementServiceClient} for the sign requests of this
+     * PublicKeySign. By default, the settings of the client are used.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Sets a listener that receives the latencies, status codes and integrity failures of the sign
+     * requests to Cloud KMS, see {@link KmsMetricsListener}. By default, no metrics are recorded.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMetricsListener(KmsMetricsListener metricsListener) {
+      this.metricsListener = metricsListener;
+      return this;
+    }
+
+    /**
+     * Sets a tracer that opens a span for each request to Cloud KMS, including the one that fetches
+     * the public key, see {@link KmsTracer}. By default, requests are not traced.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTracer(KmsTracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Sets a cache for the public key, which may be shared with other builders, see {@link
+     * KmsPublicKeyCache}. If the public key is cached, it is not fetched from Cloud KMS. By
+     * default, the public key is always fetched.
+     */
+    @CanIgnoreReturnValue
+    public Builder setPublicKeyCache(KmsPublicKeyCache publicKeyCache) {
+      this.publicKeyCache = publicKeyCache;
+      return this;
+    }
+
     public PublicKeySign build() throws GeneralSecurityException {
+      return buildGcpKmsPublicKeySign();
+    }
+
+    /**
+     * Builds an {@link AsyncPublicKeySign}, which sends its requests to Cloud KMS without blocking
+     * the calling thread. Like {@link #build}, this fetches the public key from Cloud KMS.
+     */
+    public AsyncPublicKeySign buildAsync() throws GeneralSecurityException {
+      return buildGcpKmsPublicKeySign();
+    }
+
+    /**
+     * Builds a {@link StreamingPublicKeySign}, which hashes the data locally and sends only its
+     * digest to Cloud KMS. Like {@link #build}, this fetches the public key from Cloud KMS.
+     *
+     * @throws GeneralSecurityException if the key signs the data itself rather than a digest, as
+     *     Ed25519, ML-DSA without external mu and keys with protection level {@code EXTERNAL} do
+     */
+    public StreamingPublicKeySign buildStreaming() throws GeneralSecurityException {
+      GcpKmsPublicKeySign signer = buildGcpKmsPublicKeySign();
+      signer.checkSignsDigest();
+      return signer;
+    }
+
+    /**
+     * Builds a signer that signs messages in batches, with one request to Cloud KMS per batch, see
+     * {@link MerkleBatchPublicKeySign}. A batch is signed once it holds {@code maxBatchSize}
+     * messages, or {@code maxDelay} after its first message was added. Like {@link #build}, this
+     * fetches the public key from Cloud KMS.
+     */
+    public MerkleBatchPublicKeySign buildMerkleBatchSign(int maxBatchSize, Duration maxDelay)
+        throws GeneralSecurityException {
+      if (maxBatchSize <= 0) {
+        throw new GeneralSecurityException("The maximum batch size must be positive.");
+      }
+      if (maxDelay.isNegative()) {
+        throw new GeneralSecurityException("The maximum delay must not be negative.");
+      }
+      return new MerkleBatchPublicKeySign(buildGcpKmsPublicKeySign(), maxBatchSize, maxDelay);
+    }
+
+    private GcpKmsPublicKeySign buildGcpKmsPublicKeySign() throws GeneralSecurityException {
       GcpKmsUtil.validateKeyName(keyName);
 
       if (kmsClient == null) {
         throw new GeneralSecurityException("The KeyManagementServiceClient object is null.");
       }
+      if (maxInFlightRequests <= 0) {
+        throw new GeneralSecurityException(
+            "The maximum number of in-flight requests must be positive.");
+      }
 
       // Retrieve the related public key from KMS, that contains information on
       // how to prepare the later AsymmetricSign requests.
-      PublicKey publicKey = GcpKmsUtil.fetchPublicKey(kmsClient, keyName);
+      KmsPublicKeyCache.Fetcher fetcher = newPublicKeyFetcher();
+      PublicKey publicKey =
+          (publicKeyCache == null)
+              ? fetcher.fetch(PublicKey.PublicKeyFormat.PEM)
+              : publicKeyCache.get(keyName, fetcher);
 
       // ML-DSA is returned in PEM, but consumers need the raw key bytes.
       PemKeyType pemKeyType = mlDsaPemKeyType(publicKey.getAlgorithm());
@@ -412,13 +864,49 @@ public final class GcpKmsPublicKeySign implements PublicKeySign {
             "The algorithm " + publicKey.getAlgorithm() + " is not supported.");
       }
 
-      byte[] mlDsaPublicKeyHash = null;
+      Shake256 externalMuPrefix = null;
       if (isMlDsaExternalMuAlgorithm(publicKey.getAlgorithm())) {
-        checkBouncyCastleAvailable();
-        mlDsaPublicKeyHash = computeMlDsaPublicKeyHash(publicKey);
+        externalMuPrefix = newExternalMuPrefix(publicKey);
       }
 
-      return new GcpKmsPublicKeySign(kmsClient, keyName, publicKey, mlDsaPublicKeyHash);
+      return new GcpKmsPublicKeySign(
+          kmsClient,
+          keyName,
+          publicKey,
+          externalMuPrefix,
+          new InFlightLimiter(maxInFlightRequests),
+          (hedgingPolicy == null) ? null : hedgingPolicy.newHedger(),
+          rateLimiter,
+          circuitBreaker,
+          (retryPolicy == null) ? null : retryPolicy.newGrpcCallContext(),
+          metricsListener,
+          tracer);
+    }
+
+    /**
+     * Returns a fetcher of the public key that waits for the rate limiter, if any, and sends the
+     * request in a span if a tracer is set. It keeps the current settings, because a {@link
+     * KmsPublicKeyCache} also uses it to refresh the key after this builder may have changed.
+     */
+    private KmsPublicKeyCache.Fetcher newPublicKeyFetcher() {
+      KeyManagementServiceClient kmsClient = this.kmsClient;
+      String keyName = this.keyName;
+      KmsRateLimiter rateLimiter = this.rateLimiter;
+      KmsTracer tracer = this.tracer;
+      KmsPublicKeyCache.Fetcher fetcher =
+          format -> {
+            RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.GET_PUBLIC_KEY, 0);
+            if (trace == null) {
+              return GcpKmsUtil.fetchPublicKey(kmsClient, keyName, /* context= */ null, format);
+            }
+            return trace.send(
+                /* context= */ null,
+                context -> GcpKmsUtil.fetchPublicKey(kmsClient, keyName, context, format));
+          };
+      if (rateLimiter == null) {
+        return fetcher;
+      }
+      return format -> rateLimiter.call(KmsRateLimiter.Quota.READ, () -> fetcher.fetch(format));
     }
   }
 
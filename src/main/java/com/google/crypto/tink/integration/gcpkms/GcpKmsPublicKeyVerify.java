@@ -24,6 +24,7 @@ import com.google.crypto.tink.Key;
 import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.PemKeyType;
 import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
 import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
 import com.google.crypto.tink.signature.SignatureConfig2026;
 import com.google.crypto.tink.signature.SignaturePemKeysetReader;
@@ -37,6 +38,7 @@ import com.google.crypto.tink.util.Bytes;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.protobuf.ByteString;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 
 /**
@@ -68,6 +70,23 @@ public final class GcpKmsPublicKeyVerify implements PublicKeyVerify {
     verifier.verify(signature, data);
   }
 
+  /** Whether the proto parsers for the supported signature key types have been registered. */
+  private static volatile boolean serializationsRegistered = false;
+
+  /**
+   * Registers the proto parsers for the supported signature key types, once per process rather than
+   * on every build.
+   */
+  private static void registerSerializations() throws GeneralSecurityException {
+    if (serializationsRegistered) {
+      return;
+    }
+    EcdsaProtoSerialization.register();
+    RsaSsaPkcs1ProtoSerialization.register();
+    RsaSsaPssProtoSerialization.register();
+    serializationsRegistered = true;
+  }
+
   /**
    * Returns the {@link PemKeyType} matching the Cloud KMS {@code algorithm}, or throws if the
    * algorithm is not supported for verification through Tink.
@@ -166,6 +185,8 @@ public final class GcpKmsPublicKeyVerify implements PublicKeyVerify {
     @Nullable private KeyManagementServiceClient kmsClient = null;
     @Nullable private byte[] publicKey = null;
     @Nullable private CryptoKeyVersion.CryptoKeyVersionAlgorithm algorithm = null;
+    @Nullable private KmsTracer tracer = null;
+    @Nullable private KmsPublicKeyCache publicKeyCache = null;
 
     private Builder() {}
 
@@ -213,12 +234,30 @@ public final class GcpKmsPublicKeyVerify implements PublicKeyVerify {
       return this;
     }
 
+    /**
+     * Sets a tracer that opens a span for the request that fetches the public key from Cloud KMS,
+     * see {@link KmsTracer}. By default, the request is not traced.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTracer(KmsTracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * Sets a cache for the public key fetched from Cloud KMS, which may be shared with other
+     * builders, see {@link KmsPublicKeyCache}. If the public key is cached, it is not fetched from
+     * Cloud KMS. By default, the public key is always fetched.
+     */
+    @CanIgnoreReturnValue
+    public Builder setPublicKeyCache(KmsPublicKeyCache publicKeyCache) {
+      this.publicKeyCache = publicKeyCache;
+      return this;
+    }
+
     /** Builds a new {@link PublicKeyVerify} instance. */
     public PublicKeyVerify build() throws GeneralSecurityException {
-      // Registers the necessary proto parsers for the supported signature key types.
-      EcdsaProtoSerialization.register();
-      RsaSsaPkcs1ProtoSerialization.register();
-      RsaSsaPssProtoSerialization.register();
+      registerSerializations();
 
       // A verifier is either offline (caller-supplied public key) or online (key fetched from KMS).
       boolean isOffline = (publicKey != null || algorithm != null);
@@ -249,7 +288,11 @@ public final class GcpKmsPublicKeyVerify implements PublicKeyVerify {
         if (kmsClient == null) {
           throw new GeneralSecurityException("The KeyManagementServiceClient object is null.");
         }
-        PublicKey fetchedKey = GcpKmsUtil.fetchPublicKey(kmsClient, keyName);
+        KmsPublicKeyCache.Fetcher fetcher = newPublicKeyFetcher();
+        PublicKey fetchedKey =
+            (publicKeyCache == null)
+                ? fetcher.fetch(PublicKey.PublicKeyFormat.PEM)
+                : publicKeyCache.get(keyName, fetcher);
         algorithm = fetchedKey.getAlgorithm();
         publicKeyData = fetchedKey.getPublicKey().getData();
       }
@@ -267,6 +310,52 @@ public final class GcpKmsPublicKeyVerify implements PublicKeyVerify {
       return new GcpKmsPublicKeyVerify(
           keysetHandle.getPrimitive(SignatureConfig2026.get(), PublicKeyVerify.class));
     }
+
+    /**
+     * Builds a verifier for signatures of {@link MerkleBatchPublicKeySign}, see {@link
+     * MerkleBatchPublicKeyVerify}. The public key is obtained as with {@link #build}.
+     */
+    public MerkleBatchPublicKeyVerify buildMerkleBatchVerify() throws GeneralSecurityException {
+      return new MerkleBatchPublicKeyVerify(build());
+    }
+
+    /**
+     * Builds a verifier that can verify many signatures in parallel on the common {@link
+     * java.util.concurrent.ForkJoinPool}, see {@link BatchPublicKeyVerify}. The public key is
+     * obtained as with {@link #build}.
+     */
+    public BatchPublicKeyVerify buildBatchVerify() throws GeneralSecurityException {
+      return BatchPublicKeyVerify.create(build());
+    }
+
+    /**
+     * Builds a verifier that can verify many signatures in parallel on {@code executor}, see {@link
+     * BatchPublicKeyVerify}. The public key is obtained as with {@link #build}.
+     */
+    public BatchPublicKeyVerify buildBatchVerify(Executor executor)
+        throws GeneralSecurityException {
+      return BatchPublicKeyVerify.create(build(), executor);
+    }
+
+    /**
+     * Returns a fetcher of the public key that sends the request in a span if a tracer is set. It
+     * keeps the current settings, because a {@link KmsPublicKeyCache} also uses it to refresh the
+     * key after this builder may have changed.
+     */
+    private KmsPublicKeyCache.Fetcher newPublicKeyFetcher() {
+      KeyManagementServiceClient kmsClient = this.kmsClient;
+      String keyName = this.keyName;
+      KmsTracer tracer = this.tracer;
+      return format -> {
+        RequestTrace trace = RequestTrace.start(tracer, keyName, Operation.GET_PUBLIC_KEY, 0);
+        if (trace == null) {
+          return GcpKmsUtil.fetchPublicKey(kmsClient, keyName, /* context= */ null, format);
+        }
+        return trace.send(
+            /* context= */ null,
+            context -> GcpKmsUtil.fetchPublicKey(kmsClient, keyName, context, format));
+      };
+    }
   }
 
   public static Builder builder() {
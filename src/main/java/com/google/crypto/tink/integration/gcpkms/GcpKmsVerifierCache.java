@@ -0,0 +1,374 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.PublicKey;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of ready {@link PublicKeyVerify} instances for many asymmetric keys in Cloud KMS,
+ * keyed by the name of the CryptoKeyVersion.
+ *
+ * <p>Building a {@link GcpKmsPublicKeyVerify} fetches the public key and parses it, which is too
+ * slow to do per request when signatures of thousands of keys are verified. With this cache, only
+ * the first verification with a key contacts Cloud KMS; after that, verification is local. Entries
+ * are evicted when the cache exceeds its {@link Builder#setMaximumSize maximum size} or {@link
+ * Builder#setMaximumWeight maximum weight}, least recently used first. An entry that is used at
+ * least {@link Builder#setRefreshAfter} after it was loaded is reloaded in the background while the
+ * current entry is still returned, and is removed {@link Builder#setExpireAfter} after it was
+ * loaded.
+ *
+ * <p>Lookups of keys that do not exist or that the caller may not use, i.e. for which Cloud KMS
+ * returns {@code NOT_FOUND} or {@code PERMISSION_DENIED}, fail without contacting Cloud KMS again
+ * for {@link Builder#setNegativeTtl}. Other failures are not cached.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class GcpKmsVerifierCache {
+
+  /** Default for {@link Builder#setMaximumSize}, if no maximum weight is set. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
+  /** Default for {@link Builder#setRefreshAfter}. */
+  public static final Duration DEFAULT_REFRESH_AFTER = Duration.ofHours(1);
+
+  /** Default for {@link Builder#setExpireAfter}. */
+  public static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofHours(6);
+
+  /** Default for {@link Builder#setNegativeTtl}. */
+  public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(30);
+
+  private static final class ExecutorHolder {
+    static final ExecutorService EXECUTOR =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "GcpKmsVerifierCache");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** A verifier and its weight, the size of its public key in bytes. */
+  private static final class Entry {
+    final PublicKeyVerify verifier;
+    final int weight;
+
+    Entry(PublicKeyVerify verifier, int weight) {
+      this.verifier = verifier;
+      this.weight = weight;
+    }
+  }
+
+  private final KeyManagementServiceClient kmsClient;
+  private final LoadingCache<String, Entry> verifiers;
+
+  /** The failures that are cached, by key name. */
+  private final Cache<String, GeneralSecurityException> failures;
+
+  private final Executor executor;
+  private final LongAdder negativeHits = new LongAdder();
+
+  private GcpKmsVerifierCache(Builder builder) {
+    this.kmsClient = builder.kmsClient;
+    this.executor = builder.executor;
+    CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+    long maximumSize = DEFAULT_MAXIMUM_SIZE;
+    if (builder.maximumWeight != null) {
+      cacheBuilder
+          .maximumWeight(builder.maximumWeight)
+          .weigher((String keyName, Entry entry) -> entry.weight);
+    } else {
+      if (builder.maximumSize != null) {
+        maximumSize = builder.maximumSize;
+      }
+      cacheBuilder.maximumSize(maximumSize);
+    }
+    this.verifiers =
+        cacheBuilder
+            .refreshAfterWrite(builder.refreshAfter)
+            .expireAfterWrite(builder.expireAfter)
+            .ticker(builder.ticker)
+            .recordStats()
+            .build(
+                CacheLoader.asyncReloading(
+                    new CacheLoader<String, Entry>() {
+                      @Override
+                      public Entry load(String keyName) throws GeneralSecurityException {
+                        return GcpKmsVerifierCache.this.load(keyName);
+                      }
+                    },
+                    builder.executor));
+    this.failures =
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(builder.negativeTtl)
+            .ticker(builder.ticker)
+            .build();
+  }
+
+  /**
+   * Returns the verifier for the CryptoKeyVersion {@code keyName}, and builds it if it is not
+   * cached.
+   */
+  public PublicKeyVerify get(String keyName) throws GeneralSecurityException {
+    GcpKmsUtil.validateKeyName(keyName);
+    GeneralSecurityException failure = failures.getIfPresent(keyName);
+    if (failure != null) {
+      negativeHits.increment();
+      // A refresh may have found the key gone while the entry for it was still cached.
+      verifiers.invalidate(keyName);
+      throw new GeneralSecurityException(failure.getMessage(), failure);
+    }
+    try {
+      return verifiers.get(keyName).verifier;
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      if (e.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) e.getCause();
+      }
+      throw new GeneralSecurityException("Building the verifier failed.", e.getCause());
+    }
+  }
+
+  /**
+   * Like {@link #get}, but if the verifier is not cached, builds it on a background thread instead
+   * of blocking the calling thread.
+   */
+  public CompletableFuture<PublicKeyVerify> getAsync(String keyName) {
+    if (verifiers.asMap().containsKey(keyName) || failures.getIfPresent(keyName) != null) {
+      try {
+        return CompletableFuture.completedFuture(get(keyName));
+      } catch (GeneralSecurityException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return get(keyName);
+          } catch (GeneralSecurityException e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  /** Verifies {@code signature} over {@code data} with the public key of {@code keyName}. */
+  public void verify(String keyName, byte[] signature, byte[] data)
+      throws GeneralSecurityException {
+    get(keyName).verify(signature, data);
+  }
+
+  /** Removes the verifier and any cached failure for {@code keyName}. */
+  public void invalidate(String keyName) {
+    verifiers.invalidate(keyName);
+    failures.invalidate(keyName);
+  }
+
+  /** Removes all cached verifiers and failures. */
+  public void invalidateAll() {
+    verifiers.invalidateAll();
+    failures.invalidateAll();
+  }
+
+  /** Returns the approximate number of cached verifiers. */
+  public long size() {
+    return verifiers.size();
+  }
+
+  /**
+   * Returns the statistics of the cached verifiers. Lookups that fail because of a cached failure
+   * are not included, see {@link #negativeHitCount}.
+   */
+  public CacheStats stats() {
+    return verifiers.stats();
+  }
+
+  /** Returns the number of lookups that failed because of a cached failure. */
+  public long negativeHitCount() {
+    return negativeHits.sum();
+  }
+
+  private Entry load(String keyName) throws GeneralSecurityException {
+    PublicKey publicKey;
+    try {
+      publicKey =
+          GcpKmsUtil.fetchPublicKey(
+              kmsClient, keyName, /* context= */ null, PublicKey.PublicKeyFormat.PEM);
+    } catch (GeneralSecurityException e) {
+      if (isPermanentFailure(e)) {
+        failures.put(keyName, e);
+      }
+      throw e;
+    }
+    PublicKeyVerify verifier =
+        GcpKmsPublicKeyVerify.builder()
+            .setPublicKey(publicKey.getPublicKey().getData().toByteArray())
+            .setAlgorithm(publicKey.getAlgorithm())
+            .build();
+    return new Entry(verifier, publicKey.getPublicKey().getData().size());
+  }
+
+  /** Returns whether {@code t} was caused by a NOT_FOUND or PERMISSION_DENIED response. */
+  private static boolean isPermanentFailure(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ApiException) {
+        StatusCode.Code code = ((ApiException) cause).getStatusCode().getCode();
+        return code == StatusCode.Code.NOT_FOUND || code == StatusCode.Code.PERMISSION_DENIED;
+      }
+    }
+    return false;
+  }
+
+  /** A Builder to create a {@link GcpKmsVerifierCache}. */
+  public static final class Builder {
+    @Nullable private KeyManagementServiceClient kmsClient = null;
+    @Nullable private Long maximumSize = null;
+    @Nullable private Long maximumWeight = null;
+    private Duration refreshAfter = DEFAULT_REFRESH_AFTER;
+    private Duration expireAfter = DEFAULT_EXPIRE_AFTER;
+    private Duration negativeTtl = DEFAULT_NEGATIVE_TTL;
+    private Ticker ticker = Ticker.systemTicker();
+    private Executor executor = ExecutorHolder.EXECUTOR;
+
+    private Builder() {}
+
+    /** Set the KeyManagementServiceClient object with which the public keys are fetched. */
+    @CanIgnoreReturnValue
+    public Builder setKeyManagementServiceClient(KeyManagementServiceClient kmsClient) {
+      this.kmsClient = kmsClient;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of cached verifiers. Defaults to {@link #DEFAULT_MAXIMUM_SIZE}. Must
+     * not be set together with {@link #setMaximumWeight}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaximumSize(long maximumSize) {
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum total size in bytes of the public keys of the cached verifiers. This bounds
+     * the memory better than {@link #setMaximumSize} when keys of very different sizes are mixed,
+     * e.g. EC keys and post-quantum keys.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaximumWeight(long maximumWeight) {
+      this.maximumWeight = maximumWeight;
+      return this;
+    }
+
+    /**
+     * Sets the age from which on an entry is reloaded in the background when it is used. Defaults
+     * to {@link #DEFAULT_REFRESH_AFTER}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRefreshAfter(Duration refreshAfter) {
+      this.refreshAfter = refreshAfter;
+      return this;
+    }
+
+    /**
+     * Sets the age at which an entry is removed, unless it has been reloaded. Defaults to {@link
+     * #DEFAULT_EXPIRE_AFTER}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setExpireAfter(Duration expireAfter) {
+      this.expireAfter = expireAfter;
+      return this;
+    }
+
+    /**
+     * Sets how long a NOT_FOUND or PERMISSION_DENIED response is cached. Defaults to {@link
+     * #DEFAULT_NEGATIVE_TTL}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setNegativeTtl(Duration negativeTtl) {
+      this.negativeTtl = negativeTtl;
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    Builder setTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    /** Sets the executor that loads verifiers for {@link #getAsync} and reloads them. */
+    @CanIgnoreReturnValue
+    Builder setExecutor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public GcpKmsVerifierCache build() throws GeneralSecurityException {
+      if (kmsClient == null) {
+        throw new GeneralSecurityException("The KeyManagementServiceClient object is null.");
+      }
+      if (maximumSize != null && maximumWeight != null) {
+        throw new GeneralSecurityException(
+            "Set either a maximum size or a maximum weight, not both.");
+      }
+      if (maximumSize != null && maximumSize <= 0) {
+        throw new GeneralSecurityException("The maximum size must be positive.");
+      }
+      if (maximumWeight != null && maximumWeight <= 0) {
+        throw new GeneralSecurityException("The maximum weight must be positive.");
+      }
+      if (refreshAfter.isNegative() || refreshAfter.isZero()) {
+        throw new GeneralSecurityException("The refresh duration must be positive.");
+      }
+      if (expireAfter.compareTo(refreshAfter) <= 0) {
+        throw new GeneralSecurityException(
+            "The expiry duration must be longer than the refresh duration.");
+      }
+      if (negativeTtl.isNegative() || negativeTtl.isZero()) {
+        throw new GeneralSecurityException("The negative TTL must be positive.");
+      }
+      return new GcpKmsVerifierCache(this);
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
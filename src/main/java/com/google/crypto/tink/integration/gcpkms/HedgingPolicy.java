@@ -0,0 +1,133 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.crypto.tink.integration.gcpkms.internal.Hedger;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+
+/**
+ * Configures hedged requests, which reduce the tail latency of calls to Cloud KMS.
+ *
+ * <p>If a call has not completed after a delay, a second, identical request is sent. The first
+ * successful response is used and the other request is cancelled. The delay adapts to the latencies
+ * observed for the key: it is the {@link Builder#setDelayPercentile percentile} of the latencies of
+ * recent calls, but at least {@link Builder#setMinDelay}. No request is hedged before a few calls
+ * have completed.
+ *
+ * <p>To bound the additional load on Cloud KMS, at most the {@link Builder#setMaxHedgeRatio
+ * fraction} of the calls send a second request.
+ *
+ * <p>Hedging is only used for operations that can safely be repeated: decryption, MAC computation
+ * and verification, and signing.
+ */
+public final class HedgingPolicy {
+  /** Default for {@link Builder#setDelayPercentile}. */
+  public static final double DEFAULT_DELAY_PERCENTILE = 0.95;
+
+  /** Default for {@link Builder#setMinDelay}. */
+  public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(5);
+
+  /** Default for {@link Builder#setMaxHedgeRatio}. */
+  public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+
+  private final double delayPercentile;
+  private final Duration minDelay;
+  private final double maxHedgeRatio;
+
+  private HedgingPolicy(double delayPercentile, Duration minDelay, double maxHedgeRatio) {
+    this.delayPercentile = delayPercentile;
+    this.minDelay = minDelay;
+    this.maxHedgeRatio = maxHedgeRatio;
+  }
+
+  public double getDelayPercentile() {
+    return delayPercentile;
+  }
+
+  public Duration getMinDelay() {
+    return minDelay;
+  }
+
+  public double getMaxHedgeRatio() {
+    return maxHedgeRatio;
+  }
+
+  /** Returns a new {@link Hedger} for one key, following this policy. */
+  Hedger newHedger() {
+    return new Hedger(delayPercentile, minDelay, maxHedgeRatio);
+  }
+
+  /** A Builder to create a {@link HedgingPolicy}. */
+  public static final class Builder {
+    private double delayPercentile = DEFAULT_DELAY_PERCENTILE;
+    private Duration minDelay = DEFAULT_MIN_DELAY;
+    private double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    private Builder() {}
+
+    /**
+     * Sets the percentile of recent latencies, in (0, 1], after which a second request is sent.
+     * Defaults to {@link #DEFAULT_DELAY_PERCENTILE}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setDelayPercentile(double delayPercentile) {
+      this.delayPercentile = delayPercentile;
+      return this;
+    }
+
+    /**
+     * Sets the minimum time to wait before a second request is sent. Defaults to {@link
+     * #DEFAULT_MIN_DELAY}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMinDelay(Duration minDelay) {
+      this.minDelay = minDelay;
+      return this;
+    }
+
+    /**
+     * Sets the maximum fraction of calls, in [0, 1], that may send a second request. Defaults to
+     * {@link #DEFAULT_MAX_HEDGE_RATIO}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxHedgeRatio(double maxHedgeRatio) {
+      this.maxHedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    public HedgingPolicy build() throws GeneralSecurityException {
+      if (!(delayPercentile > 0 && delayPercentile <= 1)) {
+        throw new GeneralSecurityException(
+            "The delay percentile must be in (0, 1]: " + delayPercentile);
+      }
+      if (minDelay.isNegative()) {
+        throw new GeneralSecurityException("The minimum delay must not be negative.");
+      }
+      if (!(maxHedgeRatio >= 0 && maxHedgeRatio <= 1)) {
+        throw new GeneralSecurityException(
+            "The maximum hedge ratio must be in [0, 1]: " + maxHedgeRatio);
+      }
+      return new HedgingPolicy(delayPercentile, minDelay, maxHedgeRatio);
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
@@ -0,0 +1,463 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * A circuit breaker for requests to Cloud KMS, which makes calls fail fast while Cloud KMS is
+ * unavailable or slow, instead of blocking threads until they time out.
+ *
+ * <p>The breaker is {@link State#CLOSED} at first and lets all calls through, recording the outcome
+ * of the last {@link Builder#setWindowSize} calls. Once at least {@link Builder#setMinimumCalls}
+ * calls are recorded, it opens if the fraction of failed calls reaches {@link
+ * Builder#setFailureRateThreshold}, or if the fraction of calls slower than {@link
+ * Builder#setSlowCallDuration} reaches {@link Builder#setSlowCallRateThreshold}.
+ *
+ * <p>While {@link State#OPEN}, calls fail immediately with a {@link CircuitOpenException}. After
+ * {@link Builder#setOpenDuration}, the breaker becomes {@link State#HALF_OPEN} and lets up to
+ * {@link Builder#setHalfOpenCalls} probe calls through. If one of them fails or is slow, it opens
+ * again; once all of them have succeeded, it closes.
+ *
+ * <p>Only failures that indicate a problem of Cloud KMS count as failures: the status codes {@code
+ * UNAVAILABLE}, {@code DEADLINE_EXCEEDED}, {@code INTERNAL} and {@code UNKNOWN}, HTTP status codes
+ * of 500 and above, and I/O errors. Invalid requests, such as decrypting an invalid ciphertext, and
+ * exhausted quotas do not.
+ *
+ * <p>A breaker can be shared by several primitives. Share one among the primitives for keys in the
+ * same location to break the circuit per location, or use one per key.
+ */
+public final class KmsCircuitBreaker {
+
+  /** The state of a circuit breaker. */
+  public enum State {
+    /** Calls are let through. */
+    CLOSED,
+    /** Calls fail fast. */
+    OPEN,
+    /** A limited number of probe calls are let through. */
+    HALF_OPEN,
+  }
+
+  /** Thrown if a call is rejected because the circuit breaker is open. */
+  public static final class CircuitOpenException extends GeneralSecurityException {
+    private static final long serialVersionUID = 1L;
+
+    CircuitOpenException(String message) {
+      super(message);
+    }
+  }
+
+  /** Default for {@link Builder#setFailureRateThreshold}. */
+  public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+
+  /** Default for {@link Builder#setSlowCallRateThreshold}. */
+  public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8;
+
+  /** Default for {@link Builder#setSlowCallDuration}. */
+  public static final Duration DEFAULT_SLOW_CALL_DURATION = Duration.ofSeconds(5);
+
+  /** Default for {@link Builder#setWindowSize}. */
+  public static final int DEFAULT_WINDOW_SIZE = 100;
+
+  /** Default for {@link Builder#setMinimumCalls}. */
+  public static final int DEFAULT_MINIMUM_CALLS = 20;
+
+  /** Default for {@link Builder#setOpenDuration}. */
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+  /** Default for {@link Builder#setHalfOpenCalls}. */
+  public static final int DEFAULT_HALF_OPEN_CALLS = 5;
+
+  private static final Set<StatusCode.Code> FAILURE_CODES =
+      EnumSet.of(
+          StatusCode.Code.UNAVAILABLE,
+          StatusCode.Code.DEADLINE_EXCEEDED,
+          StatusCode.Code.INTERNAL,
+          StatusCode.Code.UNKNOWN);
+
+  /** A request to Cloud KMS. */
+  interface Call<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  private final double failureRateThreshold;
+  private final double slowCallRateThreshold;
+  private final long slowCallNanos;
+  private final int minimumCalls;
+  private final long openNanos;
+  private final int halfOpenCalls;
+  private final Ticker ticker;
+
+  @GuardedBy("this")
+  private State state = State.CLOSED;
+
+  /**
+   * Incremented on every state change, so that calls that were let through in an earlier state do
+   * not count in the current one.
+   */
+  @GuardedBy("this")
+  private long generation = 0;
+
+  /** The outcomes of the last calls in the {@link State#CLOSED} state, as a ring buffer. */
+  @GuardedBy("this")
+  private final boolean[] failed;
+
+  @GuardedBy("this")
+  private final boolean[] slow;
+
+  @GuardedBy("this")
+  private int recorded = 0;
+
+  @GuardedBy("this")
+  private int next = 0;
+
+  @GuardedBy("this")
+  private int failures = 0;
+
+  @GuardedBy("this")
+  private int slowCalls = 0;
+
+  @GuardedBy("this")
+  private long openedAtNanos;
+
+  /** The number of probe calls let through, and that succeeded, in the current half-open state. */
+  @GuardedBy("this")
+  private int probesStarted;
+
+  @GuardedBy("this")
+  private int probesSucceeded;
+
+  private KmsCircuitBreaker(Builder builder) {
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.slowCallRateThreshold = builder.slowCallRateThreshold;
+    this.slowCallNanos = builder.slowCallDuration.toNanos();
+    this.minimumCalls = builder.minimumCalls;
+    this.openNanos = builder.openDuration.toNanos();
+    this.halfOpenCalls = builder.halfOpenCalls;
+    this.ticker = builder.ticker;
+    this.failed = new boolean[builder.windowSize];
+    this.slow = new boolean[builder.windowSize];
+  }
+
+  /** Returns the current state. An open breaker whose open duration has passed is half-open. */
+  public synchronized State getState() {
+    if (state == State.OPEN && ticker.read() - openedAtNanos >= openNanos) {
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+
+  /** Sends a blocking request if the breaker lets it through, and records its outcome. */
+  <T, E extends Exception> T call(Call<T, E> call) throws E, GeneralSecurityException {
+    long permit = acquire();
+    long startNanos = ticker.read();
+    T result;
+    try {
+      result = call.call();
+    } catch (Throwable t) {
+      onComplete(permit, startNanos, t);
+      throw t;
+    }
+    onComplete(permit, startNanos, null);
+    return result;
+  }
+
+  /**
+   * Sends an asynchronous request if the breaker lets it through, and records its outcome. If not,
+   * the returned future fails with a {@link CircuitOpenException}.
+   */
+  <T> ApiFuture<T> callAsync(Supplier<ApiFuture<T>> call) {
+    long permit;
+    try {
+      permit = acquire();
+    } catch (CircuitOpenException e) {
+      return ApiFutures.immediateFailedFuture(e);
+    }
+    long startNanos = ticker.read();
+    ApiFuture<T> future;
+    try {
+      future = call.get();
+    } catch (Throwable t) {
+      onComplete(permit, startNanos, t);
+      throw t;
+    }
+    ApiFutures.addCallback(
+        future,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onSuccess(T value) {
+            onComplete(permit, startNanos, null);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            onComplete(permit, startNanos, t);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return future;
+  }
+
+  /**
+   * Lets a call through, or throws if the breaker is open. Returns the generation in which the call
+   * was let through.
+   */
+  private synchronized long acquire() throws CircuitOpenException {
+    if (state == State.OPEN) {
+      long remainingNanos = openedAtNanos + openNanos - ticker.read();
+      if (remainingNanos > 0) {
+        throw new CircuitOpenException(
+            "The circuit breaker for Cloud KMS is open for another "
+                + Duration.ofNanos(remainingNanos)
+                + ".");
+      }
+      transitionTo(State.HALF_OPEN);
+    }
+    if (state == State.HALF_OPEN) {
+      if (probesStarted >= halfOpenCalls) {
+        throw new CircuitOpenException(
+            "The circuit breaker for Cloud KMS is half-open and waiting for probe calls.");
+      }
+      probesStarted++;
+    }
+    return generation;
+  }
+
+  private void onComplete(long permit, long startNanos, @Nullable Throwable t) {
+    boolean isSlow = ticker.read() - startNanos >= slowCallNanos;
+    if (t instanceof CancellationException || t instanceof Error) {
+      onCancelled(permit);
+    } else {
+      onResult(permit, t != null && isFailure(t), isSlow);
+    }
+  }
+
+  private synchronized void onCancelled(long permit) {
+    // A cancelled call, or one that threw an Error such as an OutOfMemoryError, says nothing about
+    // Cloud KMS, but frees its probe slot.
+    if (permit == generation && state == State.HALF_OPEN) {
+      probesStarted--;
+    }
+  }
+
+  private synchronized void onResult(long permit, boolean isFailure, boolean isSlow) {
+    if (permit != generation) {
+      return;
+    }
+    if (state == State.HALF_OPEN) {
+      if (isFailure || isSlow) {
+        transitionTo(State.OPEN);
+      } else if (++probesSucceeded >= halfOpenCalls) {
+        transitionTo(State.CLOSED);
+      }
+      return;
+    }
+    if (recorded == failed.length) {
+      failures -= failed[next] ? 1 : 0;
+      slowCalls -= slow[next] ? 1 : 0;
+    } else {
+      recorded++;
+    }
+    failed[next] = isFailure;
+    slow[next] = isSlow;
+    failures += isFailure ? 1 : 0;
+    slowCalls += isSlow ? 1 : 0;
+    next = (next + 1) % failed.length;
+    if (recorded >= minimumCalls
+        && (failures >= failureRateThreshold * recorded
+            || slowCalls >= slowCallRateThreshold * recorded)) {
+      transitionTo(State.OPEN);
+    }
+  }
+
+  @GuardedBy("this")
+  private void transitionTo(State newState) {
+    state = newState;
+    generation++;
+    switch (newState) {
+      case OPEN:
+        openedAtNanos = ticker.read();
+        break;
+      case HALF_OPEN:
+        probesStarted = 0;
+        probesSucceeded = 0;
+        break;
+      case CLOSED:
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+        break;
+    }
+  }
+
+  /** Returns whether {@code t}, or one of its causes, says that Cloud KMS is unhealthy. */
+  static boolean isFailure(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ApiException) {
+        return FAILURE_CODES.contains(((ApiException) cause).getStatusCode().getCode());
+      }
+      if (cause instanceof HttpResponseException) {
+        return ((HttpResponseException) cause).getStatusCode() >= 500;
+      }
+      if (cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** A Builder to create a {@link KmsCircuitBreaker}. */
+  public static final class Builder {
+    private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+    private Duration slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    private Duration openDuration = DEFAULT_OPEN_DURATION;
+    private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder() {}
+
+    /**
+     * Sets the fraction of failed calls, in (0, 1], at which the breaker opens. Defaults to {@link
+     * #DEFAULT_FAILURE_RATE_THRESHOLD}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setFailureRateThreshold(double failureRateThreshold) {
+      this.failureRateThreshold = failureRateThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of slow calls, in (0, 1], at which the breaker opens. Defaults to {@link
+     * #DEFAULT_SLOW_CALL_RATE_THRESHOLD}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setSlowCallRateThreshold(double slowCallRateThreshold) {
+      this.slowCallRateThreshold = slowCallRateThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the duration from which on a call counts as slow. Defaults to {@link
+     * #DEFAULT_SLOW_CALL_DURATION}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setSlowCallDuration(Duration slowCallDuration) {
+      this.slowCallDuration = slowCallDuration;
+      return this;
+    }
+
+    /**
+     * Sets the number of most recent calls whose outcome is recorded. Defaults to {@link
+     * #DEFAULT_WINDOW_SIZE}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setWindowSize(int windowSize) {
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of calls that must be recorded before the breaker may open. Defaults to
+     * {@link #DEFAULT_MINIMUM_CALLS}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMinimumCalls(int minimumCalls) {
+      this.minimumCalls = minimumCalls;
+      return this;
+    }
+
+    /**
+     * Sets how long the breaker stays open before it lets probe calls through. Defaults to {@link
+     * #DEFAULT_OPEN_DURATION}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setOpenDuration(Duration openDuration) {
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    /**
+     * Sets the number of probe calls in the half-open state that must succeed before the breaker
+     * closes. Defaults to {@link #DEFAULT_HALF_OPEN_CALLS}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setHalfOpenCalls(int halfOpenCalls) {
+      this.halfOpenCalls = halfOpenCalls;
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    Builder setTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    public KmsCircuitBreaker build() throws GeneralSecurityException {
+      if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+        throw new GeneralSecurityException(
+            "The failure rate threshold must be in (0, 1]: " + failureRateThreshold);
+      }
+      if (!(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1)) {
+        throw new GeneralSecurityException(
+            "The slow call rate threshold must be in (0, 1]: " + slowCallRateThreshold);
+      }
+      if (slowCallDuration.isNegative() || slowCallDuration.isZero()) {
+        throw new GeneralSecurityException("The slow call duration must be positive.");
+      }
+      if (windowSize <= 0) {
+        throw new GeneralSecurityException("The window size must be positive.");
+      }
+      if (minimumCalls <= 0 || minimumCalls > windowSize) {
+        throw new GeneralSecurityException(
+            "The minimum number of calls must be positive and at most the window size.");
+      }
+      if (openDuration.isNegative()) {
+        throw new GeneralSecurityException("The open duration must not be negative.");
+      }
+      if (halfOpenCalls <= 0) {
+        throw new GeneralSecurityException("The number of half-open calls must be positive.");
+      }
+      return new KmsCircuitBreaker(this);
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
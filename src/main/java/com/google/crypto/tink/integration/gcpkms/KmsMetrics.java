@@ -0,0 +1,150 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.gax.rpc.StatusCode;
+import com.google.crypto.tink.integration.gcpkms.internal.LatencyHistogram;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link KmsMetricsListener} that keeps latency histograms and counters per key and operation in
+ * memory.
+ *
+ * <p>All counters are {@link LongAdder}s, so that recording from many threads at once does not
+ * contend. The same instance may be set on several primitives.
+ */
+public final class KmsMetrics implements KmsMetricsListener {
+
+  private final ConcurrentHashMap<String, Map<Operation, OperationMetrics>> metrics =
+      new ConcurrentHashMap<>();
+
+  private KmsMetrics() {}
+
+  public static KmsMetrics create() {
+    return new KmsMetrics();
+  }
+
+  @Override
+  public void recordLatency(String keyName, Operation operation, Phase phase, long nanos) {
+    metricsFor(keyName, operation).latencies.get(phase).record(nanos);
+  }
+
+  @Override
+  public void recordStatus(String keyName, Operation operation, StatusCode.Code code) {
+    metricsFor(keyName, operation).statuses.get(code).increment();
+  }
+
+  @Override
+  public void recordIntegrityFailure(
+      String keyName, Operation operation, IntegrityFailure failure) {
+    metricsFor(keyName, operation).integrityFailures.get(failure).increment();
+  }
+
+  /** Returns the number of requests for the key and operation that completed with {@code code}. */
+  public long getStatusCount(String keyName, Operation operation, StatusCode.Code code) {
+    OperationMetrics operationMetrics = find(keyName, operation);
+    return (operationMetrics == null) ? 0 : operationMetrics.statuses.get(code).sum();
+  }
+
+  /** Returns the number of responses for the key and operation that failed the given check. */
+  public long getIntegrityFailureCount(
+      String keyName, Operation operation, IntegrityFailure failure) {
+    OperationMetrics operationMetrics = find(keyName, operation);
+    return (operationMetrics == null) ? 0 : operationMetrics.integrityFailures.get(failure).sum();
+  }
+
+  /** Returns the number of recorded latencies of the phase of operations for the key. */
+  public long getLatencyCount(String keyName, Operation operation, Phase phase) {
+    LatencyHistogram histogram = findHistogram(keyName, operation, phase);
+    return (histogram == null) ? 0 : histogram.count();
+  }
+
+  /** Returns the sum of the recorded latencies of the phase of operations for the key. */
+  public Duration getTotalLatency(String keyName, Operation operation, Phase phase) {
+    LatencyHistogram histogram = findHistogram(keyName, operation, phase);
+    return (histogram == null) ? Duration.ZERO : Duration.ofNanos(histogram.totalNanos());
+  }
+
+  /**
+   * Returns the given percentile, in (0, 100], of the recorded latencies of the phase of operations
+   * for the key, or zero if none were recorded. The result is accurate to within 12.5%, and is
+   * rounded up.
+   */
+  public Duration getLatencyPercentile(
+      String keyName, Operation operation, Phase phase, double percentile) {
+    if (!(percentile > 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("percentile must be in (0, 100]: " + percentile);
+    }
+    LatencyHistogram histogram = findHistogram(keyName, operation, phase);
+    return (histogram == null)
+        ? Duration.ZERO
+        : Duration.ofNanos(histogram.percentileNanos(percentile));
+  }
+
+  private OperationMetrics metricsFor(String keyName, Operation operation) {
+    Map<Operation, OperationMetrics> keyMetrics = metrics.get(keyName);
+    if (keyMetrics == null) {
+      keyMetrics = metrics.computeIfAbsent(keyName, unused -> newKeyMetrics());
+    }
+    return keyMetrics.get(operation);
+  }
+
+  @Nullable
+  private OperationMetrics find(String keyName, Operation operation) {
+    Map<Operation, OperationMetrics> keyMetrics = metrics.get(keyName);
+    return (keyMetrics == null) ? null : keyMetrics.get(operation);
+  }
+
+  @Nullable
+  private LatencyHistogram findHistogram(String keyName, Operation operation, Phase phase) {
+    OperationMetrics operationMetrics = find(keyName, operation);
+    return (operationMetrics == null) ? null : operationMetrics.latencies.get(phase);
+  }
+
+  /** The maps are filled up front and not modified afterwards, so they can be read concurrently. */
+  private static Map<Operation, OperationMetrics> newKeyMetrics() {
+    Map<Operation, OperationMetrics> keyMetrics = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      keyMetrics.put(operation, new OperationMetrics());
+    }
+    return keyMetrics;
+  }
+
+  private static final class OperationMetrics {
+    final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    final Map<StatusCode.Code, LongAdder> statuses = new EnumMap<>(StatusCode.Code.class);
+    final Map<IntegrityFailure, LongAdder> integrityFailures =
+        new EnumMap<>(IntegrityFailure.class);
+
+    OperationMetrics() {
+      for (Phase phase : Phase.values()) {
+        latencies.put(phase, new LatencyHistogram());
+      }
+      for (StatusCode.Code code : StatusCode.Code.values()) {
+        statuses.put(code, new LongAdder());
+      }
+      for (IntegrityFailure failure : IntegrityFailure.values()) {
+        integrityFailures.put(failure, new LongAdder());
+      }
+    }
+  }
+}
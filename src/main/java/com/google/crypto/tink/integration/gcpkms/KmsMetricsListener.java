@@ -0,0 +1,89 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.gax.rpc.StatusCode;
+
+/**
+ * Receives metrics about the requests that the primitives of this package send to Cloud KMS.
+ *
+ * <p>A listener is set with {@code setMetricsListener} on the builders of {@link GcpKmsAead},
+ * {@link GcpKmsMac} and {@link GcpKmsPublicKeySign}. {@link KmsMetrics} is a listener that keeps
+ * the metrics in memory. To export metrics to a monitoring system, such as Micrometer or
+ * OpenTelemetry, implement this interface and record each event to a timer or counter of that
+ * system, tagged with the key name and the operation.
+ *
+ * <p>The methods are called on the threads that run the operations, including gRPC threads, while
+ * the operations are in progress. They must be thread-safe, fast and must not block or throw.
+ * Methods that are not overridden ignore their events.
+ */
+public interface KmsMetricsListener {
+
+  /** An operation of a primitive. */
+  enum Operation {
+    ENCRYPT,
+    DECRYPT,
+    MAC_SIGN,
+    MAC_VERIFY,
+    ASYMMETRIC_SIGN,
+    /** Fetching the public key of a signing key. Only reported to a {@link KmsTracer}. */
+    GET_PUBLIC_KEY,
+  }
+
+  /** A phase of an operation. */
+  enum Phase {
+    /** Computing the CRC32C checksums of the request. */
+    CHECKSUM,
+    /** Building the request, including computing the digest to sign. */
+    SERIALIZATION,
+    /**
+     * Sending the request and waiting for the response, including the time spent waiting for the
+     * rate limiter and in retries and hedged requests.
+     */
+    RPC,
+    /** Checking the integrity of the response and extracting the result. */
+    VALIDATION,
+  }
+
+  /** A failed integrity check of a response. */
+  enum IntegrityFailure {
+    /** Cloud KMS could not verify the checksum of the request, or the response has a bad one. */
+    CRC32C_MISMATCH,
+    /** The response is for a different key than the request. */
+    KEY_NAME_MISMATCH,
+  }
+
+  /**
+   * Called when a phase of an operation for the key {@code keyName} ends, with its duration in
+   * nanoseconds. The phases before {@link Phase#RPC} are reported when the request is sent; {@link
+   * Phase#VALIDATION} is only reported if the response passes the checks.
+   */
+  default void recordLatency(String keyName, Operation operation, Phase phase, long nanos) {}
+
+  /**
+   * Called when a request for the key {@code keyName} completes, with the status code of the
+   * response. HTTP status codes are mapped to the equivalent gRPC codes and I/O errors are reported
+   * as {@code UNAVAILABLE}. Requests that are rejected by a {@link KmsRateLimiter} are reported as
+   * {@code RESOURCE_EXHAUSTED}, and those rejected by a {@link KmsCircuitBreaker} as {@code
+   * UNAVAILABLE}.
+   */
+  default void recordStatus(String keyName, Operation operation, StatusCode.Code code) {}
+
+  /** Called when a response for the key {@code keyName} fails an integrity check. */
+  default void recordIntegrityFailure(
+      String keyName, Operation operation, IntegrityFailure failure) {}
+}
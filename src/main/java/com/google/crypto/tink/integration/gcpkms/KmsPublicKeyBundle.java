@@ -0,0 +1,329 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.PublicKey;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * A bundle of public keys of asymmetric keys in Cloud KMS, to build verifiers without contacting
+ * Cloud KMS, e.g. on the cold start of a serverless verifier.
+ *
+ * <p>A bundle is created ahead of time with {@link #fetch}, which fetches the public keys from
+ * Cloud KMS in parallel, and written to a file with {@link #write}. {@link #load} memory-maps such
+ * a file and only reads the key names; each public key is checked and parsed when its verifier is
+ * first requested with {@link #getVerifier}.
+ *
+ * <p>The file format is big-endian: the magic bytes {@code TKPB}, a format version byte ({@code
+ * 0x01}) and the number of entries as a 4-byte integer, followed by the entries. Each entry
+ * consists of
+ *
+ * <ul>
+ *   <li>the length of the CryptoKeyVersion name (2 bytes) and the name in UTF-8,
+ *   <li>the number of its {@code CryptoKeyVersionAlgorithm} (4 bytes),
+ *   <li>the length of the public key (4 bytes) and the public key as returned by {@code
+ *       GetPublicKey}, i.e. in PEM format, or in NIST_PQC format for SLH-DSA keys, and
+ *   <li>the CRC32C checksum of the public key (4 bytes), as computed by Cloud KMS.
+ * </ul>
+ *
+ * <p>This class is thread-safe.
+ */
+public final class KmsPublicKeyBundle {
+
+  /** The default number of parallel GetPublicKey requests of {@link #fetch}. */
+  public static final int DEFAULT_PARALLELISM = 16;
+
+  private static final byte[] MAGIC = {'T', 'K', 'P', 'B'};
+  private static final byte FORMAT_VERSION = 0x01;
+
+  /** The location of an entry in the bundle. */
+  private static final class Entry {
+    final int algorithm;
+    final int keyOffset;
+    final int keyLength;
+    final int crc32c;
+
+    Entry(int algorithm, int keyOffset, int keyLength, int crc32c) {
+      this.algorithm = algorithm;
+      this.keyOffset = keyOffset;
+      this.keyLength = keyLength;
+      this.crc32c = crc32c;
+    }
+  }
+
+  /** The serialized bundle. Only read through absolute methods, so it is safe to share. */
+  private final ByteBuffer buffer;
+
+  private final Map<String, Entry> entries;
+  private final ConcurrentHashMap<String, PublicKeyVerify> verifiers = new ConcurrentHashMap<>();
+
+  private KmsPublicKeyBundle(ByteBuffer buffer, Map<String, Entry> entries) {
+    this.buffer = buffer;
+    this.entries = entries;
+  }
+
+  /**
+   * Fetches the public keys of the CryptoKeyVersions {@code keyNames} from Cloud KMS, with up to
+   * {@link #DEFAULT_PARALLELISM} requests in parallel.
+   */
+  public static KmsPublicKeyBundle fetch(
+      KeyManagementServiceClient kmsClient, Collection<String> keyNames)
+      throws GeneralSecurityException {
+    return fetch(kmsClient, keyNames, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * Fetches the public keys of the CryptoKeyVersions {@code keyNames} from Cloud KMS, with up to
+   * {@code parallelism} requests in parallel.
+   *
+   * @throws GeneralSecurityException if {@code parallelism} is not positive, or if fetching any of
+   *     the public keys fails
+   */
+  public static KmsPublicKeyBundle fetch(
+      KeyManagementServiceClient kmsClient, Collection<String> keyNames, int parallelism)
+      throws GeneralSecurityException {
+    if (parallelism <= 0) {
+      throw new GeneralSecurityException("The parallelism must be positive.");
+    }
+    Set<String> uniqueNames = new LinkedHashSet<>(keyNames);
+    for (String keyName : uniqueNames) {
+      GcpKmsUtil.validateKeyName(keyName);
+    }
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(parallelism, Math.max(1, uniqueNames.size())),
+            runnable -> {
+              Thread thread = new Thread(runnable, "KmsPublicKeyBundle");
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      List<Future<PublicKey>> futures = new ArrayList<>();
+      for (String keyName : uniqueNames) {
+        futures.add(executor.submit(() -> GcpKmsUtil.fetchPublicKey(kmsClient, keyName)));
+      }
+      List<PublicKey> publicKeys = new ArrayList<>();
+      for (Future<PublicKey> future : futures) {
+        publicKeys.add(getUninterruptibly(future));
+      }
+      return parse(serialize(publicKeys));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static PublicKey getUninterruptibly(Future<PublicKey> future)
+      throws GeneralSecurityException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof GeneralSecurityException) {
+            throw (GeneralSecurityException) e.getCause();
+          }
+          throw new GeneralSecurityException("Fetching a public key failed.", e.getCause());
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static byte[] serialize(List<PublicKey> publicKeys) throws GeneralSecurityException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.write(MAGIC);
+      out.writeByte(FORMAT_VERSION);
+      out.writeInt(publicKeys.size());
+      for (PublicKey publicKey : publicKeys) {
+        byte[] name = publicKey.getName().getBytes(UTF_8);
+        if (name.length > 0xffff) {
+          throw new GeneralSecurityException("The key name is too long: " + publicKey.getName());
+        }
+        out.writeShort(name.length);
+        out.write(name);
+        out.writeInt(publicKey.getAlgorithmValue());
+        out.writeInt(publicKey.getPublicKey().getData().size());
+        publicKey.getPublicKey().getData().writeTo(out);
+        out.writeInt((int) publicKey.getPublicKey().getCrc32CChecksum().getValue());
+      }
+    } catch (IOException e) {
+      throw new GeneralSecurityException("Serializing the bundle failed.", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Parses a serialized bundle. The public keys are only checked and parsed by {@link
+   * #getVerifier}.
+   */
+  public static KmsPublicKeyBundle parse(byte[] bundle) throws GeneralSecurityException {
+    return parse(ByteBuffer.wrap(bundle.clone()));
+  }
+
+  /**
+   * Memory-maps the bundle file {@code path} and reads its key names. The public keys are only
+   * checked and parsed by {@link #getVerifier}.
+   */
+  public static KmsPublicKeyBundle load(Path path) throws IOException, GeneralSecurityException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new GeneralSecurityException("The bundle is too large: " + size + " bytes");
+      }
+      // The mapping stays valid after the channel is closed.
+      return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  private static KmsPublicKeyBundle parse(ByteBuffer buffer) throws GeneralSecurityException {
+    ByteBuffer reader = buffer.duplicate();
+    try {
+      byte[] magic = new byte[MAGIC.length];
+      reader.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new GeneralSecurityException("Not a public key bundle.");
+      }
+      byte formatVersion = reader.get();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new GeneralSecurityException("Unsupported bundle format version: " + formatVersion);
+      }
+      int count = reader.getInt();
+      if (count < 0) {
+        throw new GeneralSecurityException("Invalid number of entries: " + count);
+      }
+      Map<String, Entry> entries = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        byte[] name = new byte[Short.toUnsignedInt(reader.getShort())];
+        reader.get(name);
+        int algorithm = reader.getInt();
+        int keyLength = reader.getInt();
+        if (keyLength < 0 || keyLength > reader.remaining()) {
+          throw new GeneralSecurityException("The bundle is truncated.");
+        }
+        int keyOffset = reader.position();
+        reader.position(keyOffset + keyLength);
+        int crc32c = reader.getInt();
+        String keyName = new String(name, UTF_8);
+        if (entries.put(keyName, new Entry(algorithm, keyOffset, keyLength, crc32c)) != null) {
+          throw new GeneralSecurityException("Duplicate key in the bundle: " + keyName);
+        }
+      }
+      if (reader.hasRemaining()) {
+        throw new GeneralSecurityException("Trailing data after the last entry.");
+      }
+      return new KmsPublicKeyBundle(buffer, Collections.unmodifiableMap(entries));
+    } catch (BufferUnderflowException e) {
+      throw new GeneralSecurityException("The bundle is truncated.", e);
+    }
+  }
+
+  /** Returns the names of the CryptoKeyVersions in the bundle, in bundle order. */
+  public Set<String> keyNames() {
+    return entries.keySet();
+  }
+
+  /**
+   * Returns a verifier for the CryptoKeyVersion {@code keyName}. The verifier is built on the first
+   * call for a key, after checking the CRC32C checksum of its public key, and reused afterwards.
+   *
+   * @throws GeneralSecurityException if the key is not in the bundle, or its public key is
+   *     corrupted or not supported
+   */
+  public PublicKeyVerify getVerifier(String keyName) throws GeneralSecurityException {
+    PublicKeyVerify verifier = verifiers.get(keyName);
+    if (verifier != null) {
+      return verifier;
+    }
+    Entry entry = entries.get(keyName);
+    if (entry == null) {
+      throw new GeneralSecurityException("The key is not in the bundle: " + keyName);
+    }
+    // Concurrent first calls may both build a verifier; they are equivalent.
+    verifier = buildVerifier(keyName, entry);
+    PublicKeyVerify previous = verifiers.putIfAbsent(keyName, verifier);
+    return (previous != null) ? previous : verifier;
+  }
+
+  private PublicKeyVerify buildVerifier(String keyName, Entry entry)
+      throws GeneralSecurityException {
+    ByteBuffer key = buffer.duplicate();
+    key.position(entry.keyOffset).limit(entry.keyOffset + entry.keyLength);
+    CRC32C crc32c = new CRC32C();
+    crc32c.update(key.duplicate());
+    if ((int) crc32c.getValue() != entry.crc32c) {
+      throw new GeneralSecurityException("The public key of " + keyName + " is corrupted.");
+    }
+    CryptoKeyVersionAlgorithm algorithm = CryptoKeyVersionAlgorithm.forNumber(entry.algorithm);
+    if (algorithm == null) {
+      throw new GeneralSecurityException("Unknown algorithm " + entry.algorithm + " of " + keyName);
+    }
+    byte[] publicKey = new byte[entry.keyLength];
+    key.get(publicKey);
+    return GcpKmsPublicKeyVerify.builder().setPublicKey(publicKey).setAlgorithm(algorithm).build();
+  }
+
+  /** Returns the serialized bundle. */
+  public byte[] toByteArray() {
+    ByteBuffer copy = buffer.duplicate();
+    copy.position(0);
+    byte[] bytes = new byte[copy.remaining()];
+    copy.get(bytes);
+    return bytes;
+  }
+
+  /** Writes the serialized bundle to {@code path}, replacing any existing file. */
+  public void write(Path path) throws IOException {
+    Files.write(path, toByteArray());
+  }
+}
@@ -0,0 +1,270 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.cloud.kms.v1.PublicKey;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
+
+/**
+ * A cache for the public keys of asymmetric keys in Cloud KMS, which can be shared by the builders
+ * of {@link GcpKmsPublicKeySign} and {@link GcpKmsPublicKeyVerify} so that building a signer or
+ * verifier for the same key again does not send a {@code GetPublicKey} request.
+ *
+ * <p>Entries are keyed by the name of the CryptoKeyVersion. Only public keys whose name and CRC32C
+ * checksum have been verified are cached, and the checksum is verified again whenever an entry is
+ * used. An entry that is used at least {@link Builder#setRefreshAfter} after it was fetched is
+ * refreshed in the background, while the current entry is still returned; an entry is removed
+ * {@link Builder#setExpireAfter} after it was fetched. If a refresh fails, the current entry is
+ * kept until it expires.
+ *
+ * <p>The cache also remembers, per CryptoKey, whether its public keys are only available in {@code
+ * NIST_PQC} format, so that the failing {@code PEM} request is not sent again for it.
+ *
+ * <p>Refreshes send the request the same way as the builder that first fetched the entry: with its
+ * {@code KeyManagementServiceClient}, within its {@link KmsRateLimiter} and in a span of its {@link
+ * KmsTracer}, if any. Builders that later use the entry with another client, rate limiter or tracer
+ * do not change this, so all clients that use a cache should connect to the same Cloud KMS. {@link
+ * #shared} returns a cache with the default settings that is shared within the process.
+ */
+public final class KmsPublicKeyCache {
+
+  /** Default for {@link Builder#setMaximumSize}. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
+  /** Default for {@link Builder#setRefreshAfter}. */
+  public static final Duration DEFAULT_REFRESH_AFTER = Duration.ofHours(1);
+
+  /** Default for {@link Builder#setExpireAfter}. */
+  public static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofHours(6);
+
+  private static final class SharedHolder {
+    static final KmsPublicKeyCache SHARED = new KmsPublicKeyCache(builder());
+  }
+
+  private static final class ExecutorHolder {
+    static final ExecutorService EXECUTOR =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "KmsPublicKeyCache");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Fetches a public key from Cloud KMS. */
+  interface Fetcher {
+    /** Fetches the key, requesting {@code NIST_PQC} format directly if {@code format} says so. */
+    PublicKey fetch(PublicKey.PublicKeyFormat format) throws GeneralSecurityException;
+  }
+
+  /** Identifies an entry by the key name, and carries the fetcher with which to refresh it. */
+  private static final class CacheKey {
+    final String keyName;
+    @Nullable final Fetcher fetcher;
+
+    CacheKey(String keyName, @Nullable Fetcher fetcher) {
+      this.keyName = keyName;
+      this.fetcher = fetcher;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return (o instanceof CacheKey) && keyName.equals(((CacheKey) o).keyName);
+    }
+
+    @Override
+    public int hashCode() {
+      return keyName.hashCode();
+    }
+  }
+
+  private final LoadingCache<CacheKey, PublicKey> publicKeys;
+
+  /** The CryptoKeys whose public keys are only available in NIST_PQC format. */
+  private final Cache<String, Boolean> nistPqcOnlyKeys;
+
+  private KmsPublicKeyCache(Builder builder) {
+    this.publicKeys =
+        CacheBuilder.newBuilder()
+            .maximumSize(builder.maximumSize)
+            .refreshAfterWrite(builder.refreshAfter)
+            .expireAfterWrite(builder.expireAfter)
+            .ticker(builder.ticker)
+            .build(
+                CacheLoader.asyncReloading(
+                    new CacheLoader<CacheKey, PublicKey>() {
+                      @Override
+                      public PublicKey load(CacheKey key) throws GeneralSecurityException {
+                        return fetch(key.keyName, key.fetcher);
+                      }
+                    },
+                    builder.refreshExecutor));
+    this.nistPqcOnlyKeys = CacheBuilder.newBuilder().maximumSize(builder.maximumSize).build();
+  }
+
+  /** Returns the cache with the default settings that is shared within the process. */
+  public static KmsPublicKeyCache shared() {
+    return SharedHolder.SHARED;
+  }
+
+  /**
+   * Returns the public key of {@code keyName}, and uses {@code fetcher} to fetch it from Cloud KMS
+   * if it is not cached. A new entry keeps {@code fetcher} to refresh it.
+   */
+  PublicKey get(String keyName, Fetcher fetcher) throws GeneralSecurityException {
+    CacheKey key = new CacheKey(keyName, fetcher);
+    // getIfPresent refreshes a stale entry in the background with the cache loader, whereas get
+    // with a Callable would refresh it synchronously with the Callable.
+    PublicKey publicKey = publicKeys.getIfPresent(key);
+    try {
+      if (publicKey == null) {
+        publicKey = publicKeys.get(key, () -> fetch(keyName, fetcher));
+      }
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      if (e.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) e.getCause();
+      }
+      throw new GeneralSecurityException("Fetching the public key failed.", e.getCause());
+    }
+    try {
+      GcpKmsUtil.verifyPublicKeyChecksum(publicKey);
+    } catch (GeneralSecurityException e) {
+      publicKeys.invalidate(key);
+      throw e;
+    }
+    return publicKey;
+  }
+
+  /** Removes the public key of {@code keyName}, if it is cached. */
+  public void invalidate(String keyName) {
+    // The fetcher is not part of the identity of a key.
+    publicKeys.invalidate(new CacheKey(keyName, null));
+  }
+
+  /** Removes all cached public keys. */
+  public void invalidateAll() {
+    publicKeys.invalidateAll();
+  }
+
+  /** Returns the approximate number of cached public keys. */
+  public long size() {
+    return publicKeys.size();
+  }
+
+  /** Fetches with {@code fetcher} in the remembered format, and remembers the format it got. */
+  private PublicKey fetch(String keyName, Fetcher fetcher) throws GeneralSecurityException {
+    String cryptoKeyName = cryptoKeyName(keyName);
+    PublicKey.PublicKeyFormat format =
+        (nistPqcOnlyKeys.getIfPresent(cryptoKeyName) != null)
+            ? PublicKey.PublicKeyFormat.NIST_PQC
+            : PublicKey.PublicKeyFormat.PEM;
+    PublicKey publicKey = fetcher.fetch(format);
+    if (publicKey.getPublicKeyFormat() == PublicKey.PublicKeyFormat.NIST_PQC) {
+      nistPqcOnlyKeys.put(cryptoKeyName, true);
+    }
+    return publicKey;
+  }
+
+  /** Returns the name of the CryptoKey of the CryptoKeyVersion {@code keyName}. */
+  private static String cryptoKeyName(String keyName) {
+    int index = keyName.lastIndexOf("/cryptoKeyVersions/");
+    return (index < 0) ? keyName : keyName.substring(0, index);
+  }
+
+  /** A Builder to create a {@link KmsPublicKeyCache}. */
+  public static final class Builder {
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private Duration refreshAfter = DEFAULT_REFRESH_AFTER;
+    private Duration expireAfter = DEFAULT_EXPIRE_AFTER;
+    private Ticker ticker = Ticker.systemTicker();
+    private Executor refreshExecutor = ExecutorHolder.EXECUTOR;
+
+    private Builder() {}
+
+    /** Sets the maximum number of cached public keys. Defaults to {@link #DEFAULT_MAXIMUM_SIZE}. */
+    @CanIgnoreReturnValue
+    public Builder setMaximumSize(long maximumSize) {
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Sets the age from which on an entry is refreshed in the background when it is used. Defaults
+     * to {@link #DEFAULT_REFRESH_AFTER}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRefreshAfter(Duration refreshAfter) {
+      this.refreshAfter = refreshAfter;
+      return this;
+    }
+
+    /**
+     * Sets the age at which an entry is removed, unless it has been refreshed. Defaults to {@link
+     * #DEFAULT_EXPIRE_AFTER}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setExpireAfter(Duration expireAfter) {
+      this.expireAfter = expireAfter;
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    Builder setTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    Builder setRefreshExecutor(Executor refreshExecutor) {
+      this.refreshExecutor = refreshExecutor;
+      return this;
+    }
+
+    public KmsPublicKeyCache build() throws GeneralSecurityException {
+      if (maximumSize <= 0) {
+        throw new GeneralSecurityException("The maximum size must be positive.");
+      }
+      if (refreshAfter.isNegative() || refreshAfter.isZero()) {
+        throw new GeneralSecurityException("The refresh duration must be positive.");
+      }
+      if (expireAfter.compareTo(refreshAfter) <= 0) {
+        throw new GeneralSecurityException(
+            "The expiry duration must be longer than the refresh duration.");
+      }
+      return new KmsPublicKeyCache(this);
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
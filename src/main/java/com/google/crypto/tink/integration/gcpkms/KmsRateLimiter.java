@@ -0,0 +1,337 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.integration.gcpkms.internal.AimdTokenBucket;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * A client-side rate limiter for requests to Cloud KMS, which can be shared by several primitives.
+ *
+ * <p>Cloud KMS enforces separate <a href="https://cloud.google.com/kms/quotas">quotas</a> for
+ * cryptographic requests and for read requests such as {@code GetPublicKey}, so this limiter has a
+ * token bucket for each {@link Quota}. The rate of a bucket starts at the configured maximum and
+ * adapts to the quota that is actually available: it is halved whenever Cloud KMS rejects a request
+ * with {@code RESOURCE_EXHAUSTED} (HTTP status 429), and grows back slowly while requests succeed.
+ *
+ * <p>In {@link Mode#QUEUE} mode, requests above the rate wait until a token is available, or fail
+ * if that takes longer than {@link Builder#setMaxQueueTime}. In {@link Mode#FAIL_FAST} mode, they
+ * fail immediately. Either way, they fail with a {@link RateLimitExceededException}.
+ *
+ * <p>Hedged requests, see {@link HedgingPolicy}, do not take tokens.
+ */
+public final class KmsRateLimiter {
+
+  /** The Cloud KMS quota that a request counts against. */
+  public enum Quota {
+    /** Cryptographic requests, such as encrypt, decrypt, MAC and sign. */
+    CRYPTO,
+    /** Read requests, such as {@code GetPublicKey}. */
+    READ,
+  }
+
+  /** What happens to requests above the rate. */
+  public enum Mode {
+    /** Requests wait until they may be sent. */
+    QUEUE,
+    /** Requests fail immediately. */
+    FAIL_FAST,
+  }
+
+  /** Thrown if a request is rejected by the client-side rate limiter. */
+  public static final class RateLimitExceededException extends GeneralSecurityException {
+    private static final long serialVersionUID = 1L;
+
+    RateLimitExceededException(String message) {
+      super(message);
+    }
+  }
+
+  /** Default for {@link Builder#setMaxQueueTime}. */
+  public static final Duration DEFAULT_MAX_QUEUE_TIME = Duration.ofSeconds(30);
+
+  /** The rate is never decreased below this fraction of the configured maximum. */
+  private static final double MIN_RATE_FRACTION = 0.01;
+
+  private static final class SchedulerHolder {
+    static final ScheduledExecutorService SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "KmsRateLimiter");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** A request to Cloud KMS. */
+  interface Call<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  @Nullable private final AimdTokenBucket cryptoBucket;
+  @Nullable private final AimdTokenBucket readBucket;
+  private final Mode mode;
+  private final long maxQueueTimeNanos;
+
+  private KmsRateLimiter(
+      @Nullable AimdTokenBucket cryptoBucket,
+      @Nullable AimdTokenBucket readBucket,
+      Mode mode,
+      Duration maxQueueTime) {
+    this.cryptoBucket = cryptoBucket;
+    this.readBucket = readBucket;
+    this.mode = mode;
+    this.maxQueueTimeNanos = maxQueueTime.toNanos();
+  }
+
+  /**
+   * Returns the current rate for {@code quota} in requests per second, or {@link
+   * Double#POSITIVE_INFINITY} if requests against it are not limited.
+   */
+  public double getRate(Quota quota) {
+    AimdTokenBucket bucket = bucket(quota);
+    return (bucket == null) ? Double.POSITIVE_INFINITY : bucket.rate();
+  }
+
+  /** Sends a blocking request once the rate allows it, and adapts the rate to its outcome. */
+  <T, E extends Exception> T call(Quota quota, Call<T, E> call) throws E, GeneralSecurityException {
+    AimdTokenBucket bucket = bucket(quota);
+    if (bucket == null) {
+      return call.call();
+    }
+    long waitNanos = reserve(bucket, quota);
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new GeneralSecurityException("Interrupted while waiting for the rate limiter.", e);
+      }
+    }
+    T result;
+    try {
+      result = call.call();
+    } catch (Exception e) {
+      onFailure(bucket, e);
+      throw e;
+    }
+    bucket.onSuccess();
+    return result;
+  }
+
+  /**
+   * Sends an asynchronous request once the rate allows it, and adapts the rate to its outcome.
+   *
+   * <p>The calling thread is never blocked. Cancelling the returned future cancels the request, or
+   * prevents it from being sent.
+   */
+  <T> ApiFuture<T> callAsync(Quota quota, Supplier<ApiFuture<T>> call) {
+    AimdTokenBucket bucket = bucket(quota);
+    if (bucket == null) {
+      return call.get();
+    }
+    long waitNanos;
+    try {
+      waitNanos = reserve(bucket, quota);
+    } catch (RateLimitExceededException e) {
+      return ApiFutures.immediateFailedFuture(e);
+    }
+    SettableApiFuture<T> result = SettableApiFuture.create();
+    Runnable start =
+        () -> {
+          if (result.isDone()) {
+            return;
+          }
+          ApiFuture<T> future;
+          try {
+            future = call.get();
+          } catch (RuntimeException e) {
+            onFailure(bucket, e);
+            result.setException(e);
+            return;
+          }
+          result.addListener(
+              () -> {
+                if (result.isCancelled()) {
+                  future.cancel(true);
+                }
+              },
+              MoreExecutors.directExecutor());
+          ApiFutures.addCallback(
+              future,
+              new ApiFutureCallback<T>() {
+                @Override
+                public void onSuccess(T value) {
+                  bucket.onSuccess();
+                  result.set(value);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                  KmsRateLimiter.onFailure(bucket, t);
+                  result.setException(t);
+                }
+              },
+              MoreExecutors.directExecutor());
+        };
+    if (waitNanos == 0) {
+      start.run();
+    } else {
+      ScheduledFuture<?> scheduled =
+          SchedulerHolder.SCHEDULER.schedule(start, waitNanos, TimeUnit.NANOSECONDS);
+      result.addListener(() -> scheduled.cancel(false), MoreExecutors.directExecutor());
+    }
+    return result;
+  }
+
+  @Nullable
+  private AimdTokenBucket bucket(Quota quota) {
+    return (quota == Quota.CRYPTO) ? cryptoBucket : readBucket;
+  }
+
+  private long reserve(AimdTokenBucket bucket, Quota quota) throws RateLimitExceededException {
+    long waitNanos = bucket.reserve((mode == Mode.FAIL_FAST) ? 0 : maxQueueTimeNanos);
+    if (waitNanos < 0) {
+      throw new RateLimitExceededException(
+          "The client-side rate limit for "
+              + quota
+              + " requests to Cloud KMS ("
+              + bucket.rate()
+              + " per second) is exceeded.");
+    }
+    return waitNanos;
+  }
+
+  private static void onFailure(AimdTokenBucket bucket, Throwable t) {
+    if (isQuotaExceeded(t)) {
+      bucket.onQuotaExceeded();
+    } else {
+      bucket.onSuccess();
+    }
+  }
+
+  /** Returns whether {@code t}, or one of its causes, says that a Cloud KMS quota is exhausted. */
+  static boolean isQuotaExceeded(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ApiException
+          && ((ApiException) cause).getStatusCode().getCode()
+              == StatusCode.Code.RESOURCE_EXHAUSTED) {
+        return true;
+      }
+      if (cause instanceof HttpResponseException
+          && ((HttpResponseException) cause).getStatusCode() == 429) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** A Builder to create a {@link KmsRateLimiter}. */
+  public static final class Builder {
+    private double cryptoRequestsPerSecond = Double.POSITIVE_INFINITY;
+    private double readRequestsPerSecond = Double.POSITIVE_INFINITY;
+    private Mode mode = Mode.QUEUE;
+    private Duration maxQueueTime = DEFAULT_MAX_QUEUE_TIME;
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder() {}
+
+    /**
+     * Sets the maximum rate of {@link Quota#CRYPTO} requests per second, usually the quota of the
+     * project in the region. By default, these requests are not limited.
+     */
+    @CanIgnoreReturnValue
+    public Builder setCryptoRequestsPerSecond(double cryptoRequestsPerSecond) {
+      this.cryptoRequestsPerSecond = cryptoRequestsPerSecond;
+      return this;
+    }
+
+    /**
+     * Sets the maximum rate of {@link Quota#READ} requests per second. By default, these requests
+     * are not limited.
+     */
+    @CanIgnoreReturnValue
+    public Builder setReadRequestsPerSecond(double readRequestsPerSecond) {
+      this.readRequestsPerSecond = readRequestsPerSecond;
+      return this;
+    }
+
+    /** Sets what happens to requests above the rate. Defaults to {@link Mode#QUEUE}. */
+    @CanIgnoreReturnValue
+    public Builder setMode(Mode mode) {
+      this.mode = mode;
+      return this;
+    }
+
+    /**
+     * Sets how long a request may wait in {@link Mode#QUEUE} mode. Defaults to {@link
+     * #DEFAULT_MAX_QUEUE_TIME}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxQueueTime(Duration maxQueueTime) {
+      this.maxQueueTime = maxQueueTime;
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    Builder setTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    public KmsRateLimiter build() throws GeneralSecurityException {
+      if (maxQueueTime.isNegative()) {
+        throw new GeneralSecurityException("The maximum queue time must not be negative.");
+      }
+      return new KmsRateLimiter(
+          newBucket(cryptoRequestsPerSecond), newBucket(readRequestsPerSecond), mode, maxQueueTime);
+    }
+
+    @Nullable
+    private AimdTokenBucket newBucket(double requestsPerSecond) throws GeneralSecurityException {
+      if (requestsPerSecond == Double.POSITIVE_INFINITY) {
+        return null;
+      }
+      if (!(requestsPerSecond > 0)) {
+        throw new GeneralSecurityException(
+            "The number of requests per second must be positive: " + requestsPerSecond);
+      }
+      return new AimdTokenBucket(requestsPerSecond, requestsPerSecond * MIN_RATE_FRACTION, ticker);
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
@@ -0,0 +1,69 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.gax.rpc.StatusCode;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import java.util.function.BiConsumer;
+
+/**
+ * Opens a trace span for each request that the primitives of this package send to Cloud KMS.
+ *
+ * <p>A tracer is set with {@code setTracer} on the builders of {@link GcpKmsAead}, {@link
+ * GcpKmsMac}, {@link GcpKmsPublicKeySign} and {@link GcpKmsPublicKeyVerify}. This library does not
+ * depend on a tracing system. To use OpenTelemetry, for example, implement {@link #startSpan} with
+ * a span builder that sets the arguments as attributes, inject the span context with the W3C trace
+ * context propagator in {@link Span#injectHeaders}, and set the status and end the span in {@link
+ * Span#end}.
+ *
+ * <p>Each attempt gets its own span: a hedged request is attempt 2. Retries made by the Cloud KMS
+ * client itself, as configured by its settings or a {@link RetryPolicy}, are part of the span of
+ * the attempt. Requests that a {@link KmsRateLimiter} or a {@link KmsCircuitBreaker} rejects are
+ * not sent and get no span.
+ *
+ * <p>If no tracer is set, the primitives do not allocate anything for tracing. The methods are
+ * called on the threads that send the requests and complete them, including gRPC threads. They must
+ * be thread-safe, fast and must not block or throw.
+ */
+public interface KmsTracer {
+
+  /**
+   * Starts a span for a request for the key {@code keyName}, which is about to be sent.
+   *
+   * @param payloadSize the size in bytes of the data of the request, such as the plaintext to
+   *     encrypt or the data to sign
+   * @param attempt the number of the attempt, starting at 1
+   */
+  Span startSpan(String keyName, Operation operation, int payloadSize, int attempt);
+
+  /** A span started by {@link KmsTracer#startSpan}. */
+  interface Span {
+
+    /**
+     * Passes the headers that propagate the context of this span to Cloud KMS, such as {@code
+     * traceparent}, to {@code headers}. They are sent as gRPC metadata or HTTP headers. Called
+     * once, before the request is sent. By default, no headers are sent.
+     */
+    default void injectHeaders(BiConsumer<String, String> headers) {}
+
+    /**
+     * Ends the span with the status code of the response. HTTP status codes are mapped to the
+     * equivalent gRPC codes and I/O errors are reported as {@code UNAVAILABLE}.
+     */
+    void end(StatusCode.Code code);
+  }
+}
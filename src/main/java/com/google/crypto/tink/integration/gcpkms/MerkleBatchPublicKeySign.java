@@ -0,0 +1,245 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.integration.gcpkms.internal.MerkleBatchSignature;
+import com.google.crypto.tink.integration.gcpkms.internal.MerkleTree;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PublicKeySign} that signs messages in batches, with a single request to Cloud KMS per
+ * batch.
+ *
+ * <p>The messages of a batch are the leaves of a Merkle tree (RFC 9162), and only its root is
+ * signed in Cloud KMS. The signature of each message consists of its inclusion proof and the
+ * signature of the root, so it grows logarithmically with the size of the batch. Signatures are
+ * verified with {@link MerkleBatchPublicKeyVerify}.
+ *
+ * <p>Messages passed to {@link #signAsync} or {@link #sign} are collected into a batch, which is
+ * signed once it holds the maximum batch size, or once the maximum delay has passed since its first
+ * message, whichever comes first. {@link #sign} blocks until then. {@link #signAll} signs a list of
+ * messages right away, in as few batches as possible.
+ *
+ * <p>The root is signed together with a fixed prefix and the size of the tree, but the key should
+ * still only be used for batch signing: a verifier that accepts plain signatures of the key cannot
+ * tell them from batch roots.
+ *
+ * <p>Instances are created with {@link GcpKmsPublicKeySign.Builder#buildMerkleBatchSign}.
+ */
+public final class MerkleBatchPublicKeySign implements PublicKeySign, AsyncPublicKeySign {
+
+  private static final class SchedulerHolder {
+    static final ScheduledExecutorService SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "MerkleBatchPublicKeySign");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  private final AsyncPublicKeySign signer;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+
+  @GuardedBy("this")
+  private Batch pending;
+
+  /** Incremented whenever a batch is taken, so that a delayed flush skips batches already sent. */
+  @GuardedBy("this")
+  private long batchNumber = 0;
+
+  MerkleBatchPublicKeySign(AsyncPublicKeySign signer, int maxBatchSize, Duration maxDelay) {
+    this.signer = signer;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = maxDelay.toNanos();
+    this.pending = new Batch(maxBatchSize);
+  }
+
+  /**
+   * Adds {@code data} to the current batch, and returns a future that completes with its signature
+   * once the batch is signed.
+   */
+  @Override
+  public CompletableFuture<byte[]> signAsync(byte[] data) {
+    byte[] leafHash;
+    try {
+      leafHash = MerkleTree.leafHash(data);
+    } catch (GeneralSecurityException e) {
+      CompletableFuture<byte[]> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+    CompletableFuture<byte[]> result;
+    Batch full = null;
+    long scheduledBatch = -1;
+    synchronized (this) {
+      result = pending.add(leafHash);
+      if (pending.size() >= maxBatchSize) {
+        full = takePending();
+      } else if (pending.size() == 1) {
+        scheduledBatch = batchNumber;
+      }
+    }
+    if (full != null) {
+      full.sign();
+    } else if (scheduledBatch >= 0) {
+      long batch = scheduledBatch;
+      SchedulerHolder.SCHEDULER.schedule(() -> flush(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+    return result;
+  }
+
+  /** Adds {@code data} to the current batch, and waits until the batch is signed. */
+  @Override
+  public byte[] sign(byte[] data) throws GeneralSecurityException {
+    return await(signAsync(data));
+  }
+
+  /**
+   * Signs {@code data} right away, with one request to Cloud KMS per maximum batch size. The
+   * returned signatures are in the order of {@code data}.
+   */
+  public List<byte[]> signAll(List<byte[]> data) throws GeneralSecurityException {
+    List<CompletableFuture<byte[]>> futures = new ArrayList<>(data.size());
+    Batch batch = new Batch(Math.min(data.size(), maxBatchSize));
+    for (byte[] message : data) {
+      futures.add(batch.add(MerkleTree.leafHash(message)));
+      if (batch.size() >= maxBatchSize) {
+        batch.sign();
+        batch = new Batch(Math.min(data.size() - futures.size(), maxBatchSize));
+      }
+    }
+    if (batch.size() > 0) {
+      batch.sign();
+    }
+    List<byte[]> signatures = new ArrayList<>(futures.size());
+    for (CompletableFuture<byte[]> future : futures) {
+      signatures.add(await(future));
+    }
+    return signatures;
+  }
+
+  /** Signs the current batch right away, if it is not empty. */
+  public void flush() {
+    Batch batch;
+    synchronized (this) {
+      batch = (pending.size() == 0) ? null : takePending();
+    }
+    if (batch != null) {
+      batch.sign();
+    }
+  }
+
+  private void flush(long expectedBatchNumber) {
+    Batch batch;
+    synchronized (this) {
+      batch = (batchNumber != expectedBatchNumber || pending.size() == 0) ? null : takePending();
+    }
+    if (batch != null) {
+      batch.sign();
+    }
+  }
+
+  @GuardedBy("this")
+  private Batch takePending() {
+    Batch batch = pending;
+    pending = new Batch(maxBatchSize);
+    batchNumber++;
+    return batch;
+  }
+
+  private static byte[] await(CompletableFuture<byte[]> future) throws GeneralSecurityException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) e.getCause();
+      }
+      throw new GeneralSecurityException("Batch signing failed.", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GeneralSecurityException("Interrupted while waiting for the batch signature.", e);
+    }
+  }
+
+  /** The leaf hashes of a batch, and the futures of their signatures. */
+  private final class Batch {
+    private final List<byte[]> leafHashes;
+    private final List<CompletableFuture<byte[]>> results;
+
+    Batch(int expectedSize) {
+      this.leafHashes = new ArrayList<>(expectedSize);
+      this.results = new ArrayList<>(expectedSize);
+    }
+
+    CompletableFuture<byte[]> add(byte[] leafHash) {
+      CompletableFuture<byte[]> result = new CompletableFuture<>();
+      leafHashes.add(leafHash);
+      results.add(result);
+      return result;
+    }
+
+    int size() {
+      return leafHashes.size();
+    }
+
+    /** Signs the root, and completes the futures once the signature arrives. */
+    void sign() {
+      MerkleTree tree;
+      CompletableFuture<byte[]> rootSignature;
+      try {
+        tree = new MerkleTree(leafHashes);
+        rootSignature = signer.signAsync(MerkleBatchSignature.signedData(tree.size(), tree.root()));
+      } catch (GeneralSecurityException | RuntimeException e) {
+        fail(e);
+        return;
+      }
+      rootSignature.whenComplete(
+          (signature, t) -> {
+            if (t != null) {
+              fail((t instanceof CompletionException) ? t.getCause() : t);
+              return;
+            }
+            for (int i = 0; i < results.size(); i++) {
+              results.get(i).complete(MerkleBatchSignature.encode(tree, i, signature));
+            }
+          });
+    }
+
+    private void fail(Throwable t) {
+      GeneralSecurityException e =
+          (t instanceof GeneralSecurityException)
+              ? (GeneralSecurityException) t
+              : new GeneralSecurityException("Signing the batch root failed.", t);
+      for (CompletableFuture<byte[]> result : results) {
+        result.completeExceptionally(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.internal.MerkleBatchSignature;
+import com.google.crypto.tink.integration.gcpkms.internal.MerkleTree;
+import java.security.GeneralSecurityException;
+
+/**
+ * A {@link PublicKeyVerify} for signatures of {@link MerkleBatchPublicKeySign}.
+ *
+ * <p>A signature is valid if the inclusion proof it contains leads from the message to a root whose
+ * signature is valid for the public key in Cloud KMS. The root signature is verified locally, like
+ * with {@link GcpKmsPublicKeyVerify}.
+ *
+ * <p>Instances are created with {@link GcpKmsPublicKeyVerify.Builder#buildMerkleBatchVerify}.
+ */
+public final class MerkleBatchPublicKeyVerify implements PublicKeyVerify {
+
+  private final PublicKeyVerify verifier;
+
+  MerkleBatchPublicKeyVerify(PublicKeyVerify verifier) {
+    this.verifier = verifier;
+  }
+
+  @Override
+  public void verify(final byte[] signature, final byte[] data) throws GeneralSecurityException {
+    MerkleBatchSignature batchSignature = MerkleBatchSignature.parse(signature);
+    byte[] root =
+        MerkleTree.rootFromInclusionProof(
+            batchSignature.index(),
+            batchSignature.treeSize(),
+            MerkleTree.leafHash(data),
+            batchSignature.proof());
+    verifier.verify(
+        batchSignature.rootSignature(),
+        MerkleBatchSignature.signedData(batchSignature.treeSize(), root));
+  }
+}
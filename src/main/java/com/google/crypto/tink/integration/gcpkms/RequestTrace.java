@@ -0,0 +1,168 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.api.services.cloudkms.v1.CloudKMSRequest;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Traces the requests of one operation with a {@link KmsTracer}, numbering its attempts.
+ *
+ * <p>The static methods take a null trace if tracing is disabled, and then send the request as is.
+ */
+final class RequestTrace {
+
+  /** Sends a request with the given call context. */
+  interface Attempt<T, E extends Exception> {
+    T send(@Nullable ApiCallContext context) throws E;
+  }
+
+  private final KmsTracer tracer;
+  private final String keyName;
+  private final Operation operation;
+  private final int payloadSize;
+
+  /** Hedged attempts may start on other threads. */
+  private final AtomicInteger attempts = new AtomicInteger();
+
+  private RequestTrace(KmsTracer tracer, String keyName, Operation operation, int payloadSize) {
+    this.tracer = tracer;
+    this.keyName = keyName;
+    this.operation = operation;
+    this.payloadSize = payloadSize;
+  }
+
+  /** Returns a trace for an operation, or null if {@code tracer} is null. */
+  @Nullable
+  static RequestTrace start(
+      @Nullable KmsTracer tracer, String keyName, Operation operation, int payloadSize) {
+    return (tracer == null) ? null : new RequestTrace(tracer, keyName, operation, payloadSize);
+  }
+
+  /** Calls {@code callable}, in a new span unless {@code trace} is null. */
+  static <RequestT, ResponseT> ResponseT call(
+      UnaryCallable<RequestT, ResponseT> callable,
+      RequestT request,
+      @Nullable ApiCallContext context,
+      @Nullable RequestTrace trace) {
+    if (trace == null) {
+      return callable.call(request, context);
+    }
+    return trace.send(context, tracedContext -> callable.call(request, tracedContext));
+  }
+
+  /** Like {@link #call}, for asynchronous requests. The span ends when the future completes. */
+  static <RequestT, ResponseT> ApiFuture<ResponseT> futureCall(
+      UnaryCallable<RequestT, ResponseT> callable,
+      RequestT request,
+      @Nullable ApiCallContext context,
+      @Nullable RequestTrace trace) {
+    if (trace == null) {
+      return callable.futureCall(request, context);
+    }
+    KmsTracer.Span span = trace.startSpan();
+    ApiFuture<ResponseT> future;
+    try {
+      future = callable.futureCall(request, withHeaders(context, span));
+    } catch (RuntimeException e) {
+      span.end(CallTimer.statusOf(e));
+      throw e;
+    }
+    ApiFutures.addCallback(
+        future,
+        new ApiFutureCallback<ResponseT>() {
+          @Override
+          public void onSuccess(ResponseT response) {
+            span.end(StatusCode.Code.OK);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            span.end(CallTimer.statusOf(t));
+          }
+        },
+        MoreExecutors.directExecutor());
+    return future;
+  }
+
+  /** Executes an HTTP request, in a new span unless {@code trace} is null. */
+  static <T> T execute(CloudKMSRequest<T> request, @Nullable RequestTrace trace)
+      throws IOException {
+    if (trace == null) {
+      return request.execute();
+    }
+    KmsTracer.Span span = trace.startSpan();
+    HttpHeaders headers = request.getRequestHeaders();
+    span.injectHeaders(headers::set);
+    T response;
+    try {
+      response = request.execute();
+    } catch (IOException | RuntimeException e) {
+      span.end(CallTimer.statusOf(e));
+      throw e;
+    }
+    span.end(StatusCode.Code.OK);
+    return response;
+  }
+
+  /** Sends a request in a new span, with the headers of the span added to {@code context}. */
+  <T, E extends Exception> T send(@Nullable ApiCallContext context, Attempt<T, E> attempt)
+      throws E {
+    KmsTracer.Span span = startSpan();
+    T response;
+    try {
+      response = attempt.send(withHeaders(context, span));
+    } catch (Exception e) {
+      span.end(CallTimer.statusOf(e));
+      throw e;
+    }
+    span.end(StatusCode.Code.OK);
+    return response;
+  }
+
+  private KmsTracer.Span startSpan() {
+    return tracer.startSpan(keyName, operation, payloadSize, attempts.incrementAndGet());
+  }
+
+  @Nullable
+  private static ApiCallContext withHeaders(@Nullable ApiCallContext context, KmsTracer.Span span) {
+    Map<String, List<String>> headers = new HashMap<>();
+    span.injectHeaders(
+        (name, value) -> headers.computeIfAbsent(name, unused -> new ArrayList<>()).add(value));
+    if (headers.isEmpty()) {
+      return context;
+    }
+    return ((context == null) ? GrpcCallContext.createDefault() : context)
+        .withExtraHeaders(headers);
+  }
+}
@@ -0,0 +1,376 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.util.Sleeper;
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Configures how failed requests to Cloud KMS are retried, and bounds how long a call may take.
+ *
+ * <p>A call fails once its {@link Builder#setTotalTimeout total timeout} has passed, however many
+ * attempts it has made. Each attempt is also bounded by the {@link Builder#setAttemptTimeout
+ * attempt timeout}, so that a single stuck request does not use up the whole deadline. An attempt
+ * that fails with one of the {@link Builder#setRetryableCodes retryable codes} is retried, up to
+ * {@link Builder#setMaxAttempts} attempts in total, unless the next attempt could not start before
+ * the deadline.
+ *
+ * <p>Between attempts, the client waits for a random backoff of at least {@link
+ * Builder#setInitialBackoff} and at most {@link Builder#setMaxBackoff}, which grows with the number
+ * of attempts. The randomization keeps clients that failed at the same time from retrying in
+ * lockstep.
+ *
+ * <p>With gRPC, the policy replaces the retry settings of the {@code KeyManagementServiceClient}
+ * for the calls of a primitive, and the backoff is randomized exponential backoff. With HTTP, the
+ * policy is applied by the {@link HttpRequestInitializer} returned by {@link
+ * #newHttpRequestInitializer}, and the backoff is decorrelated jitter: each backoff is drawn
+ * uniformly between the initial backoff and three times the previous one.
+ */
+public final class RetryPolicy {
+  /** Default for {@link Builder#setTotalTimeout}. */
+  public static final Duration DEFAULT_TOTAL_TIMEOUT = Duration.ofSeconds(30);
+
+  /** Default for {@link Builder#setAttemptTimeout}. */
+  public static final Duration DEFAULT_ATTEMPT_TIMEOUT = Duration.ofSeconds(10);
+
+  /** Default for {@link Builder#setMaxAttempts}. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  /** Default for {@link Builder#setInitialBackoff}. */
+  public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(100);
+
+  /** Default for {@link Builder#setMaxBackoff}. */
+  public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(5);
+
+  /** Default for {@link Builder#setRetryableCodes}. */
+  public static final ImmutableSet<StatusCode.Code> DEFAULT_RETRYABLE_CODES =
+      Sets.immutableEnumSet(StatusCode.Code.UNAVAILABLE, StatusCode.Code.DEADLINE_EXCEEDED);
+
+  /** The factor by which the backoff grows, on average, with each gRPC attempt. */
+  private static final double GRPC_BACKOFF_MULTIPLIER = 2.0;
+
+  /** The factor by which the previous backoff is multiplied to bound the next HTTP backoff. */
+  private static final long HTTP_BACKOFF_MULTIPLIER = 3;
+
+  private final Duration totalTimeout;
+  private final Duration attemptTimeout;
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
+  private final ImmutableSet<StatusCode.Code> retryableCodes;
+
+  private RetryPolicy(
+      Duration totalTimeout,
+      Duration attemptTimeout,
+      int maxAttempts,
+      Duration initialBackoff,
+      Duration maxBackoff,
+      ImmutableSet<StatusCode.Code> retryableCodes) {
+    this.totalTimeout = totalTimeout;
+    this.attemptTimeout = attemptTimeout;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+    this.retryableCodes = retryableCodes;
+  }
+
+  public Duration getTotalTimeout() {
+    return totalTimeout;
+  }
+
+  public Duration getAttemptTimeout() {
+    return attemptTimeout;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public Duration getInitialBackoff() {
+    return initialBackoff;
+  }
+
+  public Duration getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  public ImmutableSet<StatusCode.Code> getRetryableCodes() {
+    return retryableCodes;
+  }
+
+  /**
+   * Returns an {@link HttpRequestInitializer} that applies this policy to the requests it
+   * initializes, after initializing them with {@code delegate}.
+   *
+   * <p>Use it to build the {@code CloudKMS} object, for example {@code new
+   * CloudKMS.Builder(transport, jsonFactory, policy.newHttpRequestInitializer(new
+   * HttpCredentialsAdapter(credentials)))}. Unsuccessful responses are first passed to the handler
+   * that {@code delegate} installed, if any, so that expired credentials are still refreshed.
+   *
+   * <p>HTTP status codes are mapped to status codes as by Cloud KMS: 409 to {@code ABORTED}, 429 to
+   * {@code RESOURCE_EXHAUSTED}, 500 to {@code INTERNAL}, 502 and 503 to {@code UNAVAILABLE}, and
+   * 504 to {@code DEADLINE_EXCEEDED}. Requests that fail with an {@link IOException}, for example
+   * because the attempt timed out, are retried if {@code UNAVAILABLE} or {@code DEADLINE_EXCEEDED}
+   * is retryable.
+   */
+  public HttpRequestInitializer newHttpRequestInitializer(HttpRequestInitializer delegate) {
+    return request -> {
+      delegate.initialize(request);
+      HttpRetryHandler handler =
+          new HttpRetryHandler(
+              request.getUnsuccessfulResponseHandler(), request.getIOExceptionHandler());
+      request.setNumberOfRetries(maxAttempts - 1);
+      request.setUnsuccessfulResponseHandler(handler);
+      request.setIOExceptionHandler(handler);
+      handler.setAttemptTimeouts(request);
+    };
+  }
+
+  /** Returns a call context that applies this policy to the gRPC calls it is passed to. */
+  ApiCallContext newGrpcCallContext() {
+    RetrySettings retrySettings =
+        RetrySettings.newBuilder()
+            .setTotalTimeoutDuration(totalTimeout)
+            .setInitialRpcTimeoutDuration(attemptTimeout)
+            .setRpcTimeoutMultiplier(1.0)
+            .setMaxRpcTimeoutDuration(attemptTimeout)
+            .setMaxAttempts(maxAttempts)
+            .setInitialRetryDelayDuration(initialBackoff)
+            .setRetryDelayMultiplier(GRPC_BACKOFF_MULTIPLIER)
+            .setMaxRetryDelayDuration(maxBackoff)
+            .build();
+    return GrpcCallContext.createDefault()
+        .withRetrySettings(retrySettings)
+        .withRetryableCodes(retryableCodes);
+  }
+
+  /**
+   * Returns the next decorrelated-jitter backoff, drawn uniformly between the initial backoff and
+   * {@link #HTTP_BACKOFF_MULTIPLIER} times {@code previousMillis}, and capped at the max backoff.
+   */
+  long nextHttpBackoffMillis(long previousMillis) {
+    long initialMillis = initialBackoff.toMillis();
+    long upperMillis =
+        Math.max(
+            initialMillis,
+            Math.min(maxBackoff.toMillis(), previousMillis * HTTP_BACKOFF_MULTIPLIER));
+    return initialMillis + ThreadLocalRandom.current().nextLong(upperMillis - initialMillis + 1);
+  }
+
+  @Nullable
+  private static StatusCode.Code toStatusCode(int httpStatusCode) {
+    switch (httpStatusCode) {
+      case 409:
+        return StatusCode.Code.ABORTED;
+      case 429:
+        return StatusCode.Code.RESOURCE_EXHAUSTED;
+      case 500:
+        return StatusCode.Code.INTERNAL;
+      case 502:
+      case 503:
+        return StatusCode.Code.UNAVAILABLE;
+      case 504:
+        return StatusCode.Code.DEADLINE_EXCEEDED;
+      default:
+        return null;
+    }
+  }
+
+  /** Retries the attempts of a single HTTP request, within the deadline of that request. */
+  private final class HttpRetryHandler
+      implements HttpUnsuccessfulResponseHandler, HttpIOExceptionHandler {
+    @Nullable private final HttpUnsuccessfulResponseHandler responseHandler;
+    @Nullable private final HttpIOExceptionHandler ioExceptionHandler;
+    private final long deadlineNanos = System.nanoTime() + totalTimeout.toNanos();
+    private long backoffMillis = initialBackoff.toMillis();
+
+    HttpRetryHandler(
+        @Nullable HttpUnsuccessfulResponseHandler responseHandler,
+        @Nullable HttpIOExceptionHandler ioExceptionHandler) {
+      this.responseHandler = responseHandler;
+      this.ioExceptionHandler = ioExceptionHandler;
+    }
+
+    @Override
+    public boolean handleResponse(HttpRequest request, HttpResponse response, boolean supportsRetry)
+        throws IOException {
+      if (responseHandler != null
+          && responseHandler.handleResponse(request, response, supportsRetry)) {
+        return true;
+      }
+      StatusCode.Code code = toStatusCode(response.getStatusCode());
+      return code != null && retryableCodes.contains(code) && backOff(request, supportsRetry);
+    }
+
+    @Override
+    public boolean handleIOException(HttpRequest request, boolean supportsRetry)
+        throws IOException {
+      if (ioExceptionHandler != null
+          && ioExceptionHandler.handleIOException(request, supportsRetry)) {
+        return true;
+      }
+      return (retryableCodes.contains(StatusCode.Code.UNAVAILABLE)
+              || retryableCodes.contains(StatusCode.Code.DEADLINE_EXCEEDED))
+          && backOff(request, supportsRetry);
+    }
+
+    /** Waits before the next attempt, and returns false if there should be none. */
+    private boolean backOff(HttpRequest request, boolean supportsRetry) {
+      if (!supportsRetry) {
+        return false;
+      }
+      backoffMillis = nextHttpBackoffMillis(backoffMillis);
+      if (TimeUnit.MILLISECONDS.toNanos(backoffMillis) >= deadlineNanos - System.nanoTime()) {
+        return false;
+      }
+      try {
+        Sleeper.DEFAULT.sleep(backoffMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      setAttemptTimeouts(request);
+      return true;
+    }
+
+    /** Bounds the next attempt by the attempt timeout and by the time left until the deadline. */
+    void setAttemptTimeouts(HttpRequest request) {
+      long remainingMillis =
+          Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+      int timeoutMillis =
+          (int) Math.min(Integer.MAX_VALUE, Math.min(attemptTimeout.toMillis(), remainingMillis));
+      request.setConnectTimeout(timeoutMillis);
+      request.setReadTimeout(timeoutMillis);
+    }
+  }
+
+  /** A Builder to create a {@link RetryPolicy}. */
+  public static final class Builder {
+    private Duration totalTimeout = DEFAULT_TOTAL_TIMEOUT;
+    private Duration attemptTimeout = DEFAULT_ATTEMPT_TIMEOUT;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+    private ImmutableSet<StatusCode.Code> retryableCodes = DEFAULT_RETRYABLE_CODES;
+
+    private Builder() {}
+
+    /**
+     * Sets the maximum time a call may take, including all of its attempts and the backoffs between
+     * them. Defaults to {@link #DEFAULT_TOTAL_TIMEOUT}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTotalTimeout(Duration totalTimeout) {
+      this.totalTimeout = totalTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time a single attempt may take. Defaults to {@link
+     * #DEFAULT_ATTEMPT_TIMEOUT}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setAttemptTimeout(Duration attemptTimeout) {
+      this.attemptTimeout = attemptTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of attempts of a call, including the first one. 1 disables retries.
+     * Defaults to {@link #DEFAULT_MAX_ATTEMPTS}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxAttempts(int maxAttempts) {
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the minimum time to wait before retrying. Defaults to {@link #DEFAULT_INITIAL_BACKOFF}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setInitialBackoff(Duration initialBackoff) {
+      this.initialBackoff = initialBackoff;
+      return this;
+    }
+
+    /** Sets the maximum time to wait before retrying. Defaults to {@link #DEFAULT_MAX_BACKOFF}. */
+    @CanIgnoreReturnValue
+    public Builder setMaxBackoff(Duration maxBackoff) {
+      this.maxBackoff = maxBackoff;
+      return this;
+    }
+
+    /**
+     * Sets the status codes with which a failed attempt is retried. Defaults to {@link
+     * #DEFAULT_RETRYABLE_CODES}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRetryableCodes(Set<StatusCode.Code> retryableCodes) {
+      this.retryableCodes = Sets.immutableEnumSet(retryableCodes);
+      return this;
+    }
+
+    public RetryPolicy build() throws GeneralSecurityException {
+      checkPositive(totalTimeout, "total timeout");
+      checkPositive(attemptTimeout, "attempt timeout");
+      if (maxAttempts < 1) {
+        throw new GeneralSecurityException("The maximum number of attempts must be positive.");
+      }
+      checkPositive(initialBackoff, "initial backoff");
+      checkPositive(maxBackoff, "maximum backoff");
+      if (initialBackoff.compareTo(maxBackoff) > 0) {
+        throw new GeneralSecurityException(
+            "The initial backoff must not be larger than the maximum backoff: "
+                + initialBackoff
+                + " > "
+                + maxBackoff);
+      }
+      return new RetryPolicy(
+          totalTimeout, attemptTimeout, maxAttempts, initialBackoff, maxBackoff, retryableCodes);
+    }
+
+    private static void checkPositive(Duration duration, String name)
+        throws GeneralSecurityException {
+      if (duration.isNegative() || duration.isZero()) {
+        throw new GeneralSecurityException("The " + name + " must be positive.");
+      }
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * Signs data of any size with a key in <a href="https://cloud.google.com/kms/">Google Cloud KMS</a>
+ * that signs a digest of the data, hashing it locally chunk by chunk.
+ *
+ * <p>Only the digest is sent to Cloud KMS, so memory use does not depend on the size of the data.
+ * The signatures are the same as those of the {@link com.google.crypto.tink.PublicKeySign} for the
+ * key, and are verified in the same way.
+ */
+public interface StreamingPublicKeySign {
+
+  /**
+   * Incrementally hashes the data to sign. A signer is not thread-safe, and cannot be used anymore
+   * once {@link #sign} has been called.
+   */
+  interface Signer {
+
+    /** Hashes the remaining bytes of {@code data}, and moves its position to its limit. */
+    @CanIgnoreReturnValue
+    Signer update(ByteBuffer data);
+
+    /** Hashes {@code data[offset, offset + length)}. */
+    @CanIgnoreReturnValue
+    Signer update(byte[] data, int offset, int length);
+
+    /** Hashes {@code data}. */
+    @CanIgnoreReturnValue
+    default Signer update(byte[] data) {
+      return update(data, 0, data.length);
+    }
+
+    /** Sends the digest of the data to Cloud KMS and returns the signature of the data. */
+    byte[] sign() throws GeneralSecurityException;
+  }
+
+  /** Returns a new signer, to which the data to sign is passed in chunks. */
+  Signer newSigner() throws GeneralSecurityException;
+
+  /** Computes the signature of the data read from {@code input}, until its end. */
+  byte[] sign(InputStream input) throws GeneralSecurityException, IOException;
+
+  /**
+   * Computes the signature of the contents of the file {@code path}, which is read in fixed-size
+   * chunks.
+   */
+  byte[] sign(Path path) throws GeneralSecurityException, IOException;
+}
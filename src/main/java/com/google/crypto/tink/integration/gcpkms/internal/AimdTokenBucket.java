@@ -0,0 +1,134 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import com.google.common.base.Ticker;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket whose rate adapts to the quota of Cloud KMS, for internal use only.
+ *
+ * <p>The rate starts at {@code maxRate}. Every time Cloud KMS reports that the quota is exhausted,
+ * the rate is halved, but at most once per second and not below {@code minRate}. While calls
+ * succeed, the rate grows back linearly, by a tenth of {@code maxRate} per second. This keeps the
+ * request rate just below the quota instead of oscillating around it.
+ *
+ * <p>The bucket holds at most the tokens of one second, so that short bursts are not delayed.
+ */
+public final class AimdTokenBucket {
+
+  private static final double DECREASE_FACTOR = 0.5;
+  private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final double INCREASE_PER_SECOND_FRACTION = 0.1;
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final double maxRate;
+  private final double minRate;
+  private final Ticker ticker;
+
+  @GuardedBy("this")
+  private double rate;
+
+  /** The available tokens. Negative if tokens have been reserved in advance. */
+  @GuardedBy("this")
+  private double tokens;
+
+  @GuardedBy("this")
+  private long lastRefillNanos;
+
+  @GuardedBy("this")
+  private long lastIncreaseNanos;
+
+  @GuardedBy("this")
+  private long lastDecreaseNanos;
+
+  public AimdTokenBucket(double maxRate, double minRate, Ticker ticker) {
+    if (!(maxRate > 0) || Double.isInfinite(maxRate)) {
+      throw new IllegalArgumentException("maxRate must be positive and finite: " + maxRate);
+    }
+    if (!(minRate > 0 && minRate <= maxRate)) {
+      throw new IllegalArgumentException("minRate must be in (0, maxRate]: " + minRate);
+    }
+    this.maxRate = maxRate;
+    this.minRate = minRate;
+    this.ticker = ticker;
+    this.rate = maxRate;
+    this.tokens = capacity(maxRate);
+    long now = ticker.read();
+    this.lastRefillNanos = now;
+    this.lastIncreaseNanos = now;
+    this.lastDecreaseNanos = now - DECREASE_INTERVAL_NANOS;
+  }
+
+  /**
+   * Takes a token, and returns how many nanoseconds the caller has to wait before it may send its
+   * request. Returns -1, and takes no token, if that would be longer than {@code maxWaitNanos}.
+   */
+  public synchronized long reserve(long maxWaitNanos) {
+    long now = ticker.read();
+    refill(now);
+    if (tokens >= 1) {
+      tokens -= 1;
+      return 0;
+    }
+    long waitNanos = (long) Math.ceil((1 - tokens) / rate * NANOS_PER_SECOND);
+    if (waitNanos > maxWaitNanos) {
+      return -1;
+    }
+    tokens -= 1;
+    return waitNanos;
+  }
+
+  /** Increases the rate after a request that was not rejected because of the quota. */
+  public synchronized void onSuccess() {
+    long now = ticker.read();
+    refill(now);
+    double elapsedSeconds = (now - lastIncreaseNanos) / NANOS_PER_SECOND;
+    rate = Math.min(maxRate, rate + maxRate * INCREASE_PER_SECOND_FRACTION * elapsedSeconds);
+    lastIncreaseNanos = now;
+  }
+
+  /** Decreases the rate after a request was rejected because the quota is exhausted. */
+  public synchronized void onQuotaExceeded() {
+    long now = ticker.read();
+    refill(now);
+    lastIncreaseNanos = now;
+    if (now - lastDecreaseNanos < DECREASE_INTERVAL_NANOS) {
+      return;
+    }
+    lastDecreaseNanos = now;
+    rate = Math.max(minRate, rate * DECREASE_FACTOR);
+    tokens = Math.min(tokens, capacity(rate));
+  }
+
+  /** Returns the current rate in requests per second. */
+  public synchronized double rate() {
+    return rate;
+  }
+
+  @GuardedBy("this")
+  private void refill(long now) {
+    double elapsedSeconds = (now - lastRefillNanos) / NANOS_PER_SECOND;
+    tokens = Math.min(capacity(rate), tokens + rate * elapsedSeconds);
+    lastRefillNanos = now;
+  }
+
+  private static double capacity(double rate) {
+    return Math.max(1, rate);
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A lookup in the cache of a {@code DecryptCachingAead}, for internal use only. Use {@link
+ * KmsEvents}.
+ *
+ * <p>Lookups can be far more frequent than requests to Cloud KMS, so the event is disabled unless a
+ * recording enables it.
+ */
+@Name("com.google.crypto.tink.integration.gcpkms.DecryptCache")
+@Label("Cloud KMS Decrypt Cache Lookup")
+@Category({"Tink", "Cloud KMS"})
+@Description("A decrypt that was answered from the cache, or sent to Cloud KMS on a miss.")
+@Enabled(false)
+@StackTrace(false)
+final class DecryptCacheEvent extends Event {
+
+  private static final EventType TYPE = EventType.getEventType(DecryptCacheEvent.class);
+
+  @Label("Hit")
+  private final boolean hit;
+
+  @Label("Ciphertext Size")
+  @DataAmount
+  private final long ciphertextSize;
+
+  private DecryptCacheEvent(boolean hit, long ciphertextSize) {
+    this.hit = hit;
+    this.ciphertextSize = ciphertextSize;
+  }
+
+  static void emit(boolean hit, long ciphertextSize) {
+    if (TYPE.isEnabled()) {
+      new DecryptCacheEvent(hit, ciphertextSize).commit();
+    }
+  }
+}
@@ -16,17 +16,24 @@
 
 package com.google.crypto.tink.integration.gcpkms.internal;
 
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.ApiException;
 import com.google.cloud.kms.v1.ChecksummedData;
 import com.google.cloud.kms.v1.GetPublicKeyRequest;
 import com.google.cloud.kms.v1.KeyManagementServiceClient;
 import com.google.cloud.kms.v1.PublicKey;
-import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
+import com.google.protobuf.ByteOutput;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Int64Value;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Base64;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+import javax.annotation.Nullable;
 
 /** Helper functions shared by the Google Cloud KMS integration, for internal use only. */
 public final class GcpKmsUtil {
@@ -35,6 +42,24 @@ public final class GcpKmsUtil {
       "projects/[^/]+/locations/[^/]+/keyRings/[^/]+/cryptoKeys/[^/]+/cryptoKeyVersions/.*";
   private static final Pattern KEY_NAME_MATCHER = Pattern.compile(KEY_NAME_PATTERN);
 
+  /** The segments of a CryptoKeyVersion name, where null stands for any resource ID. */
+  private static final String[] KEY_VERSION_SEGMENTS = {
+    "projects",
+    null,
+    "locations",
+    null,
+    "keyRings",
+    null,
+    "cryptoKeys",
+    null,
+    "cryptoKeyVersions",
+    null
+  };
+
+  /** Coalesces concurrent {@link #fetchPublicKey} calls without a context for the same key. */
+  private static final SingleFlight<PublicKeyRequest, PublicKey> publicKeyRequests =
+      new SingleFlight<>();
+
   /**
    * Validates that {@code keyName} is a well-formed Cloud KMS CryptoKeyVersion resource name.
    *
@@ -58,11 +83,9 @@ public final class GcpKmsUtil {
     if (!publicKey.getPublicKey().hasCrc32CChecksum()) {
       throw new GeneralSecurityException("KMS GetPublicKey response did not include a checksum.");
     }
-    long computedCrc32c =
-        Hashing.crc32c()
-            .hashBytes(publicKey.getPublicKey().getData().asReadOnlyByteBuffer())
-            .padToLong();
+    long computedCrc32c = crc32c(publicKey.getPublicKey().getData());
     if (computedCrc32c != publicKey.getPublicKey().getCrc32CChecksum().getValue()) {
+      KmsEvents.integrityFailure(publicKey.getName(), "GET_PUBLIC_KEY", "CRC32C_MISMATCH");
       throw new GeneralSecurityException(
           "The GetPublicKey checksum does not match the public key.");
     }
@@ -72,11 +95,104 @@ public final class GcpKmsUtil {
   public static ChecksummedData checksummedData(ByteString data) {
     return ChecksummedData.newBuilder()
         .setData(data)
-        .setCrc32CChecksum(
-            Int64Value.of(Hashing.crc32c().hashBytes(data.asReadOnlyByteBuffer()).padToLong()))
+        .setCrc32CChecksum(Int64Value.of(crc32c(data)))
         .build();
   }
 
+  /** Returns the CRC32C checksum of {@code data}. */
+  public static long crc32c(byte[] data) {
+    CRC32C crc32c = new CRC32C();
+    crc32c.update(data);
+    return crc32c.getValue();
+  }
+
+  /** Returns the CRC32C checksum of {@code data}, without copying it. */
+  public static long crc32c(ByteString data) {
+    // Read-only heap buffers do not expose their array, so CRC32C.update(ByteBuffer) would copy
+    // them. UnsafeByteOperations.unsafeWriteTo hands out the backing arrays instead.
+    Crc32cByteOutput output = new Crc32cByteOutput();
+    try {
+      UnsafeByteOperations.unsafeWriteTo(data, output);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return output.crc32c.getValue();
+  }
+
+  /** A {@link ByteOutput} that only computes the CRC32C checksum of what is written to it. */
+  private static final class Crc32cByteOutput extends ByteOutput {
+    final CRC32C crc32c = new CRC32C();
+
+    @Override
+    public void write(byte value) {
+      crc32c.update(value);
+    }
+
+    @Override
+    public void write(byte[] value, int offset, int length) {
+      crc32c.update(value, offset, length);
+    }
+
+    @Override
+    public void writeLazy(byte[] value, int offset, int length) {
+      crc32c.update(value, offset, length);
+    }
+
+    @Override
+    public void write(ByteBuffer value) {
+      crc32c.update(value);
+    }
+
+    @Override
+    public void writeLazy(ByteBuffer value) {
+      crc32c.update(value);
+    }
+  }
+
+  /**
+   * Returns true if {@code keyVersion} names {@code keyName}: either {@code keyVersion} is a
+   * CryptoKeyVersion name (projects/ * /locations/ * /keyRings/ * /cryptoKeys/ *
+   * /cryptoKeyVersions/ *) of the CryptoKey {@code keyName}, or it is not a CryptoKeyVersion name
+   * and equal to {@code keyName}.
+   *
+   * <p>This is called on every encrypt response, so it does not allocate.
+   */
+  public static boolean isKeyVersionOf(String keyVersion, String keyName) {
+    // Trailing delimiters are ignored, as String.split does.
+    int end = keyVersion.length();
+    while (end > 0 && keyVersion.charAt(end - 1) == '/') {
+      end--;
+    }
+    int segment = 0;
+    int segmentStart = 0;
+    int cryptoKeyEnd = -1;
+    for (int i = 0; i <= end; i++) {
+      if (i < end && keyVersion.charAt(i) != '/') {
+        continue;
+      }
+      if (segment >= KEY_VERSION_SEGMENTS.length
+          || !isSegment(keyVersion, segmentStart, i, KEY_VERSION_SEGMENTS[segment])) {
+        return keyVersion.equals(keyName);
+      }
+      if (segment == 7) {
+        cryptoKeyEnd = i;
+      }
+      segment++;
+      segmentStart = i + 1;
+    }
+    if (segment != KEY_VERSION_SEGMENTS.length) {
+      return keyVersion.equals(keyName);
+    }
+    return keyName.length() == cryptoKeyEnd
+        && keyVersion.regionMatches(0, keyName, 0, cryptoKeyEnd);
+  }
+
+  /** Returns true if s[start, end) equals {@code expected}, or if {@code expected} is null. */
+  private static boolean isSegment(String s, int start, int end, @Nullable String expected) {
+    return expected == null
+        || (end - start == expected.length() && s.regionMatches(start, expected, 0, end - start));
+  }
+
   /**
    * Wraps raw ML-DSA public key bytes in a PEM-encoded SubjectPublicKeyInfo, exactly as Cloud KMS
    * GetPublicKey returns for ML-DSA keys.
@@ -98,32 +214,113 @@ public final class GcpKmsUtil {
    *
    * <p>The key is initially requested in PEM format, but also falls back to NIST_PQC format for
    * keys that do not support PEM (e.g., SLH-DSA).
+   *
+   * <p>Concurrent calls with the same {@code kmsClient} and {@code keyName} share a single request
+   * to KMS, and all get its result or exception.
    */
   public static PublicKey fetchPublicKey(KeyManagementServiceClient kmsClient, String keyName)
       throws GeneralSecurityException {
+    return fetchPublicKey(kmsClient, keyName, null);
+  }
+
+  /**
+   * Like {@link #fetchPublicKey(KeyManagementServiceClient, String)}, but sends the requests with
+   * {@code context}, for example to add headers. Calls with a non-null {@code context} always send
+   * their own requests, so that they get their own deadline, retry settings and headers.
+   */
+  public static PublicKey fetchPublicKey(
+      KeyManagementServiceClient kmsClient, String keyName, @Nullable ApiCallContext context)
+      throws GeneralSecurityException {
+    return fetchPublicKey(kmsClient, keyName, context, PublicKey.PublicKeyFormat.PEM);
+  }
+
+  /**
+   * Like {@link #fetchPublicKey(KeyManagementServiceClient, String, ApiCallContext)}, but requests
+   * the key in {@code format} directly if it is {@code NIST_PQC}, for keys that are known not to
+   * support PEM.
+   */
+  public static PublicKey fetchPublicKey(
+      KeyManagementServiceClient kmsClient,
+      String keyName,
+      @Nullable ApiCallContext context,
+      PublicKey.PublicKeyFormat format)
+      throws GeneralSecurityException {
+    if (context != null) {
+      return fetchPublicKeyOnce(kmsClient, keyName, context, format);
+    }
+    return publicKeyRequests.execute(
+        new PublicKeyRequest(kmsClient, keyName),
+        () -> fetchPublicKeyOnce(kmsClient, keyName, /* context= */ null, format));
+  }
+
+  private static PublicKey fetchPublicKeyOnce(
+      KeyManagementServiceClient kmsClient,
+      String keyName,
+      @Nullable ApiCallContext context,
+      PublicKey.PublicKeyFormat format)
+      throws GeneralSecurityException {
     PublicKey publicKey;
     GetPublicKeyRequest.Builder requestBuilder = GetPublicKeyRequest.newBuilder().setName(keyName);
+    PublicKeyFetchEvent event =
+        KmsEvents.isPublicKeyFetchEnabled() ? new PublicKeyFetchEvent(keyName) : null;
+
+    if (format == PublicKey.PublicKeyFormat.NIST_PQC) {
+      try {
+        if (event != null) {
+          event.setFormat(format.name(), /* fallback= */ false);
+        }
+        publicKey =
+            kmsClient
+                .getPublicKeyCallable()
+                .call(requestBuilder.setPublicKeyFormat(format).build(), context);
+      } catch (RuntimeException e) {
+        commit(event, e);
+        throw new GeneralSecurityException("The KMS GetPublicKey failed.", e);
+      }
+      commit(event, null);
+      return verifyFetchedPublicKey(publicKey, keyName);
+    }
 
     try {
+      if (event != null) {
+        event.setFormat(PublicKey.PublicKeyFormat.PEM.name(), /* fallback= */ false);
+      }
       publicKey =
-          kmsClient.getPublicKey(
-              requestBuilder.setPublicKeyFormat(PublicKey.PublicKeyFormat.PEM).build());
+          kmsClient
+              .getPublicKeyCallable()
+              .call(
+                  requestBuilder.setPublicKeyFormat(PublicKey.PublicKeyFormat.PEM).build(),
+                  context);
     } catch (RuntimeException e) {
       // Keys that do not support PEM (e.g. SLH-DSA) report this; retry in NIST_PQC format.
       if (e.getMessage() == null || !e.getMessage().contains("Only NIST_PQC format is supported")) {
+        commit(event, e);
         throw new GeneralSecurityException("The KMS GetPublicKey failed.", e);
       }
       try {
+        if (event != null) {
+          event.setFormat(PublicKey.PublicKeyFormat.NIST_PQC.name(), /* fallback= */ true);
+        }
         publicKey =
-            kmsClient.getPublicKey(
-                requestBuilder.setPublicKeyFormat(PublicKey.PublicKeyFormat.NIST_PQC).build());
+            kmsClient
+                .getPublicKeyCallable()
+                .call(
+                    requestBuilder.setPublicKeyFormat(PublicKey.PublicKeyFormat.NIST_PQC).build(),
+                    context);
       } catch (RuntimeException e2) {
+        commit(event, e2);
         throw new GeneralSecurityException("The KMS GetPublicKey failed.", e2);
       }
     }
+    commit(event, null);
+    return verifyFetchedPublicKey(publicKey, keyName);
+  }
 
-    // Verify the integrity of the fetched public key before relying on it.
+  /** Verifies the integrity of a fetched public key before relying on it. */
+  private static PublicKey verifyFetchedPublicKey(PublicKey publicKey, String keyName)
+      throws GeneralSecurityException {
     if (!publicKey.getName().equals(keyName)) {
+      KmsEvents.integrityFailure(keyName, "GET_PUBLIC_KEY", "KEY_NAME_MISMATCH");
       throw new GeneralSecurityException(
           "The key name in the response does not match the requested key name.");
     }
@@ -132,5 +329,45 @@ public final class GcpKmsUtil {
     return publicKey;
   }
 
+  /** Records {@code event} unless it is null, with the status of {@code failure} or OK. */
+  private static void commit(
+      @Nullable PublicKeyFetchEvent event, @Nullable RuntimeException failure) {
+    if (event == null) {
+      return;
+    }
+    if (failure == null) {
+      event.commit("OK");
+    } else if (failure instanceof ApiException) {
+      event.commit(((ApiException) failure).getStatusCode().getCode().name());
+    } else {
+      event.commit("UNKNOWN");
+    }
+  }
+
+  /** Identifies a GetPublicKey request, comparing the KMS clients by identity. */
+  private static final class PublicKeyRequest {
+    private final KeyManagementServiceClient kmsClient;
+    private final String keyName;
+
+    PublicKeyRequest(KeyManagementServiceClient kmsClient, String keyName) {
+      this.kmsClient = kmsClient;
+      this.keyName = keyName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PublicKeyRequest)) {
+        return false;
+      }
+      PublicKeyRequest that = (PublicKeyRequest) o;
+      return kmsClient == that.kmsClient && keyName.equals(that.keyName);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(kmsClient) + keyName.hashCode();
+    }
+  }
+
   private GcpKmsUtil() {}
 }
@@ -0,0 +1,276 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Sends a second, identical request if a call to Cloud KMS takes unusually long, for internal use
+ * only.
+ *
+ * <p>The delay after which the second request is sent is the {@code delayPercentile} of the
+ * latencies of recent successful calls, but at least {@code minDelay}. Until enough latencies have
+ * been observed, no request is hedged. Every call adds {@code maxHedgeRatio} to a budget, and every
+ * second request takes one from it, so that at most that fraction of the calls is hedged.
+ *
+ * <p>Only use this for calls that can safely be sent twice.
+ */
+public final class Hedger {
+
+  /** Number of recent latencies from which the delay is computed. */
+  private static final int LATENCY_WINDOW_SIZE = 256;
+
+  /** Number of latencies that must be observed before any request is hedged. */
+  private static final int MIN_LATENCY_SAMPLES = 20;
+
+  /** The delay is recomputed after this many new latencies. */
+  private static final int DELAY_UPDATE_INTERVAL = 16;
+
+  /** Maximum budget, which bounds the number of requests hedged in a burst. */
+  private static final double MAX_BUDGET = 10;
+
+  private static final class SchedulerHolder {
+    static final ScheduledExecutorService SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "GcpKmsHedger");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  private final double delayPercentile;
+  private final long minDelayNanos;
+  private final double maxHedgeRatio;
+
+  @GuardedBy("this")
+  private final long[] latencies = new long[LATENCY_WINDOW_SIZE];
+
+  @GuardedBy("this")
+  private long latencyCount = 0;
+
+  /** The current delay in nanoseconds, or -1 if not enough latencies have been observed. */
+  @GuardedBy("this")
+  private long delayNanos = -1;
+
+  @GuardedBy("this")
+  private double budget = 0;
+
+  @GuardedBy("this")
+  private long hedgeCount = 0;
+
+  public Hedger(double delayPercentile, Duration minDelay, double maxHedgeRatio) {
+    if (!(delayPercentile > 0 && delayPercentile <= 1)) {
+      throw new IllegalArgumentException("delayPercentile must be in (0, 1]: " + delayPercentile);
+    }
+    if (minDelay.isNegative()) {
+      throw new IllegalArgumentException("minDelay must not be negative: " + minDelay);
+    }
+    if (!(maxHedgeRatio >= 0 && maxHedgeRatio <= 1)) {
+      throw new IllegalArgumentException("maxHedgeRatio must be in [0, 1]: " + maxHedgeRatio);
+    }
+    this.delayPercentile = delayPercentile;
+    this.minDelayNanos = minDelay.toNanos();
+    this.maxHedgeRatio = maxHedgeRatio;
+  }
+
+  /**
+   * Starts {@code call}, and starts it a second time if it has not completed after the current
+   * delay and the budget allows it.
+   *
+   * <p>The returned future completes with the first successful result. It fails if the first
+   * request fails before the second one is sent, or if both fail. Requests that are still running
+   * are then cancelled. Cancelling the returned future cancels all requests.
+   */
+  public <T> ApiFuture<T> call(Supplier<ApiFuture<T>> call) {
+    long startNanos = System.nanoTime();
+    long delay = startCall();
+    HedgedCall<T> hedgedCall = new HedgedCall<>(call, startNanos);
+    hedgedCall.startAttempt();
+    if (delay >= 0) {
+      hedgedCall.scheduleHedge(delay);
+    }
+    return hedgedCall.result;
+  }
+
+  /**
+   * Like {@link #call}, but waits for the result. Unchecked exceptions of the call are rethrown as
+   * they are.
+   */
+  public <T> T callBlocking(Supplier<ApiFuture<T>> call) {
+    ApiFuture<T> future = call(call);
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new UncheckedExecutionException(e.getCause());
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      CancellationException cancellation =
+          new CancellationException("Interrupted while waiting for Cloud KMS.");
+      cancellation.initCause(e);
+      throw cancellation;
+    }
+  }
+
+  /** Returns the number of requests that were sent a second time. */
+  public synchronized long hedgeCount() {
+    return hedgeCount;
+  }
+
+  /** Adds to the budget and returns the delay for a new call, or -1 if it must not be hedged. */
+  private synchronized long startCall() {
+    budget = Math.min(MAX_BUDGET, budget + maxHedgeRatio);
+    return delayNanos;
+  }
+
+  private synchronized boolean tryAcquireHedge() {
+    if (budget < 1) {
+      return false;
+    }
+    budget -= 1;
+    hedgeCount++;
+    return true;
+  }
+
+  private synchronized void recordLatency(long nanos) {
+    latencies[(int) (latencyCount % LATENCY_WINDOW_SIZE)] = nanos;
+    latencyCount++;
+    if (latencyCount < MIN_LATENCY_SAMPLES
+        || (delayNanos >= 0 && latencyCount % DELAY_UPDATE_INTERVAL != 0)) {
+      return;
+    }
+    int size = (int) Math.min(latencyCount, LATENCY_WINDOW_SIZE);
+    long[] sorted = Arrays.copyOf(latencies, size);
+    Arrays.sort(sorted);
+    int index = Math.max(0, (int) Math.ceil(delayPercentile * size) - 1);
+    delayNanos = Math.max(minDelayNanos, sorted[index]);
+  }
+
+  /** The requests sent for one call. */
+  private final class HedgedCall<T> {
+    private final Supplier<ApiFuture<T>> call;
+    private final long startNanos;
+    private final SettableApiFuture<T> result = SettableApiFuture.create();
+
+    @GuardedBy("this")
+    private final List<ApiFuture<T>> attempts = new ArrayList<>(2);
+
+    @GuardedBy("this")
+    private int pendingAttempts = 0;
+
+    @GuardedBy("this")
+    @Nullable
+    private ScheduledFuture<?> hedgeTimer = null;
+
+    HedgedCall(Supplier<ApiFuture<T>> call, long startNanos) {
+      this.call = call;
+      this.startNanos = startNanos;
+      result.addListener(this::onResultDone, MoreExecutors.directExecutor());
+    }
+
+    void scheduleHedge(long delay) {
+      synchronized (this) {
+        if (result.isDone()) {
+          return;
+        }
+        hedgeTimer = SchedulerHolder.SCHEDULER.schedule(this::hedge, delay, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    private void hedge() {
+      if (result.isDone() || !tryAcquireHedge()) {
+        return;
+      }
+      startAttempt();
+    }
+
+    void startAttempt() {
+      ApiFuture<T> attempt;
+      try {
+        attempt = call.get();
+      } catch (RuntimeException e) {
+        attempt = ApiFutures.immediateFailedFuture(e);
+      }
+      synchronized (this) {
+        attempts.add(attempt);
+        pendingAttempts++;
+      }
+      ApiFutures.addCallback(
+          attempt,
+          new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+              if (result.set(value)) {
+                recordLatency(System.nanoTime() - startNanos);
+              }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              boolean lastAttempt;
+              synchronized (HedgedCall.this) {
+                pendingAttempts--;
+                lastAttempt = pendingAttempts == 0;
+              }
+              if (lastAttempt) {
+                result.setException(t);
+              }
+            }
+          },
+          MoreExecutors.directExecutor());
+      if (result.isDone()) {
+        // The result was set before this attempt was registered; it is no longer needed.
+        onResultDone();
+      }
+    }
+
+    /** Cancels the timer and all requests that are still running. */
+    private void onResultDone() {
+      List<ApiFuture<T>> toCancel;
+      synchronized (this) {
+        if (hedgeTimer != null) {
+          hedgeTimer.cancel(false);
+        }
+        toCancel = new ArrayList<>(attempts);
+      }
+      for (ApiFuture<T> attempt : toCancel) {
+        attempt.cancel(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,214 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of asynchronous KMS calls that are in flight at the same time, for internal use
+ * only.
+ *
+ * <p>Calls beyond the limit are queued and started, in submission order, as earlier calls complete.
+ * Submitting never blocks the calling thread.
+ */
+public final class InFlightLimiter {
+
+  private final int maxInFlight;
+
+  @GuardedBy("this")
+  private int inFlight = 0;
+
+  @GuardedBy("this")
+  private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+  // A start that completes synchronously releases its slot while the previous start is still on
+  // the stack. Instead of recursing, such releases are counted here and handed to queued calls by
+  // the one thread that is draining the queue.
+  @GuardedBy("this")
+  private boolean draining = false;
+
+  @GuardedBy("this")
+  private int releasedSlots = 0;
+
+  public InFlightLimiter(int maxInFlight) {
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+    }
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Starts {@code call} as soon as fewer than {@code maxInFlight} calls are outstanding, and
+   * returns a future that completes with its result.
+   *
+   * <p>Cancelling the returned future cancels the underlying call if it has already started, and
+   * prevents it from starting otherwise.
+   */
+  public <T> CompletableFuture<T> submit(Supplier<ApiFuture<T>> call) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable start = () -> start(call, result);
+    boolean startNow;
+    synchronized (this) {
+      startNow = inFlight < maxInFlight;
+      if (startNow) {
+        inFlight++;
+      } else {
+        pending.add(start);
+      }
+    }
+    if (startNow) {
+      start.run();
+    }
+    return result;
+  }
+
+  /** Converts a KMS response into the result of an operation, checking its integrity. */
+  public interface ResponseHandler<R, T> {
+    T handle(R response) throws GeneralSecurityException;
+  }
+
+  /**
+   * Like {@link #submit(Supplier)}, but passes the response through {@code handler}.
+   *
+   * <p>The returned future fails with a {@link GeneralSecurityException}, with {@code
+   * failureMessage} as message, if the call fails or {@code handler} throws a {@link
+   * RuntimeException}. A {@link GeneralSecurityException} that the call fails with or that {@code
+   * handler} throws is passed on as is. Cancelling the returned future cancels the call.
+   */
+  public <R, T> CompletableFuture<T> submit(
+      Supplier<ApiFuture<R>> call, ResponseHandler<R, T> handler, String failureMessage) {
+    CompletableFuture<R> responseFuture = submit(call);
+    CompletableFuture<T> result =
+        responseFuture.handle(
+            (response, t) -> {
+              if (t != null) {
+                Throwable cause = (t instanceof CompletionException) ? t.getCause() : t;
+                if (cause instanceof GeneralSecurityException) {
+                  throw new CompletionException(cause);
+                }
+                throw new CompletionException(new GeneralSecurityException(failureMessage, cause));
+              }
+              try {
+                return handler.handle(response);
+              } catch (GeneralSecurityException e) {
+                throw new CompletionException(e);
+              } catch (RuntimeException e) {
+                throw new CompletionException(new GeneralSecurityException(failureMessage, e));
+              }
+            });
+    result.whenComplete(
+        (unusedValue, unusedThrowable) -> {
+          if (result.isCancelled()) {
+            responseFuture.cancel(true);
+          }
+        });
+    return result;
+  }
+
+  /** Returns the number of calls that have started but not yet completed. */
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  /** Returns the number of calls waiting for a free slot. */
+  public synchronized int pending() {
+    return pending.size();
+  }
+
+  private <T> void start(Supplier<ApiFuture<T>> call, CompletableFuture<T> result) {
+    if (result.isDone()) {
+      release();
+      return;
+    }
+    ApiFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+      release();
+      return;
+    }
+    result.whenComplete(
+        (unusedValue, unusedThrowable) -> {
+          if (result.isCancelled()) {
+            future.cancel(true);
+          }
+        });
+    ApiFutures.addCallback(
+        future,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onSuccess(T value) {
+            result.complete(value);
+            release();
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            result.completeExceptionally(t);
+            release();
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  private void release() {
+    synchronized (this) {
+      if (pending.isEmpty() && !draining) {
+        inFlight--;
+        return;
+      }
+      releasedSlots++;
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    while (true) {
+      Runnable next;
+      synchronized (this) {
+        next = (releasedSlots > 0) ? pending.poll() : null;
+        if (next == null) {
+          inFlight -= releasedSlots;
+          releasedSlots = 0;
+          draining = false;
+          return;
+        }
+        releasedSlots--;
+      }
+      try {
+        next.run();
+      } catch (Throwable t) {
+        synchronized (this) {
+          inFlight -= releasedSlots;
+          releasedSlots = 0;
+          draining = false;
+        }
+        throw t;
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A Cloud KMS response that failed validation, for internal use only. Use {@link KmsEvents}. */
+@Name("com.google.crypto.tink.integration.gcpkms.IntegrityFailure")
+@Label("Cloud KMS Integrity Failure")
+@Category({"Tink", "Cloud KMS"})
+@Description("A response from Cloud KMS was rejected because of a checksum or key name mismatch.")
+final class IntegrityFailureEvent extends Event {
+
+  private static final EventType TYPE = EventType.getEventType(IntegrityFailureEvent.class);
+
+  @Label("Key Name")
+  private final String keyName;
+
+  @Label("Operation")
+  private final String operation;
+
+  @Label("Failure")
+  @Description("The check that failed, CRC32C_MISMATCH or KEY_NAME_MISMATCH.")
+  private final String failure;
+
+  private IntegrityFailureEvent(String keyName, String operation, String failure) {
+    this.keyName = keyName;
+    this.operation = operation;
+    this.failure = failure;
+  }
+
+  static void emit(String keyName, String operation, String failure) {
+    if (TYPE.isEnabled()) {
+      new IntegrityFailureEvent(keyName, operation, failure).commit();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A request to Cloud KMS, for internal use only. The event lasts from sending the request until its
+ * response or failure, including hedged requests and retries of the client.
+ */
+@Name("com.google.crypto.tink.integration.gcpkms.KmsCall")
+@Label("Cloud KMS Call")
+@Category({"Tink", "Cloud KMS"})
+@Description("A request to Cloud KMS, from sending it until its response or failure.")
+@StackTrace(false)
+public final class KmsCallEvent extends Event {
+
+  private static final EventType TYPE = EventType.getEventType(KmsCallEvent.class);
+
+  @Label("Key Name")
+  private final String keyName;
+
+  @Label("Operation")
+  private final String operation;
+
+  @Label("Payload Size")
+  @Description("The size of the plaintext, ciphertext or data sent to Cloud KMS.")
+  @DataAmount
+  private final long payloadSize;
+
+  @Label("Checksum Time")
+  @Description("The time spent computing CRC32C checksums before sending the request.")
+  @Timespan
+  private long checksumDuration;
+
+  @Label("Serialization Time")
+  @Description("The time spent building the request before sending it.")
+  @Timespan
+  private long serializationDuration;
+
+  @Label("Status")
+  @Description("The gRPC status code of the response.")
+  private String status;
+
+  public KmsCallEvent(String keyName, String operation, long payloadSize) {
+    this.keyName = keyName;
+    this.operation = operation;
+    this.payloadSize = payloadSize;
+  }
+
+  static boolean isTypeEnabled() {
+    return TYPE.isEnabled();
+  }
+
+  /** Sets the time spent building the request, and starts timing the request itself. */
+  public void beginRequest(long checksumNanos, long serializationNanos) {
+    this.checksumDuration = checksumNanos;
+    this.serializationDuration = serializationNanos;
+    begin();
+  }
+
+  /** Ends and records the event, if the settings of a recording allow it. */
+  public void commit(String status) {
+    this.status = status;
+    commit();
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Entry point to the JDK Flight Recorder events of the Cloud KMS integration, for internal use
+ * only.
+ *
+ * <p>The event classes depend on the {@code jdk.jfr} module, which runtime images may leave out.
+ * They must only be used after checking {@link #isKmsCallEnabled} or {@link
+ * #isPublicKeyFetchEnabled}; the other methods check this themselves. If the module is missing or
+ * no recording enables an event, nothing is allocated for it.
+ */
+public final class KmsEvents {
+
+  private static final boolean AVAILABLE = isAvailable();
+
+  private static boolean isAvailable() {
+    try {
+      Class.forName("jdk.jfr.FlightRecorder", false, KmsEvents.class.getClassLoader());
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+    return FlightRecorder.isAvailable();
+  }
+
+  /** Returns true if a {@link KmsCallEvent} would be recorded. */
+  public static boolean isKmsCallEnabled() {
+    return AVAILABLE && KmsCallEvent.isTypeEnabled();
+  }
+
+  /** Returns true if a {@link PublicKeyFetchEvent} would be recorded. */
+  public static boolean isPublicKeyFetchEnabled() {
+    return AVAILABLE && PublicKeyFetchEvent.isTypeEnabled();
+  }
+
+  /** Records that a response for {@code operation} failed the integrity check {@code failure}. */
+  public static void integrityFailure(String keyName, String operation, String failure) {
+    if (AVAILABLE) {
+      IntegrityFailureEvent.emit(keyName, operation, failure);
+    }
+  }
+
+  /**
+   * Records whether a {@code decrypt} of {@code ciphertextSize} bytes was answered from a cache.
+   */
+  public static void decryptCacheLookup(boolean hit, int ciphertextSize) {
+    if (AVAILABLE) {
+      DecryptCacheEvent.emit(hit, ciphertextSize);
+    }
+  }
+
+  private KmsEvents() {}
+}
@@ -0,0 +1,121 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies that many threads can record to without contending, for internal use
+ * only.
+ *
+ * <p>Each power of two is split into {@code 2^SUB_BUCKET_BITS} equally wide buckets, so that
+ * percentiles are accurate to within 12.5%. Buckets are counted with {@link LongAdder}s, which are
+ * only allocated once a value falls into them; latencies of one operation usually fill a few dozen
+ * buckets.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+  private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<>(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  /** Records a latency. Negative values are recorded as 0. */
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    int index = bucketIndex(value);
+    LongAdder bucket = buckets.get(index);
+    if (bucket == null) {
+      buckets.compareAndSet(index, null, new LongAdder());
+      bucket = buckets.get(index);
+    }
+    bucket.increment();
+    count.increment();
+    totalNanos.add(value);
+    maxNanos.accumulate(value);
+  }
+
+  /** Returns the number of recorded latencies. */
+  public long count() {
+    return count.sum();
+  }
+
+  /** Returns the sum of all recorded latencies. */
+  public long totalNanos() {
+    return totalNanos.sum();
+  }
+
+  /** Returns the largest recorded latency, or 0 if none was recorded. */
+  public long maxNanos() {
+    return maxNanos.get();
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the recorded latencies, or 0 if none was
+   * recorded. {@code percentile} must be in (0, 100].
+   */
+  public long percentileNanos(double percentile) {
+    if (!(percentile > 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("percentile must be in (0, 100]: " + percentile);
+    }
+    long total = count();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long max = maxNanos();
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      LongAdder bucket = buckets.get(i);
+      if (bucket == null) {
+        continue;
+      }
+      seen += bucket.sum();
+      if (seen >= rank) {
+        return Math.min(bucketUpperBound(i), max);
+      }
+    }
+    // Values recorded concurrently may be counted in total but not yet in their bucket.
+    return max;
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /** Returns the largest value that falls into the bucket with the given index. */
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long lowerBound = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * The signature of a message that was signed as part of a batch, for internal use only.
+ *
+ * <p>It consists of the position of the message in the {@link MerkleTree} of the batch, the
+ * inclusion proof of the message and the signature of the root, encoded as
+ *
+ * <pre>
+ * version (1 byte, 0x01) || index (4 bytes) || tree size (4 bytes) ||
+ * proof length n (1 byte) || n proof hashes (32 bytes each) || root signature
+ * </pre>
+ *
+ * <p>with integers in big-endian order. The root signature is over {@link #signedData}, which binds
+ * the root to the size of the tree.
+ */
+public final class MerkleBatchSignature {
+
+  private static final byte VERSION = 0x01;
+  private static final int HEADER_SIZE = 1 + 4 + 4 + 1;
+
+  /** Separates signed roots from other data signed with the same key. */
+  private static final byte[] SIGNED_DATA_PREFIX =
+      "Tink GCP KMS Merkle batch v1\0".getBytes(StandardCharsets.US_ASCII);
+
+  private final int index;
+  private final int treeSize;
+  private final byte[][] proof;
+  private final byte[] rootSignature;
+
+  private MerkleBatchSignature(int index, int treeSize, byte[][] proof, byte[] rootSignature) {
+    this.index = index;
+    this.treeSize = treeSize;
+    this.proof = proof;
+    this.rootSignature = rootSignature;
+  }
+
+  /** Returns the data that is signed for a tree with the given size and root. */
+  public static byte[] signedData(int treeSize, byte[] root) {
+    return ByteBuffer.allocate(SIGNED_DATA_PREFIX.length + 4 + root.length)
+        .put(SIGNED_DATA_PREFIX)
+        .putInt(treeSize)
+        .put(root)
+        .array();
+  }
+
+  /** Encodes the signature of the message at {@code index} in {@code tree}. */
+  public static byte[] encode(MerkleTree tree, int index, byte[] rootSignature) {
+    byte[][] proof = tree.inclusionProof(index);
+    ByteBuffer buffer =
+        ByteBuffer.allocate(
+                HEADER_SIZE + proof.length * MerkleTree.HASH_SIZE + rootSignature.length)
+            .put(VERSION)
+            .putInt(index)
+            .putInt(tree.size())
+            .put((byte) proof.length);
+    for (byte[] hash : proof) {
+      buffer.put(hash);
+    }
+    return buffer.put(rootSignature).array();
+  }
+
+  /** Parses an encoded signature. */
+  public static MerkleBatchSignature parse(byte[] signature) throws GeneralSecurityException {
+    if (signature.length < HEADER_SIZE) {
+      throw new GeneralSecurityException("The batch signature is too short.");
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(signature);
+    if (buffer.get() != VERSION) {
+      throw new GeneralSecurityException("Unknown batch signature version.");
+    }
+    int index = buffer.getInt();
+    int treeSize = buffer.getInt();
+    int proofLength = buffer.get() & 0xff;
+    if (treeSize <= 0 || index < 0 || index >= treeSize) {
+      throw new GeneralSecurityException("Invalid position in the batch.");
+    }
+    if (buffer.remaining() <= (long) proofLength * MerkleTree.HASH_SIZE) {
+      throw new GeneralSecurityException("The batch signature is too short.");
+    }
+    byte[][] proof = new byte[proofLength][MerkleTree.HASH_SIZE];
+    for (byte[] hash : proof) {
+      buffer.get(hash);
+    }
+    byte[] rootSignature = Arrays.copyOfRange(signature, buffer.position(), signature.length);
+    return new MerkleBatchSignature(index, treeSize, proof, rootSignature);
+  }
+
+  /** Returns the index of the message in its batch. */
+  public int index() {
+    return index;
+  }
+
+  /** Returns the number of messages in the batch. */
+  public int treeSize() {
+    return treeSize;
+  }
+
+  /** Returns the inclusion proof of the message. */
+  public byte[][] proof() {
+    return proof;
+  }
+
+  /** Returns the signature of {@link #signedData} for the root of the batch. */
+  public byte[] rootSignature() {
+    return rootSignature;
+  }
+}
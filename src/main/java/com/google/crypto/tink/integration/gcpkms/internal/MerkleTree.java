@@ -0,0 +1,159 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Merkle tree over SHA-256 hashes as defined in RFC 9162, section 2.1, for internal use only.
+ *
+ * <p>Leaves are hashed as {@code SHA-256(0x00 || data)} and inner nodes as {@code SHA-256(0x01 ||
+ * left || right)}, so that a leaf can never be mistaken for an inner node. The tree is built level
+ * by level; a node without a sibling at the end of a level is moved up unchanged, which yields the
+ * same root as the recursive definition in the RFC.
+ */
+public final class MerkleTree {
+
+  /** The size of the hashes in the tree, in bytes. */
+  public static final int HASH_SIZE = 32;
+
+  private static final byte LEAF_PREFIX = 0x00;
+  private static final byte NODE_PREFIX = 0x01;
+
+  /** The hashes of each level, from the leaves at index 0 to the root. */
+  private final byte[][][] levels;
+
+  /** Builds the tree over {@code leafHashes}, which must not be empty. */
+  public MerkleTree(List<byte[]> leafHashes) throws GeneralSecurityException {
+    if (leafHashes.isEmpty()) {
+      throw new GeneralSecurityException("A Merkle tree needs at least one leaf.");
+    }
+    MessageDigest digest = sha256();
+    byte[][][] levels = new byte[levelCount(leafHashes.size())][][];
+    levels[0] = leafHashes.toArray(new byte[0][]);
+    for (int level = 1; level < levels.length; level++) {
+      byte[][] below = levels[level - 1];
+      byte[][] hashes = new byte[(below.length + 1) / 2][];
+      for (int i = 0; i < hashes.length; i++) {
+        hashes[i] =
+            (2 * i + 1 < below.length)
+                ? nodeHash(digest, below[2 * i], below[2 * i + 1])
+                : below[2 * i];
+      }
+      levels[level] = hashes;
+    }
+    this.levels = levels;
+  }
+
+  /** Returns the number of leaves. */
+  public int size() {
+    return levels[0].length;
+  }
+
+  /** Returns the root hash. */
+  public byte[] root() {
+    return levels[levels.length - 1][0].clone();
+  }
+
+  /**
+   * Returns the inclusion proof of the leaf at {@code index}: the hashes of its siblings on the way
+   * to the root, from the bottom up.
+   */
+  public byte[][] inclusionProof(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Leaf " + index + " of " + size());
+    }
+    byte[][] proof = new byte[levels.length - 1][];
+    int length = 0;
+    for (int level = 0; level < levels.length - 1; level++) {
+      int sibling = index ^ 1;
+      if (sibling < levels[level].length) {
+        proof[length++] = levels[level][sibling];
+      }
+      index >>= 1;
+    }
+    return Arrays.copyOf(proof, length);
+  }
+
+  /** Returns the hash of a leaf with the given data. */
+  public static byte[] leafHash(byte[] data) throws GeneralSecurityException {
+    MessageDigest digest = sha256();
+    digest.update(LEAF_PREFIX);
+    return digest.digest(data);
+  }
+
+  /**
+   * Computes the root of a tree with {@code treeSize} leaves from the inclusion proof of the leaf
+   * at {@code index}, as in RFC 9162, section 2.1.3.2.
+   *
+   * @throws GeneralSecurityException if the proof does not fit the position of the leaf
+   */
+  public static byte[] rootFromInclusionProof(
+      int index, int treeSize, byte[] leafHash, byte[][] proof) throws GeneralSecurityException {
+    if (index < 0 || index >= treeSize) {
+      throw new GeneralSecurityException(
+          "Leaf index " + index + " is not in a tree of size " + treeSize);
+    }
+    MessageDigest digest = sha256();
+    int fn = index;
+    int sn = treeSize - 1;
+    byte[] r = leafHash;
+    for (byte[] p : proof) {
+      if (sn == 0) {
+        throw new GeneralSecurityException("The inclusion proof is too long.");
+      }
+      if ((fn & 1) == 1 || fn == sn) {
+        r = nodeHash(digest, p, r);
+        while ((fn & 1) == 0 && fn != 0) {
+          fn >>= 1;
+          sn >>= 1;
+        }
+      } else {
+        r = nodeHash(digest, r, p);
+      }
+      fn >>= 1;
+      sn >>= 1;
+    }
+    if (sn != 0) {
+      throw new GeneralSecurityException("The inclusion proof is too short.");
+    }
+    return r;
+  }
+
+  private static byte[] nodeHash(MessageDigest digest, byte[] left, byte[] right) {
+    digest.update(NODE_PREFIX);
+    digest.update(left);
+    return digest.digest(right);
+  }
+
+  /** Returns the number of levels of a tree with {@code size} leaves, including leaves and root. */
+  private static int levelCount(int size) {
+    return 33 - Integer.numberOfLeadingZeros(size - 1);
+  }
+
+  private static MessageDigest sha256() throws GeneralSecurityException {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new GeneralSecurityException(e);
+    }
+  }
+}
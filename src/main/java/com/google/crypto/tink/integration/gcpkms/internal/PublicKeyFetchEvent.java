@@ -0,0 +1,76 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A GetPublicKey request to Cloud KMS, for internal use only. The event includes the retry in
+ * NIST_PQC format for keys that do not support PEM.
+ */
+@Name("com.google.crypto.tink.integration.gcpkms.PublicKeyFetch")
+@Label("Cloud KMS Public Key Fetch")
+@Category({"Tink", "Cloud KMS"})
+@Description("Fetching the public key of a signing key from Cloud KMS.")
+@StackTrace(false)
+public final class PublicKeyFetchEvent extends Event {
+
+  private static final EventType TYPE = EventType.getEventType(PublicKeyFetchEvent.class);
+
+  @Label("Key Name")
+  private final String keyName;
+
+  @Label("Format")
+  @Description("The format of the last request, PEM or NIST_PQC.")
+  private String format;
+
+  @Label("Fallback")
+  @Description("Whether the key did not support PEM and was requested again in NIST_PQC format.")
+  private boolean fallback;
+
+  @Label("Status")
+  @Description("The gRPC status code of the last response.")
+  private String status;
+
+  /** Creates and begins the event. */
+  public PublicKeyFetchEvent(String keyName) {
+    this.keyName = keyName;
+    begin();
+  }
+
+  static boolean isTypeEnabled() {
+    return TYPE.isEnabled();
+  }
+
+  /** Sets the format of the next request, and whether it is the fallback to NIST_PQC. */
+  public void setFormat(String format, boolean fallback) {
+    this.format = format;
+    this.fallback = fallback;
+  }
+
+  /** Ends and records the event, if the settings of a recording allow it. */
+  public void commit(String status) {
+    this.status = status;
+    commit();
+  }
+}
@@ -0,0 +1,232 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The SHAKE-256 extendable-output function of FIPS 202, for internal use only.
+ *
+ * <p>An instance absorbs data with {@link #update} until {@link #digest} is called, after which it
+ * cannot be used anymore. {@link #copy} clones the absorbed state, so that a common prefix needs to
+ * be absorbed only once. Instances are not thread-safe.
+ */
+public final class Shake256 {
+
+  /** The number of bytes absorbed per permutation, (1600 - 2 * 256) / 8. */
+  private static final int RATE = 136;
+
+  private static final int RATE_LANES = RATE / 8;
+
+  /** The SHAKE domain separation bits and the first bit of the pad10*1 padding. */
+  private static final byte DOMAIN_PADDING = 0x1F;
+
+  private static final VarHandle LITTLE_ENDIAN_LONG =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final long[] ROUND_CONSTANTS = {
+    0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL, 0x8000000080008000L,
+    0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+    0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+    0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L,
+    0x8000000000008002L, 0x8000000000000080L, 0x000000000000800aL, 0x800000008000000aL,
+    0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L,
+  };
+
+  /** The rotation offsets of the rho step, in the order in which the pi step visits the lanes. */
+  private static final int[] RHO_OFFSETS = {
+    1, 3, 6, 10, 15, 21, 28, 36, 45, 55, 2, 14, 27, 41, 56, 8, 25, 43, 62, 18, 39, 61, 20, 44,
+  };
+
+  /** The lanes in the order in which the pi step moves them, starting from lane 1. */
+  private static final int[] PI_LANES = {
+    10, 7, 11, 17, 18, 3, 5, 16, 8, 21, 24, 4, 15, 23, 19, 13, 12, 2, 20, 14, 22, 9, 6, 1,
+  };
+
+  /** The 5x5 lanes of the state, lane (x, y) at index x + 5 * y. */
+  private final long[] state;
+
+  /** Data that does not fill a block yet. */
+  private final byte[] block;
+
+  private int blockLength;
+  private boolean finished;
+
+  public Shake256() {
+    this.state = new long[25];
+    this.block = new byte[RATE];
+  }
+
+  private Shake256(Shake256 other) {
+    this.state = other.state.clone();
+    this.block = other.block.clone();
+    this.blockLength = other.blockLength;
+    this.finished = other.finished;
+  }
+
+  /** Returns an independent copy with the same absorbed data. */
+  public Shake256 copy() {
+    return new Shake256(this);
+  }
+
+  public void update(byte b) {
+    checkNotFinished();
+    block[blockLength++] = b;
+    if (blockLength == RATE) {
+      absorbBlock(block, 0);
+      blockLength = 0;
+    }
+  }
+
+  public void update(byte[] data, int offset, int length) {
+    checkNotFinished();
+    if (blockLength > 0) {
+      int n = Math.min(RATE - blockLength, length);
+      System.arraycopy(data, offset, block, blockLength, n);
+      blockLength += n;
+      offset += n;
+      length -= n;
+      if (blockLength < RATE) {
+        return;
+      }
+      absorbBlock(block, 0);
+      blockLength = 0;
+    }
+    while (length >= RATE) {
+      absorbBlock(data, offset);
+      offset += RATE;
+      length -= RATE;
+    }
+    System.arraycopy(data, offset, block, 0, length);
+    blockLength = length;
+  }
+
+  public void update(byte[] data) {
+    update(data, 0, data.length);
+  }
+
+  /** Absorbs the remaining bytes of {@code data}, and advances its position to its limit. */
+  public void update(ByteBuffer data) {
+    checkNotFinished();
+    if (data.hasArray()) {
+      update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+      data.position(data.limit());
+      return;
+    }
+    while (data.hasRemaining()) {
+      int n = Math.min(RATE - blockLength, data.remaining());
+      data.get(block, blockLength, n);
+      blockLength += n;
+      if (blockLength == RATE) {
+        absorbBlock(block, 0);
+        blockLength = 0;
+      }
+    }
+  }
+
+  /** Returns the first {@code length} bytes of output. The instance cannot be used afterwards. */
+  public byte[] digest(int length) {
+    checkNotFinished();
+    finished = true;
+    Arrays.fill(block, blockLength, RATE, (byte) 0);
+    block[blockLength] ^= DOMAIN_PADDING;
+    block[RATE - 1] ^= (byte) 0x80;
+    absorbBlock(block, 0);
+
+    byte[] output = new byte[length];
+    int offset = 0;
+    while (true) {
+      for (int i = 0; i < RATE_LANES && offset < length; i++) {
+        long lane = state[i];
+        for (int j = 0; j < 8 && offset < length; j++) {
+          output[offset++] = (byte) (lane >>> (8 * j));
+        }
+      }
+      if (offset == length) {
+        return output;
+      }
+      keccakF(state);
+    }
+  }
+
+  private void checkNotFinished() {
+    if (finished) {
+      throw new IllegalStateException("The digest has already been computed.");
+    }
+  }
+
+  private void absorbBlock(byte[] data, int offset) {
+    for (int i = 0; i < RATE_LANES; i++) {
+      state[i] ^= (long) LITTLE_ENDIAN_LONG.get(data, offset + 8 * i);
+    }
+    keccakF(state);
+  }
+
+  /** The Keccak-f[1600] permutation. */
+  private static void keccakF(long[] a) {
+    for (long roundConstant : ROUND_CONSTANTS) {
+      // Theta.
+      long c0 = a[0] ^ a[5] ^ a[10] ^ a[15] ^ a[20];
+      long c1 = a[1] ^ a[6] ^ a[11] ^ a[16] ^ a[21];
+      long c2 = a[2] ^ a[7] ^ a[12] ^ a[17] ^ a[22];
+      long c3 = a[3] ^ a[8] ^ a[13] ^ a[18] ^ a[23];
+      long c4 = a[4] ^ a[9] ^ a[14] ^ a[19] ^ a[24];
+      long d0 = c4 ^ Long.rotateLeft(c1, 1);
+      long d1 = c0 ^ Long.rotateLeft(c2, 1);
+      long d2 = c1 ^ Long.rotateLeft(c3, 1);
+      long d3 = c2 ^ Long.rotateLeft(c4, 1);
+      long d4 = c3 ^ Long.rotateLeft(c0, 1);
+      for (int y = 0; y < 25; y += 5) {
+        a[y] ^= d0;
+        a[y + 1] ^= d1;
+        a[y + 2] ^= d2;
+        a[y + 3] ^= d3;
+        a[y + 4] ^= d4;
+      }
+
+      // Rho and pi.
+      long current = a[1];
+      for (int t = 0; t < 24; t++) {
+        int lane = PI_LANES[t];
+        long next = a[lane];
+        a[lane] = Long.rotateLeft(current, RHO_OFFSETS[t]);
+        current = next;
+      }
+
+      // Chi.
+      for (int y = 0; y < 25; y += 5) {
+        long b0 = a[y];
+        long b1 = a[y + 1];
+        long b2 = a[y + 2];
+        long b3 = a[y + 3];
+        long b4 = a[y + 4];
+        a[y] = b0 ^ (~b1 & b2);
+        a[y + 1] = b1 ^ (~b2 & b3);
+        a[y + 2] = b2 ^ (~b3 & b4);
+        a[y + 3] = b3 ^ (~b4 & b0);
+        a[y + 4] = b4 ^ (~b0 & b1);
+      }
+
+      // Iota.
+      a[0] ^= roundConstant;
+    }
+  }
+}
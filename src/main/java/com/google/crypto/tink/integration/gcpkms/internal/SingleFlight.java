@@ -0,0 +1,86 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces identical concurrent calls, for internal use only.
+ *
+ * <p>While a call for a key is running, further calls for an equal key do not start a new call but
+ * wait for the running one, and get the same result or exception. Results are not kept once the
+ * call has completed, so a later call for the same key starts a new call.
+ *
+ * <p>The result is shared between all callers, so it should be immutable or copied by the caller.
+ */
+public final class SingleFlight<K, V> {
+
+  /** A call that can be coalesced. */
+  public interface Call<V> {
+    V call() throws GeneralSecurityException;
+  }
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Runs {@code call} on the calling thread, unless a call for {@code key} is already running, in
+   * which case it waits for and returns the result of that call.
+   */
+  public V execute(K key, Call<V> call) throws GeneralSecurityException {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+    if (running != null) {
+      return await(running);
+    }
+    try {
+      V value = call.call();
+      future.complete(value);
+      return value;
+    } catch (GeneralSecurityException | RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /** Returns the number of keys for which a call is running. */
+  public int inFlight() {
+    return inFlight.size();
+  }
+
+  private static <V> V await(CompletableFuture<V> future) throws GeneralSecurityException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
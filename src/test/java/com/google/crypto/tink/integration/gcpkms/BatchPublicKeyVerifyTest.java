@@ -0,0 +1,205 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BatchPublicKeyVerifyTest {
+
+  private static final String KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign/cryptoKeyVersions/1";
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  /** Accepts a signature if it equals the data, and throws on an empty signature. */
+  private static final PublicKeyVerify EQUALITY_VERIFIER =
+      (signature, data) -> {
+        if (signature.length == 0) {
+          throw new IllegalStateException("empty signature");
+        }
+        if (!Arrays.equals(signature, data)) {
+          throw new GeneralSecurityException("invalid signature");
+        }
+      };
+
+  private static byte[] bytes(int i) {
+    return Integer.toString(i).getBytes(UTF_8);
+  }
+
+  @Test
+  public void verifyAll_returnsValidIndices() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      BatchPublicKeyVerify verifier = BatchPublicKeyVerify.create(EQUALITY_VERIFIER, pool);
+      List<byte[]> signatures = new ArrayList<>();
+      List<byte[]> data = new ArrayList<>();
+      BitSet expected = new BitSet();
+      for (int i = 0; i < 1000; i++) {
+        data.add(bytes(i));
+        if (i % 7 == 0) {
+          signatures.add(bytes(-i - 1));
+        } else {
+          signatures.add(bytes(i));
+          expected.set(i);
+        }
+      }
+
+      assertThat(verifier.verifyAll(signatures, data)).isEqualTo(expected);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void verifyAll_splitsIntoChunksOfWholeWords() throws Exception {
+    AtomicInteger tasks = new AtomicInteger();
+    Executor countingExecutor =
+        command -> {
+          tasks.incrementAndGet();
+          command.run();
+        };
+    BatchPublicKeyVerify verifier =
+        BatchPublicKeyVerify.create(EQUALITY_VERIFIER, countingExecutor);
+    List<byte[]> items = new ArrayList<>();
+    for (int i = 0; i < 64 * 1000 + 1; i++) {
+      items.add(bytes(i));
+    }
+
+    BitSet valid = verifier.verifyAll(items, items);
+
+    assertThat(valid.cardinality()).isEqualTo(items.size());
+    assertThat(tasks.get()).isGreaterThan(1);
+  }
+
+  @Test
+  public void verifyAll_exceptionOfVerifier_marksItemInvalid() {
+    BatchPublicKeyVerify verifier =
+        BatchPublicKeyVerify.create(EQUALITY_VERIFIER, MoreExecutors.directExecutor());
+
+    BitSet valid =
+        verifier.verifyAll(
+            Arrays.asList(new byte[0], bytes(1), bytes(3)),
+            Arrays.asList(bytes(0), bytes(1), bytes(2)));
+
+    assertThat(valid.stream().toArray()).asList().containsExactly(1);
+  }
+
+  @Test
+  public void verifyAll_linkedListsAndEmptyBatch_work() throws Exception {
+    BatchPublicKeyVerify verifier = BatchPublicKeyVerify.create(EQUALITY_VERIFIER);
+
+    assertThat(verifier.verifyAll(Collections.emptyList(), Collections.emptyList()).isEmpty())
+        .isTrue();
+    List<byte[]> items = new LinkedList<>(Arrays.asList(bytes(1), bytes(2)));
+    assertThat(verifier.verifyAll(items, items).cardinality()).isEqualTo(2);
+    assertThat(verifier.verifyAllAsync(items, items).get().cardinality()).isEqualTo(2);
+  }
+
+  @Test
+  public void verifyAll_differentSizes_throws() {
+    BatchPublicKeyVerify verifier = BatchPublicKeyVerify.create(EQUALITY_VERIFIER);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> verifier.verifyAll(Arrays.asList(bytes(1)), Collections.emptyList()));
+  }
+
+  @Test
+  public void verify_delegates() throws Exception {
+    BatchPublicKeyVerify verifier = BatchPublicKeyVerify.create(EQUALITY_VERIFIER);
+
+    verifier.verify(bytes(1), bytes(1));
+    assertThrows(GeneralSecurityException.class, () -> verifier.verify(bytes(1), bytes(2)));
+  }
+
+  @Test
+  public void buildBatchVerify_verifiesKmsSignatures() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(
+                FakeKeyManagementService.builder()
+                    .addSigningKey(KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+                    .build())
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceClient kmsClient =
+        KeyManagementServiceClient.create(
+            KeyManagementServiceSettings.newBuilder()
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .setTransportChannelProvider(
+                    FixedTransportChannelProvider.create(
+                        GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()))
+                .build());
+    PublicKeySign signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .build();
+    BatchPublicKeyVerify verifier =
+        GcpKmsPublicKeyVerify.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildBatchVerify();
+    List<byte[]> signatures = new ArrayList<>();
+    List<byte[]> data = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      data.add(bytes(i));
+      signatures.add(signer.sign(bytes(i % 10 == 0 ? -1 : i)));
+    }
+
+    BitSet valid = verifier.verifyAll(signatures, data);
+
+    assertThat(valid.cardinality()).isEqualTo(18);
+    assertThat(valid.get(0)).isFalse();
+    assertThat(valid.get(10)).isFalse();
+  }
+}
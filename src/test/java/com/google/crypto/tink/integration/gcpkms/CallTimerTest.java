@@ -0,0 +1,226 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiExceptionFactory;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.IntegrityFailure;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Phase;
+import io.grpc.Status;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CallTimerTest {
+
+  private static final String KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead-key";
+
+  /** Records the events it receives as strings. */
+  private static final class RecordingListener implements KmsMetricsListener {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void recordLatency(String keyName, Operation operation, Phase phase, long nanos) {
+      assertThat(nanos).isAtLeast(0);
+      events.add(operation + " " + phase);
+    }
+
+    @Override
+    public void recordStatus(String keyName, Operation operation, StatusCode.Code code) {
+      events.add(operation + " " + code);
+    }
+
+    @Override
+    public void recordIntegrityFailure(
+        String keyName, Operation operation, IntegrityFailure failure) {
+      events.add(operation + " " + failure);
+    }
+  }
+
+  private static HttpResponseException httpException(int statusCode) {
+    return new HttpResponseException.Builder(statusCode, "error", new HttpHeaders()).build();
+  }
+
+  @Test
+  public void phasesAreReportedInOrder() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    CallTimer timer = CallTimer.start(listener, KEY_NAME, Operation.ENCRYPT, 3);
+
+    timer.mark(Phase.SERIALIZATION);
+    timer.mark(Phase.CHECKSUM);
+    timer.mark(Phase.SERIALIZATION);
+    assertThat(listener.events).isEmpty();
+    timer.startRpc();
+    timer.endRpc(null);
+    assertThat(timer.validated("result")).isEqualTo("result");
+
+    assertThat(listener.events)
+        .containsExactly(
+            "ENCRYPT CHECKSUM",
+            "ENCRYPT SERIALIZATION",
+            "ENCRYPT RPC",
+            "ENCRYPT OK",
+            "ENCRYPT VALIDATION")
+        .inOrder();
+  }
+
+  @Test
+  public void endRpcWhenDone_reportsOnCompletion() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    CallTimer timer = CallTimer.start(listener, KEY_NAME, Operation.DECRYPT, 3);
+    SettableApiFuture<String> future = SettableApiFuture.create();
+
+    timer.startRpc();
+    assertThat(timer.endRpcWhenDone(future)).isSameInstanceAs(future);
+    assertThat(listener.events).hasSize(2);
+    future.setException(new IOException("connection reset"));
+
+    assertThat(listener.events)
+        .containsExactly(
+            "DECRYPT CHECKSUM", "DECRYPT SERIALIZATION", "DECRYPT RPC", "DECRYPT UNAVAILABLE")
+        .inOrder();
+  }
+
+  @Test
+  public void integrityFailure_isReportedAndReturned() throws Exception {
+    RecordingListener listener = new RecordingListener();
+
+    GeneralSecurityException e =
+        CallTimer.integrityFailure(
+            listener, KEY_NAME, Operation.MAC_SIGN, IntegrityFailure.CRC32C_MISMATCH, "bad");
+
+    assertThat(e).hasMessageThat().isEqualTo("bad");
+    assertThat(listener.events).containsExactly("MAC_SIGN CRC32C_MISMATCH");
+  }
+
+  @Test
+  public void withoutListener_doesNothing() throws Exception {
+    CallTimer timer = CallTimer.start(null, KEY_NAME, Operation.ENCRYPT, 3);
+
+    timer.mark(Phase.CHECKSUM);
+    timer.startRpc();
+    timer.endRpc(new IOException());
+    SettableApiFuture<String> future = SettableApiFuture.create();
+    assertThat(timer.endRpcWhenDone(future)).isSameInstanceAs(future);
+    assertThat(timer.validated("result")).isEqualTo("result");
+    assertThat(
+            CallTimer.integrityFailure(
+                null, KEY_NAME, Operation.ENCRYPT, IntegrityFailure.KEY_NAME_MISMATCH, "bad"))
+        .hasMessageThat()
+        .isEqualTo("bad");
+  }
+
+  /**
+   * Runs {@code action} while JDK Flight Recorder records {@code eventName}, and returns the
+   * events.
+   */
+  private static List<RecordedEvent> recordEvents(String eventName, Runnable action)
+      throws Exception {
+    Path file = Files.createTempFile("CallTimerTest", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(eventName);
+      recording.start();
+      action.run();
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void whileRecording_commitsKmsCallEvent() throws Exception {
+    List<RecordedEvent> events =
+        recordEvents(
+            "com.google.crypto.tink.integration.gcpkms.KmsCall",
+            () -> {
+              CallTimer timer = CallTimer.start(null, KEY_NAME, Operation.MAC_VERIFY, 42);
+              timer.mark(Phase.CHECKSUM);
+              timer.startRpc();
+              timer.endRpc(httpException(503));
+            });
+
+    assertThat(events).hasSize(1);
+    RecordedEvent event = events.get(0);
+    assertThat(event.getString("keyName")).isEqualTo(KEY_NAME);
+    assertThat(event.getString("operation")).isEqualTo("MAC_VERIFY");
+    assertThat(event.getLong("payloadSize")).isEqualTo(42);
+    assertThat(event.getString("status")).isEqualTo("UNAVAILABLE");
+    assertThat(event.getDuration("checksumDuration").isNegative()).isFalse();
+  }
+
+  @Test
+  public void whileRecording_commitsIntegrityFailureEvent() throws Exception {
+    List<RecordedEvent> events =
+        recordEvents(
+            "com.google.crypto.tink.integration.gcpkms.IntegrityFailure",
+            () ->
+                CallTimer.integrityFailure(
+                    null, KEY_NAME, Operation.DECRYPT, IntegrityFailure.CRC32C_MISMATCH, "bad"));
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getString("operation")).isEqualTo("DECRYPT");
+    assertThat(events.get(0).getString("failure")).isEqualTo("CRC32C_MISMATCH");
+  }
+
+  @Test
+  public void statusOf() throws Exception {
+    assertThat(CallTimer.statusOf(null)).isEqualTo(StatusCode.Code.OK);
+    assertThat(
+            CallTimer.statusOf(
+                new GeneralSecurityException(
+                    "encryption failed",
+                    ApiExceptionFactory.createException(
+                        new RuntimeException(),
+                        GrpcStatusCode.of(Status.Code.NOT_FOUND),
+                        /* retryable= */ false))))
+        .isEqualTo(StatusCode.Code.NOT_FOUND);
+    assertThat(CallTimer.statusOf(new GeneralSecurityException("failed", httpException(429))))
+        .isEqualTo(StatusCode.Code.RESOURCE_EXHAUSTED);
+    assertThat(CallTimer.statusOf(httpException(403))).isEqualTo(StatusCode.Code.PERMISSION_DENIED);
+    assertThat(CallTimer.statusOf(httpException(504))).isEqualTo(StatusCode.Code.DEADLINE_EXCEEDED);
+    assertThat(CallTimer.statusOf(httpException(418))).isEqualTo(StatusCode.Code.UNKNOWN);
+    assertThat(CallTimer.statusOf(new IOException())).isEqualTo(StatusCode.Code.UNAVAILABLE);
+    assertThat(CallTimer.statusOf(new KmsRateLimiter.RateLimitExceededException("limited")))
+        .isEqualTo(StatusCode.Code.RESOURCE_EXHAUSTED);
+    assertThat(CallTimer.statusOf(new KmsCircuitBreaker.CircuitOpenException("open")))
+        .isEqualTo(StatusCode.Code.UNAVAILABLE);
+    assertThat(CallTimer.statusOf(new CancellationException()))
+        .isEqualTo(StatusCode.Code.CANCELLED);
+    assertThat(CallTimer.statusOf(new IllegalStateException())).isEqualTo(StatusCode.Code.UNKNOWN);
+  }
+}
@@ -0,0 +1,232 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.base.Ticker;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.RegistryConfiguration;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.aead.PredefinedAeadParameters;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DecryptCachingAeadTest {
+
+  /** An Aead that counts the calls to decrypt. */
+  private static final class CountingAead implements Aead {
+    private final Aead aead;
+    final AtomicInteger decryptCount = new AtomicInteger();
+
+    CountingAead(Aead aead) {
+      this.aead = aead;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, byte[] associatedData) throws GeneralSecurityException {
+      return aead.encrypt(plaintext, associatedData);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, byte[] associatedData)
+        throws GeneralSecurityException {
+      decryptCount.incrementAndGet();
+      return aead.decrypt(ciphertext, associatedData);
+    }
+  }
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  private CountingAead countingAead;
+  private FakeTicker ticker;
+
+  @Before
+  public void setUp() throws Exception {
+    AeadConfig.register();
+    Aead aead =
+        KeysetHandle.generateNew(PredefinedAeadParameters.AES128_GCM)
+            .getPrimitive(RegistryConfiguration.get(), Aead.class);
+    countingAead = new CountingAead(aead);
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  public void decrypt_secondCallIsCached() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 10, Duration.ofMinutes(1), ticker);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = cachingAead.encrypt(plaintext, associatedData);
+
+    assertThat(cachingAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThat(cachingAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+
+    assertThat(countingAead.decryptCount.get()).isEqualTo(1);
+    assertThat(cachingAead.hitCount()).isEqualTo(1);
+    assertThat(cachingAead.missCount()).isEqualTo(1);
+    assertThat(cachingAead.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void decrypt_whileRecording_commitsCacheEvents() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 10, Duration.ofMinutes(1), ticker);
+    byte[] ciphertext = cachingAead.encrypt("plaintext".getBytes(UTF_8), null);
+    Path file = Files.createTempFile("DecryptCachingAeadTest", ".jfr");
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      // The event is disabled by default, so it has to be enabled explicitly.
+      recording.enable("com.google.crypto.tink.integration.gcpkms.DecryptCache");
+      recording.start();
+      cachingAead.decrypt(ciphertext, null);
+      cachingAead.decrypt(ciphertext, null);
+      recording.stop();
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+
+    assertThat(events).hasSize(2);
+    assertThat(events.get(0).getBoolean("hit")).isFalse();
+    assertThat(events.get(1).getBoolean("hit")).isTrue();
+    assertThat(events.get(1).getLong("ciphertextSize")).isEqualTo(ciphertext.length);
+  }
+
+  @Test
+  public void decrypt_returnedPlaintextCanBeModified() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 10, Duration.ofMinutes(1), ticker);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] ciphertext = cachingAead.encrypt(plaintext, null);
+
+    byte[] decrypted = cachingAead.decrypt(ciphertext, null);
+    decrypted[0] = (byte) (decrypted[0] ^ 1);
+    byte[] decrypted2 = cachingAead.decrypt(ciphertext, null);
+    decrypted2[1] = (byte) (decrypted2[1] ^ 1);
+
+    assertThat(cachingAead.decrypt(ciphertext, null)).isEqualTo(plaintext);
+    assertThat(countingAead.decryptCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void decrypt_differentAssociatedData_notCached() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 10, Duration.ofMinutes(1), ticker);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = cachingAead.encrypt(plaintext, associatedData);
+
+    assertThat(cachingAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> cachingAead.decrypt(ciphertext, "associatedData2".getBytes(UTF_8)));
+    assertThrows(GeneralSecurityException.class, () -> cachingAead.decrypt(ciphertext, null));
+
+    assertThat(countingAead.decryptCount.get()).isEqualTo(3);
+    assertThat(cachingAead.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void decrypt_failuresAreNotCached() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 10, Duration.ofMinutes(1), ticker);
+    byte[] invalidCiphertext = "invalid".getBytes(UTF_8);
+
+    assertThrows(
+        GeneralSecurityException.class, () -> cachingAead.decrypt(invalidCiphertext, null));
+    assertThrows(
+        GeneralSecurityException.class, () -> cachingAead.decrypt(invalidCiphertext, null));
+
+    assertThat(countingAead.decryptCount.get()).isEqualTo(2);
+    assertThat(cachingAead.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void decrypt_entriesExpire() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 10, Duration.ofMinutes(1), ticker);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] ciphertext = cachingAead.encrypt(plaintext, null);
+
+    assertThat(cachingAead.decrypt(ciphertext, null)).isEqualTo(plaintext);
+    ticker.advance(Duration.ofSeconds(59));
+    assertThat(cachingAead.decrypt(ciphertext, null)).isEqualTo(plaintext);
+    assertThat(countingAead.decryptCount.get()).isEqualTo(1);
+
+    ticker.advance(Duration.ofSeconds(2));
+    assertThat(cachingAead.decrypt(ciphertext, null)).isEqualTo(plaintext);
+    assertThat(countingAead.decryptCount.get()).isEqualTo(2);
+    assertThat(cachingAead.evictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void decrypt_maxEntriesIsEnforced() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 2, Duration.ofMinutes(1), ticker);
+    for (int i = 0; i < 5; i++) {
+      byte[] ciphertext = cachingAead.encrypt(new byte[] {(byte) i}, null);
+      assertThat(cachingAead.decrypt(ciphertext, null)).isEqualTo(new byte[] {(byte) i});
+    }
+
+    assertThat(cachingAead.size()).isAtMost(2);
+    assertThat(cachingAead.evictionCount()).isAtLeast(3);
+  }
+
+  @Test
+  public void invalidateAll_removesEntries() throws Exception {
+    DecryptCachingAead cachingAead =
+        new DecryptCachingAead(countingAead, 10, Duration.ofMinutes(1), ticker);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] ciphertext = cachingAead.encrypt(plaintext, null);
+    assertThat(cachingAead.decrypt(ciphertext, null)).isEqualTo(plaintext);
+
+    cachingAead.invalidateAll();
+
+    assertThat(cachingAead.size()).isEqualTo(0);
+    assertThat(cachingAead.decrypt(ciphertext, null)).isEqualTo(plaintext);
+    assertThat(countingAead.decryptCount.get()).isEqualTo(2);
+  }
+}
@@ -20,14 +20,24 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertThrows;
 
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.services.cloudkms.v1.CloudKMS;
 import com.google.api.services.cloudkms.v1.model.DecryptRequest;
 import com.google.api.services.cloudkms.v1.model.DecryptResponse;
 import com.google.api.services.cloudkms.v1.model.EncryptRequest;
 import com.google.api.services.cloudkms.v1.model.EncryptResponse;
+import com.google.common.collect.Range;
 import com.google.common.hash.Hashing;
+import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.aead.AeadConfig;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -455,4 +465,102 @@ public final class FakeCloudKmsTest {
 
     assertThat(decResponse2.decodePlaintext()).isEqualTo(plaintext2);
   }
+
+  @Test
+  public void concurrentEncryptDecrypt_success() throws Exception {
+    FakeCloudKms kms = new FakeCloudKms(asList(KEY_ID, KEY_ID_2));
+    int threads = 8;
+    int callsPerThread = 50;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        String keyId = (i % 2 == 0) ? KEY_ID : KEY_ID_2;
+        byte[] plaintext = ("plaintext " + i).getBytes(UTF_8);
+        futures.add(
+            executor.submit(
+                () -> {
+                  Aead aead = new GcpKmsAead(kms, keyId);
+                  for (int j = 0; j < callsPerThread; j++) {
+                    byte[] ciphertext = aead.encrypt(plaintext, new byte[0]);
+                    assertThat(aead.decrypt(ciphertext, new byte[0])).isEqualTo(plaintext);
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(kms.callCount(FakeCloudKms.Operation.ENCRYPT)).isEqualTo(threads * callsPerThread);
+    assertThat(kms.callCount(FakeCloudKms.Operation.DECRYPT)).isEqualTo(threads * callsPerThread);
+  }
+
+  @Test
+  public void setLatency_delaysCalls() throws Exception {
+    FakeCloudKms kms =
+        new FakeCloudKms(asList(KEY_ID)).setLatency(Duration.ofMillis(50), Duration.ofMillis(10));
+    EncryptRequest encRequest = new EncryptRequest().encodePlaintext("plaintext".getBytes(UTF_8));
+
+    long start = System.nanoTime();
+    kms.projects().locations().keyRings().cryptoKeys().encrypt(KEY_ID, encRequest).execute();
+
+    assertThat(System.nanoTime() - start).isAtLeast(Duration.ofMillis(50).toNanos());
+  }
+
+  @Test
+  public void setErrorRate_one_failsAllCallsWithStatusCode() throws Exception {
+    FakeCloudKms kms = new FakeCloudKms(asList(KEY_ID)).setErrorRate(429, 1.0);
+    EncryptRequest encRequest = new EncryptRequest().encodePlaintext("plaintext".getBytes(UTF_8));
+
+    HttpResponseException e =
+        assertThrows(
+            HttpResponseException.class,
+            () ->
+                kms.projects()
+                    .locations()
+                    .keyRings()
+                    .cryptoKeys()
+                    .encrypt(KEY_ID, encRequest)
+                    .execute());
+
+    assertThat(e.getStatusCode()).isEqualTo(429);
+    assertThat(kms.injectedErrorCount()).isEqualTo(1);
+    assertThat(kms.callCount(FakeCloudKms.Operation.ENCRYPT)).isEqualTo(1);
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> new GcpKmsAead(kms, KEY_ID).encrypt(new byte[0], new byte[0]));
+  }
+
+  @Test
+  public void setErrorRate_failsAboutThatFractionOfCalls() throws Exception {
+    FakeCloudKms kms =
+        new FakeCloudKms(asList(KEY_ID)).setErrorRate(429, 0.25).setErrorRate(503, 0.25);
+    Aead aead = new GcpKmsAead(kms, KEY_ID);
+
+    int failures = 0;
+    for (int i = 0; i < 1000; i++) {
+      try {
+        aead.encrypt(new byte[0], new byte[0]);
+      } catch (GeneralSecurityException e) {
+        failures++;
+      }
+    }
+
+    assertThat(failures).isIn(Range.closed(400, 600));
+    assertThat(kms.injectedErrorCount()).isEqualTo(failures);
+  }
+
+  @Test
+  public void setErrorRate_invalid_throws() throws Exception {
+    FakeCloudKms kms = new FakeCloudKms(asList(KEY_ID)).setErrorRate(503, 0.6);
+
+    assertThrows(IllegalArgumentException.class, () -> kms.setErrorRate(200, 0.1));
+    assertThrows(IllegalArgumentException.class, () -> kms.setErrorRate(429, -0.1));
+    assertThrows(IllegalArgumentException.class, () -> kms.setErrorRate(429, 0.6));
+    kms.setErrorRate(503, 0.1).setErrorRate(429, 0.6);
+  }
 }
@@ -0,0 +1,460 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.kms.v1.CryptoKeyVersion;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionState;
+import com.google.cloud.kms.v1.EncryptRequest;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.cloud.kms.v1.ListCryptoKeyVersionsRequest;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Range;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.FakeKeyManagementService.LatencyDistribution;
+import com.google.crypto.tink.integration.gcpkms.FakeKeyManagementService.Method;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Int64Value;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class FakeKeyManagementServiceTest {
+
+  private static final String AEAD_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead";
+  private static final String MAC_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/mac/cryptoKeyVersions/1";
+  private static final String SIGN_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign/cryptoKeyVersions/1";
+  private static final String UNKNOWN_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/unknown";
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  /** Serves {@code service} in-process and returns a client without retries connected to it. */
+  private KeyManagementServiceClient connect(FakeKeyManagementService service) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    return KeyManagementServiceClient.create(settings.build());
+  }
+
+  private static EncryptRequest encryptRequest(String keyName) {
+    return EncryptRequest.newBuilder()
+        .setName(keyName)
+        .setPlaintext(ByteString.copyFromUtf8("plaintext"))
+        .build();
+  }
+
+  private static StatusCode.Code statusCode(Runnable call) {
+    ApiException e = assertThrows(ApiException.class, call::run);
+    return e.getStatusCode().getCode();
+  }
+
+  @Test
+  public void aead_encryptDecrypt_works() throws Exception {
+    KeyManagementServiceClient kmsClient =
+        connect(FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build());
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyManagementServiceClient(kmsClient)
+            .setKeyName(AEAD_KEY_NAME)
+            .build();
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+
+    byte[] ciphertext = aead.encrypt(plaintext, associatedData);
+
+    assertThat(aead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThrows(
+        GeneralSecurityException.class, () -> aead.decrypt(ciphertext, "invalid".getBytes(UTF_8)));
+  }
+
+  @Test
+  public void mac_computeVerify_works() throws Exception {
+    KeyManagementServiceClient kmsClient =
+        connect(FakeKeyManagementService.builder().addMacKey(MAC_KEY_NAME).build());
+    Mac mac =
+        GcpKmsMac.builder()
+            .setKeyManagementServiceClient(kmsClient)
+            .setKeyName(MAC_KEY_NAME)
+            .build();
+    byte[] data = "data".getBytes(UTF_8);
+
+    byte[] tag = mac.computeMac(data);
+
+    mac.verifyMac(tag, data);
+    assertThrows(
+        GeneralSecurityException.class, () -> mac.verifyMac(tag, "invalid".getBytes(UTF_8)));
+  }
+
+  @Test
+  public void signVerify_works() throws Exception {
+    CryptoKeyVersionAlgorithm[] algorithms = {
+      CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256,
+      CryptoKeyVersionAlgorithm.EC_SIGN_P384_SHA384,
+      CryptoKeyVersionAlgorithm.RSA_SIGN_PKCS1_2048_SHA256,
+    };
+    for (CryptoKeyVersionAlgorithm algorithm : algorithms) {
+      KeyManagementServiceClient kmsClient =
+          connect(
+              FakeKeyManagementService.builder().addSigningKey(SIGN_KEY_NAME, algorithm).build());
+      PublicKeySign signer =
+          GcpKmsPublicKeySign.builder()
+              .setKeyManagementServiceClient(kmsClient)
+              .setKeyName(SIGN_KEY_NAME)
+              .build();
+      PublicKeyVerify verifier =
+          GcpKmsPublicKeyVerify.builder()
+              .setKeyManagementServiceClient(kmsClient)
+              .setKeyName(SIGN_KEY_NAME)
+              .build();
+      byte[] data = "data".getBytes(UTF_8);
+
+      byte[] signature = signer.sign(data);
+
+      verifier.verify(signature, data);
+      assertThrows(
+          GeneralSecurityException.class,
+          () -> verifier.verify(signature, "invalid".getBytes(UTF_8)));
+    }
+  }
+
+  @Test
+  public void addSigningKey_unsupportedAlgorithm_throws() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            FakeKeyManagementService.builder()
+                .addSigningKey(SIGN_KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_ED25519));
+  }
+
+  @Test
+  public void listCryptoKeyVersions_filtersByParentAndState() throws Exception {
+    String cryptoKeyName = "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign";
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addSigningKey(
+                cryptoKeyName + "/cryptoKeyVersions/1",
+                CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .addSigningKey(
+                cryptoKeyName + "/cryptoKeyVersions/2",
+                CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .addSigningKey(
+                cryptoKeyName + "/cryptoKeyVersions/3",
+                CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .addSigningKey(
+                cryptoKeyName + "2/cryptoKeyVersions/1",
+                CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    service.setSigningKeyEnabled(cryptoKeyName + "/cryptoKeyVersions/2", false);
+
+    List<String> all = new ArrayList<>();
+    for (CryptoKeyVersion version :
+        kmsClient
+            .listCryptoKeyVersions(
+                ListCryptoKeyVersionsRequest.newBuilder()
+                    .setParent(cryptoKeyName)
+                    .setPageSize(1)
+                    .build())
+            .iterateAll()) {
+      all.add(version.getName());
+    }
+    List<String> enabled = new ArrayList<>();
+    for (CryptoKeyVersion version :
+        kmsClient
+            .listCryptoKeyVersions(
+                ListCryptoKeyVersionsRequest.newBuilder()
+                    .setParent(cryptoKeyName)
+                    .setFilter("state=ENABLED")
+                    .build())
+            .iterateAll()) {
+      assertThat(version.getState()).isEqualTo(CryptoKeyVersionState.ENABLED);
+      assertThat(version.getAlgorithm()).isEqualTo(CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256);
+      enabled.add(version.getName());
+    }
+
+    assertThat(all)
+        .containsExactly(
+            cryptoKeyName + "/cryptoKeyVersions/1",
+            cryptoKeyName + "/cryptoKeyVersions/2",
+            cryptoKeyName + "/cryptoKeyVersions/3")
+        .inOrder();
+    assertThat(enabled)
+        .containsExactly(
+            cryptoKeyName + "/cryptoKeyVersions/1", cryptoKeyName + "/cryptoKeyVersions/3")
+        .inOrder();
+    assertThat(service.callCount(Method.LIST_CRYPTO_KEY_VERSIONS)).isEqualTo(4);
+  }
+
+  @Test
+  public void disabledSigningKey_failsWithFailedPrecondition() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addSigningKey(SIGN_KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    PublicKeySign signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyManagementServiceClient(kmsClient)
+            .setKeyName(SIGN_KEY_NAME)
+            .build();
+
+    service.setSigningKeyEnabled(SIGN_KEY_NAME, false);
+
+    assertThat(statusCode(() -> kmsClient.getPublicKey(SIGN_KEY_NAME)))
+        .isEqualTo(StatusCode.Code.FAILED_PRECONDITION);
+    assertThrows(GeneralSecurityException.class, () -> signer.sign("data".getBytes(UTF_8)));
+
+    service.setSigningKeyEnabled(SIGN_KEY_NAME, true);
+
+    assertThat(signer.sign("data".getBytes(UTF_8))).isNotEmpty();
+  }
+
+  @Test
+  public void unknownKey_failsWithNotFound() throws Exception {
+    KeyManagementServiceClient kmsClient =
+        connect(FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build());
+
+    assertThat(statusCode(() -> kmsClient.encrypt(encryptRequest(UNKNOWN_KEY_NAME))))
+        .isEqualTo(StatusCode.Code.NOT_FOUND);
+  }
+
+  @Test
+  public void wrongChecksum_failsWithInvalidArgument() throws Exception {
+    KeyManagementServiceClient kmsClient =
+        connect(FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build());
+    EncryptRequest request =
+        encryptRequest(AEAD_KEY_NAME).toBuilder().setPlaintextCrc32C(Int64Value.of(1)).build();
+
+    assertThat(statusCode(() -> kmsClient.encrypt(request)))
+        .isEqualTo(StatusCode.Code.INVALID_ARGUMENT);
+  }
+
+  @Test
+  public void missingChecksum_isNotVerified() throws Exception {
+    KeyManagementServiceClient kmsClient =
+        connect(FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build());
+
+    assertThat(kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME)).getVerifiedPlaintextCrc32C())
+        .isFalse();
+  }
+
+  @Test
+  public void errorRateOne_failsAllCalls() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+            .build();
+    KeyManagementServiceClient kmsClient = connect(service);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(statusCode(() -> kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME))))
+          .isEqualTo(StatusCode.Code.UNAVAILABLE);
+    }
+    assertThat(service.injectedErrorCount()).isEqualTo(10);
+  }
+
+  @Test
+  public void errorRates_failAboutThatFractionOfCalls() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 0.2)
+            .setErrorRate(Status.Code.DEADLINE_EXCEEDED, 0.2)
+            .setRandom(new Random(42))
+            .build();
+    KeyManagementServiceClient kmsClient = connect(service);
+
+    int unavailable = 0;
+    int deadlineExceeded = 0;
+    for (int i = 0; i < 1000; i++) {
+      try {
+        kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME));
+      } catch (ApiException e) {
+        if (e.getStatusCode().getCode() == StatusCode.Code.UNAVAILABLE) {
+          unavailable++;
+        } else if (e.getStatusCode().getCode() == StatusCode.Code.DEADLINE_EXCEEDED) {
+          deadlineExceeded++;
+        }
+      }
+    }
+
+    assertThat(unavailable).isIn(Range.closed(150, 250));
+    assertThat(deadlineExceeded).isIn(Range.closed(150, 250));
+    assertThat(service.injectedErrorCount()).isEqualTo(unavailable + deadlineExceeded);
+  }
+
+  @Test
+  public void setErrorRate_invalid_throws() {
+    FakeKeyManagementService.Builder builder = FakeKeyManagementService.builder();
+    assertThrows(IllegalArgumentException.class, () -> builder.setErrorRate(Status.Code.OK, 0.1));
+    assertThrows(
+        IllegalArgumentException.class, () -> builder.setErrorRate(Status.Code.UNAVAILABLE, 1.1));
+    builder
+        .setErrorRate(Status.Code.UNAVAILABLE, 0.6)
+        .setErrorRate(Status.Code.RESOURCE_EXHAUSTED, 0.6);
+    assertThrows(IllegalArgumentException.class, builder::build);
+  }
+
+  @Test
+  public void quota_rejectsCallsBeyondLimitUntilWindowEnds() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setQuota(AEAD_KEY_NAME, 2, Duration.ofMinutes(1))
+            .setTicker(ticker)
+            .build();
+    KeyManagementServiceClient kmsClient = connect(service);
+
+    kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME));
+    kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME));
+    assertThat(statusCode(() -> kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME))))
+        .isEqualTo(StatusCode.Code.RESOURCE_EXHAUSTED);
+    assertThat(service.quotaExceededCount()).isEqualTo(1);
+
+    ticker.advance(Duration.ofMinutes(1));
+    kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME));
+  }
+
+  @Test
+  public void fixedLatency_delaysResponses() throws Exception {
+    KeyManagementServiceClient kmsClient =
+        connect(
+            FakeKeyManagementService.builder()
+                .addAeadKey(AEAD_KEY_NAME)
+                .setLatency(LatencyDistribution.fixed(Duration.ofMillis(100)))
+                .build());
+
+    long start = System.nanoTime();
+    kmsClient.encrypt(encryptRequest(AEAD_KEY_NAME));
+
+    assertThat(System.nanoTime() - start).isAtLeast(Duration.ofMillis(100).toNanos());
+  }
+
+  @Test
+  public void latencyDistributions_sample() {
+    Random random = new Random(42);
+    LatencyDistribution uniform =
+        LatencyDistribution.uniform(Duration.ofMillis(10), Duration.ofMillis(20));
+    LatencyDistribution logNormal = LatencyDistribution.logNormal(Duration.ofMillis(10), 1.0);
+    int belowMedian = 0;
+    for (int i = 0; i < 1000; i++) {
+      Duration sample = uniform.sample(random);
+      assertThat(sample).isAtLeast(Duration.ofMillis(10));
+      assertThat(sample).isAtMost(Duration.ofMillis(20));
+      if (logNormal.sample(random).compareTo(Duration.ofMillis(10)) < 0) {
+        belowMedian++;
+      }
+    }
+    assertThat(belowMedian).isIn(Range.closed(400, 600));
+    assertThat(LatencyDistribution.none().sample(random)).isEqualTo(Duration.ZERO);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> LatencyDistribution.uniform(Duration.ofMillis(20), Duration.ofMillis(10)));
+    assertThrows(
+        IllegalArgumentException.class, () -> LatencyDistribution.fixed(Duration.ofMillis(-1)));
+  }
+
+  @Test
+  public void callCounts_countCallsPerMethodAndKey() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyManagementServiceClient(kmsClient)
+            .setKeyName(AEAD_KEY_NAME)
+            .build();
+
+    byte[] ciphertext = aead.encrypt(new byte[0], new byte[0]);
+    aead.decrypt(ciphertext, new byte[0]);
+    aead.decrypt(ciphertext, new byte[0]);
+    assertThrows(ApiException.class, () -> kmsClient.encrypt(encryptRequest(UNKNOWN_KEY_NAME)));
+
+    assertThat(service.callCount(Method.ENCRYPT)).isEqualTo(2);
+    assertThat(service.callCount(Method.DECRYPT)).isEqualTo(2);
+    assertThat(service.callCount(Method.MAC_SIGN)).isEqualTo(0);
+    assertThat(service.callCount(AEAD_KEY_NAME)).isEqualTo(3);
+    assertThat(service.callCount(UNKNOWN_KEY_NAME)).isEqualTo(1);
+
+    service.resetCounters();
+
+    assertThat(service.callCount(Method.ENCRYPT)).isEqualTo(0);
+    assertThat(service.callCount(AEAD_KEY_NAME)).isEqualTo(0);
+  }
+}
@@ -45,6 +45,14 @@ import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
 import io.grpc.testing.GrpcCleanupRule;
 import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -444,4 +452,319 @@ public final class GcpKmsAeadTest {
     byte[] ciphertext = kmsAead.encrypt(plaintext, associatedData);
     assertThrows(GeneralSecurityException.class, () -> kmsAead.decrypt(ciphertext, associatedData));
   }
+
+  @Test
+  public void kmsAeadGrpc_async_works() throws Exception {
+    AsyncAead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] associatedData2 = "associatedData2".getBytes(UTF_8);
+    byte[] ciphertext = kmsAead.encryptAsync(plaintext, associatedData).get();
+    byte[] decrypted = kmsAead.decryptAsync(ciphertext, associatedData).get();
+
+    assertThat(decrypted).isEqualTo(plaintext);
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () -> kmsAead.decryptAsync(ciphertext, associatedData2).get());
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+  }
+
+  @Test
+  public void kmsAeadGrpc_async_interoperatesWithSync() throws Exception {
+    Aead syncAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setKeyManagementServiceClient(kmsClient)
+            .build();
+    AsyncAead asyncAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setKeyManagementServiceClient(kmsClient)
+            .setMaxInFlightRequests(1)
+            .buildAsync();
+
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    List<CompletableFuture<byte[]>> ciphertexts = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ciphertexts.add(asyncAead.encryptAsync(plaintext, associatedData));
+    }
+
+    for (CompletableFuture<byte[]> ciphertext : ciphertexts) {
+      assertThat(syncAead.decrypt(ciphertext.get(), associatedData)).isEqualTo(plaintext);
+    }
+  }
+
+  @Test
+  public void kmsAeadGrpc_async_wrongKeyNameInReponse_fails() throws Exception {
+    AsyncAead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_KEY_NAME_NOT_SET)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> kmsAead.encryptAsync(plaintext, associatedData).get());
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+    assertThat(e).hasCauseThat().hasMessageThat().contains("key name in the response");
+  }
+
+  @Test
+  public void kmsAeadGrpc_async_invalidPlaintextCrc_fails() throws Exception {
+    AsyncAead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_INVALID_PLAINTEXT_CRC)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = kmsAead.encryptAsync(plaintext, associatedData).get();
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> kmsAead.decryptAsync(ciphertext, associatedData).get());
+    assertThat(e).hasCauseThat().hasMessageThat().contains("Plaintext checksum mismatch");
+  }
+
+  @Test
+  public void kmsAeadGrpc_async_nullInput_failsFuture() throws Exception {
+    AsyncAead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    CompletableFuture<byte[]> encrypted = kmsAead.encryptAsync(null, associatedData);
+    CompletableFuture<byte[]> decrypted = kmsAead.decryptAsync(null, associatedData);
+
+    ExecutionException e = assertThrows(ExecutionException.class, encrypted::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+    e = assertThrows(ExecutionException.class, decrypted::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+  }
+
+  @Test
+  public void kmsAead_buildAsyncWithCloudKms_throws() throws Exception {
+    FakeCloudKms fakeKms = new FakeCloudKms(asList(KEY_NAME_VALID));
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> GcpKmsAead.builder().setKeyName(KEY_NAME_VALID).setCloudKms(fakeKms).buildAsync());
+  }
+
+  @Test
+  public void kmsAeadGrpc_nonPositiveMaxInFlightRequests_throws() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            GcpKmsAead.builder()
+                .setKeyName(KEY_NAME_VALID)
+                .setKeyManagementServiceClient(kmsClient)
+                .setMaxInFlightRequests(0)
+                .buildAsync());
+  }
+
+  @Test
+  public void kmsAeadGrpc_withDecryptionCache_works() throws Exception {
+    DecryptCachingAead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildWithDecryptionCache(10, Duration.ofMinutes(5));
+
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = kmsAead.encrypt(plaintext, associatedData);
+    assertThat(kmsAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThat(kmsAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThat(kmsAead.missCount()).isEqualTo(1);
+    assertThat(kmsAead.hitCount()).isEqualTo(1);
+
+    byte[] associatedData2 = "associatedData2".getBytes(UTF_8);
+    assertThrows(
+        GeneralSecurityException.class, () -> kmsAead.decrypt(ciphertext, associatedData2));
+  }
+
+  @Test
+  public void kmsAead_withDecryptionCache_invalidParameters_throws() throws Exception {
+    FakeCloudKms fakeKms = new FakeCloudKms(asList(KEY_NAME_VALID));
+    GcpKmsAead.Builder builder =
+        GcpKmsAead.builder().setKeyName(KEY_NAME_VALID).setCloudKms(fakeKms);
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> builder.buildWithDecryptionCache(0, Duration.ofMinutes(5)));
+    assertThrows(
+        GeneralSecurityException.class, () -> builder.buildWithDecryptionCache(10, Duration.ZERO));
+  }
+
+  @Test
+  public void kmsAeadGrpc_coalesceDecryptRequests_concurrentDecryptsShareOneRequest()
+      throws Exception {
+    AtomicInteger decryptRequests = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    FakeKmsImpl blockingKms =
+        new FakeKmsImpl() {
+          @Override
+          public void decrypt(
+              DecryptRequest request, StreamObserver<DecryptResponse> responseObserver) {
+            decryptRequests.incrementAndGet();
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+            super.decrypt(request, responseObserver);
+          }
+        };
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(blockingKms)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceClient blockingKmsClient =
+        KeyManagementServiceClient.create(
+            KeyManagementServiceSettings.newBuilder()
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .setTransportChannelProvider(
+                    FixedTransportChannelProvider.create(
+                        GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()))
+                .build());
+    Aead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setKeyManagementServiceClient(blockingKmsClient)
+            .setCoalesceDecryptRequests(true)
+            .build();
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = kmsAead.encrypt(plaintext, associatedData);
+
+    List<byte[]> decrypted = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  decrypted.add(kmsAead.decrypt(ciphertext, associatedData));
+                } catch (GeneralSecurityException e) {
+                  throw new IllegalStateException(e);
+                }
+              }));
+    }
+    threads.get(0).start();
+    started.await();
+    for (Thread thread : threads.subList(1, threads.size())) {
+      thread.start();
+    }
+    // Wait until the other threads are blocked waiting for the first request.
+    for (Thread thread : threads) {
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(decryptRequests.get()).isEqualTo(1);
+    assertThat(decrypted).hasSize(5);
+    for (byte[] d : decrypted) {
+      assertThat(d).isEqualTo(plaintext);
+    }
+    // Every caller gets its own copy of the plaintext.
+    assertThat(decrypted.get(0)).isNotSameInstanceAs(decrypted.get(1));
+  }
+
+  @Test
+  public void kmsAead_coalesceDecryptRequests_works() throws Exception {
+    FakeCloudKms fakeKms = new FakeCloudKms(asList(KEY_NAME_VALID));
+    Aead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setCloudKms(fakeKms)
+            .setCoalesceDecryptRequests(true)
+            .build();
+
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = kmsAead.encrypt(plaintext, associatedData);
+    assertThat(kmsAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThrows(GeneralSecurityException.class, () -> kmsAead.decrypt(ciphertext, null));
+  }
+
+  @Test
+  public void kmsAeadGrpc_hedgingPolicy_slowDecryptIsHedged() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    // One encrypt and 30 fast decrypts, after which the next request takes very long.
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(KEY_NAME_VALID)
+            .setLatency(
+                random -> (calls.incrementAndGet() == 32) ? Duration.ofSeconds(30) : Duration.ZERO)
+            .build();
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceClient hedgedKmsClient =
+        KeyManagementServiceClient.create(
+            KeyManagementServiceSettings.newBuilder()
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .setTransportChannelProvider(
+                    FixedTransportChannelProvider.create(
+                        GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()))
+                .build());
+    Aead kmsAead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME_VALID)
+            .setKeyManagementServiceClient(hedgedKmsClient)
+            .setHedgingPolicy(HedgingPolicy.builder().build())
+            .build();
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = kmsAead.encrypt(plaintext, associatedData);
+    for (int i = 0; i < 30; i++) {
+      assertThat(kmsAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    }
+
+    // This only returns in time if the second request is used.
+    assertThat(kmsAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThat(service.callCount(FakeKeyManagementService.Method.DECRYPT)).isEqualTo(32);
+  }
+
+  @Test
+  public void kmsAead_hedgingPolicyWithCloudKms_throws() throws Exception {
+    FakeCloudKms fakeKms = new FakeCloudKms(asList(KEY_NAME_VALID));
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            GcpKmsAead.builder()
+                .setKeyName(KEY_NAME_VALID)
+                .setCloudKms(fakeKms)
+                .setHedgingPolicy(HedgingPolicy.builder().build())
+                .build());
+  }
 }
@@ -21,6 +21,17 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertThrows;
 
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.KeyTemplate;
 import com.google.crypto.tink.KeyTemplates;
@@ -34,9 +45,19 @@ import com.google.crypto.tink.aead.KmsAeadKeyManager;
 import com.google.crypto.tink.aead.KmsEnvelopeAead;
 import com.google.crypto.tink.aead.KmsEnvelopeAeadKeyManager;
 import com.google.crypto.tink.aead.PredefinedAeadParameters;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
 import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -45,6 +66,8 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public final class GcpKmsClientTest {
 
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
   @BeforeClass
   public static void setUpClass() throws Exception {
     AeadConfig.register();
@@ -267,4 +290,237 @@ public final class GcpKmsClientTest {
         IllegalArgumentException.class,
         () -> kmsAeadWithInvalidUri.decrypt(ciphertext, associatedData));
   }
+
+  @Test
+  public void withHttpTransport_isUsedForRequests() throws Exception {
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    List<String> requestedUrls = Collections.synchronizedList(new ArrayList<>());
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            requestedUrls.add(url);
+            return new MockLowLevelHttpRequest(url)
+                .setResponse(new MockLowLevelHttpResponse().setStatusCode(503));
+          }
+        };
+
+    KmsClient client =
+        new GcpKmsClient()
+            .withHttpTransport(transport)
+            .withCredentials(GoogleCredentials.create(new AccessToken("token", null)));
+    Aead kmsAead = client.getAead(keyUri);
+
+    assertThrows(GeneralSecurityException.class, () -> kmsAead.encrypt(new byte[0], new byte[0]));
+    assertThat(requestedUrls)
+        .containsExactly(
+            "https://cloudkms.googleapis.com/v1/projects/tink-test/locations/global/keyRings/"
+                + "unit-test/cryptoKeys/aead-key:encrypt");
+  }
+
+  @Test
+  public void withHttpTransport_afterCredentials_throws() throws Exception {
+    GcpKmsClient client = new GcpKmsClient();
+    client.withCredentials(GoogleCredentials.create(new AccessToken("token", null)));
+
+    assertThrows(
+        IllegalStateException.class, () -> client.withHttpTransport(new MockHttpTransport()));
+  }
+
+  @Test
+  public void withRetryPolicy_retriesHttpRequests() throws Exception {
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    List<String> requestedUrls = Collections.synchronizedList(new ArrayList<>());
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            requestedUrls.add(url);
+            return new MockLowLevelHttpRequest(url)
+                .setResponse(new MockLowLevelHttpResponse().setStatusCode(503));
+          }
+        };
+    RetryPolicy retryPolicy =
+        RetryPolicy.builder()
+            .setMaxAttempts(3)
+            .setInitialBackoff(Duration.ofMillis(1))
+            .setMaxBackoff(Duration.ofMillis(1))
+            .build();
+
+    KmsClient client =
+        new GcpKmsClient()
+            .withHttpTransport(transport)
+            .withRetryPolicy(retryPolicy)
+            .withCredentials(GoogleCredentials.create(new AccessToken("token", null)));
+    Aead kmsAead = client.getAead(keyUri);
+
+    assertThrows(GeneralSecurityException.class, () -> kmsAead.encrypt(new byte[0], new byte[0]));
+    assertThat(requestedUrls).hasSize(3);
+  }
+
+  @Test
+  public void withRetryPolicy_afterCredentials_retriesHttpRequests() throws Exception {
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    List<String> requestedUrls = Collections.synchronizedList(new ArrayList<>());
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            requestedUrls.add(url);
+            return new MockLowLevelHttpRequest(url)
+                .setResponse(new MockLowLevelHttpResponse().setStatusCode(503));
+          }
+        };
+    GcpKmsClient client = new GcpKmsClient().withHttpTransport(transport);
+    client.withCredentials(GoogleCredentials.create(new AccessToken("token", null)));
+    client.withRetryPolicy(
+        RetryPolicy.builder()
+            .setMaxAttempts(3)
+            .setInitialBackoff(Duration.ofMillis(1))
+            .setMaxBackoff(Duration.ofMillis(1))
+            .build());
+    Aead kmsAead = client.getAead(keyUri);
+
+    assertThrows(GeneralSecurityException.class, () -> kmsAead.encrypt(new byte[0], new byte[0]));
+    assertThat(requestedUrls).hasSize(3);
+  }
+
+  @Test
+  public void withRetryPolicy_retriesGrpcRequests() throws Exception {
+    String keyId = "projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(keyId)
+            .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+            .build();
+    RetryPolicy retryPolicy =
+        RetryPolicy.builder()
+            .setMaxAttempts(2)
+            .setInitialBackoff(Duration.ofMillis(1))
+            .setMaxBackoff(Duration.ofMillis(1))
+            .build();
+    KmsClient client =
+        new GcpKmsClient()
+            .withRetryPolicy(retryPolicy)
+            .withKeyManagementServiceClient(connect(service));
+    Aead kmsAead = client.getAead(keyUri);
+
+    assertThrows(GeneralSecurityException.class, () -> kmsAead.encrypt(new byte[0], new byte[0]));
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isEqualTo(2);
+  }
+
+  private KeyManagementServiceClient connect(FakeKeyManagementService service) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    return KeyManagementServiceClient.create(
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()))
+            .build());
+  }
+
+  @Test
+  public void withKeyManagementServiceClient_getAead_usesGrpc() throws Exception {
+    String keyId = "projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    FakeKeyManagementService service = FakeKeyManagementService.builder().addAeadKey(keyId).build();
+    KeyManagementServiceClient kmsClient = connect(service);
+
+    KmsClient client = new GcpKmsClient(keyUri).withKeyManagementServiceClient(kmsClient);
+    Aead kmsAead = client.getAead(keyUri);
+
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+    byte[] ciphertext = kmsAead.encrypt(plaintext, associatedData);
+    assertThat(kmsAead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isEqualTo(1);
+    assertThat(service.callCount(FakeKeyManagementService.Method.DECRYPT)).isEqualTo(1);
+  }
+
+  @Test
+  public void withKeyManagementServiceClient_boundClient_rejectsOtherUris() throws Exception {
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    String keyUri2 =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key-2";
+    KeyManagementServiceClient kmsClient = connect(FakeKeyManagementService.builder().build());
+
+    KmsClient client = new GcpKmsClient(keyUri).withKeyManagementServiceClient(kmsClient);
+
+    assertThrows(GeneralSecurityException.class, () -> client.getAead(keyUri2));
+  }
+
+  @Test
+  public void getAead_returnsSameObjectForSameUri() throws Exception {
+    String keyId = "projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    String keyId2 = "projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key-2";
+    String keyUri2 =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key-2";
+    KeyManagementServiceClient kmsClient =
+        connect(FakeKeyManagementService.builder().addAeadKey(keyId).addAeadKey(keyId2).build());
+
+    KmsClient client = new GcpKmsClient().withKeyManagementServiceClient(kmsClient);
+
+    Aead aead = client.getAead(keyUri);
+    assertThat(client.getAead(keyUri)).isSameInstanceAs(aead);
+    assertThat(client.getAead(keyUri2)).isNotSameInstanceAs(aead);
+  }
+
+  @Test
+  public void getAead_afterChangingBackend_returnsNewObject() throws Exception {
+    String keyId = "projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    FakeKeyManagementService service = FakeKeyManagementService.builder().addAeadKey(keyId).build();
+    GcpKmsClient client = new GcpKmsClient();
+    client.withCloudKms(new FakeCloudKms(asList(keyId)));
+    Aead httpAead = client.getAead(keyUri);
+
+    client.withKeyManagementServiceClient(connect(service));
+    Aead grpcAead = client.getAead(keyUri);
+
+    assertThat(grpcAead).isNotSameInstanceAs(httpAead);
+    Object unused = grpcAead.encrypt(new byte[0], new byte[0]);
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isEqualTo(1);
+  }
+
+  @Test
+  public void withRateLimiter_limitsRequestsOverHttp() throws Exception {
+    String keyId = "projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    String keyUri =
+        "gcp-kms://projects/tink-test/locations/global/keyRings/unit-test/cryptoKeys/aead-key";
+    KmsRateLimiter rateLimiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(1)
+            .setMode(KmsRateLimiter.Mode.FAIL_FAST)
+            .build();
+    KmsClient client =
+        new GcpKmsClient()
+            .withRateLimiter(rateLimiter)
+            .withCloudKms(new FakeCloudKms(asList(keyId)));
+    Aead kmsAead = client.getAead(keyUri);
+
+    Object unused = kmsAead.encrypt(new byte[0], new byte[0]);
+
+    assertThrows(
+        KmsRateLimiter.RateLimitExceededException.class,
+        () -> kmsAead.encrypt(new byte[0], new byte[0]));
+  }
 }
@@ -0,0 +1,304 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.integration.gcpkms.FakeKeyManagementService.Method;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class GcpKmsCryptoKeyVerifyTest {
+
+  private static final String CRYPTO_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign";
+  private static final String VERSION_1 = CRYPTO_KEY_NAME + "/cryptoKeyVersions/1";
+  private static final String VERSION_2 = CRYPTO_KEY_NAME + "/cryptoKeyVersions/2";
+  private static final String VERSION_3 = CRYPTO_KEY_NAME + "/cryptoKeyVersions/3";
+  private static final byte[] DATA = "data".getBytes(UTF_8);
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  private final FakeTicker ticker = new FakeTicker();
+
+  private static FakeKeyManagementService.Builder serviceWithThreeVersions() {
+    return FakeKeyManagementService.builder()
+        .addSigningKey(VERSION_1, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+        .addSigningKey(VERSION_2, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+        .addSigningKey(VERSION_3, CryptoKeyVersionAlgorithm.RSA_SIGN_PKCS1_2048_SHA256);
+  }
+
+  /** Serves {@code service} in-process and returns a client without retries connected to it. */
+  private KeyManagementServiceClient connect(FakeKeyManagementService service) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    return KeyManagementServiceClient.create(settings.build());
+  }
+
+  private GcpKmsCryptoKeyVerify.Builder verifierBuilder(KeyManagementServiceClient kmsClient) {
+    return GcpKmsCryptoKeyVerify.builder()
+        .setCryptoKeyName(CRYPTO_KEY_NAME)
+        .setKeyManagementServiceClient(kmsClient)
+        .setTicker(ticker)
+        .setExecutor(MoreExecutors.directExecutor());
+  }
+
+  private static byte[] sign(KeyManagementServiceClient kmsClient, String keyName)
+      throws GeneralSecurityException {
+    PublicKeySign signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(keyName)
+            .setKeyManagementServiceClient(kmsClient)
+            .build();
+    return signer.sign(DATA);
+  }
+
+  @Test
+  public void build_usesEnabledVersionsNewestFirst() throws Exception {
+    FakeKeyManagementService service = serviceWithThreeVersions().build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    service.setSigningKeyEnabled(VERSION_2, false);
+
+    GcpKmsCryptoKeyVerify verifier = verifierBuilder(kmsClient).build();
+
+    assertThat(verifier.keyVersionNames()).containsExactly(VERSION_3, VERSION_1).inOrder();
+    assertThat(service.callCount(Method.LIST_CRYPTO_KEY_VERSIONS)).isEqualTo(1);
+    assertThat(service.callCount(Method.GET_PUBLIC_KEY)).isEqualTo(2);
+  }
+
+  @Test
+  public void verify_signatureOfAnyEnabledVersion_works() throws Exception {
+    KeyManagementServiceClient kmsClient = connect(serviceWithThreeVersions().build());
+    GcpKmsCryptoKeyVerify verifier = verifierBuilder(kmsClient).build();
+
+    for (String keyName : new String[] {VERSION_1, VERSION_2, VERSION_3}) {
+      byte[] signature = sign(kmsClient, keyName);
+
+      verifier.verify(signature, DATA);
+      assertThrows(
+          GeneralSecurityException.class,
+          () -> verifier.verify(signature, "invalid".getBytes(UTF_8)));
+    }
+  }
+
+  @Test
+  public void verify_movesSuccessfulVersionToFront() throws Exception {
+    KeyManagementServiceClient kmsClient = connect(serviceWithThreeVersions().build());
+    GcpKmsCryptoKeyVerify verifier = verifierBuilder(kmsClient).build();
+    assertThat(verifier.keyVersionNames())
+        .containsExactly(VERSION_3, VERSION_2, VERSION_1)
+        .inOrder();
+
+    verifier.verify(sign(kmsClient, VERSION_1), DATA);
+
+    assertThat(verifier.keyVersionNames())
+        .containsExactly(VERSION_1, VERSION_3, VERSION_2)
+        .inOrder();
+
+    verifier.verify(sign(kmsClient, VERSION_2), DATA);
+
+    assertThat(verifier.keyVersionNames())
+        .containsExactly(VERSION_2, VERSION_1, VERSION_3)
+        .inOrder();
+  }
+
+  @Test
+  public void verify_keyHint_usesHintedVersion() throws Exception {
+    KeyManagementServiceClient kmsClient = connect(serviceWithThreeVersions().build());
+    GcpKmsCryptoKeyVerify verifier = verifierBuilder(kmsClient).build();
+    byte[] signature = sign(kmsClient, VERSION_1);
+
+    verifier.verify(GcpKmsCryptoKeyVerify.withKeyHint(VERSION_1, signature), DATA);
+
+    // The hinted version is used directly, so the versions are not reordered.
+    assertThat(verifier.keyVersionNames())
+        .containsExactly(VERSION_3, VERSION_2, VERSION_1)
+        .inOrder();
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> verifier.verify(GcpKmsCryptoKeyVerify.withKeyHint(VERSION_2, signature), DATA));
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            verifier.verify(
+                GcpKmsCryptoKeyVerify.withKeyHint(VERSION_1, signature),
+                "invalid".getBytes(UTF_8)));
+  }
+
+  @Test
+  public void withKeyHint_addsTinkStylePrefix() throws Exception {
+    byte[] hinted = GcpKmsCryptoKeyVerify.withKeyHint(VERSION_3, new byte[] {42});
+
+    assertThat(hinted).isEqualTo(new byte[] {0x01, 0, 0, 0, 3, 42});
+  }
+
+  @Test
+  public void withKeyHint_nonNumericVersion_throws() {
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            GcpKmsCryptoKeyVerify.withKeyHint(
+                CRYPTO_KEY_NAME + "/cryptoKeyVersions/v1", new byte[] {42}));
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            GcpKmsCryptoKeyVerify.withKeyHint(
+                CRYPTO_KEY_NAME + "/cryptoKeyVersions/4294967296", new byte[] {42}));
+  }
+
+  @Test
+  public void verify_afterRefreshInterval_picksUpRotation() throws Exception {
+    FakeKeyManagementService service = serviceWithThreeVersions().build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    service.setSigningKeyEnabled(VERSION_3, false);
+    GcpKmsCryptoKeyVerify verifier =
+        verifierBuilder(kmsClient).setRefreshInterval(Duration.ofMinutes(5)).build();
+    byte[] signature1 = sign(kmsClient, VERSION_1);
+    service.setSigningKeyEnabled(VERSION_3, true);
+    byte[] signature3 = sign(kmsClient, VERSION_3);
+    service.setSigningKeyEnabled(VERSION_1, false);
+
+    ticker.advance(Duration.ofMinutes(4));
+    verifier.verify(signature1, DATA);
+    assertThrows(GeneralSecurityException.class, () -> verifier.verify(signature3, DATA));
+    assertThat(service.callCount(Method.LIST_CRYPTO_KEY_VERSIONS)).isEqualTo(1);
+
+    ticker.advance(Duration.ofMinutes(1));
+    // The executor runs the refresh before the signature is verified.
+    verifier.verify(signature3, DATA);
+
+    assertThat(service.callCount(Method.LIST_CRYPTO_KEY_VERSIONS)).isEqualTo(2);
+    assertThat(verifier.keyVersionNames()).containsExactly(VERSION_3, VERSION_2).inOrder();
+    assertThrows(GeneralSecurityException.class, () -> verifier.verify(signature1, DATA));
+  }
+
+  @Test
+  public void refresh_fetchesOnlyNewVersions() throws Exception {
+    FakeKeyManagementService service = serviceWithThreeVersions().build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    service.setSigningKeyEnabled(VERSION_3, false);
+    GcpKmsCryptoKeyVerify verifier = verifierBuilder(kmsClient).build();
+    service.setSigningKeyEnabled(VERSION_3, true);
+    service.resetCounters();
+
+    verifier.refresh();
+
+    assertThat(service.callCount(Method.GET_PUBLIC_KEY)).isEqualTo(1);
+    assertThat(service.callCount(VERSION_3)).isEqualTo(1);
+    assertThat(verifier.keyVersionNames())
+        .containsExactly(VERSION_3, VERSION_2, VERSION_1)
+        .inOrder();
+  }
+
+  @Test
+  public void failedRefresh_keepsVersionsAndWaitsForNextInterval() throws Exception {
+    FakeKeyManagementService service =
+        serviceWithThreeVersions().setQuota(CRYPTO_KEY_NAME, 1, Duration.ofDays(1)).build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    GcpKmsCryptoKeyVerify verifier =
+        verifierBuilder(kmsClient).setRefreshInterval(Duration.ofMinutes(5)).build();
+    byte[] signature = sign(kmsClient, VERSION_1);
+    service.setSigningKeyEnabled(VERSION_1, false);
+
+    ticker.advance(Duration.ofMinutes(5));
+    verifier.verify(signature, DATA);
+    verifier.verify(signature, DATA);
+
+    assertThat(service.quotaExceededCount()).isEqualTo(1);
+    assertThat(service.callCount(Method.LIST_CRYPTO_KEY_VERSIONS)).isEqualTo(2);
+    assertThrows(GeneralSecurityException.class, verifier::refresh);
+    assertThat(verifier.keyVersionNames()).hasSize(3);
+  }
+
+  @Test
+  public void build_noEnabledVersions_throws() throws Exception {
+    FakeKeyManagementService service = serviceWithThreeVersions().build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    service.setSigningKeyEnabled(VERSION_1, false);
+    service.setSigningKeyEnabled(VERSION_2, false);
+    service.setSigningKeyEnabled(VERSION_3, false);
+
+    assertThrows(GeneralSecurityException.class, () -> verifierBuilder(kmsClient).build());
+  }
+
+  @Test
+  public void build_invalidArguments_throws() throws Exception {
+    KeyManagementServiceClient kmsClient = connect(serviceWithThreeVersions().build());
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> verifierBuilder(kmsClient).setCryptoKeyName(VERSION_1).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> GcpKmsCryptoKeyVerify.builder().setCryptoKeyName(CRYPTO_KEY_NAME).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> verifierBuilder(kmsClient).setRefreshInterval(Duration.ZERO).build());
+  }
+}
@@ -0,0 +1,293 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.RegistryConfiguration;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.aead.AesGcmParameters;
+import com.google.crypto.tink.aead.KmsEnvelopeAead;
+import com.google.crypto.tink.aead.PredefinedAeadParameters;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class GcpKmsEnvelopeAeadTest {
+
+  /** A local Aead standing in for Cloud KMS, which counts encryptions and can be made to fail. */
+  private static final class FakeRemoteAead implements Aead {
+    private final Aead aead;
+    final AtomicInteger encryptCount = new AtomicInteger();
+    final AtomicBoolean fail = new AtomicBoolean();
+
+    FakeRemoteAead(Aead aead) {
+      this.aead = aead;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, byte[] associatedData) throws GeneralSecurityException {
+      if (fail.get()) {
+        throw new GeneralSecurityException("remote failure");
+      }
+      encryptCount.incrementAndGet();
+      return aead.encrypt(plaintext, associatedData);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, byte[] associatedData)
+        throws GeneralSecurityException {
+      return aead.decrypt(ciphertext, associatedData);
+    }
+  }
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  private static final AesGcmParameters AES256_GCM_NO_PREFIX = aes256GcmNoPrefix();
+
+  private static AesGcmParameters aes256GcmNoPrefix() {
+    try {
+      return AesGcmParameters.builder()
+          .setKeySizeBytes(32)
+          .setIvSizeBytes(12)
+          .setTagSizeBytes(16)
+          .setVariant(AesGcmParameters.Variant.NO_PREFIX)
+          .build();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private FakeRemoteAead remote;
+  private FakeTicker ticker;
+
+  @Before
+  public void setUp() throws Exception {
+    AeadConfig.register();
+    remote =
+        new FakeRemoteAead(
+            KeysetHandle.generateNew(PredefinedAeadParameters.AES256_GCM)
+                .getPrimitive(RegistryConfiguration.get(), Aead.class));
+    ticker = new FakeTicker();
+  }
+
+  private GcpKmsEnvelopeAead.Builder builder() {
+    return GcpKmsEnvelopeAead.builder()
+        .setRemoteAead(remote)
+        .setLowWatermark(2)
+        .setHighWatermark(4)
+        .setMaxDekAge(Duration.ofMinutes(1))
+        .setExecutor(MoreExecutors.directExecutor())
+        .setTicker(ticker);
+  }
+
+  private static byte[] encryptedDek(byte[] ciphertext) {
+    ByteBuffer buffer = ByteBuffer.wrap(ciphertext);
+    byte[] encryptedDek = new byte[buffer.getInt()];
+    buffer.get(encryptedDek);
+    return encryptedDek;
+  }
+
+  @Test
+  public void encryptDecrypt_works() throws Exception {
+    GcpKmsEnvelopeAead aead = builder().build();
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+
+    byte[] ciphertext = aead.encrypt(plaintext, associatedData);
+
+    assertThat(aead.decrypt(ciphertext, associatedData)).isEqualTo(plaintext);
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> aead.decrypt(ciphertext, "associatedData2".getBytes(UTF_8)));
+    assertThat(aead.synchronousDekCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void ciphertexts_areCompatibleWithKmsEnvelopeAead() throws Exception {
+    GcpKmsEnvelopeAead aead = builder().build();
+    Aead kmsEnvelopeAead = KmsEnvelopeAead.create(AES256_GCM_NO_PREFIX, remote);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    byte[] associatedData = "associatedData".getBytes(UTF_8);
+
+    assertThat(kmsEnvelopeAead.decrypt(aead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+    assertThat(aead.decrypt(kmsEnvelopeAead.encrypt(plaintext, associatedData), associatedData))
+        .isEqualTo(plaintext);
+  }
+
+  @Test
+  public void aes128Dek_isCompatibleWithKmsEnvelopeAead() throws Exception {
+    AesGcmParameters aes128GcmNoPrefix =
+        AesGcmParameters.builder()
+            .setKeySizeBytes(16)
+            .setIvSizeBytes(12)
+            .setTagSizeBytes(16)
+            .setVariant(AesGcmParameters.Variant.NO_PREFIX)
+            .build();
+    GcpKmsEnvelopeAead aead = builder().setDekParameters(aes128GcmNoPrefix).build();
+    Aead kmsEnvelopeAead = KmsEnvelopeAead.create(aes128GcmNoPrefix, remote);
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+
+    assertThat(kmsEnvelopeAead.decrypt(aead.encrypt(plaintext, null), null)).isEqualTo(plaintext);
+  }
+
+  @Test
+  public void build_fillsPoolToHighWatermark() throws Exception {
+    GcpKmsEnvelopeAead aead = builder().build();
+
+    assertThat(aead.poolSize()).isEqualTo(4);
+    assertThat(remote.encryptCount.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void encrypt_refillsBelowLowWatermark() throws Exception {
+    GcpKmsEnvelopeAead aead = builder().build();
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+
+    aead.encrypt(plaintext, null);
+    aead.encrypt(plaintext, null);
+    assertThat(aead.poolSize()).isEqualTo(2);
+    assertThat(remote.encryptCount.get()).isEqualTo(4);
+
+    aead.encrypt(plaintext, null);
+    assertThat(aead.poolSize()).isEqualTo(4);
+    assertThat(remote.encryptCount.get()).isEqualTo(7);
+    assertThat(aead.synchronousDekCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void encrypt_usesEachDekOnce() throws Exception {
+    GcpKmsEnvelopeAead aead = builder().build();
+    Set<String> encryptedDeks = new HashSet<>();
+
+    for (int i = 0; i < 20; i++) {
+      encryptedDeks.add(Arrays.toString(encryptedDek(aead.encrypt(new byte[] {(byte) i}, null))));
+    }
+
+    assertThat(encryptedDeks).hasSize(20);
+  }
+
+  @Test
+  public void encrypt_discardsExpiredDeks() throws Exception {
+    GcpKmsEnvelopeAead aead = builder().build();
+    byte[] plaintext = "plaintext".getBytes(UTF_8);
+    ticker.advance(Duration.ofMinutes(2));
+
+    byte[] ciphertext = aead.encrypt(plaintext, null);
+
+    assertThat(aead.synchronousDekCount()).isEqualTo(1);
+    assertThat(aead.poolSize()).isEqualTo(4);
+    assertThat(remote.encryptCount.get()).isEqualTo(9);
+    assertThat(aead.decrypt(ciphertext, null)).isEqualTo(plaintext);
+  }
+
+  @Test
+  public void remoteFailure_encryptFallsBackAndFails() throws Exception {
+    remote.fail.set(true);
+    GcpKmsEnvelopeAead aead = builder().build();
+
+    assertThat(aead.poolSize()).isEqualTo(0);
+    // Each of the refill tasks fails once.
+    assertThat(aead.refillFailureCount())
+        .isEqualTo(GcpKmsEnvelopeAead.Builder.DEFAULT_REFILL_CONCURRENCY);
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[] {1}, null));
+
+    remote.fail.set(false);
+    byte[] ciphertext = aead.encrypt(new byte[] {1}, null);
+    assertThat(aead.decrypt(ciphertext, null)).isEqualTo(new byte[] {1});
+    assertThat(aead.poolSize()).isEqualTo(4);
+  }
+
+  @Test
+  public void close_emptiesPool() throws Exception {
+    GcpKmsEnvelopeAead aead = builder().build();
+
+    aead.close();
+
+    assertThat(aead.poolSize()).isEqualTo(0);
+    byte[] ciphertext = aead.encrypt(new byte[] {1}, null);
+    assertThat(aead.decrypt(ciphertext, null)).isEqualTo(new byte[] {1});
+    assertThat(aead.poolSize()).isEqualTo(0);
+    assertThat(aead.synchronousDekCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void defaultExecutor_fillsPoolInBackground() throws Exception {
+    try (GcpKmsEnvelopeAead aead =
+        GcpKmsEnvelopeAead.builder().setRemoteAead(remote).setHighWatermark(20).build()) {
+      while (aead.poolSize() < 20) {
+        Thread.sleep(1);
+      }
+      byte[] ciphertext = aead.encrypt(new byte[] {1}, null);
+      assertThat(aead.decrypt(ciphertext, null)).isEqualTo(new byte[] {1});
+      assertThat(aead.synchronousDekCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void build_invalidParameters_throws() throws Exception {
+    assertThrows(GeneralSecurityException.class, () -> GcpKmsEnvelopeAead.builder().build());
+    assertThrows(GeneralSecurityException.class, () -> builder().setLowWatermark(0).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> builder().setLowWatermark(5).setHighWatermark(4).build());
+    assertThrows(GeneralSecurityException.class, () -> builder().setRefillConcurrency(0).build());
+    assertThrows(
+        GeneralSecurityException.class, () -> builder().setMaxDekAge(Duration.ZERO).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            builder()
+                .setDekParameters(
+                    AesGcmParameters.builder()
+                        .setKeySizeBytes(32)
+                        .setIvSizeBytes(12)
+                        .setTagSizeBytes(16)
+                        .setVariant(AesGcmParameters.Variant.TINK)
+                        .build())
+                .build());
+  }
+}
@@ -44,6 +44,8 @@ import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
 import io.grpc.testing.GrpcCleanupRule;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -421,4 +423,95 @@ public final class GcpKmsMacTest {
 
     assertThrows(GeneralSecurityException.class, () -> gcpKmsMac.verifyMac(wrongMac, macData));
   }
+
+  // --- asynchronous computeMac and verifyMac tests ---
+
+  @Test
+  public void computeAndVerifyMacAsync_success() throws Exception {
+    AsyncMac gcpKmsMac =
+        GcpKmsMac.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] mac = gcpKmsMac.computeMacAsync(macData).get();
+    gcpKmsMac.verifyMacAsync(mac, macData).get(); // Must not throw.
+
+    assertThat(mac).isEqualTo(backingMac.computeMac(macData));
+  }
+
+  @Test
+  public void verifyMacAsync_wrongData_fails() throws Exception {
+    AsyncMac gcpKmsMac =
+        GcpKmsMac.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] wrongData = "wrong data for mac".getBytes(UTF_8);
+    byte[] mac = gcpKmsMac.computeMacAsync(macData).get();
+
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> gcpKmsMac.verifyMacAsync(mac, wrongData).get());
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+  }
+
+  @Test
+  public void computeMacAsync_macCrc32cMismatch_fails() throws Exception {
+    AsyncMac gcpKmsMac =
+        GcpKmsMac.builder()
+            .setKeyName(KEY_NAME_FOR_MAC_CRC32C_MISMATCH)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> gcpKmsMac.computeMacAsync(macData).get());
+    assertThat(e).hasCauseThat().hasMessageThat().contains("MAC checksum mismatch");
+  }
+
+  @Test
+  public void computeMacAsync_macSignRpcFails_fails() throws Exception {
+    AsyncMac gcpKmsMac =
+        GcpKmsMac.builder()
+            .setKeyName(KEY_NAME_FOR_RPC_ERROR_SIGN)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> gcpKmsMac.computeMacAsync(macData).get());
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+  }
+
+  @Test
+  public void computeMacAsync_dataTooLarge_fails() throws Exception {
+    AsyncMac gcpKmsMac =
+        GcpKmsMac.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] largeData = new byte[GcpKmsMac.MAX_MAC_DATA_SIZE + 1];
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> gcpKmsMac.computeMacAsync(largeData).get());
+    assertThat(e).hasCauseThat().hasMessageThat().contains("larger than the allowed size");
+  }
+
+  @Test
+  public void computeAndVerifyMacAsync_nullInput_failsFuture() throws Exception {
+    AsyncMac gcpKmsMac =
+        GcpKmsMac.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    CompletableFuture<byte[]> computed = gcpKmsMac.computeMacAsync(null);
+    CompletableFuture<Void> verified = gcpKmsMac.verifyMacAsync(null, macData);
+
+    ExecutionException e = assertThrows(ExecutionException.class, computed::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+    e = assertThrows(ExecutionException.class, verified::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+  }
 }
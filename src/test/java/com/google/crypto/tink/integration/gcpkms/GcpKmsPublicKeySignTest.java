@@ -52,9 +52,15 @@ import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
 import io.grpc.testing.GrpcCleanupRule;
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -932,4 +938,175 @@ public final class GcpKmsPublicKeySignTest {
     assertThat(capturedSignRequest.getDigestCrc32C().getValue())
         .isEqualTo(Hashing.crc32c().hashBytes(expectedDigest).padToLong());
   }
+
+  @Test
+  public void asymmetricSignAsyncWorksForData() throws Exception {
+    AsyncPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_DATA)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    byte[] kmsSignature = kmsSigner.signAsync(dataForSign).get();
+    // ED25519 is deterministic, check that signatures are the same.
+    assertThat(kmsSignature).isEqualTo(dataSigner.sign(dataForSign));
+    dataVerifier.verify(kmsSignature, dataForSign);
+  }
+
+  @Test
+  public void asymmetricSignAsyncFailsForSignatureCrc32cMismatch() throws Exception {
+    AsyncPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_SIGNATURE_MISMATCH)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> kmsSigner.signAsync(dataForSign).get());
+    assertThat(e).hasCauseThat().hasMessageThat().contains("Signature checksum mismatch");
+  }
+
+  @Test
+  public void asymmetricSignAsyncFailsWhenRpcFails() throws Exception {
+    AsyncPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_EXCEPTION)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> kmsSigner.signAsync(dataForSign).get());
+    assertThat(e).hasCauseThat().hasMessageThat().contains("Asymmetric sign failed");
+  }
+
+  @Test
+  public void asymmetricSignAsyncFailsFutureForNullData() throws Exception {
+    AsyncPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_DATA)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildAsync();
+
+    CompletableFuture<byte[]> signature = kmsSigner.signAsync(null);
+
+    ExecutionException e = assertThrows(ExecutionException.class, signature::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+  }
+
+  @Test
+  public void streamingSignerHashesChunksIntoTheSameDigest() throws Exception {
+    StreamingPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_DIGEST)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildStreaming();
+    byte[] expectedDigest = MessageDigest.getInstance("SHA-256").digest(dataForSign);
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(4);
+    direct.put(dataForSign, 0, 4).flip();
+    byte[] kmsSignature =
+        kmsSigner
+            .newSigner()
+            .update(direct)
+            .update(ByteBuffer.wrap(dataForSign, 4, 6))
+            .update(dataForSign, 10, dataForSign.length - 10)
+            .sign();
+
+    digestVerifier.verify(kmsSignature, expectedDigest);
+    assertThat(direct.hasRemaining()).isFalse();
+    assertThat(capturedSignRequest.getData().isEmpty()).isTrue();
+    assertThat(capturedSignRequest.getDigest().getSha256().toByteArray()).isEqualTo(expectedDigest);
+    assertThat(capturedSignRequest.getDigestCrc32C().getValue())
+        .isEqualTo(Hashing.crc32c().hashBytes(expectedDigest).padToLong());
+  }
+
+  @Test
+  public void streamingSignWorksForInputStreamAndFile() throws Exception {
+    StreamingPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_DIGEST)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildStreaming();
+    // Larger than the chunks in which streams are read, and not a multiple of them.
+    byte[] largeData = new byte[200_000];
+    for (int i = 0; i < largeData.length; i++) {
+      largeData[i] = (byte) i;
+    }
+    byte[] expectedDigest = MessageDigest.getInstance("SHA-256").digest(largeData);
+
+    digestVerifier.verify(kmsSigner.sign(new ByteArrayInputStream(largeData)), expectedDigest);
+
+    Path file = Files.createTempFile("GcpKmsPublicKeySignTest", ".bin");
+    try {
+      Files.write(file, largeData);
+      digestVerifier.verify(kmsSigner.sign(file), expectedDigest);
+    } finally {
+      Files.delete(file);
+    }
+    assertThat(capturedSignRequest.getDigest().getSha256().toByteArray()).isEqualTo(expectedDigest);
+  }
+
+  @Test
+  public void streamingSignWorksForEmptyFile() throws Exception {
+    StreamingPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_DIGEST)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildStreaming();
+    Path file = Files.createTempFile("GcpKmsPublicKeySignTest", ".bin");
+    try {
+      digestVerifier.verify(
+          kmsSigner.sign(file), MessageDigest.getInstance("SHA-256").digest(new byte[0]));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void streamingSignWorksForMlDsaExternalMu() throws Exception {
+    StreamingPublicKeySign kmsSigner =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_ML_DSA_44_EXTERNAL_MU)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildStreaming();
+    ByteBuffer direct = ByteBuffer.allocateDirect(dataForSign.length - 3);
+    direct.put(dataForSign, 3, dataForSign.length - 3).flip();
+
+    byte[] unused = kmsSigner.newSigner().update(dataForSign, 0, 3).update(direct).sign();
+
+    assertThat(capturedSignRequest.getDigest().getExternalMu().toByteArray())
+        .isEqualTo(BaseEncoding.base16().lowerCase().decode(ML_DSA_44_EXTERNAL_MU_HEX));
+  }
+
+  @Test
+  public void streamingSignerCannotBeReused() throws Exception {
+    StreamingPublicKeySign.Signer signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME_FOR_DIGEST)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildStreaming()
+            .newSigner()
+            .update(dataForSign);
+
+    byte[] unused = signer.sign();
+
+    assertThrows(IllegalStateException.class, () -> signer.update(dataForSign));
+    assertThrows(IllegalStateException.class, signer::sign);
+  }
+
+  @Test
+  public void buildStreamingFailsForKeysThatSignData() throws Exception {
+    for (String keyName :
+        new String[] {KEY_NAME_FOR_DATA, KEY_NAME_FOR_EXTERNAL_KEY, KEY_NAME_FOR_ML_DSA_44}) {
+      GeneralSecurityException e =
+          assertThrows(
+              GeneralSecurityException.class,
+              () ->
+                  GcpKmsPublicKeySign.builder()
+                      .setKeyName(keyName)
+                      .setKeyManagementServiceClient(kmsClient)
+                      .buildStreaming());
+      assertThat(e).hasMessageThat().contains("cannot be streamed");
+    }
+  }
 }
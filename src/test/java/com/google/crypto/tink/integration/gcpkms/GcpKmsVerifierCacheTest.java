@@ -0,0 +1,287 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.FakeKeyManagementService.Method;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class GcpKmsVerifierCacheTest {
+
+  private static final String KEY_RING = "projects/cloudkms-test/locations/global/keyRings/KR";
+  private static final String KEY_A = KEY_RING + "/cryptoKeys/a/cryptoKeyVersions/1";
+  private static final String KEY_B = KEY_RING + "/cryptoKeys/b/cryptoKeyVersions/1";
+  private static final String KEY_C = KEY_RING + "/cryptoKeys/c/cryptoKeyVersions/1";
+  private static final String KEY_THROTTLED =
+      KEY_RING + "/cryptoKeys/throttled/cryptoKeyVersions/1";
+  private static final String UNKNOWN_KEY = KEY_RING + "/cryptoKeys/unknown/cryptoKeyVersions/1";
+  private static final byte[] DATA = "data".getBytes(UTF_8);
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  private final FakeTicker ticker = new FakeTicker();
+  private FakeKeyManagementService service;
+  private KeyManagementServiceClient kmsClient;
+
+  @Before
+  public void setUp() throws Exception {
+    service =
+        FakeKeyManagementService.builder()
+            .addSigningKey(KEY_A, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .addSigningKey(KEY_B, CryptoKeyVersionAlgorithm.EC_SIGN_P384_SHA384)
+            .addSigningKey(KEY_C, CryptoKeyVersionAlgorithm.RSA_SIGN_PKCS1_2048_SHA256)
+            .addSigningKey(KEY_THROTTLED, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .setQuota(KEY_THROTTLED, 0, Duration.ofDays(1))
+            .build();
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    kmsClient = KeyManagementServiceClient.create(settings.build());
+  }
+
+  private GcpKmsVerifierCache.Builder cacheBuilder() {
+    return GcpKmsVerifierCache.builder()
+        .setKeyManagementServiceClient(kmsClient)
+        .setTicker(ticker)
+        .setExecutor(MoreExecutors.directExecutor());
+  }
+
+  private byte[] sign(String keyName) throws GeneralSecurityException {
+    PublicKeySign signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(keyName)
+            .setKeyManagementServiceClient(kmsClient)
+            .build();
+    return signer.sign(DATA);
+  }
+
+  private long getPublicKeyCalls() {
+    return service.callCount(Method.GET_PUBLIC_KEY);
+  }
+
+  @Test
+  public void verify_fetchesPublicKeyOnce() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().build();
+    byte[] signatureA = sign(KEY_A);
+    byte[] signatureB = sign(KEY_B);
+    service.resetCounters();
+
+    cache.verify(KEY_A, signatureA, DATA);
+    cache.verify(KEY_A, signatureA, DATA);
+    cache.verify(KEY_B, signatureB, DATA);
+
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(2);
+    assertThrows(GeneralSecurityException.class, () -> cache.verify(KEY_B, signatureA, DATA));
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> cache.verify(KEY_A, signatureA, "invalid".getBytes(UTF_8)));
+  }
+
+  @Test
+  public void get_returnsSameVerifier() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().build();
+
+    PublicKeyVerify verifier = cache.get(KEY_C);
+
+    assertThat(cache.get(KEY_C)).isSameInstanceAs(verifier);
+    verifier.verify(sign(KEY_C), DATA);
+  }
+
+  @Test
+  public void maximumSize_evictsLeastRecentlyUsed() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().setMaximumSize(2).build();
+    cache.get(KEY_A);
+    cache.get(KEY_B);
+    cache.get(KEY_A);
+    cache.get(KEY_C);
+    service.resetCounters();
+
+    cache.get(KEY_A);
+    assertThat(getPublicKeyCalls()).isEqualTo(0);
+    cache.get(KEY_B);
+    assertThat(getPublicKeyCalls()).isEqualTo(1);
+  }
+
+  @Test
+  public void maximumWeight_boundsTotalPublicKeySize() throws Exception {
+    // Every public key is heavier than the maximum weight, so none is kept.
+    GcpKmsVerifierCache cache = cacheBuilder().setMaximumWeight(1).build();
+
+    cache.get(KEY_A);
+    cache.get(KEY_A);
+
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void notFound_isCachedForNegativeTtl() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().setNegativeTtl(Duration.ofSeconds(10)).build();
+
+    assertThrows(GeneralSecurityException.class, () -> cache.get(UNKNOWN_KEY));
+    assertThrows(GeneralSecurityException.class, () -> cache.get(UNKNOWN_KEY));
+
+    assertThat(getPublicKeyCalls()).isEqualTo(1);
+    assertThat(cache.negativeHitCount()).isEqualTo(1);
+
+    ticker.advance(Duration.ofSeconds(10));
+    assertThrows(GeneralSecurityException.class, () -> cache.get(UNKNOWN_KEY));
+
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+  }
+
+  @Test
+  public void transientFailure_isNotCached() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().build();
+
+    assertThrows(GeneralSecurityException.class, () -> cache.get(KEY_THROTTLED));
+    assertThrows(GeneralSecurityException.class, () -> cache.get(KEY_THROTTLED));
+
+    assertThat(service.quotaExceededCount()).isEqualTo(2);
+    assertThat(cache.negativeHitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void invalidate_removesCachedFailure() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().build();
+    assertThrows(GeneralSecurityException.class, () -> cache.get(UNKNOWN_KEY));
+
+    cache.invalidate(UNKNOWN_KEY);
+    assertThrows(GeneralSecurityException.class, () -> cache.get(UNKNOWN_KEY));
+
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+    assertThat(cache.negativeHitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void staleEntry_isReloadedAndStillServed() throws Exception {
+    GcpKmsVerifierCache cache =
+        cacheBuilder()
+            .setRefreshAfter(Duration.ofMinutes(10))
+            .setExpireAfter(Duration.ofHours(1))
+            .build();
+    byte[] signature = sign(KEY_A);
+    cache.verify(KEY_A, signature, DATA);
+    service.resetCounters();
+
+    ticker.advance(Duration.ofMinutes(11));
+    cache.verify(KEY_A, signature, DATA);
+    cache.verify(KEY_A, signature, DATA);
+
+    assertThat(getPublicKeyCalls()).isEqualTo(1);
+  }
+
+  @Test
+  public void getAsync_loadsOnExecutor() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().build();
+
+    CompletableFuture<PublicKeyVerify> first = cache.getAsync(KEY_A);
+    CompletableFuture<PublicKeyVerify> second = cache.getAsync(KEY_A);
+    CompletableFuture<PublicKeyVerify> unknown = cache.getAsync(UNKNOWN_KEY);
+
+    assertThat(second.get()).isSameInstanceAs(first.get());
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+    ExecutionException e = assertThrows(ExecutionException.class, unknown::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+  }
+
+  @Test
+  public void get_invalidKeyName_throws() throws Exception {
+    GcpKmsVerifierCache cache = cacheBuilder().build();
+
+    assertThrows(GeneralSecurityException.class, () -> cache.get(KEY_RING + "/cryptoKeys/a"));
+    assertThat(getPublicKeyCalls()).isEqualTo(0);
+  }
+
+  @Test
+  public void build_invalidSettings_throws() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> cacheBuilder().setMaximumSize(10).setMaximumWeight(10).build());
+    assertThrows(GeneralSecurityException.class, () -> cacheBuilder().setMaximumSize(0).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            cacheBuilder()
+                .setRefreshAfter(Duration.ofHours(1))
+                .setExpireAfter(Duration.ofHours(1))
+                .build());
+    assertThrows(
+        GeneralSecurityException.class, () -> cacheBuilder().setNegativeTtl(Duration.ZERO).build());
+    assertThrows(GeneralSecurityException.class, () -> GcpKmsVerifierCache.builder().build());
+  }
+}
@@ -0,0 +1,74 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class HedgingPolicyTest {
+
+  @Test
+  public void defaults() throws Exception {
+    HedgingPolicy policy = HedgingPolicy.builder().build();
+
+    assertThat(policy.getDelayPercentile()).isEqualTo(HedgingPolicy.DEFAULT_DELAY_PERCENTILE);
+    assertThat(policy.getMinDelay()).isEqualTo(HedgingPolicy.DEFAULT_MIN_DELAY);
+    assertThat(policy.getMaxHedgeRatio()).isEqualTo(HedgingPolicy.DEFAULT_MAX_HEDGE_RATIO);
+  }
+
+  @Test
+  public void setters() throws Exception {
+    HedgingPolicy policy =
+        HedgingPolicy.builder()
+            .setDelayPercentile(0.99)
+            .setMinDelay(Duration.ofMillis(20))
+            .setMaxHedgeRatio(0.1)
+            .build();
+
+    assertThat(policy.getDelayPercentile()).isEqualTo(0.99);
+    assertThat(policy.getMinDelay()).isEqualTo(Duration.ofMillis(20));
+    assertThat(policy.getMaxHedgeRatio()).isEqualTo(0.1);
+  }
+
+  @Test
+  public void invalidValues_throw() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> HedgingPolicy.builder().setDelayPercentile(0).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> HedgingPolicy.builder().setDelayPercentile(1.5).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> HedgingPolicy.builder().setDelayPercentile(Double.NaN).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> HedgingPolicy.builder().setMinDelay(Duration.ofMillis(-1)).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> HedgingPolicy.builder().setMaxHedgeRatio(-0.5).build());
+    assertThrows(
+        GeneralSecurityException.class, () -> HedgingPolicy.builder().setMaxHedgeRatio(2).build());
+  }
+}
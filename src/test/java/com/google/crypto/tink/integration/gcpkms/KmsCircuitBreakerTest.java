@@ -0,0 +1,424 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.ApiExceptionFactory;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.common.base.Ticker;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.aead.AeadConfig;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class KmsCircuitBreakerTest {
+
+  private static final String KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead-key";
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    AeadConfig.register();
+  }
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  /** Serves {@code service} in-process and returns a client without retries connected to it. */
+  private KeyManagementServiceClient connect(FakeKeyManagementService service) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    return KeyManagementServiceClient.create(settings.build());
+  }
+
+  private static RuntimeException apiException(Status.Code code) {
+    return ApiExceptionFactory.createException(
+        new RuntimeException(code.name()), GrpcStatusCode.of(code), /* retryable= */ false);
+  }
+
+  private static String succeed() {
+    return "ok";
+  }
+
+  private static String fail(Status.Code code) {
+    throw apiException(code);
+  }
+
+  /** A breaker that opens once half of the last 4 calls failed, and stays open for 10 seconds. */
+  private static KmsCircuitBreaker.Builder smallBreaker(FakeTicker ticker) {
+    return KmsCircuitBreaker.builder()
+        .setWindowSize(4)
+        .setMinimumCalls(4)
+        .setFailureRateThreshold(0.5)
+        .setOpenDuration(Duration.ofSeconds(10))
+        .setHalfOpenCalls(2)
+        .setTicker(ticker);
+  }
+
+  private static void open(KmsCircuitBreaker breaker) throws Exception {
+    for (int i = 0; i < 4; i++) {
+      assertThrows(RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.UNAVAILABLE)));
+    }
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  public void invalidParameters_throw() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsCircuitBreaker.builder().setFailureRateThreshold(0).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsCircuitBreaker.builder().setSlowCallRateThreshold(1.5).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsCircuitBreaker.builder().setSlowCallDuration(Duration.ZERO).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsCircuitBreaker.builder().setWindowSize(10).setMinimumCalls(11).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsCircuitBreaker.builder().setOpenDuration(Duration.ofSeconds(-1)).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsCircuitBreaker.builder().setHalfOpenCalls(0).build());
+  }
+
+  @Test
+  public void failureRateReached_opensAndFailsFast() throws Exception {
+    KmsCircuitBreaker breaker = smallBreaker(new FakeTicker()).build();
+    AtomicInteger calls = new AtomicInteger();
+
+    breaker.call(KmsCircuitBreakerTest::succeed);
+    breaker.call(KmsCircuitBreakerTest::succeed);
+    assertThrows(
+        RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.DEADLINE_EXCEEDED)));
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.CLOSED);
+    assertThrows(RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.INTERNAL)));
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.OPEN);
+    assertThrows(
+        KmsCircuitBreaker.CircuitOpenException.class,
+        () -> breaker.call(() -> calls.incrementAndGet()));
+    assertThat(calls.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void clientErrors_doNotOpen() throws Exception {
+    KmsCircuitBreaker breaker = smallBreaker(new FakeTicker()).build();
+
+    for (int i = 0; i < 10; i++) {
+      assertThrows(
+          RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.INVALID_ARGUMENT)));
+      assertThrows(
+          RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.RESOURCE_EXHAUSTED)));
+    }
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void slowCallRateReached_opens() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    KmsCircuitBreaker breaker =
+        smallBreaker(ticker)
+            .setSlowCallDuration(Duration.ofSeconds(1))
+            .setSlowCallRateThreshold(0.75)
+            .build();
+
+    breaker.call(KmsCircuitBreakerTest::succeed);
+    for (int i = 0; i < 3; i++) {
+      breaker.call(
+          () -> {
+            ticker.advance(Duration.ofSeconds(2));
+            return "slow";
+          });
+    }
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  public void failuresOutsideWindow_areForgotten() throws Exception {
+    KmsCircuitBreaker breaker = smallBreaker(new FakeTicker()).build();
+
+    assertThrows(RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.UNAVAILABLE)));
+    for (int i = 0; i < 20; i++) {
+      breaker.call(KmsCircuitBreakerTest::succeed);
+    }
+    assertThrows(RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.UNAVAILABLE)));
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void halfOpen_closesAfterSuccessfulProbes() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    KmsCircuitBreaker breaker = smallBreaker(ticker).build();
+    open(breaker);
+
+    ticker.advance(Duration.ofSeconds(10));
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.HALF_OPEN);
+    breaker.call(KmsCircuitBreakerTest::succeed);
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.HALF_OPEN);
+    breaker.call(KmsCircuitBreakerTest::succeed);
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void halfOpen_failedProbe_reopens() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    KmsCircuitBreaker breaker = smallBreaker(ticker).build();
+    open(breaker);
+
+    ticker.advance(Duration.ofSeconds(10));
+    breaker.call(KmsCircuitBreakerTest::succeed);
+    assertThrows(RuntimeException.class, () -> breaker.call(() -> fail(Status.Code.UNAVAILABLE)));
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.OPEN);
+    assertThrows(
+        KmsCircuitBreaker.CircuitOpenException.class,
+        () -> breaker.call(KmsCircuitBreakerTest::succeed));
+  }
+
+  @Test
+  public void halfOpen_limitsProbes() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    KmsCircuitBreaker breaker = smallBreaker(ticker).build();
+    open(breaker);
+    ticker.advance(Duration.ofSeconds(10));
+
+    SettableApiFuture<String> probe1 = SettableApiFuture.create();
+    SettableApiFuture<String> probe2 = SettableApiFuture.create();
+    ApiFuture<String> result1 = breaker.callAsync(() -> probe1);
+    ApiFuture<String> result2 = breaker.callAsync(() -> probe2);
+    ApiFuture<String> rejected = breaker.callAsync(() -> SettableApiFuture.create());
+
+    ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+    assertThat(e).hasCauseThat().isInstanceOf(KmsCircuitBreaker.CircuitOpenException.class);
+
+    // A cancelled probe frees its slot.
+    result2.cancel(true);
+    SettableApiFuture<String> probe3 = SettableApiFuture.create();
+    ApiFuture<String> result3 = breaker.callAsync(() -> probe3);
+    probe1.set("ok");
+    probe3.set("ok");
+
+    assertThat(result1.get()).isEqualTo("ok");
+    assertThat(result3.get()).isEqualTo("ok");
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void halfOpen_probeThrowingError_freesSlot() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    KmsCircuitBreaker breaker = smallBreaker(ticker).build();
+    open(breaker);
+    ticker.advance(Duration.ofSeconds(10));
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(
+          StackOverflowError.class,
+          () ->
+              breaker.call(
+                  () -> {
+                    throw new StackOverflowError();
+                  }));
+      assertThrows(
+          StackOverflowError.class,
+          () ->
+              breaker.callAsync(
+                  () -> {
+                    throw new StackOverflowError();
+                  }));
+    }
+    breaker.call(KmsCircuitBreakerTest::succeed);
+    breaker.call(KmsCircuitBreakerTest::succeed);
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void callsStartedBeforeOpening_doNotCountAsProbes() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    KmsCircuitBreaker breaker = smallBreaker(ticker).build();
+    SettableApiFuture<String> slowCall = SettableApiFuture.create();
+    ApiFuture<String> unused = breaker.callAsync(() -> slowCall);
+    open(breaker);
+    ticker.advance(Duration.ofSeconds(10));
+
+    breaker.call(KmsCircuitBreakerTest::succeed);
+    slowCall.set("late");
+
+    assertThat(breaker.getState()).isEqualTo(KmsCircuitBreaker.State.HALF_OPEN);
+  }
+
+  @Test
+  public void isFailure() throws Exception {
+    assertThat(KmsCircuitBreaker.isFailure(apiException(Status.Code.UNAVAILABLE))).isTrue();
+    assertThat(KmsCircuitBreaker.isFailure(apiException(Status.Code.UNKNOWN))).isTrue();
+    assertThat(KmsCircuitBreaker.isFailure(apiException(Status.Code.NOT_FOUND))).isFalse();
+    assertThat(
+            KmsCircuitBreaker.isFailure(
+                new GeneralSecurityException(apiException(Status.Code.DEADLINE_EXCEEDED))))
+        .isTrue();
+    assertThat(
+            KmsCircuitBreaker.isFailure(
+                new HttpResponseException.Builder(502, "Bad Gateway", new HttpHeaders()).build()))
+        .isTrue();
+    assertThat(
+            KmsCircuitBreaker.isFailure(
+                new HttpResponseException.Builder(429, "Too Many Requests", new HttpHeaders())
+                    .build()))
+        .isFalse();
+    assertThat(KmsCircuitBreaker.isFailure(new IOException("connection reset"))).isTrue();
+    assertThat(KmsCircuitBreaker.isFailure(new GeneralSecurityException("bad tag"))).isFalse();
+  }
+
+  @Test
+  public void grpcAead_failsFastOnceOpen() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+            .build();
+    KmsCircuitBreaker breaker = smallBreaker(new FakeTicker()).build();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setCircuitBreaker(breaker)
+            .build();
+
+    for (int i = 0; i < 4; i++) {
+      GeneralSecurityException e =
+          assertThrows(
+              GeneralSecurityException.class, () -> aead.encrypt(new byte[0], new byte[0]));
+      assertThat(e).isNotInstanceOf(KmsCircuitBreaker.CircuitOpenException.class);
+    }
+    assertThrows(
+        KmsCircuitBreaker.CircuitOpenException.class, () -> aead.decrypt(new byte[0], new byte[0]));
+
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isEqualTo(4);
+    assertThat(service.callCount(FakeKeyManagementService.Method.DECRYPT)).isEqualTo(0);
+  }
+
+  @Test
+  public void grpcAeadAsync_failsFastOnceOpen() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+            .build();
+    KmsCircuitBreaker breaker = smallBreaker(new FakeTicker()).build();
+    AsyncAead aead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setCircuitBreaker(breaker)
+            .buildAsync();
+
+    for (int i = 0; i < 4; i++) {
+      assertThrows(
+          ExecutionException.class, () -> aead.encryptAsync(new byte[0], new byte[0]).get());
+    }
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> aead.encryptAsync(new byte[0], new byte[0]).get());
+
+    assertThat(e).hasCauseThat().isInstanceOf(KmsCircuitBreaker.CircuitOpenException.class);
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isEqualTo(4);
+  }
+
+  @Test
+  public void httpAead_failsFastOnceOpen() throws Exception {
+    FakeCloudKms cloudKms = new FakeCloudKms(asList(KEY_NAME)).setErrorRate(503, 1.0);
+    KmsCircuitBreaker breaker = smallBreaker(new FakeTicker()).build();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME)
+            .setCloudKms(cloudKms)
+            .setCircuitBreaker(breaker)
+            .build();
+
+    for (int i = 0; i < 4; i++) {
+      assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[0], new byte[0]));
+    }
+    assertThrows(
+        KmsCircuitBreaker.CircuitOpenException.class, () -> aead.encrypt(new byte[0], new byte[0]));
+
+    assertThat(cloudKms.callCount(FakeCloudKms.Operation.ENCRYPT)).isEqualTo(4);
+  }
+}
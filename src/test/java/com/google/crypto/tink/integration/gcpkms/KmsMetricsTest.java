@@ -0,0 +1,434 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceGrpc.KeyManagementServiceImplBase;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.cloud.kms.v1.MacSignRequest;
+import com.google.cloud.kms.v1.MacSignResponse;
+import com.google.cloud.kms.v1.MacVerifyRequest;
+import com.google.cloud.kms.v1.MacVerifyResponse;
+import com.google.common.base.Ticker;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.IntegrityFailure;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Phase;
+import com.google.protobuf.ByteString;
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class KmsMetricsTest {
+
+  private static final String AEAD_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead-key";
+  private static final String MAC_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/mac-key/cryptoKeyVersions/1";
+  private static final String SIGN_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign-key/cryptoKeyVersions/1";
+
+  private static final Ticker STOPPED_TICKER =
+      new Ticker() {
+        @Override
+        public long read() {
+          return 0;
+        }
+      };
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    AeadConfig.register();
+  }
+
+  /** Serves {@code service} in-process and returns a client without retries connected to it. */
+  private KeyManagementServiceClient connect(BindableService service) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    return KeyManagementServiceClient.create(settings.build());
+  }
+
+  /** Returns MAC responses for another key, and MacVerify responses with unverified checksums. */
+  private static final class BadResponseKms extends KeyManagementServiceImplBase {
+    @Override
+    public void macSign(MacSignRequest request, StreamObserver<MacSignResponse> responseObserver) {
+      responseObserver.onNext(
+          MacSignResponse.newBuilder()
+              .setName(request.getName().replace("mac-key", "other-key"))
+              .setMac(ByteString.copyFromUtf8("mac"))
+              .setVerifiedDataCrc32C(true)
+              .build());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public void macVerify(
+        MacVerifyRequest request, StreamObserver<MacVerifyResponse> responseObserver) {
+      responseObserver.onNext(
+          MacVerifyResponse.newBuilder()
+              .setName(request.getName())
+              .setSuccess(true)
+              .setVerifiedSuccessIntegrity(true)
+              .setVerifiedDataCrc32C(false)
+              .setVerifiedMacCrc32C(true)
+              .build());
+      responseObserver.onCompleted();
+    }
+  }
+
+  private static void assertRecordedAllPhasesOnce(
+      KmsMetrics metrics, String keyName, Operation operation) {
+    for (Phase phase : Phase.values()) {
+      assertThat(metrics.getLatencyCount(keyName, operation, phase)).isEqualTo(1);
+    }
+    assertThat(metrics.getStatusCount(keyName, operation, StatusCode.Code.OK)).isEqualTo(1);
+  }
+
+  @Test
+  public void recordLatency_percentilesAndTotal() throws Exception {
+    KmsMetrics metrics = KmsMetrics.create();
+    for (int i = 1; i <= 100; i++) {
+      metrics.recordLatency(
+          AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC, Duration.ofMillis(i).toNanos());
+    }
+
+    assertThat(metrics.getLatencyCount(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC)).isEqualTo(100);
+    assertThat(metrics.getTotalLatency(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC))
+        .isEqualTo(Duration.ofMillis(5050));
+    Duration median = metrics.getLatencyPercentile(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC, 50);
+    assertThat(median).isAtLeast(Duration.ofMillis(50));
+    assertThat(median).isAtMost(Duration.ofMillis(57));
+    assertThat(metrics.getLatencyPercentile(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC, 100))
+        .isEqualTo(Duration.ofMillis(100));
+    // Other phases, operations and keys are counted separately.
+    assertThat(metrics.getLatencyCount(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.CHECKSUM))
+        .isEqualTo(0);
+    assertThat(metrics.getLatencyCount(AEAD_KEY_NAME, Operation.DECRYPT, Phase.RPC)).isEqualTo(0);
+    assertThat(metrics.getLatencyCount(MAC_KEY_NAME, Operation.ENCRYPT, Phase.RPC)).isEqualTo(0);
+  }
+
+  @Test
+  public void unknownKey_returnsZero() throws Exception {
+    KmsMetrics metrics = KmsMetrics.create();
+
+    assertThat(metrics.getLatencyCount(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC)).isEqualTo(0);
+    assertThat(metrics.getTotalLatency(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC))
+        .isEqualTo(Duration.ZERO);
+    assertThat(metrics.getLatencyPercentile(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC, 99))
+        .isEqualTo(Duration.ZERO);
+    assertThat(metrics.getStatusCount(AEAD_KEY_NAME, Operation.ENCRYPT, StatusCode.Code.OK))
+        .isEqualTo(0);
+    assertThat(
+            metrics.getIntegrityFailureCount(
+                AEAD_KEY_NAME, Operation.ENCRYPT, IntegrityFailure.CRC32C_MISMATCH))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void invalidPercentile_throws() throws Exception {
+    KmsMetrics metrics = KmsMetrics.create();
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> metrics.getLatencyPercentile(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC, 0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> metrics.getLatencyPercentile(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC, 100.5));
+  }
+
+  @Test
+  public void grpcAead_recordsPhasesAndStatus() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build();
+    KmsMetrics metrics = KmsMetrics.create();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setMetricsListener(metrics)
+            .build();
+
+    byte[] ciphertext = aead.encrypt(new byte[] {1, 2, 3}, new byte[0]);
+    assertThat(aead.decrypt(ciphertext, new byte[0])).isEqualTo(new byte[] {1, 2, 3});
+
+    assertRecordedAllPhasesOnce(metrics, AEAD_KEY_NAME, Operation.ENCRYPT);
+    assertRecordedAllPhasesOnce(metrics, AEAD_KEY_NAME, Operation.DECRYPT);
+    assertThat(metrics.getTotalLatency(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC))
+        .isGreaterThan(Duration.ZERO);
+  }
+
+  @Test
+  public void grpcAead_failedRpc_recordsStatusButNoValidation() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+            .build();
+    KmsMetrics metrics = KmsMetrics.create();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setMetricsListener(metrics)
+            .build();
+
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[] {1}, new byte[0]));
+
+    assertThat(
+            metrics.getStatusCount(AEAD_KEY_NAME, Operation.ENCRYPT, StatusCode.Code.UNAVAILABLE))
+        .isEqualTo(1);
+    assertThat(metrics.getStatusCount(AEAD_KEY_NAME, Operation.ENCRYPT, StatusCode.Code.OK))
+        .isEqualTo(0);
+    assertThat(metrics.getLatencyCount(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.RPC)).isEqualTo(1);
+    assertThat(metrics.getLatencyCount(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.VALIDATION))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void grpcAsyncAead_recordsPhasesAndStatus() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build();
+    KmsMetrics metrics = KmsMetrics.create();
+    AsyncAead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setMetricsListener(metrics)
+            .buildAsync();
+
+    byte[] ciphertext = aead.encryptAsync(new byte[] {1, 2, 3}, new byte[0]).get(5, SECONDS);
+    assertThat(aead.decryptAsync(ciphertext, new byte[0]).get(5, SECONDS))
+        .isEqualTo(new byte[] {1, 2, 3});
+
+    assertRecordedAllPhasesOnce(metrics, AEAD_KEY_NAME, Operation.ENCRYPT);
+    assertRecordedAllPhasesOnce(metrics, AEAD_KEY_NAME, Operation.DECRYPT);
+  }
+
+  @Test
+  public void grpcAsyncAead_failedRpc_recordsStatus() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setErrorRate(Status.Code.PERMISSION_DENIED, 1.0)
+            .build();
+    KmsMetrics metrics = KmsMetrics.create();
+    AsyncAead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setMetricsListener(metrics)
+            .buildAsync();
+
+    assertThrows(
+        ExecutionException.class,
+        () -> aead.encryptAsync(new byte[] {1}, new byte[0]).get(5, SECONDS));
+
+    assertThat(
+            metrics.getStatusCount(
+                AEAD_KEY_NAME, Operation.ENCRYPT, StatusCode.Code.PERMISSION_DENIED))
+        .isEqualTo(1);
+    assertThat(metrics.getLatencyCount(AEAD_KEY_NAME, Operation.ENCRYPT, Phase.VALIDATION))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void httpAead_recordsPhasesAndStatus() throws Exception {
+    FakeCloudKms cloudKms = new FakeCloudKms(asList(AEAD_KEY_NAME));
+    KmsMetrics metrics = KmsMetrics.create();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setCloudKms(cloudKms)
+            .setMetricsListener(metrics)
+            .build();
+
+    byte[] ciphertext = aead.encrypt(new byte[] {1, 2, 3}, new byte[0]);
+    assertThat(aead.decrypt(ciphertext, new byte[0])).isEqualTo(new byte[] {1, 2, 3});
+
+    assertRecordedAllPhasesOnce(metrics, AEAD_KEY_NAME, Operation.ENCRYPT);
+    assertRecordedAllPhasesOnce(metrics, AEAD_KEY_NAME, Operation.DECRYPT);
+  }
+
+  @Test
+  public void httpAead_httpError_recordsMappedStatus() throws Exception {
+    FakeCloudKms cloudKms = new FakeCloudKms(asList(AEAD_KEY_NAME)).setErrorRate(503, 1.0);
+    KmsMetrics metrics = KmsMetrics.create();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setCloudKms(cloudKms)
+            .setMetricsListener(metrics)
+            .build();
+
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[] {1}, new byte[0]));
+
+    assertThat(
+            metrics.getStatusCount(AEAD_KEY_NAME, Operation.ENCRYPT, StatusCode.Code.UNAVAILABLE))
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void mac_recordsPhasesAndStatus() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder().addMacKey(MAC_KEY_NAME).build();
+    KmsMetrics metrics = KmsMetrics.create();
+    GcpKmsMac.Builder builder =
+        GcpKmsMac.builder()
+            .setKeyName(MAC_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setMetricsListener(metrics);
+    Mac mac = builder.build();
+    AsyncMac asyncMac = builder.buildAsync();
+
+    byte[] tag = mac.computeMac(new byte[] {1, 2, 3});
+    asyncMac.verifyMacAsync(tag, new byte[] {1, 2, 3}).get(5, SECONDS);
+
+    assertRecordedAllPhasesOnce(metrics, MAC_KEY_NAME, Operation.MAC_SIGN);
+    assertRecordedAllPhasesOnce(metrics, MAC_KEY_NAME, Operation.MAC_VERIFY);
+  }
+
+  @Test
+  public void mac_integrityFailures_areCounted() throws Exception {
+    KmsMetrics metrics = KmsMetrics.create();
+    GcpKmsMac.Builder builder =
+        GcpKmsMac.builder()
+            .setKeyName(MAC_KEY_NAME)
+            .setKeyManagementServiceClient(connect(new BadResponseKms()))
+            .setMetricsListener(metrics);
+    Mac mac = builder.build();
+    AsyncMac asyncMac = builder.buildAsync();
+
+    assertThrows(GeneralSecurityException.class, () -> mac.computeMac(new byte[] {1}));
+    assertThrows(GeneralSecurityException.class, () -> mac.verifyMac(new byte[] {2}, new byte[0]));
+    assertThrows(
+        ExecutionException.class,
+        () -> asyncMac.verifyMacAsync(new byte[] {2}, new byte[0]).get(5, SECONDS));
+
+    assertThat(
+            metrics.getIntegrityFailureCount(
+                MAC_KEY_NAME, Operation.MAC_SIGN, IntegrityFailure.KEY_NAME_MISMATCH))
+        .isEqualTo(1);
+    assertThat(
+            metrics.getIntegrityFailureCount(
+                MAC_KEY_NAME, Operation.MAC_VERIFY, IntegrityFailure.CRC32C_MISMATCH))
+        .isEqualTo(2);
+    // The RPCs themselves succeeded, but the responses were rejected.
+    assertThat(metrics.getStatusCount(MAC_KEY_NAME, Operation.MAC_VERIFY, StatusCode.Code.OK))
+        .isEqualTo(2);
+    assertThat(metrics.getLatencyCount(MAC_KEY_NAME, Operation.MAC_VERIFY, Phase.VALIDATION))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void publicKeySign_recordsPhasesAndStatus() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addSigningKey(SIGN_KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .build();
+    KmsMetrics metrics = KmsMetrics.create();
+    GcpKmsPublicKeySign.Builder builder =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(SIGN_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setMetricsListener(metrics);
+
+    Object unused = builder.build().sign(new byte[] {1, 2, 3});
+    unused = builder.buildAsync().signAsync(new byte[] {1, 2, 3}).get(5, SECONDS);
+
+    for (Phase phase : Phase.values()) {
+      assertThat(metrics.getLatencyCount(SIGN_KEY_NAME, Operation.ASYMMETRIC_SIGN, phase))
+          .isEqualTo(2);
+    }
+    assertThat(metrics.getStatusCount(SIGN_KEY_NAME, Operation.ASYMMETRIC_SIGN, StatusCode.Code.OK))
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void rateLimiterRejection_recordedAsResourceExhausted() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build();
+    KmsMetrics metrics = KmsMetrics.create();
+    KmsRateLimiter rateLimiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(1)
+            .setMode(KmsRateLimiter.Mode.FAIL_FAST)
+            .setTicker(STOPPED_TICKER)
+            .build();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setRateLimiter(rateLimiter)
+            .setMetricsListener(metrics)
+            .build();
+
+    byte[] unused = aead.encrypt(new byte[] {1}, new byte[0]);
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[] {1}, new byte[0]));
+
+    assertThat(metrics.getStatusCount(AEAD_KEY_NAME, Operation.ENCRYPT, StatusCode.Code.OK))
+        .isEqualTo(1);
+    assertThat(
+            metrics.getStatusCount(
+                AEAD_KEY_NAME, Operation.ENCRYPT, StatusCode.Code.RESOURCE_EXHAUSTED))
+        .isEqualTo(1);
+  }
+}
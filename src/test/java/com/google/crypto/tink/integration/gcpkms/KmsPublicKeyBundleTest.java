@@ -0,0 +1,212 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.FakeKeyManagementService.Method;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class KmsPublicKeyBundleTest {
+
+  private static final String KEY_RING = "projects/cloudkms-test/locations/global/keyRings/KR";
+  private static final String KEY_A = KEY_RING + "/cryptoKeys/a/cryptoKeyVersions/1";
+  private static final String KEY_B = KEY_RING + "/cryptoKeys/b/cryptoKeyVersions/1";
+  private static final String KEY_C = KEY_RING + "/cryptoKeys/c/cryptoKeyVersions/1";
+  private static final String UNKNOWN_KEY = KEY_RING + "/cryptoKeys/unknown/cryptoKeyVersions/1";
+  private static final byte[] DATA = "data".getBytes(UTF_8);
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FakeKeyManagementService service;
+  private KeyManagementServiceClient kmsClient;
+
+  @Before
+  public void setUp() throws Exception {
+    service =
+        FakeKeyManagementService.builder()
+            .addSigningKey(KEY_A, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .addSigningKey(KEY_B, CryptoKeyVersionAlgorithm.EC_SIGN_P384_SHA384)
+            .addSigningKey(KEY_C, CryptoKeyVersionAlgorithm.RSA_SIGN_PKCS1_2048_SHA256)
+            .build();
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    kmsClient = KeyManagementServiceClient.create(settings.build());
+  }
+
+  private byte[] sign(String keyName) throws GeneralSecurityException {
+    PublicKeySign signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(keyName)
+            .setKeyManagementServiceClient(kmsClient)
+            .build();
+    return signer.sign(DATA);
+  }
+
+  @Test
+  public void writeAndLoad_verifiesWithoutKms() throws Exception {
+    byte[] signatureA = sign(KEY_A);
+    byte[] signatureB = sign(KEY_B);
+    byte[] signatureC = sign(KEY_C);
+    Path path = temporaryFolder.newFile().toPath();
+    KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A, KEY_B, KEY_C), 2).write(path);
+    service.resetCounters();
+
+    KmsPublicKeyBundle bundle = KmsPublicKeyBundle.load(path);
+
+    assertThat(bundle.keyNames()).containsExactly(KEY_A, KEY_B, KEY_C).inOrder();
+    bundle.getVerifier(KEY_A).verify(signatureA, DATA);
+    bundle.getVerifier(KEY_B).verify(signatureB, DATA);
+    bundle.getVerifier(KEY_C).verify(signatureC, DATA);
+    assertThrows(
+        GeneralSecurityException.class, () -> bundle.getVerifier(KEY_A).verify(signatureB, DATA));
+    assertThat(service.callCount(Method.GET_PUBLIC_KEY)).isEqualTo(0);
+  }
+
+  @Test
+  public void fetch_deduplicatesKeyNames() throws Exception {
+    service.resetCounters();
+
+    KmsPublicKeyBundle bundle = KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A, KEY_A));
+
+    assertThat(bundle.keyNames()).containsExactly(KEY_A);
+    assertThat(service.callCount(Method.GET_PUBLIC_KEY)).isEqualTo(1);
+  }
+
+  @Test
+  public void fetch_unknownKey_throws() {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A, UNKNOWN_KEY)));
+  }
+
+  @Test
+  public void fetch_nonPositiveParallelism_throws() {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A), 0));
+  }
+
+  @Test
+  public void getVerifier_returnsSameVerifier() throws Exception {
+    KmsPublicKeyBundle bundle = KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A));
+
+    PublicKeyVerify verifier = bundle.getVerifier(KEY_A);
+
+    assertThat(bundle.getVerifier(KEY_A)).isSameInstanceAs(verifier);
+  }
+
+  @Test
+  public void getVerifier_keyNotInBundle_throws() throws Exception {
+    KmsPublicKeyBundle bundle = KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A));
+
+    assertThrows(GeneralSecurityException.class, () -> bundle.getVerifier(KEY_B));
+  }
+
+  @Test
+  public void parse_corruptedPublicKey_failsOnlyForThatKey() throws Exception {
+    byte[] serialized =
+        KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A, KEY_B)).toByteArray();
+    // The base64 body of the first PEM starts a little after its header.
+    int index = new String(serialized, UTF_8).indexOf("-----BEGIN PUBLIC KEY-----\n") + 40;
+    serialized[index] ^= 1;
+
+    KmsPublicKeyBundle bundle = KmsPublicKeyBundle.parse(serialized);
+
+    GeneralSecurityException e =
+        assertThrows(GeneralSecurityException.class, () -> bundle.getVerifier(KEY_A));
+    assertThat(e).hasMessageThat().contains("corrupted");
+    bundle.getVerifier(KEY_B).verify(sign(KEY_B), DATA);
+  }
+
+  @Test
+  public void parse_invalidBundle_throws() throws Exception {
+    byte[] serialized = KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList(KEY_A)).toByteArray();
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsPublicKeyBundle.parse(Arrays.copyOf(serialized, serialized.length - 1)));
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsPublicKeyBundle.parse(Arrays.copyOf(serialized, serialized.length + 1)));
+    byte[] badMagic = serialized.clone();
+    badMagic[0] = 'X';
+    assertThrows(GeneralSecurityException.class, () -> KmsPublicKeyBundle.parse(badMagic));
+    byte[] badVersion = serialized.clone();
+    badVersion[4] = 2;
+    assertThrows(GeneralSecurityException.class, () -> KmsPublicKeyBundle.parse(badVersion));
+    assertThrows(GeneralSecurityException.class, () -> KmsPublicKeyBundle.parse(new byte[0]));
+  }
+
+  @Test
+  public void parse_emptyBundle_works() throws Exception {
+    KmsPublicKeyBundle bundle = KmsPublicKeyBundle.fetch(kmsClient, Arrays.asList());
+
+    assertThat(KmsPublicKeyBundle.parse(bundle.toByteArray()).keyNames()).isEmpty();
+  }
+
+  @Test
+  public void load_emptyFile_throws() throws Exception {
+    Path path = temporaryFolder.newFile().toPath();
+    Files.write(path, new byte[0]);
+
+    assertThrows(GeneralSecurityException.class, () -> KmsPublicKeyBundle.load(path));
+  }
+}
@@ -0,0 +1,319 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.cloud.kms.v1.PublicKey;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil;
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class KmsPublicKeyCacheTest {
+
+  private static final String CRYPTO_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign-key";
+  private static final String KEY_NAME = CRYPTO_KEY_NAME + "/cryptoKeyVersions/1";
+  private static final String OTHER_VERSION_NAME = CRYPTO_KEY_NAME + "/cryptoKeyVersions/2";
+  private static final String UNKNOWN_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/unknown/cryptoKeyVersions/1";
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  private FakeKeyManagementService service;
+  private KeyManagementServiceClient kmsClient;
+  private final FakeTicker ticker = new FakeTicker();
+  private KmsPublicKeyCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    service =
+        FakeKeyManagementService.builder()
+            .addSigningKey(KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .build();
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    kmsClient =
+        KeyManagementServiceClient.create(
+            KeyManagementServiceSettings.newBuilder()
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .setTransportChannelProvider(
+                    FixedTransportChannelProvider.create(
+                        GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()))
+                .build());
+    cache =
+        KmsPublicKeyCache.builder()
+            .setRefreshAfter(Duration.ofMinutes(10))
+            .setExpireAfter(Duration.ofHours(1))
+            .setTicker(ticker)
+            .setRefreshExecutor(MoreExecutors.directExecutor())
+            .build();
+  }
+
+  private long getPublicKeyCalls() {
+    return service.callCount(FakeKeyManagementService.Method.GET_PUBLIC_KEY);
+  }
+
+  private GcpKmsPublicKeySign.Builder signerBuilder() {
+    return GcpKmsPublicKeySign.builder()
+        .setKeyName(KEY_NAME)
+        .setKeyManagementServiceClient(kmsClient)
+        .setPublicKeyCache(cache);
+  }
+
+  private GcpKmsPublicKeyVerify.Builder verifierBuilder() {
+    return GcpKmsPublicKeyVerify.builder()
+        .setKeyName(KEY_NAME)
+        .setKeyManagementServiceClient(kmsClient)
+        .setPublicKeyCache(cache);
+  }
+
+  /** Returns a checksummed public key as Cloud KMS would return it in {@code format}. */
+  private static PublicKey publicKey(String keyName, PublicKey.PublicKeyFormat format) {
+    return PublicKey.newBuilder()
+        .setName(keyName)
+        .setPublicKeyFormat(format)
+        .setPublicKey(GcpKmsUtil.checksummedData(ByteString.copyFromUtf8("public key")))
+        .build();
+  }
+
+  /** Returns a tracer that adds the key name of each span that it starts to {@code keyNames}. */
+  private static KmsTracer tracer(List<String> keyNames) {
+    return (keyName, operation, payloadSize, attempt) -> {
+      keyNames.add(keyName);
+      return code -> {};
+    };
+  }
+
+  @Test
+  public void signersAndVerifiers_shareOneFetch() throws Exception {
+    byte[] data = {1, 2, 3};
+
+    byte[] signature = signerBuilder().build().sign(data);
+    verifierBuilder().build().verify(signature, data);
+    verifierBuilder().build().verify(signerBuilder().build().sign(data), data);
+
+    assertThat(getPublicKeyCalls()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void withoutCache_fetchesEveryTime() throws Exception {
+    GcpKmsPublicKeyVerify.builder()
+        .setKeyName(KEY_NAME)
+        .setKeyManagementServiceClient(kmsClient)
+        .build();
+    GcpKmsPublicKeyVerify.builder()
+        .setKeyName(KEY_NAME)
+        .setKeyManagementServiceClient(kmsClient)
+        .build();
+
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+  }
+
+  @Test
+  public void usedEntry_isRefreshedAfterRefreshDuration() throws Exception {
+    verifierBuilder().build();
+    ticker.advance(Duration.ofMinutes(9));
+    verifierBuilder().build();
+    assertThat(getPublicKeyCalls()).isEqualTo(1);
+
+    ticker.advance(Duration.ofMinutes(2));
+    verifierBuilder().build();
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+
+    // The refreshed entry is used until the next refresh is due.
+    ticker.advance(Duration.ofMinutes(9));
+    verifierBuilder().build();
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+  }
+
+  @Test
+  public void unusedEntry_expires() throws Exception {
+    verifierBuilder().build();
+    ticker.advance(Duration.ofHours(1));
+
+    verifierBuilder().build();
+
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+  }
+
+  @Test
+  public void refresh_sendsRequestLikeTheBuilderThatFetchedTheEntry() throws Exception {
+    List<String> firstSpans = new ArrayList<>();
+    List<String> laterSpans = new ArrayList<>();
+    verifierBuilder().setTracer(tracer(firstSpans)).build();
+
+    ticker.advance(Duration.ofMinutes(11));
+    verifierBuilder().setTracer(tracer(laterSpans)).build();
+
+    assertThat(getPublicKeyCalls()).isEqualTo(2);
+    assertThat(firstSpans).containsExactly(KEY_NAME, KEY_NAME);
+    assertThat(laterSpans).isEmpty();
+  }
+
+  @Test
+  public void failedRefresh_keepsEntryUntilItExpires() throws Exception {
+    // Only the first fetch succeeds, so refreshing the entry fails.
+    List<PublicKey.PublicKeyFormat> requested = new ArrayList<>();
+    KmsPublicKeyCache.Fetcher fetcher =
+        format -> {
+          requested.add(format);
+          if (requested.size() > 1) {
+            throw new GeneralSecurityException("The KMS GetPublicKey failed.");
+          }
+          return publicKey(UNKNOWN_KEY_NAME, PublicKey.PublicKeyFormat.PEM);
+        };
+    PublicKey cached = cache.get(UNKNOWN_KEY_NAME, fetcher);
+
+    ticker.advance(Duration.ofMinutes(30));
+    assertThat(cache.get(UNKNOWN_KEY_NAME, fetcher)).isEqualTo(cached);
+    assertThat(requested).hasSize(2);
+
+    ticker.advance(Duration.ofMinutes(30));
+    assertThrows(GeneralSecurityException.class, () -> cache.get(UNKNOWN_KEY_NAME, fetcher));
+    assertThat(requested).hasSize(3);
+  }
+
+  @Test
+  public void failedFetch_isNotCached() throws Exception {
+    GeneralSecurityException failure = new GeneralSecurityException("The KMS GetPublicKey failed.");
+
+    GeneralSecurityException e =
+        assertThrows(
+            GeneralSecurityException.class,
+            () ->
+                cache.get(
+                    KEY_NAME,
+                    format -> {
+                      throw failure;
+                    }));
+
+    assertThat(e).isSameInstanceAs(failure);
+    assertThat(cache.size()).isEqualTo(0);
+    verifierBuilder().build();
+    assertThat(getPublicKeyCalls()).isEqualTo(1);
+  }
+
+  @Test
+  public void nistPqcOnlyKey_isRequestedInNistPqcFormatForAllItsVersions() throws Exception {
+    List<PublicKey.PublicKeyFormat> requested = new ArrayList<>();
+
+    cache.get(
+        KEY_NAME,
+        format -> {
+          requested.add(format);
+          return publicKey(KEY_NAME, PublicKey.PublicKeyFormat.NIST_PQC);
+        });
+    cache.get(
+        OTHER_VERSION_NAME,
+        format -> {
+          requested.add(format);
+          return publicKey(OTHER_VERSION_NAME, PublicKey.PublicKeyFormat.NIST_PQC);
+        });
+    cache.get(
+        UNKNOWN_KEY_NAME,
+        format -> {
+          requested.add(format);
+          return publicKey(UNKNOWN_KEY_NAME, PublicKey.PublicKeyFormat.PEM);
+        });
+
+    assertThat(requested)
+        .containsExactly(
+            PublicKey.PublicKeyFormat.PEM,
+            PublicKey.PublicKeyFormat.NIST_PQC,
+            PublicKey.PublicKeyFormat.PEM)
+        .inOrder();
+  }
+
+  @Test
+  public void invalidate_removesEntry() throws Exception {
+    verifierBuilder().build();
+
+    cache.invalidate(KEY_NAME);
+    verifierBuilder().build();
+    cache.invalidateAll();
+    verifierBuilder().build();
+
+    assertThat(getPublicKeyCalls()).isEqualTo(3);
+  }
+
+  @Test
+  public void shared_returnsSameInstance() throws Exception {
+    assertThat(KmsPublicKeyCache.shared()).isSameInstanceAs(KmsPublicKeyCache.shared());
+  }
+
+  @Test
+  public void build_invalidParameters_fails() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsPublicKeyCache.builder().setMaximumSize(0).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsPublicKeyCache.builder().setRefreshAfter(Duration.ZERO).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            KmsPublicKeyCache.builder()
+                .setRefreshAfter(Duration.ofHours(2))
+                .setExpireAfter(Duration.ofHours(1))
+                .build());
+  }
+}
@@ -0,0 +1,284 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.common.base.Ticker;
+import com.google.crypto.tink.Aead;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class KmsRateLimiterTest {
+
+  private static final String KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead-key";
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  /** Serves {@code service} in-process and returns a client without retries connected to it. */
+  private KeyManagementServiceClient connect(FakeKeyManagementService service) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    return KeyManagementServiceClient.create(settings.build());
+  }
+
+  private static ApiFuture<String> immediate(String value) {
+    SettableApiFuture<String> future = SettableApiFuture.create();
+    future.set(value);
+    return future;
+  }
+
+  @Test
+  public void invalidParameters_throw() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsRateLimiter.builder().setCryptoRequestsPerSecond(0).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsRateLimiter.builder().setReadRequestsPerSecond(-1).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> KmsRateLimiter.builder().setMaxQueueTime(Duration.ofSeconds(-1)).build());
+  }
+
+  @Test
+  public void unlimitedQuota_neverRejects() throws Exception {
+    KmsRateLimiter limiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(1)
+            .setMode(KmsRateLimiter.Mode.FAIL_FAST)
+            .build();
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(limiter.call(KmsRateLimiter.Quota.READ, () -> "response")).isEqualTo("response");
+    }
+    assertThat(limiter.getRate(KmsRateLimiter.Quota.READ)).isPositiveInfinity();
+  }
+
+  @Test
+  public void failFast_rejectsRequestsAboveRate() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    KmsRateLimiter limiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(2)
+            .setMode(KmsRateLimiter.Mode.FAIL_FAST)
+            .setTicker(ticker)
+            .build();
+
+    assertThat(limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "1")).isEqualTo("1");
+    assertThat(limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "2")).isEqualTo("2");
+    assertThrows(
+        KmsRateLimiter.RateLimitExceededException.class,
+        () -> limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "3"));
+    ApiFuture<String> rejected =
+        limiter.callAsync(KmsRateLimiter.Quota.CRYPTO, () -> immediate("4"));
+    ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+    assertThat(e).hasCauseThat().isInstanceOf(KmsRateLimiter.RateLimitExceededException.class);
+
+    ticker.advance(Duration.ofMillis(500));
+    assertThat(limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "5")).isEqualTo("5");
+  }
+
+  @Test
+  public void quotasHaveSeparateBuckets() throws Exception {
+    KmsRateLimiter limiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(1)
+            .setReadRequestsPerSecond(1)
+            .setMode(KmsRateLimiter.Mode.FAIL_FAST)
+            .setTicker(new FakeTicker())
+            .build();
+
+    assertThat(limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "crypto")).isEqualTo("crypto");
+    assertThat(limiter.call(KmsRateLimiter.Quota.READ, () -> "read")).isEqualTo("read");
+    assertThrows(
+        KmsRateLimiter.RateLimitExceededException.class,
+        () -> limiter.call(KmsRateLimiter.Quota.READ, () -> "read"));
+  }
+
+  @Test
+  public void queue_waitsForToken() throws Exception {
+    KmsRateLimiter limiter = KmsRateLimiter.builder().setCryptoRequestsPerSecond(20).build();
+    for (int i = 0; i < 20; i++) {
+      assertThat(limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "burst")).isEqualTo("burst");
+    }
+
+    long start = System.nanoTime();
+    assertThat(limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "queued")).isEqualTo("queued");
+    ApiFuture<String> queuedAsync =
+        limiter.callAsync(KmsRateLimiter.Quota.CRYPTO, () -> immediate("queued async"));
+    assertThat(queuedAsync.isDone()).isFalse();
+    assertThat(queuedAsync.get()).isEqualTo("queued async");
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isAtLeast(Duration.ofMillis(90));
+  }
+
+  @Test
+  public void queue_rejectsIfWaitIsTooLong() throws Exception {
+    KmsRateLimiter limiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(1)
+            .setMaxQueueTime(Duration.ofMillis(100))
+            .setTicker(new FakeTicker())
+            .build();
+
+    assertThat(limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "1")).isEqualTo("1");
+    assertThrows(
+        KmsRateLimiter.RateLimitExceededException.class,
+        () -> limiter.call(KmsRateLimiter.Quota.CRYPTO, () -> "2"));
+  }
+
+  @Test
+  public void quotaExceededResponse_decreasesRate() throws Exception {
+    KmsRateLimiter limiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(100)
+            .setTicker(new FakeTicker())
+            .build();
+
+    assertThrows(
+        IOException.class,
+        () ->
+            limiter.call(
+                KmsRateLimiter.Quota.CRYPTO,
+                () -> {
+                  throw new HttpResponseException.Builder(
+                          429, "Too Many Requests", new HttpHeaders())
+                      .build();
+                }));
+
+    assertThat(limiter.getRate(KmsRateLimiter.Quota.CRYPTO)).isEqualTo(50);
+  }
+
+  @Test
+  public void otherFailure_doesNotDecreaseRate() throws Exception {
+    KmsRateLimiter limiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(100)
+            .setTicker(new FakeTicker())
+            .build();
+
+    assertThrows(
+        IOException.class,
+        () ->
+            limiter.call(
+                KmsRateLimiter.Quota.CRYPTO,
+                () -> {
+                  throw new HttpResponseException.Builder(503, "Unavailable", new HttpHeaders())
+                      .build();
+                }));
+
+    assertThat(limiter.getRate(KmsRateLimiter.Quota.CRYPTO)).isEqualTo(100);
+  }
+
+  @Test
+  public void sharedByPrimitives_resourceExhaustedFromCloudKms_decreasesRate() throws Exception {
+    String keyName2 = "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead-key-2";
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(KEY_NAME)
+            .addAeadKey(keyName2)
+            .setQuota(KEY_NAME, 2, Duration.ofHours(1))
+            .build();
+    KeyManagementServiceClient kmsClient = connect(service);
+    KmsRateLimiter limiter =
+        KmsRateLimiter.builder()
+            .setCryptoRequestsPerSecond(1000)
+            .setMode(KmsRateLimiter.Mode.FAIL_FAST)
+            .setTicker(new FakeTicker())
+            .build();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .setRateLimiter(limiter)
+            .build();
+    Aead aead2 =
+        GcpKmsAead.builder()
+            .setKeyName(keyName2)
+            .setKeyManagementServiceClient(kmsClient)
+            .setRateLimiter(limiter)
+            .build();
+
+    byte[] unused = aead.encrypt(new byte[0], new byte[0]);
+    unused = aead.encrypt(new byte[0], new byte[0]);
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[0], new byte[0]));
+    assertThat(limiter.getRate(KmsRateLimiter.Quota.CRYPTO)).isEqualTo(500);
+
+    // The other primitive shares the reduced rate, and the burst is now 500 requests.
+    for (int i = 0; i < 500; i++) {
+      unused = aead2.encrypt(new byte[0], new byte[0]);
+    }
+    assertThrows(
+        KmsRateLimiter.RateLimitExceededException.class,
+        () -> aead2.encrypt(new byte[0], new byte[0]));
+  }
+}
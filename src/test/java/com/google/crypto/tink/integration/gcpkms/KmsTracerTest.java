@@ -0,0 +1,358 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.Mac;
+import com.google.crypto.tink.aead.AeadConfig;
+import com.google.crypto.tink.integration.gcpkms.KmsMetricsListener.Operation;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class KmsTracerTest {
+
+  private static final String AEAD_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead-key";
+  private static final String MAC_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/mac-key/cryptoKeyVersions/1";
+  private static final String SIGN_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign-key/cryptoKeyVersions/1";
+
+  private static final String TRACE_HEADER = "traceparent";
+  private static final Metadata.Key<String> TRACE_KEY =
+      Metadata.Key.of(TRACE_HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    AeadConfig.register();
+  }
+
+  /** A finished span, as recorded by {@link RecordingTracer}. */
+  private static final class RecordedSpan {
+    final String keyName;
+    final Operation operation;
+    final int payloadSize;
+    final int attempt;
+    final String traceParent;
+    StatusCode.Code code;
+
+    RecordedSpan(String keyName, Operation operation, int payloadSize, int attempt) {
+      this.keyName = keyName;
+      this.operation = operation;
+      this.payloadSize = payloadSize;
+      this.attempt = attempt;
+      this.traceParent = "00-" + operation + "-" + attempt;
+    }
+  }
+
+  /** Records all spans, and propagates a {@code traceparent} header that identifies the span. */
+  private static final class RecordingTracer implements KmsTracer {
+    final List<RecordedSpan> spans = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public Span startSpan(String keyName, Operation operation, int payloadSize, int attempt) {
+      RecordedSpan recorded = new RecordedSpan(keyName, operation, payloadSize, attempt);
+      spans.add(recorded);
+      return new Span() {
+        @Override
+        public void injectHeaders(BiConsumer<String, String> headers) {
+          headers.accept(TRACE_HEADER, recorded.traceParent);
+        }
+
+        @Override
+        public void end(StatusCode.Code code) {
+          recorded.code = code;
+        }
+      };
+    }
+  }
+
+  /** Records the {@code traceparent} header of each call it intercepts. */
+  private static final class HeaderRecorder implements ServerInterceptor {
+    final List<String> traceParents = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      traceParents.add(headers.get(TRACE_KEY));
+      return next.startCall(call, headers);
+    }
+  }
+
+  /**
+   * Serves {@code service} in-process behind {@code recorder} and returns a client without retries
+   * connected to it.
+   */
+  private KeyManagementServiceClient connect(
+      FakeKeyManagementService service, HeaderRecorder recorder) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(ServerInterceptors.intercept(service, recorder))
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    return KeyManagementServiceClient.create(settings.build());
+  }
+
+  private static void assertSpan(
+      RecordedSpan span, String keyName, Operation operation, int payloadSize, int attempt) {
+    assertThat(span.keyName).isEqualTo(keyName);
+    assertThat(span.operation).isEqualTo(operation);
+    assertThat(span.payloadSize).isEqualTo(payloadSize);
+    assertThat(span.attempt).isEqualTo(attempt);
+    assertThat(span.code).isEqualTo(StatusCode.Code.OK);
+  }
+
+  @Test
+  public void grpcAead_tracesEachRequestAndPropagatesHeaders() throws Exception {
+    HeaderRecorder recorder = new HeaderRecorder();
+    RecordingTracer tracer = new RecordingTracer();
+    GcpKmsAead.Builder builder =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(
+                connect(
+                    FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build(), recorder))
+            .setTracer(tracer);
+    Aead aead = builder.build();
+    AsyncAead asyncAead = builder.buildAsync();
+
+    byte[] ciphertext = aead.encrypt(new byte[] {1, 2, 3}, new byte[0]);
+    byte[] unused = asyncAead.decryptAsync(ciphertext, new byte[0]).get(5, SECONDS);
+
+    assertThat(tracer.spans).hasSize(2);
+    assertSpan(tracer.spans.get(0), AEAD_KEY_NAME, Operation.ENCRYPT, 3, 1);
+    assertSpan(tracer.spans.get(1), AEAD_KEY_NAME, Operation.DECRYPT, ciphertext.length, 1);
+    assertThat(recorder.traceParents)
+        .containsExactly(tracer.spans.get(0).traceParent, tracer.spans.get(1).traceParent)
+        .inOrder();
+  }
+
+  @Test
+  public void grpcAead_failedRequest_endsSpanWithStatus() throws Exception {
+    RecordingTracer tracer = new RecordingTracer();
+    GcpKmsAead.Builder builder =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(
+                connect(
+                    FakeKeyManagementService.builder()
+                        .addAeadKey(AEAD_KEY_NAME)
+                        .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+                        .build(),
+                    new HeaderRecorder()))
+            .setTracer(tracer);
+    Aead aead = builder.build();
+    AsyncAead asyncAead = builder.buildAsync();
+
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[] {1}, new byte[0]));
+    assertThrows(
+        ExecutionException.class,
+        () -> asyncAead.encryptAsync(new byte[] {1}, new byte[0]).get(5, SECONDS));
+
+    assertThat(tracer.spans).hasSize(2);
+    assertThat(tracer.spans.get(0).code).isEqualTo(StatusCode.Code.UNAVAILABLE);
+    assertThat(tracer.spans.get(1).code).isEqualTo(StatusCode.Code.UNAVAILABLE);
+  }
+
+  @Test
+  public void mac_tracesEachRequest() throws Exception {
+    HeaderRecorder recorder = new HeaderRecorder();
+    RecordingTracer tracer = new RecordingTracer();
+    Mac mac =
+        GcpKmsMac.builder()
+            .setKeyName(MAC_KEY_NAME)
+            .setKeyManagementServiceClient(
+                connect(
+                    FakeKeyManagementService.builder().addMacKey(MAC_KEY_NAME).build(), recorder))
+            .setTracer(tracer)
+            .build();
+
+    byte[] tag = mac.computeMac(new byte[] {1, 2, 3, 4});
+    mac.verifyMac(tag, new byte[] {1, 2, 3, 4});
+
+    assertThat(tracer.spans).hasSize(2);
+    assertSpan(tracer.spans.get(0), MAC_KEY_NAME, Operation.MAC_SIGN, 4, 1);
+    assertSpan(tracer.spans.get(1), MAC_KEY_NAME, Operation.MAC_VERIFY, 4, 1);
+    assertThat(recorder.traceParents).hasSize(2);
+  }
+
+  @Test
+  public void publicKeySignAndVerify_traceFetchingThePublicKey() throws Exception {
+    HeaderRecorder recorder = new HeaderRecorder();
+    RecordingTracer tracer = new RecordingTracer();
+    KeyManagementServiceClient client =
+        connect(
+            FakeKeyManagementService.builder()
+                .addSigningKey(SIGN_KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+                .build(),
+            recorder);
+
+    byte[] signature =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(SIGN_KEY_NAME)
+            .setKeyManagementServiceClient(client)
+            .setTracer(tracer)
+            .build()
+            .sign(new byte[] {1, 2});
+    GcpKmsPublicKeyVerify.builder()
+        .setKeyName(SIGN_KEY_NAME)
+        .setKeyManagementServiceClient(client)
+        .setTracer(tracer)
+        .build()
+        .verify(signature, new byte[] {1, 2});
+
+    assertThat(tracer.spans).hasSize(3);
+    assertSpan(tracer.spans.get(0), SIGN_KEY_NAME, Operation.GET_PUBLIC_KEY, 0, 1);
+    assertSpan(tracer.spans.get(1), SIGN_KEY_NAME, Operation.ASYMMETRIC_SIGN, 2, 1);
+    assertSpan(tracer.spans.get(2), SIGN_KEY_NAME, Operation.GET_PUBLIC_KEY, 0, 1);
+    assertThat(recorder.traceParents)
+        .containsExactly(
+            tracer.spans.get(0).traceParent,
+            tracer.spans.get(1).traceParent,
+            tracer.spans.get(2).traceParent)
+        .inOrder();
+  }
+
+  @Test
+  public void httpAead_tracesEachRequestAndPropagatesHeaders() throws Exception {
+    FakeCloudKms cloudKms = new FakeCloudKms(asList(AEAD_KEY_NAME));
+    RecordingTracer tracer = new RecordingTracer();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setCloudKms(cloudKms)
+            .setTracer(tracer)
+            .build();
+
+    byte[] ciphertext = aead.encrypt(new byte[] {1, 2, 3}, new byte[0]);
+    assertThat(cloudKms.lastRequestHeaders().getFirstHeaderStringValue(TRACE_HEADER))
+        .isEqualTo(tracer.spans.get(0).traceParent);
+    byte[] unused = aead.decrypt(ciphertext, new byte[0]);
+
+    assertThat(tracer.spans).hasSize(2);
+    assertSpan(tracer.spans.get(0), AEAD_KEY_NAME, Operation.ENCRYPT, 3, 1);
+    assertSpan(tracer.spans.get(1), AEAD_KEY_NAME, Operation.DECRYPT, ciphertext.length, 1);
+  }
+
+  @Test
+  public void httpAead_httpError_endsSpanWithMappedStatus() throws Exception {
+    FakeCloudKms cloudKms = new FakeCloudKms(asList(AEAD_KEY_NAME)).setErrorRate(503, 1.0);
+    RecordingTracer tracer = new RecordingTracer();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setCloudKms(cloudKms)
+            .setTracer(tracer)
+            .build();
+
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[] {1}, new byte[0]));
+
+    assertThat(tracer.spans).hasSize(1);
+    assertThat(tracer.spans.get(0).code).isEqualTo(StatusCode.Code.UNAVAILABLE);
+  }
+
+  @Test
+  public void withoutTracer_sendsNoHeaders() throws Exception {
+    HeaderRecorder recorder = new HeaderRecorder();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(
+                connect(
+                    FakeKeyManagementService.builder().addAeadKey(AEAD_KEY_NAME).build(), recorder))
+            .build();
+
+    byte[] unused = aead.encrypt(new byte[] {1}, new byte[0]);
+
+    assertThat(recorder.traceParents).containsExactly((Object) null);
+  }
+
+  @Test
+  public void requestTrace_numbersAttempts() throws Exception {
+    RecordingTracer tracer = new RecordingTracer();
+    RequestTrace trace = RequestTrace.start(tracer, AEAD_KEY_NAME, Operation.ENCRYPT, 5);
+
+    Object unused = trace.send(null, context -> "first");
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            trace.send(
+                null,
+                context -> {
+                  throw new GeneralSecurityException("second");
+                }));
+
+    assertThat(tracer.spans).hasSize(2);
+    assertSpan(tracer.spans.get(0), AEAD_KEY_NAME, Operation.ENCRYPT, 5, 1);
+    assertThat(tracer.spans.get(1).attempt).isEqualTo(2);
+    assertThat(tracer.spans.get(1).code).isEqualTo(StatusCode.Code.UNKNOWN);
+  }
+
+  @Test
+  public void requestTrace_nullTracer_returnsNull() throws Exception {
+    assertThat(RequestTrace.start(null, AEAD_KEY_NAME, Operation.ENCRYPT, 5)).isNull();
+  }
+}
@@ -0,0 +1,252 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.PublicKeyVerify;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class MerkleBatchPublicKeySignTest {
+
+  private static final String KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/sign-key/cryptoKeyVersions/1";
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private FakeKeyManagementService service;
+  private KeyManagementServiceClient kmsClient;
+  private MerkleBatchPublicKeyVerify verifier;
+
+  @Before
+  public void setUp() throws Exception {
+    service =
+        FakeKeyManagementService.builder()
+            .addSigningKey(KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .build();
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    kmsClient =
+        KeyManagementServiceClient.create(
+            KeyManagementServiceSettings.newBuilder()
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .setTransportChannelProvider(
+                    FixedTransportChannelProvider.create(
+                        GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()))
+                .build());
+    verifier =
+        GcpKmsPublicKeyVerify.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildMerkleBatchVerify();
+    service.resetCounters();
+  }
+
+  private MerkleBatchPublicKeySign newSigner(int maxBatchSize, Duration maxDelay)
+      throws GeneralSecurityException {
+    MerkleBatchPublicKeySign signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .buildMerkleBatchSign(maxBatchSize, maxDelay);
+    service.resetCounters();
+    return signer;
+  }
+
+  private static List<byte[]> messages(int count) {
+    List<byte[]> messages = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      messages.add(("record " + i).getBytes(UTF_8));
+    }
+    return messages;
+  }
+
+  @Test
+  public void signAll_signsOneRootPerBatch() throws Exception {
+    MerkleBatchPublicKeySign signer = newSigner(256, Duration.ofHours(1));
+    List<byte[]> messages = messages(1000);
+
+    List<byte[]> signatures = signer.signAll(messages);
+
+    assertThat(service.callCount(FakeKeyManagementService.Method.ASYMMETRIC_SIGN)).isEqualTo(4);
+    assertThat(signatures).hasSize(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      verifier.verify(signatures.get(i), messages.get(i));
+    }
+  }
+
+  @Test
+  public void signAsync_signsWhenBatchIsFull() throws Exception {
+    MerkleBatchPublicKeySign signer = newSigner(4, Duration.ofHours(1));
+    List<byte[]> messages = messages(4);
+
+    List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(signer.signAsync(messages.get(i)));
+    }
+    assertThat(futures.get(0).isDone()).isFalse();
+    futures.add(signer.signAsync(messages.get(3)));
+
+    for (int i = 0; i < messages.size(); i++) {
+      verifier.verify(futures.get(i).get(10, SECONDS), messages.get(i));
+    }
+    assertThat(service.callCount(FakeKeyManagementService.Method.ASYMMETRIC_SIGN)).isEqualTo(1);
+  }
+
+  @Test
+  public void signAsync_signsAfterMaxDelay() throws Exception {
+    MerkleBatchPublicKeySign signer = newSigner(1000, Duration.ofMillis(10));
+    List<byte[]> messages = messages(3);
+
+    List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+    for (byte[] message : messages) {
+      futures.add(signer.signAsync(message));
+    }
+
+    for (int i = 0; i < messages.size(); i++) {
+      verifier.verify(futures.get(i).get(10, SECONDS), messages.get(i));
+    }
+    assertThat(service.callCount(FakeKeyManagementService.Method.ASYMMETRIC_SIGN)).isEqualTo(1);
+  }
+
+  @Test
+  public void sign_blocksUntilBatchIsSigned() throws Exception {
+    MerkleBatchPublicKeySign signer = newSigner(1000, Duration.ofMillis(10));
+    byte[] message = "single record".getBytes(UTF_8);
+
+    verifier.verify(signer.sign(message), message);
+  }
+
+  @Test
+  public void flush_signsPendingBatch() throws Exception {
+    MerkleBatchPublicKeySign signer = newSigner(1000, Duration.ofHours(1));
+    List<byte[]> messages = messages(2);
+    CompletableFuture<byte[]> first = signer.signAsync(messages.get(0));
+    CompletableFuture<byte[]> second = signer.signAsync(messages.get(1));
+
+    signer.flush();
+
+    verifier.verify(first.get(10, SECONDS), messages.get(0));
+    verifier.verify(second.get(10, SECONDS), messages.get(1));
+    // Flushing an empty batch does nothing.
+    signer.flush();
+    assertThat(service.callCount(FakeKeyManagementService.Method.ASYMMETRIC_SIGN)).isEqualTo(1);
+  }
+
+  @Test
+  public void verify_rejectsSignatureOfOtherMessageOrModifiedSignature() throws Exception {
+    MerkleBatchPublicKeySign signer = newSigner(16, Duration.ofHours(1));
+    List<byte[]> messages = messages(5);
+    List<byte[]> signatures = signer.signAll(messages);
+
+    assertThrows(
+        GeneralSecurityException.class, () -> verifier.verify(signatures.get(0), messages.get(1)));
+    for (int i = 0; i < signatures.get(2).length; i++) {
+      byte[] modified = signatures.get(2).clone();
+      modified[i] ^= 1;
+      assertThrows(
+          GeneralSecurityException.class, () -> verifier.verify(modified, messages.get(2)));
+    }
+  }
+
+  @Test
+  public void verify_rejectsPlainSignature() throws Exception {
+    byte[] message = "record".getBytes(UTF_8);
+    byte[] plainSignature =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(KEY_NAME)
+            .setKeyManagementServiceClient(kmsClient)
+            .build()
+            .sign(message);
+
+    assertThrows(GeneralSecurityException.class, () -> verifier.verify(plainSignature, message));
+  }
+
+  @Test
+  public void failedRootSignature_failsAllMessagesOfBatch() throws Exception {
+    GeneralSecurityException failure = new GeneralSecurityException("Signing failed.");
+    MerkleBatchPublicKeySign signer =
+        new MerkleBatchPublicKeySign(
+            data -> {
+              CompletableFuture<byte[]> future = new CompletableFuture<>();
+              future.completeExceptionally(failure);
+              return future;
+            },
+            2,
+            Duration.ofHours(1));
+
+    CompletableFuture<byte[]> first = signer.signAsync(new byte[] {1});
+    GeneralSecurityException e =
+        assertThrows(GeneralSecurityException.class, () -> signer.sign(new byte[] {2}));
+
+    assertThat(e).isSameInstanceAs(failure);
+    assertThat(first.isCompletedExceptionally()).isTrue();
+  }
+
+  @Test
+  public void buildMerkleBatchSign_invalidParameters_fails() throws Exception {
+    GcpKmsPublicKeySign.Builder builder =
+        GcpKmsPublicKeySign.builder().setKeyName(KEY_NAME).setKeyManagementServiceClient(kmsClient);
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> builder.buildMerkleBatchSign(0, Duration.ofMillis(10)));
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> builder.buildMerkleBatchSign(10, Duration.ofMillis(-1)));
+  }
+
+  @Test
+  public void signerAndVerifierAreUsableAsTinkPrimitives() throws Exception {
+    PublicKeySign signer = newSigner(1, Duration.ZERO);
+    PublicKeyVerify tinkVerifier = verifier;
+    byte[] message = "record".getBytes(UTF_8);
+
+    tinkVerifier.verify(signer.sign(message), message);
+  }
+}
@@ -0,0 +1,400 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.api.services.cloudkms.v1.CloudKMS;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.common.collect.ImmutableSet;
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.Mac;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class RetryPolicyTest {
+
+  private static final String AEAD_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/aead-key";
+  private static final String MAC_KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/mac-key/cryptoKeyVersions/1";
+
+  @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  /** A policy with short backoffs, so that tests do not wait long between attempts. */
+  private static RetryPolicy.Builder fastPolicy() {
+    return RetryPolicy.builder()
+        .setInitialBackoff(Duration.ofMillis(1))
+        .setMaxBackoff(Duration.ofMillis(2));
+  }
+
+  /** Serves {@code service} in-process and returns a client without retries connected to it. */
+  private KeyManagementServiceClient connect(FakeKeyManagementService service) throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    KeyManagementServiceSettings.Builder settings =
+        KeyManagementServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(
+                    GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()));
+    settings.applyToAllUnaryMethods(
+        method -> {
+          method.setRetryableCodes();
+          return null;
+        });
+    return KeyManagementServiceClient.create(settings.build());
+  }
+
+  /** A transport that answers requests with the given status codes, repeating the last one. */
+  private static final class StatusSequenceTransport extends MockHttpTransport {
+    private final ArrayDeque<Integer> statusCodes;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    StatusSequenceTransport(Integer... statusCodes) {
+      this.statusCodes = new ArrayDeque<>(Arrays.asList(statusCodes));
+    }
+
+    @Override
+    public synchronized LowLevelHttpRequest buildRequest(String method, String url) {
+      requests.incrementAndGet();
+      int statusCode = (statusCodes.size() > 1) ? statusCodes.poll() : statusCodes.peek();
+      return new MockLowLevelHttpRequest(url)
+          .setResponse(new MockLowLevelHttpResponse().setStatusCode(statusCode));
+    }
+
+    int requests() {
+      return requests.get();
+    }
+  }
+
+  private static HttpResponse execute(MockHttpTransport transport, RetryPolicy policy)
+      throws Exception {
+    return transport
+        .createRequestFactory(policy.newHttpRequestInitializer(request -> {}))
+        .buildGetRequest(new GenericUrl("https://cloudkms.googleapis.com/v1/test"))
+        .execute();
+  }
+
+  @Test
+  public void defaults() throws Exception {
+    RetryPolicy policy = RetryPolicy.builder().build();
+
+    assertThat(policy.getTotalTimeout()).isEqualTo(RetryPolicy.DEFAULT_TOTAL_TIMEOUT);
+    assertThat(policy.getAttemptTimeout()).isEqualTo(RetryPolicy.DEFAULT_ATTEMPT_TIMEOUT);
+    assertThat(policy.getMaxAttempts()).isEqualTo(RetryPolicy.DEFAULT_MAX_ATTEMPTS);
+    assertThat(policy.getInitialBackoff()).isEqualTo(RetryPolicy.DEFAULT_INITIAL_BACKOFF);
+    assertThat(policy.getMaxBackoff()).isEqualTo(RetryPolicy.DEFAULT_MAX_BACKOFF);
+    assertThat(policy.getRetryableCodes())
+        .containsExactly(StatusCode.Code.UNAVAILABLE, StatusCode.Code.DEADLINE_EXCEEDED);
+  }
+
+  @Test
+  public void invalidParameters_throw() throws Exception {
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> RetryPolicy.builder().setTotalTimeout(Duration.ZERO).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> RetryPolicy.builder().setAttemptTimeout(Duration.ofSeconds(-1)).build());
+    assertThrows(
+        GeneralSecurityException.class, () -> RetryPolicy.builder().setMaxAttempts(0).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> RetryPolicy.builder().setInitialBackoff(Duration.ZERO).build());
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            RetryPolicy.builder()
+                .setInitialBackoff(Duration.ofSeconds(2))
+                .setMaxBackoff(Duration.ofSeconds(1))
+                .build());
+  }
+
+  @Test
+  public void nextHttpBackoffMillis_staysWithinBounds() throws Exception {
+    RetryPolicy policy =
+        RetryPolicy.builder()
+            .setInitialBackoff(Duration.ofMillis(10))
+            .setMaxBackoff(Duration.ofMillis(100))
+            .build();
+
+    long backoff = 10;
+    long maxSeen = 0;
+    for (int i = 0; i < 1000; i++) {
+      long next = policy.nextHttpBackoffMillis(backoff);
+      assertThat(next).isAtLeast(10);
+      assertThat(next).isAtMost(Math.min(100, Math.max(10, 3 * backoff)));
+      maxSeen = Math.max(maxSeen, next);
+      backoff = next;
+    }
+    assertThat(maxSeen).isGreaterThan(50);
+  }
+
+  @Test
+  public void http_retriesRetryableStatusUntilSuccess() throws Exception {
+    StatusSequenceTransport transport = new StatusSequenceTransport(503, 504, 200);
+
+    HttpResponse response = execute(transport, fastPolicy().build());
+
+    assertThat(response.getStatusCode()).isEqualTo(200);
+    assertThat(transport.requests()).isEqualTo(3);
+  }
+
+  @Test
+  public void http_stopsAfterMaxAttempts() throws Exception {
+    StatusSequenceTransport transport = new StatusSequenceTransport(503);
+
+    HttpResponseException e =
+        assertThrows(
+            HttpResponseException.class,
+            () -> execute(transport, fastPolicy().setMaxAttempts(3).build()));
+
+    assertThat(e.getStatusCode()).isEqualTo(503);
+    assertThat(transport.requests()).isEqualTo(3);
+  }
+
+  @Test
+  public void http_doesNotRetryOtherStatusCodes() throws Exception {
+    StatusSequenceTransport transport = new StatusSequenceTransport(429, 200);
+
+    assertThrows(HttpResponseException.class, () -> execute(transport, fastPolicy().build()));
+    assertThat(transport.requests()).isEqualTo(1);
+
+    StatusSequenceTransport transport2 = new StatusSequenceTransport(429, 200);
+    RetryPolicy policy =
+        fastPolicy().setRetryableCodes(ImmutableSet.of(StatusCode.Code.RESOURCE_EXHAUSTED)).build();
+
+    assertThat(execute(transport2, policy).getStatusCode()).isEqualTo(200);
+    assertThat(transport2.requests()).isEqualTo(2);
+  }
+
+  @Test
+  public void http_stopsAtDeadline() throws Exception {
+    StatusSequenceTransport transport = new StatusSequenceTransport(503);
+    RetryPolicy policy =
+        RetryPolicy.builder()
+            .setTotalTimeout(Duration.ofMillis(300))
+            .setMaxAttempts(100)
+            .setInitialBackoff(Duration.ofMillis(100))
+            .setMaxBackoff(Duration.ofMillis(100))
+            .build();
+
+    long start = System.nanoTime();
+    assertThrows(HttpResponseException.class, () -> execute(transport, policy));
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(300));
+    assertThat(transport.requests()).isAtMost(3);
+  }
+
+  @Test
+  public void http_boundsAttemptsByAttemptTimeout() throws Exception {
+    MockHttpTransport transport = new MockHttpTransport();
+    HttpRequest request =
+        transport
+            .createRequestFactory(
+                fastPolicy()
+                    .setAttemptTimeout(Duration.ofSeconds(2))
+                    .build()
+                    .newHttpRequestInitializer(r -> {}))
+            .buildGetRequest(new GenericUrl("https://cloudkms.googleapis.com/v1/test"));
+
+    assertThat(request.getConnectTimeout()).isEqualTo(2000);
+    assertThat(request.getReadTimeout()).isEqualTo(2000);
+    assertThat(request.getNumberOfRetries()).isEqualTo(RetryPolicy.DEFAULT_MAX_ATTEMPTS - 1);
+  }
+
+  @Test
+  public void http_delegateHandlesResponsesFirst() throws Exception {
+    StatusSequenceTransport transport = new StatusSequenceTransport(401, 200);
+    AtomicInteger refreshes = new AtomicInteger();
+
+    HttpResponse response =
+        transport
+            .createRequestFactory(
+                fastPolicy()
+                    .build()
+                    .newHttpRequestInitializer(
+                        request ->
+                            request.setUnsuccessfulResponseHandler(
+                                (r, unusedResponse, supportsRetry) -> {
+                                  refreshes.incrementAndGet();
+                                  return supportsRetry;
+                                })))
+            .buildGetRequest(new GenericUrl("https://cloudkms.googleapis.com/v1/test"))
+            .execute();
+
+    assertThat(response.getStatusCode()).isEqualTo(200);
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void grpc_retriesUnavailable() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 0.5)
+            .setRandom(new Random(42))
+            .build();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setRetryPolicy(fastPolicy().setMaxAttempts(30).build())
+            .build();
+
+    for (int i = 0; i < 20; i++) {
+      byte[] ciphertext = aead.encrypt(new byte[] {(byte) i}, new byte[0]);
+      assertThat(aead.decrypt(ciphertext, new byte[0])).isEqualTo(new byte[] {(byte) i});
+    }
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isGreaterThan(20);
+  }
+
+  @Test
+  public void grpc_stopsAfterMaxAttempts() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addMacKey(MAC_KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+            .build();
+    Mac mac =
+        GcpKmsMac.builder()
+            .setKeyName(MAC_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setRetryPolicy(fastPolicy().setMaxAttempts(3).build())
+            .build();
+
+    assertThrows(GeneralSecurityException.class, () -> mac.computeMac(new byte[0]));
+    assertThat(service.callCount(FakeKeyManagementService.Method.MAC_SIGN)).isEqualTo(3);
+  }
+
+  @Test
+  public void grpc_doesNotRetryOtherStatusCodes() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setErrorRate(Status.Code.INTERNAL, 1.0)
+            .build();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setRetryPolicy(fastPolicy().build())
+            .build();
+
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[0], new byte[0]));
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isEqualTo(1);
+  }
+
+  @Test
+  public void grpc_boundsCallByTotalTimeout() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setLatency(FakeKeyManagementService.LatencyDistribution.fixed(Duration.ofSeconds(10)))
+            .build();
+    Aead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setRetryPolicy(
+                fastPolicy()
+                    .setTotalTimeout(Duration.ofMillis(500))
+                    .setAttemptTimeout(Duration.ofMillis(100))
+                    .setMaxAttempts(100)
+                    .build())
+            .build();
+
+    long start = System.nanoTime();
+    assertThrows(GeneralSecurityException.class, () -> aead.encrypt(new byte[0], new byte[0]));
+
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isAtLeast(2);
+  }
+
+  @Test
+  public void grpc_appliesToAsyncCalls() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .setErrorRate(Status.Code.UNAVAILABLE, 1.0)
+            .build();
+    AsyncAead aead =
+        GcpKmsAead.builder()
+            .setKeyName(AEAD_KEY_NAME)
+            .setKeyManagementServiceClient(connect(service))
+            .setRetryPolicy(fastPolicy().setMaxAttempts(4).build())
+            .buildAsync();
+
+    assertThrows(ExecutionException.class, () -> aead.encryptAsync(new byte[0], new byte[0]).get());
+    assertThat(service.callCount(FakeKeyManagementService.Method.ENCRYPT)).isEqualTo(4);
+  }
+
+  @Test
+  public void aeadWithCloudKms_throws() throws Exception {
+    CloudKMS cloudKms =
+        new CloudKMS.Builder(
+                new MockHttpTransport(), GsonFactory.getDefaultInstance(), request -> {})
+            .build();
+
+    assertThrows(
+        GeneralSecurityException.class,
+        () ->
+            GcpKmsAead.builder()
+                .setKeyName(AEAD_KEY_NAME)
+                .setCloudKms(cloudKms)
+                .setRetryPolicy(RetryPolicy.builder().build())
+                .build());
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.cloudkms.v1.model.DecryptRequest;
+import com.google.api.services.cloudkms.v1.model.DecryptResponse;
+import com.google.api.services.cloudkms.v1.model.EncryptRequest;
+import com.google.api.services.cloudkms.v1.model.EncryptResponse;
+import com.google.common.hash.Hashing;
+import com.google.crypto.tink.Aead;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A fake Cloud KMS REST endpoint for the benchmarks, which implements encrypt and decrypt of {@link
+ * InProcessKms#AEAD_KEY_NAME} at the transport level.
+ *
+ * <p>Unlike {@code FakeCloudKms}, the requests and responses go through the JSON serialization of
+ * the HTTP client, so that the benchmarks include its cost.
+ */
+final class BenchmarkHttpTransport extends HttpTransport {
+
+  private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+  private static final String ENCRYPT_PATH = "/v1/" + InProcessKms.AEAD_KEY_NAME + ":encrypt";
+  private static final String DECRYPT_PATH = "/v1/" + InProcessKms.AEAD_KEY_NAME + ":decrypt";
+
+  private final Aead aead;
+
+  BenchmarkHttpTransport(Aead aead) {
+    this.aead = aead;
+  }
+
+  @Override
+  protected LowLevelHttpRequest buildRequest(String method, String url) {
+    return new Request(url);
+  }
+
+  private static long crc32c(byte[] data) {
+    return Hashing.crc32c().hashBytes(data).padToLong();
+  }
+
+  private static byte[] nonNull(byte[] data) {
+    return data == null ? new byte[0] : data;
+  }
+
+  private final class Request extends LowLevelHttpRequest {
+    private final String path;
+
+    Request(String url) {
+      String withoutScheme = url.substring(url.indexOf("://") + 3);
+      this.path = withoutScheme.substring(withoutScheme.indexOf('/'));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {}
+
+    @Override
+    public LowLevelHttpResponse execute() throws IOException {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      getStreamingContent().writeTo(body);
+      InputStream content = new ByteArrayInputStream(body.toByteArray());
+      if ("gzip".equals(getContentEncoding())) {
+        content = new GZIPInputStream(content);
+      }
+      try {
+        if (path.equals(ENCRYPT_PATH)) {
+          return new Response(
+              200, encrypt(JSON_FACTORY.fromInputStream(content, UTF_8, EncryptRequest.class)));
+        }
+        if (path.equals(DECRYPT_PATH)) {
+          return new Response(
+              200, decrypt(JSON_FACTORY.fromInputStream(content, UTF_8, DecryptRequest.class)));
+        }
+        return new Response(404, "{\"error\": {\"code\": 404, \"message\": \"not found\"}}");
+      } catch (GeneralSecurityException e) {
+        return new Response(400, "{\"error\": {\"code\": 400, \"message\": \"invalid argument\"}}");
+      }
+    }
+
+    private String encrypt(EncryptRequest request) throws IOException, GeneralSecurityException {
+      byte[] plaintext = nonNull(request.decodePlaintext());
+      byte[] associatedData = nonNull(request.decodeAdditionalAuthenticatedData());
+      byte[] ciphertext = aead.encrypt(plaintext, associatedData);
+      return JSON_FACTORY.toString(
+          new EncryptResponse()
+              .setName(InProcessKms.AEAD_KEY_NAME + "/cryptoKeyVersions/1")
+              .encodeCiphertext(ciphertext)
+              .setCiphertextCrc32c(crc32c(ciphertext))
+              .setVerifiedPlaintextCrc32c(
+                  Long.valueOf(crc32c(plaintext)).equals(request.getPlaintextCrc32c()))
+              .setVerifiedAdditionalAuthenticatedDataCrc32c(
+                  Long.valueOf(crc32c(associatedData))
+                      .equals(request.getAdditionalAuthenticatedDataCrc32c())));
+    }
+
+    private String decrypt(DecryptRequest request) throws IOException, GeneralSecurityException {
+      byte[] plaintext =
+          aead.decrypt(
+              nonNull(request.decodeCiphertext()),
+              nonNull(request.decodeAdditionalAuthenticatedData()));
+      return JSON_FACTORY.toString(
+          new DecryptResponse().encodePlaintext(plaintext).setPlaintextCrc32c(crc32c(plaintext)));
+    }
+  }
+
+  private static final class Response extends LowLevelHttpResponse {
+    private final int statusCode;
+    private final byte[] content;
+
+    Response(int statusCode, String content) {
+      this.statusCode = statusCode;
+      this.content = content.getBytes(UTF_8);
+    }
+
+    @Override
+    public InputStream getContent() {
+      return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public String getContentEncoding() {
+      return null;
+    }
+
+    @Override
+    public long getContentLength() {
+      return content.length;
+    }
+
+    @Override
+    public String getContentType() {
+      return "application/json; charset=UTF-8";
+    }
+
+    @Override
+    public String getStatusLine() {
+      return "HTTP/1.1 " + statusCode;
+    }
+
+    @Override
+    public int getStatusCode() {
+      return statusCode;
+    }
+
+    @Override
+    public String getReasonPhrase() {
+      return null;
+    }
+
+    @Override
+    public int getHeaderCount() {
+      return 0;
+    }
+
+    @Override
+    public String getHeaderName(int index) {
+      return null;
+    }
+
+    @Override
+    public String getHeaderValue(int index) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the KMS primitives against an in-process fake KMS.
+ *
+ * <p>Each benchmark is run once in throughput mode (ops/s) and once in sample time mode (latency
+ * percentiles, including p99), with the GC profiler, which reports allocated bytes per operation
+ * ({@code gc.alloc.rate.norm}). Unless {@code -t} is given, this is repeated for 1, 4 and 16
+ * threads. All other JMH command line options are supported, for example:
+ *
+ * <pre>
+ * bazel run //src/test/java/com/google/crypto/tink/integration/gcpkms/benchmarks -- \
+ *     GcpKmsAeadBenchmark -p transport=grpc -p payloadSize=1024 -t 4
+ * </pre>
+ */
+public final class BenchmarkMain {
+
+  private static final int[] DEFAULT_THREAD_COUNTS = {1, 4, 16};
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    int[] threadCounts =
+        commandLineOptions.getThreads().hasValue()
+            ? new int[] {commandLineOptions.getThreads().get()}
+            : DEFAULT_THREAD_COUNTS;
+    for (int threads : threadCounts) {
+      ChainedOptionsBuilder options =
+          new OptionsBuilder()
+              .parent(commandLineOptions)
+              .threads(threads)
+              .addProfiler(GCProfiler.class);
+      new Runner(options.mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS).build()).run();
+      new Runner(options.mode(Mode.SampleTime).timeUnit(TimeUnit.MICROSECONDS).build()).run();
+    }
+  }
+
+  private BenchmarkMain() {}
+}
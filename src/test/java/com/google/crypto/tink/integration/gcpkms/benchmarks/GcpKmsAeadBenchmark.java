@@ -0,0 +1,76 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.integration.gcpkms.GcpKmsAead;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks {@link GcpKmsAead} over gRPC and HTTP. */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GcpKmsAeadBenchmark {
+
+  @Param({"grpc", "http"})
+  public String transport;
+
+  @Param({"32", "1024", "65536"})
+  public int payloadSize;
+
+  private Aead aead;
+  private byte[] plaintext;
+  private byte[] associatedData;
+  private byte[] ciphertext;
+
+  @Setup(Level.Trial)
+  public void setUp(InProcessKms kms) throws Exception {
+    GcpKmsAead.Builder builder = GcpKmsAead.builder().setKeyName(InProcessKms.AEAD_KEY_NAME);
+    if (transport.equals("http")) {
+      builder.setCloudKms(kms.cloudKms);
+    } else {
+      builder.setKeyManagementServiceClient(kms.kmsClient);
+    }
+    aead = builder.build();
+    plaintext = Random.randBytes(payloadSize);
+    associatedData = "associatedData".getBytes(UTF_8);
+    ciphertext = aead.encrypt(plaintext, associatedData);
+  }
+
+  @Benchmark
+  public byte[] encrypt() throws GeneralSecurityException {
+    return aead.encrypt(plaintext, associatedData);
+  }
+
+  @Benchmark
+  public byte[] decrypt() throws GeneralSecurityException {
+    return aead.decrypt(ciphertext, associatedData);
+  }
+}
@@ -0,0 +1,60 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.benchmarks;
+
+import com.google.crypto.tink.PublicKeySign;
+import com.google.crypto.tink.integration.gcpkms.GcpKmsPublicKeySign;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks {@link GcpKmsPublicKeySign} with an EC_SIGN_P256_SHA256 key. */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GcpKmsPublicKeySignBenchmark {
+
+  @Param({"32", "1024", "65536"})
+  public int payloadSize;
+
+  private PublicKeySign signer;
+  private byte[] data;
+
+  @Setup(Level.Trial)
+  public void setUp(InProcessKms kms) throws Exception {
+    signer =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(InProcessKms.SIGN_KEY_NAME)
+            .setKeyManagementServiceClient(kms.kmsClient)
+            .build();
+    data = Random.randBytes(payloadSize);
+  }
+
+  @Benchmark
+  public byte[] sign() throws GeneralSecurityException {
+    return signer.sign(data);
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.benchmarks;
+
+import com.google.crypto.tink.PublicKeyVerify;
+import com.google.crypto.tink.integration.gcpkms.GcpKmsPublicKeySign;
+import com.google.crypto.tink.integration.gcpkms.GcpKmsPublicKeyVerify;
+import com.google.crypto.tink.subtle.Random;
+import java.security.GeneralSecurityException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link GcpKmsPublicKeyVerify} with an EC_SIGN_P256_SHA256 key, whose public key is
+ * fetched from the fake KMS once during setup.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GcpKmsPublicKeyVerifyBenchmark {
+
+  @Param({"32", "1024", "65536"})
+  public int payloadSize;
+
+  private PublicKeyVerify verifier;
+  private byte[] data;
+  private byte[] signature;
+
+  @Setup(Level.Trial)
+  public void setUp(InProcessKms kms) throws Exception {
+    verifier =
+        GcpKmsPublicKeyVerify.builder()
+            .setKeyName(InProcessKms.SIGN_KEY_NAME)
+            .setKeyManagementServiceClient(kms.kmsClient)
+            .build();
+    data = Random.randBytes(payloadSize);
+    signature =
+        GcpKmsPublicKeySign.builder()
+            .setKeyName(InProcessKms.SIGN_KEY_NAME)
+            .setKeyManagementServiceClient(kms.kmsClient)
+            .build()
+            .sign(data);
+  }
+
+  @Benchmark
+  public void verify() throws GeneralSecurityException {
+    verifier.verify(signature, data);
+  }
+}
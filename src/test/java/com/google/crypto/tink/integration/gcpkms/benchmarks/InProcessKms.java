@@ -0,0 +1,99 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.benchmarks;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.services.cloudkms.v1.CloudKMS;
+import com.google.cloud.kms.v1.CryptoKeyVersion.CryptoKeyVersionAlgorithm;
+import com.google.cloud.kms.v1.KeyManagementServiceClient;
+import com.google.cloud.kms.v1.KeyManagementServiceSettings;
+import com.google.crypto.tink.integration.gcpkms.FakeKeyManagementService;
+import com.google.crypto.tink.subtle.AesGcmJce;
+import com.google.crypto.tink.subtle.Random;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A {@link FakeKeyManagementService} served in-process with a {@link KeyManagementServiceClient}
+ * connected to it, and a {@link CloudKMS} client over a {@link BenchmarkHttpTransport}. Shared by
+ * all threads of a benchmark.
+ */
+@State(Scope.Benchmark)
+public class InProcessKms {
+
+  static final String AEAD_KEY_NAME =
+      "projects/benchmark/locations/global/keyRings/benchmark/cryptoKeys/aead";
+  static final String MAC_KEY_NAME =
+      "projects/benchmark/locations/global/keyRings/benchmark/cryptoKeys/mac/cryptoKeyVersions/1";
+  static final String SIGN_KEY_NAME =
+      "projects/benchmark/locations/global/keyRings/benchmark/cryptoKeys/sign/cryptoKeyVersions/1";
+
+  private Server server;
+  private ManagedChannel channel;
+  KeyManagementServiceClient kmsClient;
+  CloudKMS cloudKms;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    FakeKeyManagementService service =
+        FakeKeyManagementService.builder()
+            .addAeadKey(AEAD_KEY_NAME)
+            .addMacKey(MAC_KEY_NAME)
+            .addSigningKey(SIGN_KEY_NAME, CryptoKeyVersionAlgorithm.EC_SIGN_P256_SHA256)
+            .build();
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start();
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    kmsClient =
+        KeyManagementServiceClient.create(
+            KeyManagementServiceSettings.newBuilder()
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .setTransportChannelProvider(
+                    FixedTransportChannelProvider.create(
+                        GrpcTransportChannel.newBuilder().setManagedChannel(channel).build()))
+                .build());
+    cloudKms =
+        new CloudKMS.Builder(
+                new BenchmarkHttpTransport(new AesGcmJce(Random.randBytes(32))),
+                GsonFactory.getDefaultInstance(),
+                null)
+            .setApplicationName("benchmark")
+            .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    kmsClient.close();
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+}
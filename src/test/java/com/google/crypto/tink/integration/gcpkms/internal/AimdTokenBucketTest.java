@@ -0,0 +1,152 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AimdTokenBucketTest {
+
+  private static final long NO_WAIT = 0;
+  private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+    }
+  }
+
+  @Test
+  public void invalidRates_throw() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    assertThrows(IllegalArgumentException.class, () -> new AimdTokenBucket(0, 1, ticker));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new AimdTokenBucket(Double.POSITIVE_INFINITY, 1, ticker));
+    assertThrows(IllegalArgumentException.class, () -> new AimdTokenBucket(10, 0, ticker));
+    assertThrows(IllegalArgumentException.class, () -> new AimdTokenBucket(10, 11, ticker));
+  }
+
+  @Test
+  public void reserve_allowsBurstOfOneSecond() throws Exception {
+    AimdTokenBucket bucket = new AimdTokenBucket(10, 1, new FakeTicker());
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(bucket.reserve(NO_WAIT)).isEqualTo(0);
+    }
+    assertThat(bucket.reserve(NO_WAIT)).isEqualTo(-1);
+  }
+
+  @Test
+  public void reserve_refillsAtRate() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    AimdTokenBucket bucket = new AimdTokenBucket(10, 1, ticker);
+    for (int i = 0; i < 10; i++) {
+      assertThat(bucket.reserve(NO_WAIT)).isEqualTo(0);
+    }
+
+    ticker.advance(Duration.ofMillis(100));
+
+    assertThat(bucket.reserve(NO_WAIT)).isEqualTo(0);
+    assertThat(bucket.reserve(NO_WAIT)).isEqualTo(-1);
+  }
+
+  @Test
+  public void reserve_returnsWaitTimeAndQueuesReservations() throws Exception {
+    AimdTokenBucket bucket = new AimdTokenBucket(10, 1, new FakeTicker());
+    for (int i = 0; i < 10; i++) {
+      assertThat(bucket.reserve(NO_WAIT)).isEqualTo(0);
+    }
+
+    assertThat(bucket.reserve(ONE_SECOND)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    assertThat(bucket.reserve(ONE_SECOND)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    // Too long to wait, so no token is taken.
+    assertThat(bucket.reserve(TimeUnit.MILLISECONDS.toNanos(250))).isEqualTo(-1);
+    assertThat(bucket.reserve(ONE_SECOND)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+  }
+
+  @Test
+  public void onQuotaExceeded_halvesRateAtMostOncePerSecond() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    AimdTokenBucket bucket = new AimdTokenBucket(100, 1, ticker);
+
+    bucket.onQuotaExceeded();
+    bucket.onQuotaExceeded();
+    assertThat(bucket.rate()).isEqualTo(50);
+
+    ticker.advance(Duration.ofSeconds(1));
+    bucket.onQuotaExceeded();
+    assertThat(bucket.rate()).isEqualTo(25);
+  }
+
+  @Test
+  public void onQuotaExceeded_doesNotGoBelowMinRate() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    AimdTokenBucket bucket = new AimdTokenBucket(100, 30, ticker);
+
+    for (int i = 0; i < 5; i++) {
+      bucket.onQuotaExceeded();
+      ticker.advance(Duration.ofSeconds(1));
+    }
+
+    assertThat(bucket.rate()).isEqualTo(30);
+  }
+
+  @Test
+  public void onQuotaExceeded_dropsBurst() throws Exception {
+    AimdTokenBucket bucket = new AimdTokenBucket(10, 1, new FakeTicker());
+
+    bucket.onQuotaExceeded();
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(bucket.reserve(NO_WAIT)).isEqualTo(0);
+    }
+    assertThat(bucket.reserve(NO_WAIT)).isEqualTo(-1);
+  }
+
+  @Test
+  public void onSuccess_increasesRateLinearlyUpToMaxRate() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    AimdTokenBucket bucket = new AimdTokenBucket(100, 1, ticker);
+    bucket.onQuotaExceeded();
+    assertThat(bucket.rate()).isEqualTo(50);
+
+    ticker.advance(Duration.ofSeconds(2));
+    bucket.onSuccess();
+    assertThat(bucket.rate()).isWithin(1e-9).of(70);
+
+    ticker.advance(Duration.ofSeconds(10));
+    bucket.onSuccess();
+    assertThat(bucket.rate()).isEqualTo(100);
+  }
+}
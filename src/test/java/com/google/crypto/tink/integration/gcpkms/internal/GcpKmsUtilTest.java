@@ -17,10 +17,12 @@
 package com.google.crypto.tink.integration.gcpkms.internal;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
 import static com.google.crypto.tink.integration.gcpkms.internal.GcpKmsUtil.checksummedData;
 import static org.junit.Assert.assertThrows;
 
 import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcCallContext;
 import com.google.api.gax.grpc.GrpcTransportChannel;
 import com.google.api.gax.rpc.FixedTransportChannelProvider;
 import com.google.cloud.kms.v1.ChecksummedData;
@@ -39,8 +41,19 @@ import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
 import io.grpc.testing.GrpcCleanupRule;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -244,6 +257,59 @@ public final class GcpKmsUtilTest {
     assertThat(publicKey.getPublicKey().getData()).isEqualTo(nistPqcData);
   }
 
+  @Test
+  public void fetchPublicKey_nistPqcFormat_requestsOnlyNistPqc() throws Exception {
+    List<PublicKey.PublicKeyFormat> requestedFormats = new ArrayList<>();
+    fakeKms.setGetPublicKeyHandler(
+        (request, responseObserver) -> {
+          requestedFormats.add(request.getPublicKeyFormat());
+          responseObserver.onNext(publicKeyResponse(request));
+          responseObserver.onCompleted();
+        });
+
+    PublicKey publicKey =
+        GcpKmsUtil.fetchPublicKey(
+            kmsClient, VALID_KEY_NAME, /* context= */ null, PublicKey.PublicKeyFormat.NIST_PQC);
+
+    assertThat(publicKey.getPublicKeyFormat()).isEqualTo(PublicKey.PublicKeyFormat.NIST_PQC);
+    assertThat(requestedFormats).containsExactly(PublicKey.PublicKeyFormat.NIST_PQC);
+  }
+
+  @Test
+  public void fetchPublicKey_whileRecording_commitsEventForFallback() throws Exception {
+    fakeKms.setGetPublicKeyHandler(
+        (request, responseObserver) -> {
+          if (request.getPublicKeyFormat() != PublicKey.PublicKeyFormat.NIST_PQC) {
+            responseObserver.onError(
+                Status.INVALID_ARGUMENT
+                    .withDescription("Only NIST_PQC format is supported for this algorithm.")
+                    .asRuntimeException());
+            return;
+          }
+          responseObserver.onNext(publicKeyResponse(request));
+          responseObserver.onCompleted();
+        });
+    Path file = Files.createTempFile("GcpKmsUtilTest", ".jfr");
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.crypto.tink.integration.gcpkms.PublicKeyFetch");
+      recording.start();
+      PublicKey unused = GcpKmsUtil.fetchPublicKey(kmsClient, VALID_KEY_NAME);
+      recording.stop();
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+
+    assertThat(events).hasSize(1);
+    RecordedEvent event = events.get(0);
+    assertThat(event.getString("keyName")).isEqualTo(VALID_KEY_NAME);
+    assertThat(event.getString("format")).isEqualTo("NIST_PQC");
+    assertThat(event.getBoolean("fallback")).isTrue();
+    assertThat(event.getString("status")).isEqualTo("OK");
+  }
+
   @Test
   public void fetchPublicKey_pemRequestFails_throws() throws Exception {
     // A failure that is not the "Only NIST_PQC format is supported" signal is not retried.
@@ -327,6 +393,189 @@ public final class GcpKmsUtilTest {
     assertThat(e).hasMessageThat().contains("The GetPublicKey checksum does not match");
   }
 
+  @Test
+  public void fetchPublicKey_concurrentCalls_shareOneRequest() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    fakeKms.setGetPublicKeyHandler(
+        (request, responseObserver) -> {
+          requests.incrementAndGet();
+          started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          responseObserver.onNext(publicKeyResponse(request));
+          responseObserver.onCompleted();
+        });
+    List<PublicKey> publicKeys = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  publicKeys.add(GcpKmsUtil.fetchPublicKey(kmsClient, VALID_KEY_NAME));
+                } catch (GeneralSecurityException e) {
+                  throw new IllegalStateException(e);
+                }
+              }));
+    }
+
+    threads.get(0).start();
+    started.await();
+    for (Thread thread : threads.subList(1, threads.size())) {
+      thread.start();
+    }
+    // Wait until the other threads are blocked waiting for the first request.
+    for (Thread thread : threads) {
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(requests.get()).isEqualTo(1);
+    assertThat(publicKeys).hasSize(5);
+    assertThat(publicKeys.get(0).getPublicKey().getData()).isEqualTo(PUBLIC_KEY_DATA);
+
+    // Once the request completed, the next call sends a new request.
+    GcpKmsUtil.fetchPublicKey(kmsClient, VALID_KEY_NAME);
+    assertThat(requests.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void fetchPublicKey_withContext_doesNotJoinPendingRequest() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    fakeKms.setGetPublicKeyHandler(
+        (request, responseObserver) -> {
+          if (requests.incrementAndGet() == 1) {
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+          responseObserver.onNext(publicKeyResponse(request));
+          responseObserver.onCompleted();
+        });
+    Thread first =
+        new Thread(
+            () -> {
+              try {
+                GcpKmsUtil.fetchPublicKey(kmsClient, VALID_KEY_NAME);
+              } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    first.start();
+    started.await();
+
+    PublicKey publicKey =
+        GcpKmsUtil.fetchPublicKey(kmsClient, VALID_KEY_NAME, GrpcCallContext.createDefault());
+    release.countDown();
+    first.join();
+
+    assertThat(requests.get()).isEqualTo(2);
+    assertThat(publicKey.getPublicKey().getData()).isEqualTo(PUBLIC_KEY_DATA);
+  }
+
+  // --- crc32c ---
+
+  @Test
+  public void crc32c_matchesGuava() throws Exception {
+    for (int size : new int[] {0, 1, 7, 8, 63, 64, 1000, 65536}) {
+      byte[] data = new byte[size];
+      for (int i = 0; i < size; i++) {
+        data[i] = (byte) (i * 31 + 7);
+      }
+      long expected = Hashing.crc32c().hashBytes(data).padToLong();
+
+      assertThat(GcpKmsUtil.crc32c(data)).isEqualTo(expected);
+      assertThat(GcpKmsUtil.crc32c(ByteString.copyFrom(data))).isEqualTo(expected);
+      // A ByteString made of several pieces.
+      int half = size / 2;
+      ByteString rope =
+          ByteString.copyFrom(data, 0, half).concat(ByteString.copyFrom(data, half, size - half));
+      assertThat(GcpKmsUtil.crc32c(rope)).isEqualTo(expected);
+    }
+  }
+
+  // --- isKeyVersionOf ---
+
+  // The previous implementation, based on String.split, to compare isKeyVersionOf against.
+  private static String keyVersionToKeyName(String keyVersion) {
+    String[] parts = keyVersion.split("/");
+    if (parts.length != 10
+        || !parts[0].equals("projects")
+        || !parts[2].equals("locations")
+        || !parts[4].equals("keyRings")
+        || !parts[6].equals("cryptoKeys")
+        || !parts[8].equals("cryptoKeyVersions")) {
+      return keyVersion;
+    }
+    return String.join("/", Arrays.asList(parts).subList(0, 8));
+  }
+
+  @Test
+  public void isKeyVersionOf_matchesSplitBasedImplementation() throws Exception {
+    String keyName = "projects/p/locations/global/keyRings/kr/cryptoKeys/k";
+    String[] keyVersions = {
+      keyName,
+      keyName + "/cryptoKeyVersions/1",
+      keyName + "/cryptoKeyVersions/1/",
+      keyName + "/cryptoKeyVersions/1//",
+      keyName + "/cryptoKeyVersions/",
+      keyName + "/cryptoKeyVersions",
+      keyName + "/cryptoKeyVersions/1/extra",
+      keyName + "/cryptokeyversions/1",
+      keyName + "2/cryptoKeyVersions/1",
+      "projects/p/locations/global/keyRings/kr/cryptoKeys/other/cryptoKeyVersions/1",
+      "projects/p/locations/global/keyRings/kr/cryptoKeys//cryptoKeyVersions/1",
+      "projects//locations/global/keyRings/kr/cryptoKeys/k/cryptoKeyVersions/1",
+      "/projects/p/locations/global/keyRings/kr/cryptoKeys/k/cryptoKeyVersions/1",
+      "project/p/locations/global/keyRings/kr/cryptoKeys/k/cryptoKeyVersions/1",
+      "projects/p/location/global/keyRings/kr/cryptoKeys/k/cryptoKeyVersions/1",
+      "projects/p/locations/global/keyRing/kr/cryptoKeys/k/cryptoKeyVersions/1",
+      "projects/p/locations/global/keyRings/kr/cryptoKey/k/cryptoKeyVersions/1",
+      "",
+      "/",
+      "///",
+      "projects",
+    };
+    String[] keyNames = {keyName, keyName + "/", "", "/", keyName + "/cryptoKeyVersions/1"};
+
+    for (String keyVersion : keyVersions) {
+      for (String name : keyNames) {
+        assertWithMessage("isKeyVersionOf(%s, %s)", keyVersion, name)
+            .that(GcpKmsUtil.isKeyVersionOf(keyVersion, name))
+            .isEqualTo(keyVersionToKeyName(keyVersion).equals(name));
+      }
+    }
+  }
+
+  @Test
+  public void isKeyVersionOf_keyVersionOfKey_isTrue() throws Exception {
+    assertThat(
+            GcpKmsUtil.isKeyVersionOf(
+                "projects/p/locations/global/keyRings/kr/cryptoKeys/k/cryptoKeyVersions/12",
+                "projects/p/locations/global/keyRings/kr/cryptoKeys/k"))
+        .isTrue();
+    assertThat(
+            GcpKmsUtil.isKeyVersionOf(
+                "projects/p/locations/global/keyRings/kr/cryptoKeys/k2/cryptoKeyVersions/12",
+                "projects/p/locations/global/keyRings/kr/cryptoKeys/k"))
+        .isFalse();
+  }
+
   // --- mlDsaPublicKeyPem ---
 
   @Test
@@ -0,0 +1,235 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class HedgerTest {
+
+  private static final Duration MIN_DELAY = Duration.ofMillis(1);
+
+  /** Records the requests started by a hedger; they complete only when the test says so. */
+  private static final class Requests implements Supplier<ApiFuture<Integer>> {
+    final List<SettableApiFuture<Integer>> started =
+        Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public ApiFuture<Integer> get() {
+      SettableApiFuture<Integer> request = SettableApiFuture.create();
+      started.add(request);
+      return request;
+    }
+
+    SettableApiFuture<Integer> awaitStarted(int index) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (started.size() <= index) {
+        if (System.nanoTime() > deadline) {
+          throw new AssertionError("Request " + index + " was not started.");
+        }
+        Thread.sleep(1);
+      }
+      return started.get(index);
+    }
+  }
+
+  /** Waits until {@code request} is cancelled, which may happen on another thread. */
+  private static void awaitCancelled(ApiFuture<?> request) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!request.isCancelled()) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("The request was not cancelled.");
+      }
+      Thread.sleep(1);
+    }
+  }
+
+  /** Completes enough fast calls that the hedger starts hedging after {@code MIN_DELAY}. */
+  private static void warmUp(Hedger hedger) throws Exception {
+    for (int i = 0; i < 100; i++) {
+      SettableApiFuture<Integer> response = SettableApiFuture.create();
+      response.set(i);
+      assertThat(hedger.call(() -> response).get()).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void invalidArguments_throw() throws Exception {
+    assertThrows(IllegalArgumentException.class, () -> new Hedger(0, MIN_DELAY, 0.1));
+    assertThrows(IllegalArgumentException.class, () -> new Hedger(1.1, MIN_DELAY, 0.1));
+    assertThrows(IllegalArgumentException.class, () -> new Hedger(0.9, Duration.ofMillis(-1), 0.1));
+    assertThrows(IllegalArgumentException.class, () -> new Hedger(0.9, MIN_DELAY, -0.1));
+    assertThrows(IllegalArgumentException.class, () -> new Hedger(0.9, MIN_DELAY, 1.1));
+  }
+
+  @Test
+  public void slowRequest_isHedged_firstSuccessWinsAndOtherIsCancelled() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 1.0);
+    warmUp(hedger);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    SettableApiFuture<Integer> hedge = requests.awaitStarted(1);
+    hedge.set(2);
+
+    assertThat(result.get()).isEqualTo(2);
+    assertThat(requests.started.get(0).isCancelled()).isTrue();
+    assertThat(hedger.hedgeCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void slowRequest_firstRequestCompletesFirst_hedgeIsCancelled() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 1.0);
+    warmUp(hedger);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    SettableApiFuture<Integer> hedge = requests.awaitStarted(1);
+    requests.started.get(0).set(1);
+
+    assertThat(result.get()).isEqualTo(1);
+    awaitCancelled(hedge);
+  }
+
+  @Test
+  public void hedgeFails_waitsForFirstRequest() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 1.0);
+    warmUp(hedger);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    requests.awaitStarted(1).setException(new IllegalStateException("hedge failed"));
+    assertThat(result.isDone()).isFalse();
+    requests.started.get(0).set(1);
+
+    assertThat(result.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void bothRequestsFail_fails() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 1.0);
+    warmUp(hedger);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    requests.awaitStarted(1).setException(new IllegalStateException("hedge failed"));
+    requests.started.get(0).setException(new IllegalStateException("first failed"));
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("first failed");
+  }
+
+  @Test
+  public void firstRequestFailsBeforeDelay_failsWithoutHedging() throws Exception {
+    Hedger hedger = new Hedger(0.9, Duration.ofSeconds(10), 1.0);
+    warmUp(hedger);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    requests.awaitStarted(0).setException(new IllegalStateException("failed"));
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(e).hasCauseThat().isInstanceOf(IllegalStateException.class);
+    assertThat(requests.started).hasSize(1);
+    assertThat(hedger.hedgeCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void notEnoughLatenciesObserved_doesNotHedge() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 1.0);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    Thread.sleep(50);
+    requests.started.get(0).set(1);
+
+    assertThat(result.get()).isEqualTo(1);
+    assertThat(requests.started).hasSize(1);
+    assertThat(hedger.hedgeCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void budgetExhausted_doesNotHedge() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 0.0);
+    warmUp(hedger);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    Thread.sleep(50);
+    requests.started.get(0).set(1);
+
+    assertThat(result.get()).isEqualTo(1);
+    assertThat(requests.started).hasSize(1);
+    assertThat(hedger.hedgeCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void budget_limitsNumberOfHedgedCalls() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 0.02);
+    // The 100 fast calls add a budget of two hedges.
+    warmUp(hedger);
+
+    for (int i = 0; i < 4; i++) {
+      Requests requests = new Requests();
+      ApiFuture<Integer> result = hedger.call(requests);
+      Thread.sleep(20);
+      requests.started.get(0).set(i);
+      assertThat(result.get()).isEqualTo(i);
+    }
+
+    assertThat(hedger.hedgeCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void cancel_cancelsAllRequests() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 1.0);
+    warmUp(hedger);
+    Requests requests = new Requests();
+
+    ApiFuture<Integer> result = hedger.call(requests);
+    requests.awaitStarted(1);
+    result.cancel(true);
+
+    assertThat(requests.started.get(0).isCancelled()).isTrue();
+    awaitCancelled(requests.started.get(1));
+  }
+
+  @Test
+  public void callBlocking_rethrowsUncheckedException() throws Exception {
+    Hedger hedger = new Hedger(0.9, MIN_DELAY, 1.0);
+    SettableApiFuture<Integer> response = SettableApiFuture.create();
+    response.setException(new IllegalStateException("failed"));
+
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> hedger.callBlocking(() -> response));
+    assertThat(e).hasMessageThat().isEqualTo("failed");
+  }
+}
@@ -0,0 +1,213 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class InFlightLimiterTest {
+
+  @Test
+  public void nonPositiveLimit_throws() throws Exception {
+    assertThrows(IllegalArgumentException.class, () -> new InFlightLimiter(0));
+  }
+
+  @Test
+  public void submit_startsCallsUpToTheLimit() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(2);
+    List<SettableApiFuture<Integer>> calls = new ArrayList<>();
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+    for (int i = 0; i < 5; i++) {
+      results.add(
+          limiter.submit(
+              () -> {
+                SettableApiFuture<Integer> call = SettableApiFuture.create();
+                calls.add(call);
+                return call;
+              }));
+    }
+
+    assertThat(calls).hasSize(2);
+    assertThat(limiter.inFlight()).isEqualTo(2);
+    assertThat(limiter.pending()).isEqualTo(3);
+
+    calls.get(0).set(0);
+    assertThat(results.get(0).get()).isEqualTo(0);
+    assertThat(calls).hasSize(3);
+    assertThat(limiter.inFlight()).isEqualTo(2);
+    assertThat(limiter.pending()).isEqualTo(2);
+
+    calls.get(1).setException(new IllegalStateException("rpc failed"));
+    calls.get(2).set(2);
+    calls.get(3).set(3);
+    calls.get(4).set(4);
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> results.get(1).get());
+    assertThat(e).hasCauseThat().isInstanceOf(IllegalStateException.class);
+    assertThat(results.get(4).get()).isEqualTo(4);
+    assertThat(limiter.inFlight()).isEqualTo(0);
+    assertThat(limiter.pending()).isEqualTo(0);
+  }
+
+  @Test
+  public void submit_callThrows_releasesSlot() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+
+    CompletableFuture<Integer> result =
+        limiter.submit(
+            () -> {
+              throw new IllegalStateException("cannot start call");
+            });
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(e).hasCauseThat().isInstanceOf(IllegalStateException.class);
+    assertThat(limiter.inFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void submit_cancel_cancelsCall() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+    SettableApiFuture<Integer> call = SettableApiFuture.create();
+
+    CompletableFuture<Integer> result = limiter.submit(() -> call);
+    result.cancel(false);
+
+    assertThat(call.isCancelled()).isTrue();
+    assertThat(limiter.inFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void submit_cancelPending_doesNotStartCall() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+    SettableApiFuture<Integer> first = SettableApiFuture.create();
+    List<ApiFuture<Integer>> started = new ArrayList<>();
+
+    CompletableFuture<Integer> unused = limiter.submit(() -> first);
+    CompletableFuture<Integer> second =
+        limiter.submit(
+            () -> {
+              SettableApiFuture<Integer> call = SettableApiFuture.create();
+              started.add(call);
+              return call;
+            });
+    second.cancel(false);
+    first.set(1);
+
+    assertThat(started).isEmpty();
+    assertThat(limiter.inFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void submit_manyQueuedCallsCompletingSynchronously_doesNotRecurse() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+    SettableApiFuture<Integer> first = SettableApiFuture.create();
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+    CompletableFuture<Integer> unused = limiter.submit(() -> first);
+    for (int i = 0; i < 50_000; i++) {
+      results.add(
+          limiter.submit(
+              () -> ApiFutures.immediateFailedFuture(new IllegalStateException("circuit open"))));
+      CompletableFuture<Integer> cancelled = limiter.submit(() -> ApiFutures.immediateFuture(0));
+      cancelled.cancel(false);
+      results.add(cancelled);
+    }
+    first.set(1);
+
+    for (CompletableFuture<Integer> result : results) {
+      assertThat(result.isCompletedExceptionally()).isTrue();
+    }
+    assertThat(limiter.inFlight()).isEqualTo(0);
+    assertThat(limiter.pending()).isEqualTo(0);
+  }
+
+  @Test
+  public void submitWithHandler_handlerResult() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+
+    CompletableFuture<String> result =
+        limiter.submit(() -> immediate(42), response -> "response " + response, "call failed");
+
+    assertThat(result.get()).isEqualTo("response 42");
+  }
+
+  @Test
+  public void submitWithHandler_handlerThrowsGeneralSecurityException_passedOn() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+
+    CompletableFuture<String> result =
+        limiter.submit(
+            () -> immediate(42),
+            response -> {
+              throw new GeneralSecurityException("checksum mismatch");
+            },
+            "call failed");
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+    assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("checksum mismatch");
+  }
+
+  @Test
+  public void submitWithHandler_callFails_wrappedInGeneralSecurityException() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+    SettableApiFuture<Integer> call = SettableApiFuture.create();
+    call.setException(new IllegalStateException("rpc failed"));
+
+    CompletableFuture<String> result =
+        limiter.submit(() -> call, response -> "response " + response, "call failed");
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+    assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("call failed");
+    assertThat(e).hasCauseThat().hasCauseThat().isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void submitWithHandler_callFailsWithGeneralSecurityException_passedOn() throws Exception {
+    InFlightLimiter limiter = new InFlightLimiter(1);
+    SettableApiFuture<Integer> call = SettableApiFuture.create();
+    call.setException(new GeneralSecurityException("rate limit exceeded"));
+
+    CompletableFuture<String> result =
+        limiter.submit(() -> call, response -> "response " + response, "call failed");
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(e).hasCauseThat().isInstanceOf(GeneralSecurityException.class);
+    assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("rate limit exceeded");
+  }
+
+  private static ApiFuture<Integer> immediate(int value) {
+    SettableApiFuture<Integer> future = SettableApiFuture.create();
+    future.set(value);
+    return future;
+  }
+}
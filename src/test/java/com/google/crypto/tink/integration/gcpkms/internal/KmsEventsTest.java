@@ -0,0 +1,97 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class KmsEventsTest {
+
+  private static final String KEY_NAME =
+      "projects/cloudkms-test/locations/global/keyRings/KR/cryptoKeys/K1";
+
+  private static List<RecordedEvent> stopAndRead(Recording recording) throws Exception {
+    Path file = Files.createTempFile("KmsEventsTest", ".jfr");
+    try {
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void isEnabled_onlyWhileRecording() throws Exception {
+    assertThat(KmsEvents.isKmsCallEnabled()).isFalse();
+    assertThat(KmsEvents.isPublicKeyFetchEnabled()).isFalse();
+
+    try (Recording recording = new Recording()) {
+      recording.enable(KmsCallEvent.class);
+      recording.start();
+      assertThat(KmsEvents.isKmsCallEnabled()).isTrue();
+    }
+
+    assertThat(KmsEvents.isKmsCallEnabled()).isFalse();
+  }
+
+  @Test
+  public void integrityFailure_isRecorded() throws Exception {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.crypto.tink.integration.gcpkms.IntegrityFailure");
+      recording.start();
+      KmsEvents.integrityFailure(KEY_NAME, "ENCRYPT", "KEY_NAME_MISMATCH");
+      events = stopAndRead(recording);
+    }
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getString("keyName")).isEqualTo(KEY_NAME);
+    assertThat(events.get(0).getString("operation")).isEqualTo("ENCRYPT");
+    assertThat(events.get(0).getString("failure")).isEqualTo("KEY_NAME_MISMATCH");
+  }
+
+  @Test
+  public void defaultConfiguration_recordsCallsButNotCacheLookups() throws Exception {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+      recording.start();
+      KmsEvents.decryptCacheLookup(/* hit= */ true, 100);
+      KmsEvents.integrityFailure(KEY_NAME, "DECRYPT", "CRC32C_MISMATCH");
+      events = stopAndRead(recording);
+    }
+
+    assertThat(
+            events.stream()
+                .map(event -> event.getEventType().getName())
+                .filter(name -> name.startsWith("com.google.crypto.tink.integration.gcpkms."))
+                .toArray())
+        .asList()
+        .containsExactly("com.google.crypto.tink.integration.gcpkms.IntegrityFailure");
+  }
+}
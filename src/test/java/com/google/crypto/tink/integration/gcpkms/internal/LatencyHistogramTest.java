@@ -0,0 +1,133 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class LatencyHistogramTest {
+
+  @Test
+  public void bucketBounds_coverEachValueWithinRelativeError() throws Exception {
+    long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, 1L << 40, Long.MAX_VALUE};
+    for (long value : values) {
+      int index = LatencyHistogram.bucketIndex(value);
+      long upperBound = LatencyHistogram.bucketUpperBound(index);
+      assertThat(upperBound).isAtLeast(value);
+      assertThat((double) upperBound).isAtMost(value * 1.125 + 1);
+      if (index > 0) {
+        assertThat(LatencyHistogram.bucketUpperBound(index - 1)).isLessThan(value);
+      }
+    }
+  }
+
+  @Test
+  public void bucketIndex_isMonotonic() throws Exception {
+    int previous = 0;
+    for (long value = 0; value < 100_000; value++) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertThat(index).isAtLeast(previous);
+      assertThat(index).isAtMost(previous + 1);
+      previous = index;
+    }
+  }
+
+  @Test
+  public void empty_returnsZero() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertThat(histogram.count()).isEqualTo(0);
+    assertThat(histogram.totalNanos()).isEqualTo(0);
+    assertThat(histogram.maxNanos()).isEqualTo(0);
+    assertThat(histogram.percentileNanos(99)).isEqualTo(0);
+  }
+
+  @Test
+  public void percentiles() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+
+    assertThat(histogram.count()).isEqualTo(1000);
+    assertThat(histogram.totalNanos()).isEqualTo(500_500_000L);
+    assertThat(histogram.maxNanos()).isEqualTo(1_000_000L);
+    assertThat(histogram.percentileNanos(50)).isAtLeast(500_000L);
+    assertThat(histogram.percentileNanos(50)).isAtMost(562_500L);
+    assertThat(histogram.percentileNanos(99)).isAtLeast(990_000L);
+    assertThat(histogram.percentileNanos(99)).isAtMost(1_000_000L);
+    assertThat(histogram.percentileNanos(100)).isEqualTo(1_000_000L);
+    assertThat(histogram.percentileNanos(0.01)).isAtLeast(1000L);
+    assertThat(histogram.percentileNanos(0.01)).isAtMost(1125L);
+  }
+
+  @Test
+  public void negativeValue_recordedAsZero() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+
+    assertThat(histogram.count()).isEqualTo(1);
+    assertThat(histogram.totalNanos()).isEqualTo(0);
+    assertThat(histogram.percentileNanos(100)).isEqualTo(0);
+  }
+
+  @Test
+  public void invalidPercentile_throws() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(0));
+    assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(101));
+    assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(Double.NaN));
+  }
+
+  @Test
+  public void concurrentRecording_countsEveryValue() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i % 64);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(histogram.count()).isEqualTo(80_000);
+    assertThat(histogram.percentileNanos(100)).isEqualTo(63);
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class MerkleTreeTest {
+
+  private static List<byte[]> leafHashes(int count) throws Exception {
+    List<byte[]> leafHashes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      leafHashes.add(MerkleTree.leafHash(new byte[] {(byte) i}));
+    }
+    return leafHashes;
+  }
+
+  /** The recursive definition of the root in RFC 9162, section 2.1.1. */
+  private static byte[] rfcRoot(List<byte[]> leafHashes) throws Exception {
+    if (leafHashes.size() == 1) {
+      return leafHashes.get(0);
+    }
+    int k = Integer.highestOneBit(leafHashes.size() - 1);
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    digest.update((byte) 0x01);
+    digest.update(rfcRoot(leafHashes.subList(0, k)));
+    return digest.digest(rfcRoot(leafHashes.subList(k, leafHashes.size())));
+  }
+
+  @Test
+  public void leafHash_isPrefixedSha256() throws Exception {
+    byte[] data = {1, 2, 3};
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    digest.update((byte) 0x00);
+
+    assertThat(MerkleTree.leafHash(data)).isEqualTo(digest.digest(data));
+  }
+
+  @Test
+  public void root_matchesRfcDefinition() throws Exception {
+    for (int size = 1; size <= 40; size++) {
+      List<byte[]> leafHashes = leafHashes(size);
+
+      MerkleTree tree = new MerkleTree(leafHashes);
+
+      assertThat(tree.size()).isEqualTo(size);
+      assertThat(tree.root()).isEqualTo(rfcRoot(leafHashes));
+    }
+  }
+
+  @Test
+  public void inclusionProof_leadsToRoot() throws Exception {
+    for (int size = 1; size <= 40; size++) {
+      List<byte[]> leafHashes = leafHashes(size);
+      MerkleTree tree = new MerkleTree(leafHashes);
+      for (int index = 0; index < size; index++) {
+        byte[][] proof = tree.inclusionProof(index);
+
+        assertThat(MerkleTree.rootFromInclusionProof(index, size, leafHashes.get(index), proof))
+            .isEqualTo(tree.root());
+      }
+    }
+  }
+
+  @Test
+  public void inclusionProof_hasLogarithmicLength() throws Exception {
+    MerkleTree tree = new MerkleTree(leafHashes(1024));
+
+    assertThat(tree.inclusionProof(0)).hasLength(10);
+    assertThat(tree.inclusionProof(1023)).hasLength(10);
+    assertThat(new MerkleTree(leafHashes(1)).inclusionProof(0)).isEmpty();
+  }
+
+  @Test
+  public void rootFromInclusionProof_wrongPositionDoesNotLeadToRoot() throws Exception {
+    List<byte[]> leafHashes = leafHashes(7);
+    MerkleTree tree = new MerkleTree(leafHashes);
+    byte[][] proof = tree.inclusionProof(2);
+
+    assertThat(MerkleTree.rootFromInclusionProof(3, 7, leafHashes.get(2), proof))
+        .isNotEqualTo(tree.root());
+    assertThat(MerkleTree.rootFromInclusionProof(2, 7, leafHashes.get(3), proof))
+        .isNotEqualTo(tree.root());
+    // A tree of 4 leaves needs a proof of length 2, a tree of 20 one of length 5.
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> MerkleTree.rootFromInclusionProof(2, 4, leafHashes.get(2), proof));
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> MerkleTree.rootFromInclusionProof(2, 20, leafHashes.get(2), proof));
+    assertThrows(
+        GeneralSecurityException.class,
+        () -> MerkleTree.rootFromInclusionProof(7, 7, leafHashes.get(2), proof));
+  }
+
+  @Test
+  public void emptyTree_fails() throws Exception {
+    assertThrows(GeneralSecurityException.class, () -> new MerkleTree(new ArrayList<>()));
+  }
+}
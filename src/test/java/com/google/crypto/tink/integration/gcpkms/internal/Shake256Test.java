@@ -0,0 +1,147 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.io.BaseEncoding;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class Shake256Test {
+
+  private static byte[] shake256(byte[] data, int length) {
+    Shake256 shake = new Shake256();
+    shake.update(data);
+    return shake.digest(length);
+  }
+
+  /** Computes SHAKE-256 with BouncyCastle, as a reference. */
+  private static byte[] referenceShake256(byte[] data, int length) {
+    SHAKEDigest digest = new SHAKEDigest(256);
+    digest.update(data, 0, data.length);
+    byte[] output = new byte[length];
+    digest.doFinal(output, 0, length);
+    return output;
+  }
+
+  private static byte[] randomBytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void knownAnswers() throws Exception {
+    assertThat(BaseEncoding.base16().lowerCase().encode(shake256(new byte[0], 64)))
+        .isEqualTo(
+            "46b9dd2b0ba88d13233b3feb743eeb243fcd52ea62b81b82b50c27646ed5762f"
+                + "d75dc4ddd8c0f200cb05019d67b592f6fc821c49479ab48640292eacb3b7c4be");
+    assertThat(BaseEncoding.base16().lowerCase().encode(shake256("abc".getBytes(US_ASCII), 32)))
+        .isEqualTo("483366601360a8771c6863080cc4114d8db44530f8f1e1ee4f94ea37e78b5739");
+  }
+
+  @Test
+  public void matchesReferenceAroundBlockBoundaries() throws Exception {
+    Random random = new Random(42);
+    for (int length = 0; length <= 3 * 136 + 1; length++) {
+      byte[] data = randomBytes(random, length);
+
+      assertThat(shake256(data, 64)).isEqualTo(referenceShake256(data, 64));
+    }
+  }
+
+  @Test
+  public void longOutput_matchesReference() throws Exception {
+    byte[] data = randomBytes(new Random(1), 100);
+
+    assertThat(shake256(data, 1000)).isEqualTo(referenceShake256(data, 1000));
+    assertThat(shake256(data, 0)).isEmpty();
+  }
+
+  @Test
+  public void incrementalUpdates_matchOneShot() throws Exception {
+    Random random = new Random(7);
+    byte[] data = randomBytes(random, 2000);
+    Shake256 shake = new Shake256();
+    int offset = 0;
+    while (offset < data.length) {
+      int length = Math.min(random.nextInt(300), data.length - offset);
+      switch (random.nextInt(4)) {
+        case 0:
+          shake.update(data, offset, length);
+          break;
+        case 1:
+          shake.update(ByteBuffer.wrap(data, offset, length));
+          break;
+        case 2:
+          ByteBuffer direct = ByteBuffer.allocateDirect(length);
+          direct.put(data, offset, length).flip();
+          shake.update(direct);
+          assertThat(direct.hasRemaining()).isFalse();
+          break;
+        default:
+          length = Math.min(1, length);
+          if (length == 1) {
+            shake.update(data[offset]);
+          }
+      }
+      offset += length;
+    }
+
+    assertThat(shake.digest(64)).isEqualTo(referenceShake256(data, 64));
+  }
+
+  @Test
+  public void copy_isIndependent() throws Exception {
+    byte[] prefix = randomBytes(new Random(3), 200);
+    Shake256 shake = new Shake256();
+    shake.update(prefix);
+
+    Shake256 copy = shake.copy();
+    copy.update(new byte[] {1});
+    shake.update(new byte[] {2});
+
+    byte[] expectedCopy = referenceShake256(concat(prefix, new byte[] {1}), 64);
+    byte[] expectedOriginal = referenceShake256(concat(prefix, new byte[] {2}), 64);
+    assertThat(copy.digest(64)).isEqualTo(expectedCopy);
+    assertThat(shake.digest(64)).isEqualTo(expectedOriginal);
+  }
+
+  @Test
+  public void useAfterDigest_throws() throws Exception {
+    Shake256 shake = new Shake256();
+    byte[] unused = shake.digest(32);
+
+    assertThrows(IllegalStateException.class, () -> shake.update((byte) 0));
+    assertThrows(IllegalStateException.class, () -> shake.digest(32));
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] result = new byte[a.length + b.length];
+    System.arraycopy(a, 0, result, 0, a.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+}
@@ -0,0 +1,191 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package com.google.crypto.tink.integration.gcpkms.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SingleFlightTest {
+
+  private static final int NUM_WAITERS = 10;
+
+  /** Waits until all {@code threads} are blocked. */
+  private static void awaitWaiting(List<Thread> threads) throws InterruptedException {
+    for (Thread thread : threads) {
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+  }
+
+  @Test
+  public void execute_sequentialCalls_areNotCoalesced() throws Exception {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+
+    assertThat(singleFlight.execute("key", calls::incrementAndGet)).isEqualTo(1);
+    assertThat(singleFlight.execute("key", calls::incrementAndGet)).isEqualTo(2);
+    assertThat(singleFlight.inFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_concurrentCallsWithSameKey_shareResult() throws Exception {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    SingleFlight.Call<Integer> call =
+        () -> {
+          calls.incrementAndGet();
+          started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          return 42;
+        };
+    List<Integer> results = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i <= NUM_WAITERS; i++) {
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  int result = singleFlight.execute("key", call);
+                  synchronized (results) {
+                    results.add(result);
+                  }
+                } catch (GeneralSecurityException e) {
+                  throw new IllegalStateException(e);
+                }
+              }));
+    }
+
+    threads.get(0).start();
+    started.await();
+    for (Thread thread : threads.subList(1, threads.size())) {
+      thread.start();
+    }
+    awaitWaiting(threads);
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(results).containsExactlyElementsIn(Collections.nCopies(NUM_WAITERS + 1, 42));
+    assertThat(singleFlight.inFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_concurrentCallsWithSameKey_shareException() throws Exception {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    GeneralSecurityException failure = new GeneralSecurityException("failure");
+    SingleFlight.Call<Integer> call =
+        () -> {
+          calls.incrementAndGet();
+          started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          throw failure;
+        };
+    List<Throwable> exceptions = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i <= NUM_WAITERS; i++) {
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  singleFlight.execute("key", call);
+                } catch (GeneralSecurityException e) {
+                  synchronized (exceptions) {
+                    exceptions.add(e);
+                  }
+                }
+              }));
+    }
+
+    threads.get(0).start();
+    started.await();
+    for (Thread thread : threads.subList(1, threads.size())) {
+      thread.start();
+    }
+    awaitWaiting(threads);
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(exceptions).hasSize(NUM_WAITERS + 1);
+    for (Throwable e : exceptions) {
+      assertThat(e).isSameInstanceAs(failure);
+    }
+  }
+
+  @Test
+  public void execute_differentKeys_areNotCoalesced() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    AtomicReference<String> inner = new AtomicReference<>();
+
+    String outer =
+        singleFlight.execute(
+            "key1",
+            () -> {
+              inner.set(singleFlight.execute("key2", () -> "inner"));
+              assertThat(singleFlight.inFlight()).isEqualTo(1);
+              return "outer";
+            });
+
+    assertThat(outer).isEqualTo("outer");
+    assertThat(inner.get()).isEqualTo("inner");
+  }
+
+  @Test
+  public void execute_runtimeException_isPropagated() throws Exception {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            singleFlight.execute(
+                "key",
+                () -> {
+                  throw new IllegalStateException();
+                }));
+    assertThat(singleFlight.execute("key", () -> 1)).isEqualTo(1);
+  }
+}